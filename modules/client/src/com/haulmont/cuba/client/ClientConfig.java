@@ -377,4 +377,25 @@ public interface ClientConfig extends Config {
     @Property("cuba.gui.validationNotificationType")
     @Default("TRAY")
     String getValidationNotificationType();
-}
\ No newline at end of file
+
+    /**
+     * @return whether {@code DataManager} keeps instances of cacheable entities loaded by ID on the client tier
+     */
+    @Property("cuba.entityNearCacheEnabled")
+    @DefaultBoolean(false)
+    boolean getEntityNearCacheEnabled();
+
+    /**
+     * @return maximum number of instances kept in the client-side entity near cache
+     */
+    @Property("cuba.entityNearCacheMaxSize")
+    @DefaultInt(10000)
+    int getEntityNearCacheMaxSize();
+
+    /**
+     * @return interval in seconds for checking versions of cached entities on the middleware
+     */
+    @Property("cuba.entityNearCacheValidationPeriodSec")
+    @DefaultInt(10)
+    int getEntityNearCacheValidationPeriodSec();
+}
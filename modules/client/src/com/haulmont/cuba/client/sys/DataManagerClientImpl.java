@@ -18,6 +18,9 @@
 package com.haulmont.cuba.client.sys;
 
 import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.client.ClientConfig;
+import com.haulmont.cuba.client.sys.cache.ClientCacheManager;
+import com.haulmont.cuba.client.sys.cache.EntityNearCacheStrategy;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
 import com.haulmont.cuba.core.entity.Entity;
@@ -28,10 +31,7 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 
 @Component(DataManager.NAME)
 public class DataManagerClientImpl implements DataManager {
@@ -45,16 +45,68 @@ public class DataManagerClientImpl implements DataManager {
     @Inject
     protected EntityStates entityStates;
 
+    @Inject
+    protected ClientConfig clientConfig;
+
+    @Inject
+    protected ClientCacheManager clientCacheManager;
+
     @Nullable
     @Override
     public <E extends Entity> E load(LoadContext<E> context) {
-        return dataService.load(context);
+        EntityNearCacheStrategy nearCache = getEntityNearCache(context);
+        if (nearCache == null || context.getId() == null || context.getQuery() != null) {
+            return dataService.load(context);
+        }
+
+        E entity = nearCache.get(context);
+        if (entity == null) {
+            long generation = nearCache.getGeneration(context);
+            entity = dataService.load(context);
+            if (entity != null) {
+                nearCache.put(context, entity, generation);
+            }
+        }
+        return entity;
     }
 
     @Nonnull
     @Override
     public <E extends Entity> List<E> loadList(LoadContext<E> context) {
-        return dataService.loadList(context);
+        EntityNearCacheStrategy nearCache = getEntityNearCache(context);
+        if (nearCache == null) {
+            return dataService.loadList(context);
+        }
+
+        if (context.getId() != null && context.getQuery() == null) {
+            E entity = load(context);
+            return entity != null ? new ArrayList<>(Collections.singletonList(entity)) : new ArrayList<>();
+        }
+
+        // instances loaded by a query with the same view are put to the cache to be found later by ID
+        long generation = nearCache.getGeneration(context);
+        List<E> entities = dataService.loadList(context);
+        for (E entity : entities) {
+            nearCache.put(context, entity, generation);
+        }
+        return entities;
+    }
+
+    /**
+     * @return near cache if the results of the given load context can be served from it, null otherwise
+     */
+    @Nullable
+    protected EntityNearCacheStrategy getEntityNearCache(LoadContext<?> context) {
+        if (!clientConfig.getEntityNearCacheEnabled()) {
+            return null;
+        }
+        // getting the cache takes its lock, so it is skipped for entities which are not cached anyway
+        MetaClass metaClass = metadata.getClass(context.getMetaClass());
+        if (metaClass == null || !metadata.getTools().isCacheable(metaClass)) {
+            return null;
+        }
+        EntityNearCacheStrategy nearCache = clientCacheManager.getCached(EntityNearCacheStrategy.NAME);
+        return nearCache != null && nearCache.isCacheable(context) ? nearCache : null;
     }
 
     @Override
@@ -97,7 +149,16 @@ public class DataManagerClientImpl implements DataManager {
 
     @Override
     public EntitySet commit(CommitContext context) {
-        return EntitySet.of(dataService.commit(context));
+        EntitySet result = EntitySet.of(dataService.commit(context));
+        if (clientConfig.getEntityNearCacheEnabled()) {
+            EntityNearCacheStrategy nearCache = clientCacheManager.getCached(EntityNearCacheStrategy.NAME);
+            if (nearCache != null) {
+                // do not wait for the version check to see own changes
+                nearCache.invalidate(context.getCommitInstances());
+                nearCache.invalidate(context.getRemoveInstances());
+            }
+        }
+        return result;
     }
 
     @Override
@@ -17,6 +17,9 @@
 
 package com.haulmont.cuba.client.sys.cache;
 
+import com.google.common.cache.CacheStats;
+
+import javax.annotation.Nullable;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -49,4 +52,19 @@ public interface CachingStrategy {
      * Indicate whether cached object should be refreshed or not
      */
     boolean needToReload();
-}
\ No newline at end of file
+
+    /**
+     * Return statistics of the cached object or null if the strategy does not collect them
+     */
+    @Nullable
+    default CacheStats getStats() {
+        return null;
+    }
+
+    /**
+     * Return number of entries in the cached object or -1 if the strategy does not count them
+     */
+    default long size() {
+        return -1;
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.haulmont.cuba.client.sys.cache;
 
+import com.google.common.cache.CacheStats;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Events;
 import com.haulmont.cuba.core.sys.events.AppContextInitializedEvent;
@@ -143,6 +144,39 @@ public class ClientCacheManager {
         cache.put(key, cachingStrategy);
     }
 
+    /**
+     * Get number of entries in cached object by its name, or -1 if unknown
+     */
+    public long getCacheSize(String name) {
+        CachingStrategy cachingStrategy = cache.get(name);
+        return cachingStrategy != null ? cachingStrategy.size() : -1;
+    }
+
+    /**
+     * Get ratio of requests to cached object which were served from the cache, or NaN if unknown
+     */
+    public double getCacheHitRate(String name) {
+        CacheStats stats = getCacheStats(name);
+        return stats != null ? stats.hitRate() : Double.NaN;
+    }
+
+    /**
+     * Get number of entries evicted from cached object due to its size limit, or -1 if unknown
+     */
+    public long getCacheEvictionCount(String name) {
+        CacheStats stats = getCacheStats(name);
+        return stats != null ? stats.evictionCount() : -1;
+    }
+
+    /**
+     * Get statistics of cached object by its name, if its caching strategy collects them
+     */
+    @Nullable
+    public CacheStats getCacheStats(String name) {
+        CachingStrategy cachingStrategy = cache.get(name);
+        return cachingStrategy != null ? cachingStrategy.getStats() : null;
+    }
+
     public ScheduledExecutorService getExecutorService() {
         return executorService;
     }
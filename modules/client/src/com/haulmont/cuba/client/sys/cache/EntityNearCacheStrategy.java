@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.client.sys.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.client.ClientConfig;
+import com.haulmont.cuba.core.app.EntityCacheVersionService;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.SecurityContext;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import com.haulmont.cuba.security.global.NoUserSessionException;
+import com.haulmont.cuba.security.global.UserSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps instances of cacheable entities loaded by {@code DataManager} on the client tier, so repeated loading of
+ * reference entities by ID does not go to the middleware.
+ * <p>Instances are stored in serialized form and deserialized on each request, so callers never share them.
+ * Cached instances of an entity are discarded when its version provided by {@link EntityCacheVersionService} changes.
+ * Versions are checked periodically in a separate thread, so changes made by other clients become visible
+ * after {@link ClientConfig#getEntityNearCacheValidationPeriodSec()} seconds.
+ */
+@Component(EntityNearCacheStrategy.NAME)
+public class EntityNearCacheStrategy implements CachingStrategy {
+
+    public static final String NAME = "cuba_EntityNearCacheStrategy";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityNearCacheStrategy.class);
+
+    @Inject
+    protected ClientCacheManager clientCacheManager;
+    @Inject
+    protected CacheUserSessionProvider cacheUserSessionProvider;
+    @Inject
+    protected EntityCacheVersionService entityCacheVersionService;
+    @Inject
+    protected UserSessionSource userSessionSource;
+    @Inject
+    protected Metadata metadata;
+    @Inject
+    protected ClientConfig clientConfig;
+
+    protected ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    protected Cache<EntityKey, byte[]> cache;
+
+    // incremented on each invalidation of an entity to drop instances loaded before it
+    protected Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    protected volatile Map<String, Long> versions;
+
+    @Override
+    public void init() {
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(clientConfig.getEntityNearCacheMaxSize())
+                .recordStats()
+                .build();
+
+        if (!clientConfig.getEntityNearCacheEnabled()) {
+            return;
+        }
+
+        int period = clientConfig.getEntityNearCacheValidationPeriodSec();
+        clientCacheManager.getExecutorService().scheduleWithFixedDelay(() -> {
+            if (versions == null || cache.size() == 0) {
+                return;
+            }
+            UserSession userSession = cacheUserSessionProvider.getUserSession();
+            if (userSession == null) {
+                // cache user session unavailable
+                return;
+            }
+
+            Map<String, Long> newVersions;
+            try {
+                AppContext.setSecurityContext(new SecurityContext(userSession));
+
+                // the middleware is called without the lock, so loading from the cache is not blocked meanwhile
+                newVersions = entityCacheVersionService.getVersions();
+            } catch (NoUserSessionException e) {
+                log.warn("Cache user session expired", e);
+                return;
+            } catch (Exception e) {
+                log.error("Unable to validate entity near cache", e);
+                return;
+            } finally {
+                AppContext.setSecurityContext(null);
+            }
+
+            Lock writeLock = readWriteLock.writeLock();
+            writeLock.lock();
+            try {
+                updateVersions(newVersions);
+            } finally {
+                writeLock.unlock();
+            }
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public Object getObject() {
+        return this;
+    }
+
+    /**
+     * Loads current versions from the middleware and discards instances of entities which versions have changed.
+     */
+    @Override
+    public Object loadObject() {
+        updateVersions(entityCacheVersionService.getVersions());
+        return this;
+    }
+
+    /**
+     * Discards instances of entities which versions differ from the given ones and remembers the new versions.
+     */
+    protected void updateVersions(Map<String, Long> newVersions) {
+        Map<String, Long> oldVersions = versions;
+        if (oldVersions != null) {
+            Set<String> entityNames = new HashSet<>(oldVersions.keySet());
+            entityNames.addAll(newVersions.keySet());
+            for (String entityName : entityNames) {
+                if (!Objects.equals(oldVersions.get(entityName), newVersions.get(entityName))) {
+                    log.debug("Entity {} has been changed, discarding its cached instances", entityName);
+                    invalidate(entityName);
+                }
+            }
+        }
+        versions = newVersions;
+    }
+
+    @Override
+    public ReadWriteLock lock() {
+        return readWriteLock;
+    }
+
+    @Override
+    public boolean needToReload() {
+        return versions == null;
+    }
+
+    @Override
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return true if results of the given load context can be kept in the cache
+     */
+    public boolean isCacheable(LoadContext<?> context) {
+        if (!clientConfig.getEntityNearCacheEnabled() || context.getView() == null || !context.getDbHints().isEmpty()) {
+            return false;
+        }
+        MetaClass metaClass = metadata.getClass(context.getMetaClass());
+        if (metaClass == null || !metadata.getTools().isCacheable(metaClass)) {
+            return false;
+        }
+        // results of constraints can depend on session attributes, so they are not shared even between sessions
+        return userSessionSource.checkCurrentUserSession()
+                && !userSessionSource.getUserSession().hasConstraints(metaClass.getName());
+    }
+
+    /**
+     * Returns a copy of the cached instance for the ID and view of the given load context.
+     */
+    @Nullable
+    public <E extends Entity> E get(LoadContext<E> context) {
+        byte[] bytes = cache.getIfPresent(createKey(context, context.getId()));
+        //noinspection unchecked
+        return bytes != null ? (E) SerializationSupport.deserialize(bytes) : null;
+    }
+
+    /**
+     * Returns the current generation of the entity of the given load context. The value must be obtained before
+     * loading instances and passed to {@link #put(LoadContext, Entity, long)}.
+     */
+    public long getGeneration(LoadContext<?> context) {
+        return getGenerationCounter(context.getMetaClass()).get();
+    }
+
+    /**
+     * Puts the instance loaded by the given load context to the cache, unless the entity has been invalidated
+     * after the loading has started.
+     */
+    public void put(LoadContext<?> context, Entity entity, long generation) {
+        AtomicLong counter = getGenerationCounter(context.getMetaClass());
+        if (counter.get() != generation) {
+            return;
+        }
+        EntityKey key = createKey(context, entity.getId());
+        cache.put(key, SerializationSupport.serialize(entity));
+        // re-check in case of concurrent invalidation between the check and the put
+        if (counter.get() != generation) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Discards cached instances of the given entity.
+     */
+    public void invalidate(String entityName) {
+        getGenerationCounter(entityName).incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.entityName.equals(entityName));
+    }
+
+    /**
+     * Discards cached instances of the entities of the given instances and their ancestors.
+     */
+    public void invalidate(Collection<? extends Entity> entities) {
+        Set<String> entityNames = new HashSet<>();
+        for (Entity entity : entities) {
+            MetaClass metaClass = entity.getMetaClass();
+            if (metadata.getTools().isCacheable(metaClass) && entityNames.add(metaClass.getName())) {
+                for (MetaClass ancestor : metaClass.getAncestors()) {
+                    entityNames.add(ancestor.getName());
+                }
+            }
+        }
+        for (String entityName : entityNames) {
+            invalidate(entityName);
+        }
+    }
+
+    /**
+     * Discards all cached instances.
+     */
+    public void invalidateAll() {
+        for (AtomicLong counter : generations.values()) {
+            counter.incrementAndGet();
+        }
+        cache.invalidateAll();
+    }
+
+    protected AtomicLong getGenerationCounter(String entityName) {
+        return generations.computeIfAbsent(entityName, name -> new AtomicLong());
+    }
+
+    protected EntityKey createKey(LoadContext<?> context, Object id) {
+        UserSession userSession = userSessionSource.getUserSession();
+        return new EntityKey(context.getMetaClass(), id, context.getView(),
+                userSession.getCurrentOrSubstitutedUser().getId(),
+                context.isAuthorizationRequired(), context.isSoftDeletion(), context.isLoadDynamicAttributes(),
+                context.isLoadPartialEntities());
+    }
+
+    protected static class EntityKey {
+
+        protected final String entityName;
+        protected final Object id;
+        protected final View view;
+        protected final UUID userId;
+        // secured and unsecured loads return different instances and must not share entries
+        protected final boolean authorizationRequired;
+        protected final boolean softDeletion;
+        protected final boolean loadDynamicAttributes;
+        protected final boolean loadPartialEntities;
+        protected final int hashCode;
+
+        public EntityKey(String entityName, Object id, View view, UUID userId, boolean authorizationRequired,
+                         boolean softDeletion, boolean loadDynamicAttributes, boolean loadPartialEntities) {
+            this.entityName = entityName;
+            this.id = id;
+            this.view = view;
+            this.userId = userId;
+            this.authorizationRequired = authorizationRequired;
+            this.softDeletion = softDeletion;
+            this.loadDynamicAttributes = loadDynamicAttributes;
+            this.loadPartialEntities = loadPartialEntities;
+            this.hashCode = Objects.hash(entityName, id, System.identityHashCode(view), userId,
+                    authorizationRequired, softDeletion, loadDynamicAttributes, loadPartialEntities);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            EntityKey that = (EntityKey) o;
+            // views are compared by identity as they are usually taken from the view repository
+            return view == that.view
+                    && authorizationRequired == that.authorizationRequired
+                    && softDeletion == that.softDeletion
+                    && loadDynamicAttributes == that.loadDynamicAttributes
+                    && loadPartialEntities == that.loadPartialEntities
+                    && entityName.equals(that.entityName)
+                    && id.equals(that.id)
+                    && userId.equals(that.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
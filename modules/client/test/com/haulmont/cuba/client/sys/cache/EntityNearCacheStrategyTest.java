@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.haulmont.cuba.client.sys.cache;
+
+import com.haulmont.cuba.client.ClientConfig;
+import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.sys.AppComponents;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.global.UserSession;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class EntityNearCacheStrategyTest {
+
+    @Mocked
+    protected ClientConfig clientConfig;
+
+    @Mocked
+    protected UserSessionSource userSessionSource;
+
+    private EntityNearCacheStrategy strategy;
+
+    private Map<String, Long> middlewareVersions = new HashMap<>();
+
+    private View view = new View(User.class, false);
+
+    private User user = new User();
+
+    @BeforeClass
+    public static void setUpClass() {
+        // cached instances are serialized by SerializationSupport, which reads application properties
+        AppContext.Internals.setAppComponents(new AppComponents("client"));
+    }
+
+    @Before
+    public void setUp() {
+        User sessionUser = new User();
+        sessionUser.setLogin("test");
+        UserSession userSession = new UserSession(UUID.randomUUID(), sessionUser, Collections.emptyList(),
+                Locale.ENGLISH, false);
+
+        new Expectations() {
+            {
+                clientConfig.getEntityNearCacheMaxSize(); result = 100; minTimes = 0;
+                // versions are reloaded by the test instead of a scheduled task
+                clientConfig.getEntityNearCacheEnabled(); result = false; minTimes = 0;
+                userSessionSource.getUserSession(); result = userSession; minTimes = 0;
+            }
+        };
+
+        strategy = new EntityNearCacheStrategy();
+        strategy.clientConfig = clientConfig;
+        strategy.userSessionSource = userSessionSource;
+        strategy.entityCacheVersionService = () -> new HashMap<>(middlewareVersions);
+        strategy.init();
+
+        user.setLogin("cached");
+    }
+
+    @Test
+    public void testPutAndGet() {
+        LoadContext<User> context = createLoadContext();
+        strategy.put(context, user, strategy.getGeneration(context));
+
+        User cached = strategy.get(context);
+        assertNotNull(cached);
+        assertNotSame(user, cached);
+        assertEquals("cached", cached.getLogin());
+
+        // secured and unsecured loads do not share instances
+        assertNull(strategy.get(createLoadContext().setAuthorizationRequired(true)));
+    }
+
+    @Test
+    public void testPutIgnoredAfterInvalidation() {
+        LoadContext<User> context = createLoadContext();
+        long generation = strategy.getGeneration(context);
+
+        // the entity is changed while the instance is being loaded
+        strategy.invalidate("sec$User");
+        strategy.put(context, user, generation);
+
+        assertNull(strategy.get(context));
+
+        strategy.put(context, user, strategy.getGeneration(context));
+        assertNotNull(strategy.get(context));
+    }
+
+    @Test
+    public void testInvalidate() {
+        LoadContext<User> context = createLoadContext();
+        strategy.put(context, user, strategy.getGeneration(context));
+
+        strategy.invalidate("sec$Group");
+        assertNotNull(strategy.get(context));
+
+        strategy.invalidate("sec$User");
+        assertNull(strategy.get(context));
+
+        strategy.put(context, user, strategy.getGeneration(context));
+        strategy.invalidateAll();
+        assertNull(strategy.get(context));
+    }
+
+    @Test
+    public void testVersionChangeInvalidates() {
+        middlewareVersions.put("sec$User", 1L);
+        middlewareVersions.put("sec$Group", 1L);
+        assertTrue(strategy.needToReload());
+        strategy.loadObject();
+        assertFalse(strategy.needToReload());
+
+        LoadContext<User> context = createLoadContext();
+        strategy.put(context, user, strategy.getGeneration(context));
+
+        // versions of other entities change
+        middlewareVersions.put("sec$Group", 2L);
+        middlewareVersions.put("sec$Role", 1L);
+        strategy.loadObject();
+        assertNotNull(strategy.get(context));
+
+        middlewareVersions.put("sec$User", 2L);
+        strategy.loadObject();
+        assertNull(strategy.get(context));
+
+        // versions are lost when the middleware is restarted
+        strategy.put(context, user, strategy.getGeneration(context));
+        middlewareVersions.clear();
+        strategy.loadObject();
+        assertNull(strategy.get(context));
+    }
+
+    private LoadContext<User> createLoadContext() {
+        LoadContext<User> context = new LoadContext<User>() {
+            {
+                metaClass = "sec$User";
+            }
+        };
+        return context.setId(user.getId()).setView(view);
+    }
+}
@@ -61,9 +61,42 @@ public interface ClusterConfig extends Config {
     int getClusterMessageSendingThreadPoolSize();
 
     /**
-     * @return Maximum queue capacity which is used  by executor to store messages to the cluster members. By default is unbounded
+     * @return Maximum queue capacity which is used  by executor to store messages to the cluster members. By default is unbounded.
+     * If message batching is enabled, limits the number of messages waiting in batches.
      */
     @Property("cuba.cluster.messageSendingQueueCapacity")
     @DefaultInt(Integer.MAX_VALUE)
     int getClusterMessageSendingQueueCapacity();
+
+    /**
+     * @return time window in milliseconds during which asynchronously sent messages are collected and sent to the
+     * cluster as one batch. If 0 (default), each message is sent separately.
+     */
+    @Property("cuba.cluster.messageBatchingWindowMs")
+    @DefaultInt(0)
+    int getMessageBatchingWindowMs();
+
+    /**
+     * @return maximum number of messages in one batch, the batch is sent immediately when it reaches this size
+     */
+    @Property("cuba.cluster.messageBatchingMaxSize")
+    @DefaultInt(100)
+    int getMessageBatchingMaxSize();
+
+    /**
+     * @return class name of {@code com.haulmont.cuba.core.sys.serialization.Serialization} implementation used for
+     * cluster messages, e.g. {@code com.haulmont.cuba.core.sys.serialization.KryoSerialization}. If not set, the
+     * serialization defined by {@code cuba.serialization.impl} is used.
+     */
+    @Property("cuba.cluster.messageSerializationImpl")
+    String getMessageSerializationImpl();
+
+    /**
+     * @return size of serialized cluster message in bytes starting from which the message is compressed.
+     * If 0 (default), the compression defined by {@code cuba.serialization.compressionThreshold} is used.
+     * Compressed messages carry a marker byte, so all cluster nodes must either set a positive value or none.
+     */
+    @Property("cuba.cluster.messageCompressionThreshold")
+    @DefaultInt(0)
+    int getMessageCompressionThreshold();
 }
@@ -16,6 +16,8 @@
  */
 package com.haulmont.cuba.core.app;
 
+import javax.annotation.Nullable;
+
 /**
  * Interface to be implemented by middleware cluster listeners. A cluster listener receives messages from other nodes
  * in the cluster.
@@ -50,4 +52,20 @@ public interface ClusterListener<T> {
      * @param state byte array containing the state
      */
     void setState(byte[] state);
+
+    /**
+     * Merge two messages queued for sending in the same batch into one.
+     *
+     * <p>This method is invoked by clustering implementation on the sending node when message batching is enabled by
+     * the {@code cuba.cluster.messageBatchingWindowMs} application property. The merged message replaces the previous
+     * one in the batch.</p>
+     *
+     * @param previous  message queued earlier
+     * @param next      message queued later
+     * @return  merged message, or null if the messages cannot be merged and must be sent both
+     */
+    @Nullable
+    default T merge(T previous, T next) {
+        return null;
+    }
 }
@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.global.Resources;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.events.AppContextInitializedEvent;
 import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import com.haulmont.cuba.core.sys.serialization.Serialization;
 import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
 import org.apache.commons.io.IOUtils;
 import org.jgroups.*;
@@ -43,9 +44,12 @@ import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.*;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -65,6 +69,25 @@ public class ClusterManager implements ClusterManagerAPI {
 
     protected ThreadPoolExecutor executor;
 
+    protected Serialization serialization;
+
+    protected ScheduledExecutorService batchScheduler;
+
+    protected final List<Serializable> batch = new ArrayList<>();
+
+    protected ScheduledFuture<?> batchFlushFuture;
+
+    /**
+     * Batches taken from {@link #batch} and not sent yet, in the order they were taken. Guarded by {@link #batch},
+     * drained only by the single thread of {@link #batchScheduler} to keep the order of messages.
+     */
+    protected final Queue<List<Serializable>> pendingBatches = new ArrayDeque<>();
+
+    /**
+     * Number of messages in {@link #pendingBatches}. Guarded by {@link #batch}.
+     */
+    protected int pendingMessagesCount;
+
     @Inject
     protected Resources resources;
 
@@ -97,6 +120,18 @@ public class ClusterManager implements ClusterManagerAPI {
                         log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
                     }
                 });
+        if (clusterConfig.getMessageSerializationImpl() != null || clusterConfig.getMessageCompressionThreshold() > 0) {
+            String serializationImpl = clusterConfig.getMessageSerializationImpl() != null ?
+                    clusterConfig.getMessageSerializationImpl() : AppContext.getProperty("cuba.serialization.impl");
+            serialization = SerializationSupport.createSerialization(
+                    serializationImpl, clusterConfig.getMessageCompressionThreshold());
+        } else {
+            serialization = SerializationSupport.getSerialization();
+        }
+        if (clusterConfig.getMessageBatchingWindowMs() > 0) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("ClusterManagerBatchSender-%d").setDaemon(true).build());
+        }
     }
 
     @EventListener(AppContextInitializedEvent.class)
@@ -109,6 +144,15 @@ public class ClusterManager implements ClusterManagerAPI {
 
     @EventListener(AppContextStoppedEvent.class)
     protected void applicationStopped() {
+        if (batchScheduler != null) {
+            batchScheduler.execute(this::flushBatch);
+            batchScheduler.shutdown();
+            try {
+                batchScheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         executor.shutdown();
         stop();
     }
@@ -121,6 +165,8 @@ public class ClusterManager implements ClusterManagerAPI {
         Boolean sync = forceSyncSending.get();
         if (sync != null && sync) {
             internalSend(message, true);
+        } else if (batchScheduler != null) {
+            addToBatch(message);
         } else {
             log.trace("Submitting message: {}: {} to send asynchronously", message.getClass(), message);
             executor.execute(new SendMessageRunnable(message));
@@ -138,7 +184,7 @@ public class ClusterManager implements ClusterManagerAPI {
     protected void internalSend(Serializable message, boolean sync) {
         StopWatch sw = new Slf4JStopWatch(String.format("sendClusterMessage(%s)", message.getClass().getSimpleName()));
         try {
-            byte[] bytes = SerializationSupport.serialize(message);
+            byte[] bytes = serialization.serialize(message);
             log.debug("Sending message: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
             MessageStat stat = messagesStat.get(message.getClass().getName());
             if (stat != null) {
@@ -158,6 +204,133 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    protected void addToBatch(Serializable message) {
+        log.trace("Adding message: {}: {} to the batch", message.getClass(), message);
+        synchronized (batch) {
+            if (!mergeIntoBatch(message)) {
+                // same limit as for the queue of the executor sending messages without batching
+                if (batch.size() + pendingMessagesCount >= clusterConfig.getClusterMessageSendingQueueCapacity()) {
+                    log.info("Queue capacity is exceeded. Message: {}: {}", message.getClass(), message);
+                    return;
+                }
+                batch.add(message);
+            }
+            if (batch.size() >= clusterConfig.getMessageBatchingMaxSize()) {
+                addPendingBatch(takeBatch());
+                batchScheduler.execute(this::sendPendingBatches);
+            } else if (batchFlushFuture == null) {
+                batchFlushFuture = batchScheduler.schedule(this::flushBatch,
+                        clusterConfig.getMessageBatchingWindowMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected boolean mergeIntoBatch(Serializable message) {
+        ClusterListener listener = listeners.get(message.getClass().getName());
+        if (listener == null) {
+            return false;
+        }
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Serializable queued = batch.get(i);
+            if (queued.getClass() == message.getClass()) {
+                Object merged = listener.merge(queued, message);
+                if (merged != null) {
+                    log.trace("Message: {}: {} merged with {}", message.getClass(), message, queued);
+                    batch.set(i, (Serializable) merged);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected List<Serializable> takeBatch() {
+        synchronized (batch) {
+            if (batchFlushFuture != null) {
+                batchFlushFuture.cancel(false);
+                batchFlushFuture = null;
+            }
+            List<Serializable> messages = new ArrayList<>(batch);
+            batch.clear();
+            return messages;
+        }
+    }
+
+    /**
+     * Takes the current batch when the batching window expires. Invoked on the {@link #batchScheduler} thread.
+     */
+    protected void flushBatch() {
+        synchronized (batch) {
+            List<Serializable> messages = takeBatch();
+            if (!messages.isEmpty()) {
+                addPendingBatch(messages);
+            }
+        }
+        sendPendingBatches();
+    }
+
+    protected void addPendingBatch(List<Serializable> messages) {
+        synchronized (batch) {
+            pendingBatches.add(messages);
+            pendingMessagesCount += messages.size();
+        }
+    }
+
+    /**
+     * Sends taken batches in the order they were taken, whether by the batching window or by the batch size.
+     * Invoked on the {@link #batchScheduler} thread only.
+     */
+    protected void sendPendingBatches() {
+        while (true) {
+            List<Serializable> messages;
+            synchronized (batch) {
+                messages = pendingBatches.poll();
+                if (messages != null) {
+                    pendingMessagesCount -= messages.size();
+                }
+            }
+            if (messages == null) {
+                return;
+            }
+            internalSendBatch(messages);
+        }
+    }
+
+    protected void internalSendBatch(List<Serializable> messages) {
+        if (messages.size() == 1) {
+            internalSend(messages.get(0), false);
+            return;
+        }
+        StopWatch sw = new Slf4JStopWatch("sendClusterMessageBatch");
+        try {
+            List<byte[]> serializedMessages = new ArrayList<>(messages.size());
+            for (Serializable message : messages) {
+                byte[] bytes = serialization.serialize(message);
+                log.debug("Sending message in batch: {}: {} ({} bytes)", message.getClass(), message, bytes.length);
+                MessageStat stat = messagesStat.get(message.getClass().getName());
+                if (stat != null) {
+                    stat.updateSent(bytes.length);
+                }
+                serializedMessages.add(bytes);
+            }
+            byte[] bytes = serialization.serialize(new MessageBatch(serializedMessages));
+            log.debug("Sending batch of {} messages ({} bytes)", messages.size(), bytes.length);
+
+            JChannel channel = this.channel;
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.send(new Message(null, null, bytes));
+            } catch (Exception e) {
+                log.error("Error sending message batch", e);
+            }
+        } finally {
+            sw.stop();
+        }
+    }
+
     @Override
     public boolean getSyncSendingForCurrentThread() {
         return forceSyncSending.get() == null ? false : forceSyncSending.get();
@@ -269,7 +442,9 @@ public class ClusterManager implements ClusterManagerAPI {
 
     @Override
     public int getMessagesCount() {
-        return executor.getQueue().size();
+        synchronized (batch) {
+            return executor.getQueue().size() + batch.size() + pendingMessagesCount;
+        }
     }
 
     @Override
@@ -396,23 +571,48 @@ public class ClusterManager implements ClusterManagerAPI {
             StopWatch sw = new Slf4JStopWatch();
             String simpleClassName = null;
             try {
-                Serializable data = (Serializable) SerializationSupport.deserialize(bytes);
-                String className = data.getClass().getName();
+                Serializable data = (Serializable) serialization.deserialize(bytes);
                 simpleClassName = data.getClass().getSimpleName();
-                log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, bytes.length);
-                MessageStat stat = messagesStat.get(className);
-                if (stat != null) {
-                    stat.updateReceived(bytes.length);
-                }
-                ClusterListener listener = listeners.get(className);
-                if (listener != null) {
-                    listener.receive(data);
+                if (data instanceof MessageBatch) {
+                    List<byte[]> messages = ((MessageBatch) data).getMessages();
+                    log.debug("Received batch of {} messages ({} bytes)", messages.size(), bytes.length);
+                    for (byte[] messageBytes : messages) {
+                        receiveMessage(messageBytes);
+                    }
+                } else {
+                    dispatch(data, bytes.length);
                 }
             } finally {
                 sw.stop(String.format("receiveClusterMessage(%s)", simpleClassName));
             }
         }
 
+        protected void receiveMessage(byte[] bytes) {
+            StopWatch sw = new Slf4JStopWatch();
+            String simpleClassName = null;
+            try {
+                Serializable data = (Serializable) serialization.deserialize(bytes);
+                simpleClassName = data.getClass().getSimpleName();
+                dispatch(data, bytes.length);
+            } finally {
+                sw.stop(String.format("receiveClusterMessage(%s)", simpleClassName));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        protected void dispatch(Serializable data, int length) {
+            String className = data.getClass().getName();
+            log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, length);
+            MessageStat stat = messagesStat.get(className);
+            if (stat != null) {
+                stat.updateReceived(length);
+            }
+            ClusterListener listener = listeners.get(className);
+            if (listener != null) {
+                listener.receive(data);
+            }
+        }
+
         @Override
         public void viewAccepted(View new_view) {
             log.info("New cluster view: {}", new_view);
@@ -519,6 +719,24 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    /**
+     * Envelope for messages sent to the cluster in one batch. Messages are serialized separately to keep the per-class
+     * statistics precise.
+     */
+    protected static class MessageBatch implements Serializable {
+        private static final long serialVersionUID = 4853476311532380185L;
+
+        protected List<byte[]> messages;
+
+        public MessageBatch(List<byte[]> messages) {
+            this.messages = messages;
+        }
+
+        public List<byte[]> getMessages() {
+            return messages;
+        }
+    }
+
     protected class MessageStat {
         protected LongAdder sentBytes = new LongAdder();
         protected LongAdder receivedBytes = new LongAdder();
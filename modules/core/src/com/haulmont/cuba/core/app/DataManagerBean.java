@@ -31,6 +31,7 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Component(DataManager.NAME)
 public class DataManagerBean implements DataManager {
@@ -76,6 +77,19 @@ public class DataManagerBean implements DataManager {
         return entities;
     }
 
+    @Override
+    public <E extends Entity> Stream<E> loadStream(LoadContext<E> context) {
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+        DataStore storage = storeFactory.get(getStoreName(metaClass));
+        Stream<E> stream = storage.loadStream(context);
+        if (Stores.getAdditional().isEmpty() || context.getView() == null) {
+            return stream;
+        }
+        return stream.peek(entity ->
+                readCrossDataStoreReferences(Collections.singletonList(entity), context.getView(), metaClass,
+                        context.isJoinTransaction()));
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
@@ -381,6 +395,12 @@ public class DataManagerBean implements DataManager {
             return dataManager.loadList(context);
         }
 
+        @Override
+        public <E extends Entity> Stream<E> loadStream(LoadContext<E> context) {
+            context.setAuthorizationRequired(true);
+            return dataManager.loadStream(context);
+        }
+
         @Override
         public List<KeyValueEntity> loadValues(ValueLoadContext context) {
             context.setAuthorizationRequired(true);
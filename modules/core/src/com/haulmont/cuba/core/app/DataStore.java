@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.global.ValueLoadContext;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Interface defining methods for storing and loading entities in a persistent storage.
@@ -47,6 +48,17 @@ public interface DataStore {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads entity instances lazily, as the caller consumes the returned stream.
+     * <p>
+     * The stream must be closed after use. The default implementation loads the whole list by
+     * {@link #loadList(LoadContext)}.
+     * @return a stream of instances
+     */
+    default <E extends Entity> Stream<E> loadStream(LoadContext<E> context) {
+        return loadList(context).stream();
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @return number of instances in the storage
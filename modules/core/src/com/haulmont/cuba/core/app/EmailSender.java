@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.app;
 
 import com.google.common.base.Strings;
+import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.entity.SendingAttachment;
 import com.haulmont.cuba.core.entity.SendingMessage;
 import com.haulmont.cuba.core.global.EmailHeader;
@@ -36,14 +37,21 @@ import org.springframework.stereotype.Component;
 
 import javax.activation.DataHandler;
 import javax.activation.DataSource;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.inject.Inject;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Part;
+import javax.mail.Transport;
 import javax.mail.internet.*;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
 
 @Component(EmailSenderAPI.NAME)
 public class EmailSender implements EmailSenderAPI {
@@ -55,11 +63,23 @@ public class EmailSender implements EmailSenderAPI {
     @Inject
     protected TimeSource timeSource;
 
+    protected EmailerConfig config;
+
+    /**
+     * Connected SMTP transports available for reuse by {@link #sendEmails(List)}.
+     */
+    protected final BlockingDeque<Transport> idleTransports = new LinkedBlockingDeque<>();
+
     @Resource(name = CubaMailSender.NAME)
     public void setMailSender(JavaMailSender mailSender) {
         this.mailSender = mailSender;
     }
 
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        this.config = configuration.getConfig(EmailerConfig.class);
+    }
+
     @Override
     public void sendEmail(SendingMessage sendingMessage) throws MessagingException {
         MimeMessage msg = createMimeMessage(sendingMessage);
@@ -71,6 +91,98 @@ public class EmailSender implements EmailSenderAPI {
         log.info("Email '{}' to '{}' has been sent successfully", msg.getSubject(), sendingMessage.getAddress());
     }
 
+    @Override
+    public Map<SendingMessage, Exception> sendEmails(List<SendingMessage> sendingMessages) {
+        if (!(mailSender instanceof CubaMailSender)) {
+            return EmailSenderAPI.super.sendEmails(sendingMessages);
+        }
+
+        Map<SendingMessage, Exception> failures = new LinkedHashMap<>();
+        Transport transport = null;
+        try {
+            for (int i = 0; i < sendingMessages.size(); i++) {
+                SendingMessage sendingMessage = sendingMessages.get(i);
+                MimeMessage msg;
+                try {
+                    msg = createMimeMessage(sendingMessage);
+                } catch (Exception e) {
+                    failures.put(sendingMessage, e);
+                    continue;
+                }
+
+                if (transport == null) {
+                    try {
+                        transport = borrowTransport();
+                    } catch (Exception e) {
+                        // the server is unavailable, there is no point in connecting again for each message
+                        for (SendingMessage notSentMessage : sendingMessages.subList(i, sendingMessages.size())) {
+                            failures.put(notSentMessage, e);
+                        }
+                        break;
+                    }
+                }
+
+                try {
+                    StopWatch sw = new Slf4JStopWatch("EmailSender.send");
+                    transport.sendMessage(msg, msg.getAllRecipients());
+                    sw.stop();
+
+                    log.info("Email '{}' to '{}' has been sent successfully", msg.getSubject(), sendingMessage.getAddress());
+                } catch (Exception e) {
+                    failures.put(sendingMessage, e);
+                    if (!transport.isConnected()) {
+                        closeTransport(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            if (transport != null) {
+                releaseTransport(transport);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Takes a connected transport from the pool or opens a new one if there are no idle connections.
+     */
+    protected Transport borrowTransport() throws MessagingException {
+        Transport transport;
+        while ((transport = idleTransports.pollFirst()) != null) {
+            // isConnected() sends NOOP, so connections dropped by the server while idle are detected here
+            if (transport.isConnected()) {
+                return transport;
+            }
+            closeTransport(transport);
+        }
+        return ((CubaMailSender) mailSender).openTransport();
+    }
+
+    protected void releaseTransport(Transport transport) {
+        if (idleTransports.size() < config.getSmtpConnectionPoolSize() && transport.isConnected()) {
+            idleTransports.offerFirst(transport);
+        } else {
+            closeTransport(transport);
+        }
+    }
+
+    protected void closeTransport(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP transport", e);
+        }
+    }
+
+    @PreDestroy
+    protected void closeIdleTransports() {
+        Transport transport;
+        while ((transport = idleTransports.pollFirst()) != null) {
+            closeTransport(transport);
+        }
+    }
+
     protected MimeMessage createMimeMessage(SendingMessage sendingMessage) throws MessagingException {
         MimeMessage msg = mailSender.createMimeMessage();
         assignRecipient(sendingMessage, msg);
@@ -20,6 +20,9 @@ package com.haulmont.cuba.core.app;
 import com.haulmont.cuba.core.entity.SendingMessage;
 
 import javax.mail.MessagingException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Adapter to javax.mail email sending API.
@@ -38,4 +41,22 @@ public interface EmailSenderAPI {
      * @throws MessagingException if delivery fails
      */
     void sendEmail(SendingMessage sendingMessage) throws MessagingException;
-}
\ No newline at end of file
+
+    /**
+     * Sends several emails, reusing SMTP connections between them if the implementation supports it.
+     * Message bodies and attachments' content must be loaded from file storage.
+     *
+     * @return delivery failures keyed by message; messages absent from the map have been sent successfully
+     */
+    default Map<SendingMessage, Exception> sendEmails(List<SendingMessage> sendingMessages) {
+        Map<SendingMessage, Exception> failures = new LinkedHashMap<>();
+        for (SendingMessage sendingMessage : sendingMessages) {
+            try {
+                sendEmail(sendingMessage);
+            } catch (Exception e) {
+                failures.put(sendingMessage, e);
+            }
+        }
+        return failures;
+    }
+}
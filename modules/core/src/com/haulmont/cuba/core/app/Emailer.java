@@ -17,6 +17,8 @@
 package com.haulmont.cuba.core.app;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.Transaction;
@@ -26,6 +28,7 @@ import com.haulmont.cuba.core.entity.SendingAttachment;
 import com.haulmont.cuba.core.entity.SendingMessage;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
 import com.haulmont.cuba.security.app.Authentication;
 import com.sun.mail.smtp.SMTPAddressFailedException;
 import org.apache.commons.io.FilenameUtils;
@@ -40,9 +43,15 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.annotation.Resource;
 import javax.inject.Inject;
+import javax.mail.Address;
+import javax.mail.SendFailedException;
 import javax.mail.internet.AddressException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.RejectedExecutionException;
 
@@ -57,6 +66,8 @@ public class Emailer implements EmailerAPI {
 
     protected volatile int callCount = 0;
 
+    protected volatile boolean batchUpdateCountsUnavailable;
+
     @Resource(name = "mailSendTaskExecutor")
     protected TaskExecutor mailSendTaskExecutor;
 
@@ -287,6 +298,10 @@ public class Emailer implements EmailerAPI {
     }
 
     protected String sendQueuedEmails() {
+        if (config.isBulkSendingEnabled()) {
+            return sendQueuedEmailsInBatches();
+        }
+
         List<SendingMessage> messagesToSend = loadEmailsToSend();
 
         for (SendingMessage msg : messagesToSend) {
@@ -331,29 +346,11 @@ public class Emailer implements EmailerAPI {
     }
 
     protected List<SendingMessage> loadEmailsToSend() {
-        Date sendTimeoutTime = DateUtils.addSeconds(timeSource.currentTimestamp(), -config.getSendingTimeoutSec());
-
         List<SendingMessage> emailsToSend = new ArrayList<>();
 
         try (Transaction tx = persistence.createTransaction()) {
             EntityManager em = persistence.getEntityManager();
-            TypedQuery<SendingMessage> query = em.createQuery(
-                    "select sm from sys$SendingMessage sm" +
-                            " where sm.status = :statusQueue or (sm.status = :statusSending and sm.updateTs < :time)" +
-                            " order by sm.createTs",
-                    SendingMessage.class
-            );
-            query.setParameter("statusQueue", SendingStatus.QUEUE.getId());
-            query.setParameter("time", sendTimeoutTime);
-            query.setParameter("statusSending", SendingStatus.SENDING.getId());
-
-            View view = metadata.getViewRepository().getView(SendingMessage.class, "sendingMessage.loadFromQueue");
-            view.setLoadPartialEntities(true); // because SendingAttachment.content has FetchType.LAZY
-            query.setView(view);
-
-            query.setMaxResults(config.getMessageQueueCapacity());
-
-            List<SendingMessage> resList = query.getResultList();
+            List<SendingMessage> resList = createQueuedMessagesQuery(em).getResultList();
 
             for (SendingMessage msg : resList) {
                 if (shouldMarkNotSent(msg)) {
@@ -372,6 +369,262 @@ public class Emailer implements EmailerAPI {
         return emailsToSend;
     }
 
+    protected TypedQuery<SendingMessage> createQueuedMessagesQuery(EntityManager em) {
+        Date sendTimeoutTime = DateUtils.addSeconds(timeSource.currentTimestamp(), -config.getSendingTimeoutSec());
+
+        TypedQuery<SendingMessage> query = em.createQuery(
+                "select sm from sys$SendingMessage sm" +
+                        " where sm.status = :statusQueue or (sm.status = :statusSending and sm.updateTs < :time)" +
+                        " order by sm.createTs",
+                SendingMessage.class
+        );
+        query.setParameter("statusQueue", SendingStatus.QUEUE.getId());
+        query.setParameter("time", sendTimeoutTime);
+        query.setParameter("statusSending", SendingStatus.SENDING.getId());
+
+        View view = metadata.getViewRepository().getView(SendingMessage.class, "sendingMessage.loadFromQueue");
+        view.setLoadPartialEntities(true); // because SendingAttachment.content has FetchType.LAZY
+        query.setView(view);
+
+        query.setMaxResults(config.getMessageQueueCapacity());
+        return query;
+    }
+
+    /*
+     * Bulk sending: messages are claimed with a conditional update on their version, so several cluster nodes
+     * processing the queue at the same time never send the same message twice, and each task sends a batch of
+     * messages over one pooled SMTP connection.
+     */
+    protected String sendQueuedEmailsInBatches() {
+        List<SendingMessage> messagesToSend = claimEmailsToSend();
+
+        int batchSize = Math.max(1, config.getBulkSendingBatchSize());
+        for (List<SendingMessage> batch : Lists.partition(messagesToSend, batchSize)) {
+            submitExecutorTask(new ArrayList<>(batch));
+        }
+
+        if (messagesToSend.isEmpty()) {
+            return "";
+        }
+
+        return String.format("Processed %d emails", messagesToSend.size());
+    }
+
+    protected void submitExecutorTask(List<SendingMessage> messages) {
+        try {
+            Runnable mailSendTask = new EmailBatchSendTask(messages);
+            mailSendTaskExecutor.execute(mailSendTask);
+        } catch (RejectedExecutionException e) {
+            updateStatuses(Collections.emptyList(), messages, Collections.emptyList());
+        } catch (Exception e) {
+            log.error("Exception while sending emails: ", e);
+            updateStatuses(Collections.emptyList(), messages, Collections.emptyList());
+        }
+    }
+
+    protected List<SendingMessage> claimEmailsToSend() {
+        List<SendingMessage> claimed;
+        List<SendingMessage> expired = new ArrayList<>();
+        List<SendingMessage> candidates = new ArrayList<>();
+
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+            for (SendingMessage msg : createQueuedMessagesQuery(em).getResultList()) {
+                if (shouldMarkNotSent(msg)) {
+                    expired.add(msg);
+                } else {
+                    candidates.add(msg);
+                }
+            }
+
+            Connection connection = em.getConnection();
+            claimed = claimMessages(connection, candidates, SendingStatus.SENDING);
+            expired = claimMessages(connection, expired, SendingStatus.NOTSENT);
+            tx.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error claiming queued emails", e);
+        }
+
+        if (log.isDebugEnabled() && claimed.size() < candidates.size()) {
+            log.debug("{} queued emails have been claimed by other nodes", candidates.size() - claimed.size());
+        }
+
+        for (SendingMessage message : claimed) {
+            message.setStatus(SendingStatus.SENDING);
+            loadBodyAndAttachments(message);
+        }
+        for (SendingMessage message : expired) {
+            message.setStatus(SendingStatus.NOTSENT);
+        }
+        return claimed;
+    }
+
+    /**
+     * Sets the status of the given messages in one JDBC batch if possible, skipping the rows changed since the messages
+     * have been loaded.
+     *
+     * @return messages that have been updated, with their version incremented
+     */
+    protected List<SendingMessage> claimMessages(Connection connection, List<SendingMessage> messages,
+                                                 SendingStatus status) throws SQLException {
+        if (messages.isEmpty()) {
+            return Collections.emptyList();
+        }
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        Object now = converter.getSqlObject(timeSource.currentTimestamp());
+        String login = getCurrentLogin();
+
+        Object[][] params = new Object[messages.size()][];
+        for (int i = 0; i < messages.size(); i++) {
+            SendingMessage message = messages.get(i);
+            params[i] = new Object[]{status.getId(), now, login,
+                    converter.getSqlObject(message.getId()), message.getVersion()};
+        }
+        int[] counts = executeUpdates(connection,
+                "update SYS_SENDING_MESSAGE set STATUS = ?, UPDATE_TS = ?, UPDATED_BY = ?, VERSION = VERSION + 1" +
+                        " where ID = ? and VERSION = ?",
+                params);
+
+        List<SendingMessage> claimed = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            if (counts[i] == 1) {
+                SendingMessage message = messages.get(i);
+                message.setVersion(message.getVersion() + 1);
+                claimed.add(message);
+            }
+        }
+        return claimed;
+    }
+
+    protected void sendSendingMessages(List<SendingMessage> messages) {
+        Map<SendingMessage, Exception> failures;
+        try {
+            failures = emailSender.sendEmails(messages);
+        } catch (Exception e) {
+            log.error("Exception while sending emails: ", e);
+            failures = new HashMap<>();
+            for (SendingMessage message : messages) {
+                failures.put(message, e);
+            }
+        }
+
+        List<SendingMessage> sent = new ArrayList<>();
+        List<SendingMessage> toRetry = new ArrayList<>();
+        List<SendingMessage> notSent = new ArrayList<>();
+        for (SendingMessage message : messages) {
+            Exception e = failures.get(message);
+            if (e == null) {
+                sent.add(message);
+            } else {
+                log.warn("Unable to send email to '" + message.getAddress() + "'", e);
+                if (isNeedToRetry(e)) {
+                    toRetry.add(message);
+                } else {
+                    notSent.add(message);
+                }
+            }
+        }
+        updateStatuses(sent, toRetry, notSent);
+    }
+
+    /**
+     * Stores the sending results of claimed messages using one JDBC batch per resulting status.
+     */
+    protected void updateStatuses(List<SendingMessage> sent, List<SendingMessage> toRetry,
+                                  List<SendingMessage> notSent) {
+        try (Transaction tx = persistence.createTransaction()) {
+            Connection connection = persistence.getEntityManager().getConnection();
+            updateStatuses(connection, sent, SendingStatus.SENT, timeSource.currentTimestamp());
+            updateStatuses(connection, toRetry, SendingStatus.QUEUE, null);
+            updateStatuses(connection, notSent, SendingStatus.NOTSENT, null);
+
+            tx.commit();
+        } catch (Exception e) {
+            log.error("Error updating status of {} sent emails", sent.size() + toRetry.size() + notSent.size(), e);
+        }
+    }
+
+    protected void updateStatuses(Connection connection, List<SendingMessage> messages, SendingStatus status,
+                                  @Nullable Date dateSent) throws SQLException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        Object now = converter.getSqlObject(timeSource.currentTimestamp());
+        String login = getCurrentLogin();
+
+        StringBuilder sql = new StringBuilder("update SYS_SENDING_MESSAGE set STATUS = ?, UPDATE_TS = ?, UPDATED_BY = ?");
+        if (dateSent != null) {
+            sql.append(", DATE_SENT = ?");
+        }
+        sql.append(", ATTEMPTS_MADE = ATTEMPTS_MADE + 1, VERSION = VERSION + 1 where ID = ? and VERSION = ?");
+
+        Object[][] params = new Object[messages.size()][];
+        for (int i = 0; i < messages.size(); i++) {
+            SendingMessage message = messages.get(i);
+            List<Object> rowParams = new ArrayList<>(6);
+            rowParams.add(status.getId());
+            rowParams.add(now);
+            rowParams.add(login);
+            if (dateSent != null) {
+                rowParams.add(converter.getSqlObject(dateSent));
+            }
+            rowParams.add(converter.getSqlObject(message.getId()));
+            rowParams.add(message.getVersion());
+            params[i] = rowParams.toArray();
+        }
+        int[] counts = executeUpdates(connection, sql.toString(), params);
+
+        for (int i = 0; i < messages.size(); i++) {
+            SendingMessage message = messages.get(i);
+            if (counts[i] == 0) {
+                log.warn("Email to '{}' has been changed concurrently, its status is not set to {}",
+                        message.getAddress(), status);
+            } else {
+                message.setStatus(status);
+                message.setAttemptsMade(message.getAttemptsMade() + 1);
+                message.setVersion(message.getVersion() + 1);
+            }
+        }
+    }
+
+    /**
+     * Executes the statement for each row of parameters and returns exact update counts. A JDBC batch is used
+     * unless the driver does not report update counts of batched statements ({@link Statement#SUCCESS_NO_INFO}):
+     * then the batch is rolled back to a savepoint and the statements are executed one by one, now and for all
+     * subsequent calls.
+     */
+    protected int[] executeUpdates(Connection connection, String sql, Object[][] params) throws SQLException {
+        QueryRunner runner = new QueryRunner();
+        if (!batchUpdateCountsUnavailable) {
+            Savepoint savepoint = connection.setSavepoint();
+            int[] counts = runner.batch(connection, sql, params);
+            boolean countsReported = true;
+            for (int count : counts) {
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    countsReported = false;
+                    break;
+                }
+            }
+            if (countsReported) {
+                return counts;
+            }
+            connection.rollback(savepoint);
+            batchUpdateCountsUnavailable = true;
+            log.info("JDBC driver does not report update counts of batched statements, emails will be updated row by row");
+        }
+
+        int[] counts = new int[params.length];
+        for (int i = 0; i < params.length; i++) {
+            counts[i] = runner.update(connection, sql, params[i]);
+        }
+        return counts;
+    }
+
+    protected String getCurrentLogin() {
+        return userSessionSource.getUserSession().getUser().getLogin();
+    }
+
     @Override
     public String loadContentText(SendingMessage sendingMessage) {
         SendingMessage msg;
@@ -655,6 +908,11 @@ public class Emailer implements EmailerAPI {
             }
         } else if (e instanceof AddressException) {
             return false;
+        } else if (e instanceof SendFailedException) {
+            Address[] invalidAddresses = ((SendFailedException) e).getInvalidAddresses();
+            if (invalidAddresses != null && invalidAddresses.length > 0) {
+                return false;
+            }
         }
         return true;
     }
@@ -740,6 +998,33 @@ public class Emailer implements EmailerAPI {
         }
     }
 
+    protected static class EmailBatchSendTask implements Runnable {
+
+        private List<SendingMessage> sendingMessages;
+        private static final Logger log = LoggerFactory.getLogger(EmailBatchSendTask.class);
+
+        public EmailBatchSendTask(List<SendingMessage> messages) {
+            sendingMessages = messages;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Authentication authentication = AppBeans.get(Authentication.NAME);
+                Emailer emailer = AppBeans.get(EmailerAPI.NAME);
+
+                authentication.begin(emailer.getEmailerLogin());
+                try {
+                    emailer.sendSendingMessages(sendingMessages);
+                } finally {
+                    authentication.end();
+                }
+            } catch (Exception e) {
+                log.error("Exception while sending emails: ", e);
+            }
+        }
+    }
+
     protected static class MessagePersistingContext {
         public final List<FileDescriptor> files = new ArrayList<>();
 
@@ -181,6 +181,34 @@ public interface EmailerConfig extends Config {
 
     void setFileStorageUsed(boolean fileStorageUsed);
 
+    /**
+     * When turned on, the scheduler claims queued messages with batch updates that are safe to run on several
+     * cluster nodes at once and sends them in batches over pooled SMTP connections, updating their statuses
+     * in JDBC batches.
+     */
+    @Property("cuba.email.bulkSendingEnabled")
+    @DefaultBoolean(false)
+    boolean isBulkSendingEnabled();
+
+    void setBulkSendingEnabled(boolean bulkSendingEnabled);
+
+    /**
+     * Max number of queued messages sent by one task over a single SMTP connection
+     * if {@link #isBulkSendingEnabled()} is turned on.
+     */
+    @Property("cuba.email.bulkSendingBatchSize")
+    @DefaultInt(50)
+    int getBulkSendingBatchSize();
+
+    void setBulkSendingBatchSize(int bulkSendingBatchSize);
+
+    /**
+     * Max number of idle authenticated SMTP connections kept open for reuse by bulk sending.
+     */
+    @Property("cuba.email.smtpConnectionPoolSize")
+    @DefaultInt(4)
+    int getSmtpConnectionPoolSize();
+
     /**
      * User login used by asynchronous sending mechanism to be able to store information in the database.
      */
@@ -19,7 +19,13 @@ package com.haulmont.cuba.core.app;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileStorageException;
 
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Interface to store and load files defined by {@link FileDescriptor}s.
@@ -63,6 +69,39 @@ public interface FileStorageAPI {
      */
     InputStream openStream(FileDescriptor fileDescr) throws FileStorageException;
 
+    /**
+     * Return a channel to load a file contents.
+     * <p>
+     * Storages keeping files in the local file system return a {@link java.nio.channels.FileChannel}, which allows
+     * reading from an arbitrary position and transferring the contents without copying them to the Java heap.
+     * @param fileDescr             file descriptor
+     * @return                      channel, must be closed after use
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong
+     */
+    default ReadableByteChannel openChannel(FileDescriptor fileDescr) throws FileStorageException {
+        return Channels.newChannel(openStream(fileDescr));
+    }
+
+    /**
+     * Write a part of a file contents to the given channel.
+     * @param fileDescr             file descriptor
+     * @param position              position in the file to start from
+     * @param length                number of bytes to write, or -1 to write the contents up to the end of the file
+     * @param target                target channel, is not closed by this method
+     * @return                      number of bytes written
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong
+     */
+    default long transferTo(FileDescriptor fileDescr, long position, long length, WritableByteChannel target)
+            throws FileStorageException {
+        try (InputStream inputStream = openStream(fileDescr)) {
+            return IOUtils.copyLarge(inputStream, Channels.newOutputStream(target), position, length);
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+    }
+
     /**
      * Load a file contents into byte array.
      * @param fileDescr             file descriptor
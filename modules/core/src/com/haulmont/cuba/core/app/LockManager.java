@@ -25,6 +25,8 @@ import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.LockDescriptor;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.TimingWheel;
+import com.haulmont.cuba.security.entity.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,51 +35,53 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.*;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Keeps pessimistic locks in memory and replicates them across the cluster.
+ * <p>
+ * Locks are stored in separate maps for each entity name. Locks with a timeout are registered in a
+ * {@link TimingWheel}, so {@link #expireLocks()} processes only the locks which have actually expired.
+ */
 @Component(LockManagerAPI.NAME)
 public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
 
-    private static class LockKey {
-        
+    /**
+     * Lock scheduled for expiration. The lock is removed only if it is still the current lock of the object.
+     */
+    private static class Expiration {
+
         private final String name;
         private final String id;
+        private final LockInfo lockInfo;
 
-        private LockKey(String name, String id) {
+        private Expiration(String name, String id, LockInfo lockInfo) {
             this.name = name;
             this.id = id;
+            this.lockInfo = lockInfo;
         }
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
+    private static final Logger log = LoggerFactory.getLogger(LockManager.class);
 
-            LockKey key = (LockKey) o;
+    // ConcurrentHashMap does not support null keys
+    private static final String NULL_ID = "";
 
-            if (id != null ? !id.equals(key.id) : key.id != null) return false;
-            if (!name.equals(key.name)) return false;
+    private static final String STATE_FORMAT = "LockManager.v2";
 
-            return true;
-        }
+    private static final long EXPIRATION_TICK_MS = 1000;
+    private static final int EXPIRATION_WHEEL_SIZE = 64;
+    private static final int EXPIRATION_WHEEL_LEVELS = 3;
 
-        @Override
-        public int hashCode() {
-            int result = name.hashCode();
-            result = 31 * result + (id != null ? id.hashCode() : 0);
-            return result;
-        }
-    }
+    private volatile Map<String, LockDescriptor> config;
 
-    private static final Logger log = LoggerFactory.getLogger(LockManager.class);
+    private final ConcurrentMap<String, ConcurrentMap<String, LockInfo>> shards = new ConcurrentHashMap<>();
 
-    private volatile Map<String, LockDescriptor> config;
+    private TimingWheel<Expiration> expirations;
 
-    private Map<LockKey, LockInfo> locks = new ConcurrentHashMap<>();
+    private volatile boolean rescheduleRequired;
 
     @Inject
     private Persistence persistence;
@@ -88,6 +92,9 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
     @Inject
     private UserSessionSource userSessionSource;
 
+    @Inject
+    private TimeSource timeSource;
+
     private ClusterManagerAPI clusterManager;
 
     @Inject
@@ -122,11 +129,19 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         return config;
     }
 
+    private ConcurrentMap<String, LockInfo> getShard(String name) {
+        return shards.computeIfAbsent(name, k -> new ConcurrentHashMap<>());
+    }
+
+    private static String toKey(@Nullable String id) {
+        return id == null ? NULL_ID : id;
+    }
+
     @Override
     public LockInfo lock(String name, String id) {
-        LockKey key = new LockKey(name, id);
+        ConcurrentMap<String, LockInfo> shard = getShard(name);
 
-        LockInfo lockInfo = locks.get(key);
+        LockInfo lockInfo = shard.get(toKey(id));
         if (lockInfo != null) {
             log.debug("Already locked: " + lockInfo);
             return lockInfo;
@@ -138,7 +153,8 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         }
 
         lockInfo = new LockInfo(userSessionSource.getUserSession().getCurrentOrSubstitutedUser(), name, id);
-        locks.put(key, lockInfo);
+        shard.put(toKey(id), lockInfo);
+        scheduleExpiration(lockInfo);
         log.debug("Locked " + name + "/" + id);
 
         clusterManager.send(lockInfo);
@@ -159,7 +175,8 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
 
     @Override
     public void unlock(String name, String id) {
-        LockInfo lockInfo = locks.remove(new LockKey(name, id));
+        ConcurrentMap<String, LockInfo> shard = shards.get(name);
+        LockInfo lockInfo = shard != null ? shard.remove(toKey(id)) : null;
         if (lockInfo != null) {
             log.debug("Unlocked " + name + "/" + id);
 
@@ -184,35 +201,85 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
             return new LockNotSupported();
         }
 
-        return locks.get(new LockKey(name, id));
+        ConcurrentMap<String, LockInfo> shard = shards.get(name);
+        return shard != null ? shard.get(toKey(id)) : null;
     }
 
     @Override
     public List<LockInfo> getCurrentLocks() {
-        return new ArrayList<>(locks.values());
+        List<LockInfo> list = new ArrayList<>();
+        for (ConcurrentMap<String, LockInfo> shard : shards.values()) {
+            list.addAll(shard.values());
+        }
+        return list;
+    }
+
+    /**
+     * Registers the lock in the timing wheel if its descriptor defines a timeout. Locks without a descriptor are
+     * scheduled for immediate removal.
+     */
+    private void scheduleExpiration(LockInfo lockInfo) {
+        LockDescriptor ld = getConfig().get(lockInfo.getEntityName());
+        long deadline;
+        if (ld == null) {
+            deadline = 0;
+        } else {
+            Integer timeoutSec = ld.getTimeoutSec();
+            if (timeoutSec == null || timeoutSec <= 0)
+                return;
+            deadline = lockInfo.getSince().getTime() + timeoutSec * 1000L;
+        }
+        Expiration expiration = new Expiration(lockInfo.getEntityName(), toKey(lockInfo.getEntityId()), lockInfo);
+        synchronized (this) {
+            getExpirations().add(expiration, deadline);
+        }
+    }
+
+    private TimingWheel<Expiration> getExpirations() {
+        if (expirations == null) {
+            expirations = new TimingWheel<>(EXPIRATION_TICK_MS, EXPIRATION_WHEEL_SIZE, EXPIRATION_WHEEL_LEVELS,
+                    timeSource.currentTimestamp().getTime());
+        }
+        return expirations;
     }
 
     @Override
     public void expireLocks() {
         log.debug("Expiring locks");
-        ArrayList<LockKey> list = new ArrayList<>(locks.keySet());
-        for (LockKey key : list) {
-            LockInfo lockInfo = locks.get(key);
-            if (lockInfo != null) {
-                LockDescriptor ld = getConfig().get(key.name);
-                if (ld == null) {
-                    log.debug("Lock " + key.name + "/" + key.id + " configuration not found, remove it");
-                    locks.remove(key);
-                } else {
-                    Integer timeoutSec = ld.getTimeoutSec();
-                    if (timeoutSec != null && timeoutSec > 0) {
-                        Date since = lockInfo.getSince();
-                        if (since.getTime() + timeoutSec * 1000 < AppBeans.get(TimeSource.class).currentTimestamp().getTime()) {
-                            log.debug("Lock " + key.name + "/" + key.id + " expired");
-                            locks.remove(key);
-                        }
-                    }
-                }
+        if (rescheduleRequired) {
+            rescheduleRequired = false;
+            rescheduleExpirations();
+        }
+
+        List<Expiration> expired = new ArrayList<>();
+        synchronized (this) {
+            getExpirations().advance(timeSource.currentTimestamp().getTime(), expired::add);
+        }
+        for (Expiration expiration : expired) {
+            ConcurrentMap<String, LockInfo> shard = shards.get(expiration.name);
+            // the lock could be released or replaced by a newer one after it was scheduled
+            if (shard != null && shard.remove(expiration.id, expiration.lockInfo)) {
+                log.debug("Lock " + expiration.name + "/" + expiration.id + " expired");
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the timing wheel according to the current lock configuration.
+     */
+    private void rescheduleExpirations() {
+        synchronized (this) {
+            getExpirations().clear();
+        }
+        Map<String, LockDescriptor> config = getConfig();
+        for (Map.Entry<String, ConcurrentMap<String, LockInfo>> entry : shards.entrySet()) {
+            if (!config.containsKey(entry.getKey())) {
+                log.debug("Locks " + entry.getKey() + " configuration not found, remove them");
+                entry.getValue().clear();
+                continue;
+            }
+            for (LockInfo lockInfo : entry.getValue().values()) {
+                scheduleExpiration(lockInfo);
             }
         }
     }
@@ -220,29 +287,76 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
     @Override
     public void reloadConfiguration() {
         config = null;
+        rescheduleRequired = true;
     }
 
     @Override
     public void receive(LockInfo message) {
-        LockKey key = new LockKey(message.getEntityName(), message.getEntityId());
+        ConcurrentMap<String, LockInfo> shard = getShard(message.getEntityName());
+        String key = toKey(message.getEntityId());
         if (message.getUser() != null) {
-            LockInfo lockInfo = locks.get(key);
+            LockInfo lockInfo = shard.get(key);
             if (lockInfo == null || lockInfo.getSince().before(message.getSince())) {
-                locks.put(key, message);
+                shard.put(key, message);
+                scheduleExpiration(message);
             }
         } else {
-            locks.remove(key);
+            shard.remove(key);
         }
     }
 
+    @Override
+    public LockInfo merge(LockInfo previous, LockInfo next) {
+        // only the latest state of a lock matters for other nodes
+        if (Objects.equals(previous.getEntityName(), next.getEntityName())
+                && Objects.equals(previous.getEntityId(), next.getEntityId())) {
+            return next;
+        }
+        return null;
+    }
+
+    /**
+     * Serializes locks grouped by entity name. Each user holding locks is written once and referenced by index,
+     * which makes the state much smaller than the list of {@link LockInfo} objects with their users.
+     */
     @Override
     public byte[] getState() {
-        List<LockInfo> list = new ArrayList<>(locks.values());
+        Map<UUID, Integer> userIndexes = new HashMap<>();
+        List<User> users = new ArrayList<>();
+        Map<String, List<LockInfo>> locksByName = new LinkedHashMap<>();
+        for (Map.Entry<String, ConcurrentMap<String, LockInfo>> entry : shards.entrySet()) {
+            List<LockInfo> list = new ArrayList<>(entry.getValue().values());
+            if (list.isEmpty())
+                continue;
+            locksByName.put(entry.getKey(), list);
+            for (LockInfo lockInfo : list) {
+                User user = lockInfo.getUser();
+                if (!userIndexes.containsKey(user.getId())) {
+                    userIndexes.put(user.getId(), users.size());
+                    users.add(user);
+                }
+            }
+        }
+        if (locksByName.isEmpty())
+            return new byte[0];
 
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        try {
-            ObjectOutputStream oos = new ObjectOutputStream(bos);
-            oos.writeObject(list);
+        try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+            oos.writeObject(STATE_FORMAT);
+            oos.writeInt(users.size());
+            for (User user : users) {
+                oos.writeObject(user);
+            }
+            oos.writeInt(locksByName.size());
+            for (Map.Entry<String, List<LockInfo>> entry : locksByName.entrySet()) {
+                oos.writeUTF(entry.getKey());
+                oos.writeInt(entry.getValue().size());
+                for (LockInfo lockInfo : entry.getValue()) {
+                    oos.writeObject(lockInfo.getEntityId());
+                    oos.writeLong(lockInfo.getSince().getTime());
+                    oos.writeInt(userIndexes.get(lockInfo.getUser().getId()));
+                }
+            }
         } catch (IOException e) {
             log.error("Error serializing LockInfo list", e);
             return new byte[0];
@@ -255,11 +369,36 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
         if (state == null || state.length == 0)
             return;
 
-        List<LockInfo> list;
+        List<LockInfo> list = new ArrayList<>();
         ByteArrayInputStream bis = new ByteArrayInputStream(state);
         try {
             ObjectInputStream ois = new ObjectInputStream(bis);
-            list = (List<LockInfo>) ois.readObject();
+            Object header = ois.readObject();
+            if (header instanceof List) {
+                // state sent by a node of a previous version
+                //noinspection unchecked
+                list.addAll((List<LockInfo>) header);
+            } else if (STATE_FORMAT.equals(header)) {
+                int userCount = ois.readInt();
+                List<User> users = new ArrayList<>(userCount);
+                for (int i = 0; i < userCount; i++) {
+                    users.add((User) ois.readObject());
+                }
+                int nameCount = ois.readInt();
+                for (int i = 0; i < nameCount; i++) {
+                    String name = ois.readUTF();
+                    int lockCount = ois.readInt();
+                    for (int j = 0; j < lockCount; j++) {
+                        String id = (String) ois.readObject();
+                        Date since = new Date(ois.readLong());
+                        User user = users.get(ois.readInt());
+                        list.add(new LockInfo(user, name, id, since));
+                    }
+                }
+            } else {
+                log.error("Unknown LockManager state format: " + header);
+                return;
+            }
         } catch (Exception e) {
             log.error("Error deserializing LockInfo list", e);
             return;
@@ -269,4 +408,4 @@ public class LockManager implements LockManagerAPI, ClusterListener<LockInfo> {
             receive(lockInfo);
         }
     }
-}
\ No newline at end of file
+}
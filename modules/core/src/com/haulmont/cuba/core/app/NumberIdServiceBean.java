@@ -36,4 +36,9 @@ public class NumberIdServiceBean implements NumberIdService {
     public Long createCachedLongId(String entityName, String sequenceName) {
         return worker.createCachedLongId(entityName, sequenceName);
     }
+
+    @Override
+    public Long createCachedLongId(String entityName, String sequenceName, int cacheSize) {
+        return worker.createCachedLongId(entityName, sequenceName, cacheSize);
+    }
 }
\ No newline at end of file
@@ -62,10 +62,15 @@ public class NumberIdWorker implements NumberIdSequence {
 
     @Override
     public Long createCachedLongId(String entityName, String sequenceName) {
+        return createCachedLongId(entityName, sequenceName, config.getNumberIdCacheSize());
+    }
+
+    @Override
+    public Long createCachedLongId(String entityName, String sequenceName, int cacheSize) {
         Sequence sequence = Sequence.withName(getSequenceName(entityName, sequenceName))
                 .setStore(getDataStore(entityName))
                 .setStartValue(0)
-                .setIncrement(config.getNumberIdCacheSize());
+                .setIncrement(cacheSize);
 
         return sequences.createNextValue(sequence);
     }
@@ -132,6 +132,92 @@ public class RdbmsQueryBuilder {
         this.queryParams.put("_qr_sessionId", sessionId);
     }
 
+    /**
+     * Restricts the query by identifiers of previously selected entities passed as a collection parameter.
+     *
+     * @param idList identifiers kept by {@link com.haulmont.cuba.core.app.queryresults.QueryResultsManagerAPI}
+     */
+    public void restrictByPreviousResults(List<?> idList) {
+        MetaClass metaClass = metadata.getClassNN(entityName);
+        String pkName = metadata.getTools().getPrimaryKeyName(metaClass);
+        if (pkName == null)
+            throw new IllegalStateException(String.format("Entity %s has no primary key", entityName));
+
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+        transformer.addWhere(String.format("{E}.%s in :_qr_ids", pkName));
+        queryString = transformer.getResult();
+        this.queryParams.put("_qr_ids", idList);
+    }
+
+    /**
+     * Restricts the query by the position encoded in a keyset pagination token and orders the results by the sort
+     * properties followed by the primary key.
+     *
+     * @param sort  sort of the query, can be null if the results are ordered by the primary key only
+     * @param token token created by {@link KeysetToken#of(Entity, Sort)}
+     */
+    public void restrictByKeyset(@Nullable Sort sort, String token) {
+        MetaClass metaClass = metadata.getClassNN(entityName);
+        String pkName = metadata.getTools().getPrimaryKeyName(metaClass);
+        if (pkName == null)
+            throw new IllegalStateException(String.format("Entity %s has no primary key", entityName));
+
+        boolean desc = false;
+        List<String> keyProperties = new ArrayList<>();
+        if (sort != null && !sort.getOrders().isEmpty()) {
+            Set<Sort.Direction> directions = sort.getOrders().stream()
+                    .map(Sort.Order::getDirection)
+                    .collect(Collectors.toSet());
+            if (directions.size() > 1) {
+                throw new UnsupportedOperationException("Sorting by multiple properties in different directions is not supported");
+            }
+            desc = directions.iterator().next() == Sort.Direction.DESC;
+
+            for (Sort.Order order : sort.getOrders()) {
+                MetaPropertyPath propertyPath = metaClass.getPropertyPath(order.getProperty());
+                if (propertyPath == null) {
+                    throw new IllegalArgumentException("Property " + order.getProperty() + " is invalid");
+                }
+                if (!metadata.getTools().isPersistent(propertyPath)
+                        || propertyPath.getRange().isClass()
+                        || metadata.getTools().isLob(propertyPath.getMetaProperty())) {
+                    throw new DevelopmentException("Keyset pagination supports only scalar persistent sort properties, "
+                            + order.getProperty() + " is not");
+                }
+                keyProperties.add(propertyPath.toString());
+            }
+        }
+        if (!keyProperties.contains(pkName)) {
+            keyProperties.add(pkName);
+        }
+
+        List<Object> keyValues = KeysetToken.decode(token);
+        if (keyValues.size() != keyProperties.size()) {
+            throw new IllegalArgumentException("Keyset token does not match the query sort");
+        }
+
+        // (p0, p1, id) > (:v0, :v1, :v2) is expanded to
+        // p0 > :v0 or (p0 = :v0 and p1 > :v1) or (p0 = :v0 and p1 = :v1 and id > :v2)
+        String comparison = desc ? " < " : " > ";
+        Map<String, Object> params = new HashMap<>(queryParams);
+        List<String> alternatives = new ArrayList<>(keyProperties.size());
+        for (int i = 0; i < keyProperties.size(); i++) {
+            StringBuilder sb = new StringBuilder("(");
+            for (int j = 0; j < i; j++) {
+                sb.append("{E}.").append(keyProperties.get(j)).append(" = :_ks").append(j).append(" and ");
+            }
+            sb.append("{E}.").append(keyProperties.get(i)).append(comparison).append(":_ks").append(i).append(")");
+            alternatives.add(sb.toString());
+            params.put("_ks" + i, keyValues.get(i));
+        }
+
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+        transformer.addWhere("(" + String.join(" or ", alternatives) + ")");
+        transformer.replaceOrderBy(desc, keyProperties.toArray(new String[0]));
+        queryString = transformer.getResult();
+        queryParams = params;
+    }
+
     public String getQueryString() {
         return queryString;
     }
@@ -35,6 +35,12 @@ import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.config.ResultSetConcurrency;
+import org.eclipse.persistence.config.ResultSetType;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.ScrollableCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
@@ -46,6 +52,8 @@ import javax.persistence.NoResultException;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * INTERNAL.
@@ -257,6 +265,54 @@ public class RdbmsStore implements DataStore {
         return resultList;
     }
 
+    @Override
+    public <E extends Entity> Stream<E> loadStream(LoadContext<E> context) {
+        if (log.isDebugEnabled())
+            log.debug("loadStream: metaClass=" + context.getMetaClass() + ", view=" + context.getView()
+                    + (context.getPrevQueries().isEmpty() ? "" : ", from selected")
+                    + ", query=" + (context.getQuery() == null ? null : RdbmsQueryBuilder.printQuery(context.getQuery().getQueryString()))
+                    + (context.getQuery() == null || context.getQuery().getFirstResult() == 0 ? "" : ", first=" + context.getQuery().getFirstResult())
+                    + (context.getQuery() == null || context.getQuery().getMaxResults() == 0 ? "" : ", max=" + context.getQuery().getMaxResults()));
+
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+
+        if (isAuthorizationRequired(context) && !isEntityOpPermitted(metaClass, EntityOp.READ)) {
+            log.debug("reading of {} not permitted, returning empty stream", metaClass);
+            return Stream.empty();
+        }
+
+        queryResultsManager.savePreviousQueryResults(context);
+
+        Transaction tx = getLoadTransaction(context.isJoinTransaction());
+        CursorIterator<E> iterator;
+        try {
+            EntityManager em = persistence.getEntityManager(storeName);
+            em.setSoftDeletion(context.isSoftDeletion());
+            persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
+
+            View view = createRestrictedView(context);
+            Query query = createQuery(em, context, false);
+            query.setView(view);
+
+            ScrollableCursor cursor = openCursor(query, getStreamFetchSize(context));
+            iterator = new CursorIterator<>(context, em, view, cursor);
+        } catch (RuntimeException e) {
+            tx.close();
+            throw e;
+        }
+
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                        tx.commit();
+                    } finally {
+                        tx.close();
+                    }
+                });
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         if (log.isDebugEnabled())
@@ -629,7 +685,18 @@ public class RdbmsStore implements DataStore {
 
         if (!context.getPrevQueries().isEmpty()) {
             log.debug("Restrict query by previous results");
-            queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), context.getQueryKey());
+            List<?> previousIds = queryResultsManager.getInlineResults(context.getQueryKey());
+            if (previousIds != null) {
+                queryBuilder.restrictByPreviousResults(previousIds);
+            } else {
+                queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), context.getQueryKey());
+            }
+        }
+        if (contextQuery != null && contextQuery.getKeysetToken() != null && context.getId() == null) {
+            if (contextQuery.getFirstResult() != 0) {
+                throw new IllegalArgumentException("Keyset token cannot be used together with firstResult");
+            }
+            queryBuilder.restrictByKeyset(contextQuery.getSort(), contextQuery.getKeysetToken());
         }
         Query query = queryBuilder.getQuery(em);
 
@@ -740,6 +807,32 @@ public class RdbmsStore implements DataStore {
         return result;
     }
 
+    protected ScrollableCursor openCursor(Query query, int fetchSize) {
+        JpaQuery jpaQuery = (JpaQuery) query.getDelegate();
+        jpaQuery.setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE);
+        jpaQuery.setHint(QueryHints.RESULT_SET_TYPE, ResultSetType.ForwardOnly);
+        jpaQuery.setHint(QueryHints.RESULT_SET_CONCURRENCY, ResultSetConcurrency.ReadOnly);
+        jpaQuery.setHint(QueryHints.JDBC_FETCH_SIZE, fetchSize);
+        try {
+            return (ScrollableCursor) jpaQuery.getSingleResult();
+        } catch (javax.persistence.PersistenceException e) {
+            if (e.getCause() instanceof org.eclipse.persistence.exceptions.QueryException
+                    && e.getMessage() != null
+                    && e.getMessage().contains("Fetch group cannot be set on report query")) {
+                throw new DevelopmentException("DataManager cannot execute query for single attributes");
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    protected int getStreamFetchSize(LoadContext context) {
+        if (context.getQuery() != null && context.getQuery().getFetchSize() > 0) {
+            return context.getQuery().getFetchSize();
+        }
+        return serverConfig.getDataManagerStreamFetchSize();
+    }
+
     @SuppressWarnings("unchecked")
     protected <E extends Entity> List<E> executeQuery(Query query, boolean singleResult) {
         List<E> list;
@@ -1039,4 +1132,93 @@ public class RdbmsStore implements DataStore {
             }
         });
     }
+
+    /**
+     * Iterates over a database cursor, applying to each instance the same processing as {@link #loadList(LoadContext)}
+     * and detaching it from the persistence context before passing it to the caller.
+     */
+    protected class CursorIterator<E extends Entity> implements Iterator<E> {
+
+        protected final EntityManager em;
+        protected final View view;
+        protected final ScrollableCursor cursor;
+
+        protected final boolean needToFilterByInMemoryReadConstraints;
+        protected final boolean needToApplyInMemoryReadConstraints;
+        protected final boolean authorizationRequired;
+        protected final boolean loadDynamicAttributes;
+        protected final Set<Class> dynamicAttributesClasses;
+
+        protected E nextEntity;
+
+        public CursorIterator(LoadContext<E> context, EntityManager em, View view, ScrollableCursor cursor) {
+            this.em = em;
+            this.view = view;
+            this.cursor = cursor;
+            this.needToFilterByInMemoryReadConstraints = needToFilterByInMemoryReadConstraints(context);
+            this.needToApplyInMemoryReadConstraints = needToApplyInMemoryReadConstraints(context);
+            this.authorizationRequired = isAuthorizationRequired(context);
+            this.loadDynamicAttributes = context.isLoadDynamicAttributes();
+            this.dynamicAttributesClasses = loadDynamicAttributes ?
+                    collectEntityClassesWithDynamicAttributes(context.getView()) : Collections.emptySet();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (nextEntity == null) {
+                nextEntity = fetchNext();
+            }
+            return nextEntity != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E entity = nextEntity;
+            nextEntity = null;
+            return entity;
+        }
+
+        public void close() {
+            cursor.close();
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        protected E fetchNext() {
+            while (cursor.hasNext()) {
+                E entity = (E) cursor.next();
+                entityFetcher.fetch(entity, view);
+
+                if (needToFilterByInMemoryReadConstraints && security.filterByConstraints(entity)) {
+                    em.detach(entity);
+                    continue;
+                }
+
+                if (entity instanceof BaseGenericIdEntity && loadDynamicAttributes) {
+                    dynamicAttributesManagerAPI.fetchDynamicAttributes(
+                            Collections.singletonList((BaseGenericIdEntity) entity), dynamicAttributesClasses);
+                }
+
+                if (needToApplyInMemoryReadConstraints) {
+                    security.calculateFilteredData(entity);
+                }
+
+                attributeSecurity.onLoad(entity, view);
+
+                detachEntity(em, entity, view);
+
+                if (needToApplyInMemoryReadConstraints) {
+                    security.applyConstraints(entity);
+                }
+                if (authorizationRequired) {
+                    attributeSecurity.afterLoad(entity);
+                }
+                return entity;
+            }
+            return null;
+        }
+    }
 }
@@ -131,6 +131,30 @@ public interface ServerConfig extends Config {
     @DefaultBoolean(true)
     boolean getImmutableFileStorage();
 
+    /**
+     * In a content-addressed file storage, files with equal contents are stored once and the files of descriptors
+     * are hard links to the shared copy.
+     */
+    @Property("cuba.fileStorageContentAddressed")
+    @DefaultBoolean(false)
+    boolean getFileStorageContentAddressed();
+
+    /**
+     * @return maximum amount of data in bytes buffered in memory for a secondary file storage directory while a file
+     * is being saved. If a secondary storage lags behind more, the file is copied to it after saving.
+     */
+    @Property("cuba.fileStorageReplicationMaxLag")
+    @DefaultInt(16777216)
+    int getFileStorageReplicationMaxLag();
+
+    /**
+     * @return maximum amount of data in bytes buffered in memory for all secondary file storage directories and all
+     * files being saved. When the limit is reached, files are copied to secondary storages after saving.
+     */
+    @Property("cuba.fileStorageReplicationMaxBuffer")
+    @DefaultInt(67108864)
+    int getFileStorageReplicationMaxBuffer();
+
     /**
      * @return Scheduled tasks execution control.
      */
@@ -270,6 +294,23 @@ public interface ServerConfig extends Config {
     @DefaultInt(50)
     int getCrossDataStoreReferenceLoadingBatchSize();
 
+    /**
+     * @return default JDBC fetch size used when entities are loaded through {@code DataManager.loadStream()}
+     */
+    @Property("cuba.dataManagerStreamFetchSize")
+    @Source(type = SourceType.DATABASE)
+    @DefaultInt(500)
+    int getDataManagerStreamFetchSize();
+
+    /**
+     * @return maximum number of identifiers of previously selected entities that are kept in the user session and
+     * passed to the next query as a parameter instead of being inserted into SYS_QUERY_RESULT. 0 disables it.
+     * Not used when the cluster is started, because user session attributes are not replicated to other nodes.
+     */
+    @Property("cuba.queryResultsInlineMaxSize")
+    @DefaultInt(0)
+    int getQueryResultsInlineMaxSize();
+
     /**
      * @return use read-only transactions in {@code DataManager} load operations and do not commit them
      */
@@ -308,4 +349,20 @@ public interface ServerConfig extends Config {
     @Property("cuba.implicitConversionOfJpqlParams")
     @DefaultBoolean(false)
     boolean getImplicitConversionOfJpqlParams();
-}
\ No newline at end of file
+
+    /**
+     * @return if true, {@code EntityFetcher} collects detached references of the same entity class and view and
+     * loads them with a single query per chunk instead of loading each reference separately
+     */
+    @Property("cuba.entityFetcherBatchLoading")
+    @DefaultBoolean(false)
+    boolean getEntityFetcherBatchLoading();
+
+    /**
+     * @return maximum number of identifiers passed to a single query when {@code EntityFetcher} loads detached
+     * references in batches
+     */
+    @Property("cuba.entityFetcherBatchSize")
+    @DefaultInt(100)
+    int getEntityFetcherBatchSize();
+}
@@ -24,6 +24,8 @@ import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.SecurityContext;
 import com.haulmont.cuba.security.global.UserSession;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -31,17 +33,28 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.haulmont.bali.util.Preconditions.checkNotNullArgument;
 
@@ -50,6 +63,13 @@ public class FileStorage implements FileStorageAPI {
 
     private static final Logger log = LoggerFactory.getLogger(FileStorage.class);
 
+    /**
+     * Directory inside storage roots containing content-addressed files.
+     */
+    public static final String BLOBS_DIR = "blobs";
+
+    protected static final int IO_BUFFER_SIZE = 64 * 1024;
+
     @Inject
     protected UserSessionSource userSessionSource;
 
@@ -66,9 +86,80 @@ public class FileStorage implements FileStorageAPI {
 
     protected volatile File[] storageRoots;
 
+    protected boolean contentAddressed;
+
+    protected long replicationMaxLag;
+
+    protected long replicationMaxBuffer;
+
+    // data received by the primary storage and not yet taken by secondary storages, for all files
+    protected final AtomicLong replicationBufferedBytes = new AtomicLong();
+
+    protected final Lock blobLock = new ReentrantLock();
+
+    protected final Map<File, Boolean> linkCountSupport = new ConcurrentHashMap<>();
+
+    protected final Set<Replica> pendingReplicas = ConcurrentHashMap.newKeySet();
+
+    protected final LongAdder replicatedBytes = new LongAdder();
+    protected final LongAdder replicationFailures = new LongAdder();
+    protected final LongAdder replicationFallbacks = new LongAdder();
+    protected final LongAdder deduplicatedFiles = new LongAdder();
+    protected final LongAdder deduplicatedBytes = new LongAdder();
+
     @PostConstruct
     public void init() {
-        this.isImmutableFileStorage = configuration.getConfig(ServerConfig.class).getImmutableFileStorage();
+        ServerConfig serverConfig = configuration.getConfig(ServerConfig.class);
+        this.isImmutableFileStorage = serverConfig.getImmutableFileStorage();
+        this.contentAddressed = serverConfig.getFileStorageContentAddressed();
+        this.replicationMaxLag = serverConfig.getFileStorageReplicationMaxLag();
+        this.replicationMaxBuffer = serverConfig.getFileStorageReplicationMaxBuffer();
+    }
+
+    /**
+     * @return number of files being copied to secondary storages
+     */
+    public int getPendingReplicationCount() {
+        return pendingReplicas.size();
+    }
+
+    /**
+     * @return amount of data in bytes received by the primary storage but not yet written to secondary storages
+     */
+    public long getReplicationLag() {
+        return replicationBufferedBytes.get();
+    }
+
+    /**
+     * @return age in milliseconds of the oldest file being copied to secondary storages, 0 if there are none
+     */
+    public long getOldestPendingReplicationAge() {
+        long now = System.currentTimeMillis();
+        long oldest = now;
+        for (Replica replica : pendingReplicas) {
+            oldest = Math.min(oldest, replica.startTime);
+        }
+        return now - oldest;
+    }
+
+    public long getReplicatedBytes() {
+        return replicatedBytes.sum();
+    }
+
+    public long getReplicationFailureCount() {
+        return replicationFailures.sum();
+    }
+
+    public long getReplicationFallbackCount() {
+        return replicationFallbacks.sum();
+    }
+
+    public long getDeduplicatedFileCount() {
+        return deduplicatedFiles.sum();
+    }
+
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.sum();
     }
 
     /**
@@ -116,25 +207,67 @@ public class FileStorage implements FileStorageAPI {
         final File file = new File(dir, getFileName(fileDescr));
         checkFileExists(file);
 
+        // Secondary storages receive the same data in parallel while the primary file is written
+
+        List<Replica> replicas = startReplicas(roots, fileDescr, file);
+
+        boolean blob = isContentAddressed(roots[0]);
+        File target = blob ? createBlobTempFile(roots[0]) : file;
+        MessageDigest digest = blob ? DigestUtils.getSha256Digest() : null;
+        String hash = null;
+
         long size = 0;
         OutputStream os = null;
+        boolean saved = false;
         try {
-            os = FileUtils.openOutputStream(file);
-            size = IOUtils.copyLarge(inputStream, os);
+            os = FileUtils.openOutputStream(target);
+            byte[] buffer = new byte[IO_BUFFER_SIZE];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                os.write(buffer, 0, count);
+                if (digest != null) {
+                    digest.update(buffer, 0, count);
+                }
+                if (!replicas.isEmpty()) {
+                    byte[] chunk = Arrays.copyOf(buffer, count);
+                    for (Replica replica : replicas) {
+                        replica.write(chunk);
+                    }
+                }
+                size += count;
+            }
             os.flush();
+            os.close();
+
+            if (digest != null) {
+                hash = Hex.encodeHexString(digest.digest());
+                storeBlob(roots[0], target, hash, file, size);
+            }
             writeLog(file, false);
+            saved = true;
         } catch (IOException e) {
-            IOUtils.closeQuietly(os);
-            FileUtils.deleteQuietly(file);
-
             throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, file.getAbsolutePath(), e);
         } finally {
             IOUtils.closeQuietly(os);
+            if (!saved) {
+                // any failure, not only IOException, must release the replicas waiting for data
+                FileUtils.deleteQuietly(target);
+                for (Replica replica : replicas) {
+                    replica.abort();
+                }
+            }
+        }
+
+        for (Replica replica : replicas) {
+            replica.complete(hash);
         }
 
-        // Copy file to secondary storages asynchronously
+        return size;
+    }
 
-        final SecurityContext securityContext = AppContext.getSecurityContext();
+    protected List<Replica> startReplicas(File[] roots, FileDescriptor fileDescr, File primaryFile) {
+        List<Replica> replicas = new ArrayList<>(roots.length - 1);
+        SecurityContext securityContext = AppContext.getSecurityContext();
         for (int i = 1; i < roots.length; i++) {
             if (!roots[i].exists()) {
                 log.error("Error saving {} into {} : directory doesn't exist", fileDescr, roots[i]);
@@ -142,25 +275,119 @@ public class FileStorage implements FileStorageAPI {
             }
 
             File copyDir = getStorageDir(roots[i], fileDescr);
-            final File fileCopy = new File(copyDir, getFileName(fileDescr));
+            File fileCopy = new File(copyDir, getFileName(fileDescr));
 
-            writeExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        AppContext.setSecurityContext(securityContext);
-                        FileUtils.copyFile(file, fileCopy, true);
-                        writeLog(fileCopy, false);
-                    } catch (Exception e) {
-                        log.error("Error saving {} into {} : {}", fileDescr, fileCopy.getAbsolutePath(), e.getMessage());
-                    } finally {
-                        AppContext.setSecurityContext(null);
-                    }
-                }
-            });
+            Replica replica = new Replica(roots[i], fileDescr, primaryFile, fileCopy, securityContext);
+            replicas.add(replica);
+            pendingReplicas.add(replica);
+            writeExecutor.submit(replica);
         }
+        return replicas;
+    }
 
-        return size;
+    protected File getBlobFile(File rootDir, String hash) {
+        return new File(rootDir, BLOBS_DIR + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash);
+    }
+
+    protected File createBlobTempFile(File rootDir) {
+        return new File(rootDir, BLOBS_DIR + "/tmp/" + UUID.randomUUID() + ".tmp");
+    }
+
+    /**
+     * Returns the file keeping the hash of the blob the given descriptor file is linked to.
+     */
+    protected File getBlobRefFile(File rootDir, File file) {
+        String name = file.getName();
+        return new File(rootDir, BLOBS_DIR + "/refs/" + name.substring(0, Math.min(2, name.length())) + "/" + name);
+    }
+
+    /**
+     * Content addressing requires the file system to count hard links of a blob, otherwise blobs could never be
+     * removed. If the storage directory does not support it, files are stored without deduplication.
+     */
+    protected boolean isContentAddressed(File rootDir) {
+        return contentAddressed && linkCountSupport.computeIfAbsent(rootDir, this::supportsLinkCount);
+    }
+
+    protected boolean supportsLinkCount(File rootDir) {
+        boolean supported;
+        try {
+            supported = Files.getFileStore(rootDir.toPath()).supportsFileAttributeView("unix");
+        } catch (IOException e) {
+            supported = false;
+        }
+        if (!supported) {
+            log.warn("File system of {} does not provide link counts, content addressing is disabled for it", rootDir);
+        }
+        return supported;
+    }
+
+    /**
+     * Moves the temporary file to the blob with the given hash unless such blob already exists, and links the file of
+     * the descriptor to the blob. Every descriptor file is a hard link, so the number of links of the blob counts
+     * the descriptors referencing it.
+     */
+    protected void storeBlob(File rootDir, File tempFile, String hash, File file, long size) throws IOException {
+        File blob = getBlobFile(rootDir, hash);
+        blob.getParentFile().mkdirs();
+        file.getParentFile().mkdirs();
+
+        blobLock.lock();
+        try {
+            if (file.exists()) {
+                // overwriting a file of a mutable storage
+                removeBlobIfLastReference(rootDir, file);
+                Files.delete(file.toPath());
+            }
+
+            try {
+                Files.createLink(blob.toPath(), tempFile.toPath());
+            } catch (FileAlreadyExistsException e) {
+                deduplicatedFiles.increment();
+                deduplicatedBytes.add(size);
+            }
+
+            Files.createLink(file.toPath(), blob.toPath());
+
+            File refFile = getBlobRefFile(rootDir, file);
+            refFile.getParentFile().mkdirs();
+            Files.write(refFile.toPath(), hash.getBytes(StandardCharsets.US_ASCII));
+        } catch (UnsupportedOperationException e) {
+            log.debug("Hard links are not supported in {}, storing file without deduplication", rootDir);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            blobLock.unlock();
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Removes the blob of the file if the file is the last descriptor file referencing it. The blob is found by
+     * the hash saved when the file was stored, so the file is not read.
+     * Must be invoked before the file is deleted.
+     */
+    protected void removeBlobIfLastReference(File rootDir, File file) {
+        File refFile = getBlobRefFile(rootDir, file);
+        if (!refFile.exists()) {
+            return;
+        }
+        try {
+            String hash = new String(Files.readAllBytes(refFile.toPath()), StandardCharsets.US_ASCII).trim();
+            Files.delete(refFile.toPath());
+
+            Object links = Files.getAttribute(file.toPath(), "unix:nlink");
+            if (!(links instanceof Integer) || (Integer) links != 2) {
+                return;
+            }
+            File blob = getBlobFile(rootDir, hash);
+            if (blob.exists() && Files.isSameFile(blob.toPath(), file.toPath())) {
+                Files.delete(blob.toPath());
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            log.debug("Unable to count links of {}, the blob is kept", file);
+        } catch (IOException e) {
+            log.warn("Unable to remove blob of {}", file, e);
+        }
     }
 
     protected void checkFileExists(File file) throws FileStorageException {
@@ -239,7 +466,19 @@ public class FileStorage implements FileStorageAPI {
             File dir = getStorageDir(root, fileDescr);
             File file = new File(dir, getFileName(fileDescr));
             if (file.exists()) {
-                if (!file.delete()) {
+                boolean deleted;
+                if (isContentAddressed(root)) {
+                    blobLock.lock();
+                    try {
+                        removeBlobIfLastReference(root, file);
+                        deleted = file.delete();
+                    } finally {
+                        blobLock.unlock();
+                    }
+                } else {
+                    deleted = file.delete();
+                }
+                if (!deleted) {
                     throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, "Unable to delete file " + file.getAbsolutePath());
                 } else {
                     writeLog(file, true);
@@ -287,15 +526,77 @@ public class FileStorage implements FileStorageAPI {
             throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
     }
 
+    @Override
+    public ReadableByteChannel openChannel(FileDescriptor fileDescr) throws FileStorageException {
+        return openFileChannel(fileDescr);
+    }
+
+    @Override
+    public long transferTo(FileDescriptor fileDescr, long position, long length, WritableByteChannel target)
+            throws FileStorageException {
+        checkNotNullArgument(target, "target is null");
+
+        try (FileChannel channel = openFileChannel(fileDescr)) {
+            long end = length < 0 ? channel.size() : Math.min(channel.size(), position + length);
+            long transferred = 0;
+            while (position + transferred < end) {
+                long count = channel.transferTo(position + transferred, end - position - transferred, target);
+                if (count <= 0) {
+                    break;
+                }
+                transferred += count;
+            }
+            return transferred;
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+    }
+
+    protected FileChannel openFileChannel(FileDescriptor fileDescr) throws FileStorageException {
+        checkFileDescriptor(fileDescr);
+
+        File[] roots = getStorageRoots();
+        if (roots.length == 0) {
+            log.error("No storage directories available");
+            throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
+        }
+
+        for (File root : roots) {
+            File dir = getStorageDir(root, fileDescr);
+
+            File file = new File(dir, getFileName(fileDescr));
+            if (!file.exists()) {
+                log.error("File " + file + " not found");
+                continue;
+            }
+
+            try {
+                return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                log.error("Error opening channel for " + file, e);
+            }
+        }
+        throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
+    }
+
     @Override
     public byte[] loadFile(FileDescriptor fileDescr) throws FileStorageException {
-        InputStream inputStream = openStream(fileDescr);
-        try {
-            return IOUtils.toByteArray(inputStream);
+        try (FileChannel channel = openFileChannel(fileDescr)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION,
+                        "File is too large to be loaded into memory: " + fileDescr.getId());
+            }
+            // read directly into an array of the file size instead of growing a buffer
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
         } catch (IOException e) {
             throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
-        } finally {
-            IOUtils.closeQuietly(inputStream);
         }
     }
 
@@ -340,4 +641,153 @@ public class FileStorage implements FileStorageAPI {
     protected void stopWriteExecutor() {
         writeExecutor.shutdown();
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes a copy of a file being saved to a secondary storage. The data is received chunk by chunk while the
+     * primary file is written. If the secondary storage lags behind by more than
+     * {@link ServerConfig#getFileStorageReplicationMaxLag()} bytes, or all secondary storages together buffer more than
+     * {@link ServerConfig#getFileStorageReplicationMaxBuffer()} bytes, the received data is dropped and the file is
+     * copied from the primary storage after it has been saved.
+     */
+    protected class Replica implements Runnable {
+
+        protected static final long POLL_INTERVAL_MS = 100;
+
+        protected final byte[] endMarker = new byte[0];
+
+        protected final File root;
+        protected final FileDescriptor fileDescr;
+        protected final File primaryFile;
+        protected final File fileCopy;
+        protected final SecurityContext securityContext;
+        protected final long startTime = System.currentTimeMillis();
+
+        protected final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+        protected final AtomicLong lag = new AtomicLong();
+        protected final CompletableFuture<String> result = new CompletableFuture<>();
+
+        protected volatile boolean streaming = true;
+
+        protected Replica(File root, FileDescriptor fileDescr, File primaryFile, File fileCopy,
+                          SecurityContext securityContext) {
+            this.root = root;
+            this.fileDescr = fileDescr;
+            this.primaryFile = primaryFile;
+            this.fileCopy = fileCopy;
+            this.securityContext = securityContext;
+        }
+
+        protected long getLag() {
+            return Math.max(0, lag.get());
+        }
+
+        protected void write(byte[] chunk) {
+            if (!streaming) {
+                return;
+            }
+            if (lag.get() + chunk.length > replicationMaxLag
+                    || replicationBufferedBytes.get() + chunk.length > replicationMaxBuffer) {
+                log.debug("Storage {} lags behind, {} will be copied after saving", root, fileDescr);
+                stopStreaming();
+                return;
+            }
+            lag.addAndGet(chunk.length);
+            replicationBufferedBytes.addAndGet(chunk.length);
+            queue.add(chunk);
+            if (!streaming) {
+                // stopped concurrently, the chunk could have been added after the queue was released
+                releaseQueued();
+            }
+        }
+
+        protected void complete(@Nullable String hash) {
+            queue.add(endMarker);
+            result.complete(hash);
+        }
+
+        protected void abort() {
+            stopStreaming();
+            result.completeExceptionally(new IOException("Saving to the primary storage failed"));
+        }
+
+        protected void stopStreaming() {
+            streaming = false;
+            releaseQueued();
+        }
+
+        /**
+         * Removes buffered chunks from the queue, each chunk is accounted either here or when it is taken by
+         * {@link #run()}.
+         */
+        protected void releaseQueued() {
+            List<byte[]> chunks = new ArrayList<>();
+            queue.drainTo(chunks);
+            for (byte[] chunk : chunks) {
+                if (chunk == endMarker) {
+                    queue.add(endMarker);
+                } else {
+                    taken(chunk);
+                }
+            }
+        }
+
+        protected void taken(byte[] chunk) {
+            lag.addAndGet(-chunk.length);
+            replicationBufferedBytes.addAndGet(-chunk.length);
+        }
+
+        @Override
+        public void run() {
+            boolean blob = isContentAddressed(root);
+            File target = blob ? createBlobTempFile(root) : fileCopy;
+            try {
+                AppContext.setSecurityContext(securityContext);
+
+                try (OutputStream os = FileUtils.openOutputStream(target)) {
+                    // polling, so that the task finishes when streaming is stopped even if no end marker is queued
+                    while (streaming) {
+                        byte[] chunk = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                        if (chunk == endMarker) {
+                            break;
+                        }
+                        if (chunk != null) {
+                            taken(chunk);
+                            os.write(chunk);
+                            replicatedBytes.add(chunk.length);
+                        }
+                    }
+                }
+
+                String hash = result.get();
+
+                if (!streaming) {
+                    replicationFallbacks.increment();
+                    FileUtils.copyFile(primaryFile, target, true);
+                    replicatedBytes.add(target.length());
+                }
+
+                if (blob) {
+                    if (hash == null) {
+                        // the primary storage does not use content addressing
+                        try (InputStream inputStream = FileUtils.openInputStream(target)) {
+                            hash = DigestUtils.sha256Hex(inputStream);
+                        }
+                    }
+                    storeBlob(root, target, hash, fileCopy, target.length());
+                }
+                writeLog(fileCopy, false);
+            } catch (ExecutionException e) {
+                // saving to the primary storage failed
+                FileUtils.deleteQuietly(target);
+            } catch (Exception e) {
+                replicationFailures.increment();
+                FileUtils.deleteQuietly(target);
+                log.error("Error saving {} into {} : {}", fileDescr, fileCopy.getAbsolutePath(), e.getMessage());
+            } finally {
+                stopStreaming();
+                pendingReplicas.remove(this);
+                AppContext.setSecurityContext(null);
+            }
+        }
+    }
+}
@@ -21,18 +21,25 @@ import com.haulmont.bali.db.QueryRunner;
 import com.haulmont.cuba.core.*;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
 import com.haulmont.cuba.core.app.RdbmsQueryBuilder;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.QueryHolder;
 import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import com.haulmont.cuba.core.sys.persistence.DbmsFeatures;
+import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.global.UserSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.lang.reflect.Array;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -64,6 +71,10 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     protected static final int BATCH_SIZE = 100;
 
+    protected static final int ARRAY_INSERT_SIZE = 10000;
+
+    protected static final String INLINE_RESULTS_ATTR = "_queryResultIds";
+
     protected static final int DELETE_BATCH_SIZE = 100;
 
     protected static final int INACTIVE_DELETION_MAX = 100000;
@@ -102,7 +113,12 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
                     contextQuery.getParameters(), contextQuery.getNoConversionParams(),
                     null, entityName);
             if (prevQueries.size() > 1) {
-                queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), loadContext.getQueryKey());
+                List<?> previousIds = getInlineResults(queryKey);
+                if (previousIds != null) {
+                    queryBuilder.restrictByPreviousResults(previousIds);
+                } else {
+                    queryBuilder.restrictByPreviousResults(userSessionSource.getUserSession().getId(), queryKey);
+                }
             }
             Query query = queryBuilder.getQuery(em);
 
@@ -151,6 +167,15 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         if (idList.isEmpty())
             return;
 
+        // session attributes are not replicated, so in a cluster the results are always stored in the database
+        // to be available on other nodes after failover
+        int inlineMaxSize = configuration.getConfig(ServerConfig.class).getQueryResultsInlineMaxSize();
+        if (idList.size() <= inlineMaxSize && !clusterManager.isStarted()) {
+            log.debug("Keep " + idList.size() + " query results in user session / " + queryKey);
+            setInlineResults(queryKey, new ArrayList<>(idList));
+            return;
+        }
+
         UUID userSessionId = userSessionSource.getUserSession().getId();
         long start = System.currentTimeMillis();
         String logMsg = "Insert " + idList.size() + " query results for " + userSessionId + " / " + queryKey;
@@ -171,19 +196,14 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
             } else {
                 columnName = "ENTITY_ID";
             }
-            QueryRunner runner = new QueryRunner();
             try {
-                String userSessionIdStr = converter.getSqlObject(userSessionId).toString(); // assuming that UUID can be passed to query as string in all databases
-                String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) values ('%s', %s, ?)",
-                        columnName, userSessionIdStr, queryKey);
-                int[] paramTypes = new int[]{converter.getSqlType(idFromList.getClass())};
-                for (int i = 0; i < idList.size(); i += BATCH_SIZE) {
-                    List<UUID> sublist = idList.subList(i, Math.min(i + BATCH_SIZE, idList.size()));
-                    Object[][] params = new Object[sublist.size()][1];
-                    for (int j = 0; j < sublist.size(); j++) {
-                        params[j][0] = converter.getSqlObject(sublist.get(j));
-                    }
-                    runner.batch(em.getConnection(), sql, params, paramTypes);
+                DbmsFeatures dbmsFeatures = DbmsSpecificFactory.getDbmsFeatures();
+                String arrayElementType = dbmsFeatures.getUnnestArrayElementType(idFromList.getClass());
+                if (arrayElementType != null) {
+                    insertAsArray(em.getConnection(), converter, userSessionId, queryKey, columnName,
+                            arrayElementType, idList);
+                } else {
+                    insertInBatches(em.getConnection(), converter, userSessionId, queryKey, columnName, idList);
                 }
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -196,8 +216,75 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
         }
     }
 
+    protected void insertInBatches(Connection connection, DbTypeConverter converter, UUID userSessionId,
+                                   int queryKey, String columnName, List idList) throws SQLException {
+        QueryRunner runner = new QueryRunner();
+        String userSessionIdStr = converter.getSqlObject(userSessionId).toString(); // assuming that UUID can be passed to query as string in all databases
+        String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) values ('%s', %s, ?)",
+                columnName, userSessionIdStr, queryKey);
+        int[] paramTypes = new int[]{converter.getSqlType(idList.get(0).getClass())};
+        for (int i = 0; i < idList.size(); i += BATCH_SIZE) {
+            List<?> sublist = idList.subList(i, Math.min(i + BATCH_SIZE, idList.size()));
+            Object[][] params = new Object[sublist.size()][1];
+            for (int j = 0; j < sublist.size(); j++) {
+                params[j][0] = converter.getSqlObject(sublist.get(j));
+            }
+            runner.batch(connection, sql, params, paramTypes);
+        }
+    }
+
+    /**
+     * Inserts identifiers passing them as a single array parameter of a set-based statement, which requires
+     * one round trip per {@link #ARRAY_INSERT_SIZE} rows instead of one per row.
+     */
+    protected void insertAsArray(Connection connection, DbTypeConverter converter, UUID userSessionId,
+                                 int queryKey, String columnName, String arrayElementType,
+                                 List idList) throws SQLException {
+        QueryRunner runner = new QueryRunner();
+        String sql = String.format("insert into SYS_QUERY_RESULT (SESSION_ID, QUERY_KEY, %s) select ?, ?, unnest(?)",
+                columnName);
+        int[] paramTypes = new int[]{converter.getSqlType(UUID.class), Types.INTEGER, Types.ARRAY};
+        Class<?> idClass = idList.get(0).getClass();
+        for (int i = 0; i < idList.size(); i += ARRAY_INSERT_SIZE) {
+            List<?> sublist = idList.subList(i, Math.min(i + ARRAY_INSERT_SIZE, idList.size()));
+            Object[] elements = sublist.toArray((Object[]) Array.newInstance(idClass, sublist.size()));
+            java.sql.Array array = connection.createArrayOf(arrayElementType, elements);
+            try {
+                runner.update(connection, sql,
+                        new Object[]{converter.getSqlObject(userSessionId), queryKey, array}, paramTypes);
+            } finally {
+                array.free();
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public List getInlineResults(int queryKey) {
+        Map<Integer, List> inlineResults = userSessionSource.getUserSession().getAttribute(INLINE_RESULTS_ATTR);
+        return inlineResults == null ? null : inlineResults.get(queryKey);
+    }
+
+    protected void setInlineResults(int queryKey, @Nullable List idList) {
+        UserSession userSession = userSessionSource.getUserSession();
+        Map<Integer, List> inlineResults = userSession.getAttribute(INLINE_RESULTS_ATTR);
+        if (idList == null && (inlineResults == null || !inlineResults.containsKey(queryKey)))
+            return;
+
+        // copy to a new map to avoid modifying the map which can be read concurrently by other requests of the session
+        HashMap<Integer, List> copy = inlineResults == null ? new HashMap<>() : new HashMap<>(inlineResults);
+        if (idList == null) {
+            copy.remove(queryKey);
+        } else {
+            copy.put(queryKey, idList);
+        }
+        userSession.setAttribute(INLINE_RESULTS_ATTR, copy);
+    }
+
     @Override
     public void delete(int queryKey) {
+        setInlineResults(queryKey, null);
+
         DbTypeConverter converter = persistence.getDbTypeConverter();
         UUID userSessionId = userSessionSource.getUserSession().getId();
         String userSessionIdStr = converter.getSqlObject(userSessionId).toString();
@@ -219,6 +306,8 @@ public class QueryResultsManager implements QueryResultsManagerAPI {
 
     @Override
     public void deleteForCurrentSession() {
+        userSessionSource.getUserSession().removeAttribute(INLINE_RESULTS_ATTR);
+
         QueryRunner runner = new QueryRunner(persistence.getDataSource());
         try {
             DbTypeConverter converter = persistence.getDbTypeConverter();
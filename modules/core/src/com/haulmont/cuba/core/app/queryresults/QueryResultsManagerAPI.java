@@ -19,6 +19,7 @@ package com.haulmont.cuba.core.app.queryresults;
 
 import com.haulmont.cuba.core.global.LoadContext;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.UUID;
 
@@ -36,6 +37,13 @@ public interface QueryResultsManagerAPI {
 
     void delete(int queryKey);
 
+    /**
+     * @return identifiers of previously selected entities kept in the current user session instead of
+     * SYS_QUERY_RESULT, or null if the results for the query key are stored in the database
+     */
+    @Nullable
+    List getInlineResults(int queryKey);
+
     void deleteForCurrentSession();
 
     void deleteForInactiveSessions();
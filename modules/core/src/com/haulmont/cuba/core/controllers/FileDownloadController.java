@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.core.controllers;
 
+import com.haulmont.bali.util.ByteRange;
 import com.haulmont.bali.util.URLEncodeUtils;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.app.FileStorageAPI;
@@ -27,7 +28,6 @@ import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.SecurityContext;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 import com.haulmont.cuba.security.global.UserSession;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +41,11 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.UUID;
 
 /**
@@ -85,12 +89,18 @@ public class FileDownloadController {
             response.setIntHeader("Expires", -1);
             response.setHeader("Content-Type", FileTypesHelper.DEFAULT_MIME_TYPE);
 
-            InputStream is = null;
+            ReadableByteChannel channel = null;
             ServletOutputStream os = null;
             try {
-                is = fd != null ? fileStorage.openStream(fd) : FileUtils.openInputStream(file);
-                os = response.getOutputStream();
-                IOUtils.copy(is, os);
+                channel = fd != null ? fileStorage.openChannel(fd) : FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                if (channel instanceof FileChannel) {
+                    if (!writeRange(request, response, (FileChannel) channel))
+                        return;
+                    os = response.getOutputStream();
+                } else {
+                    os = response.getOutputStream();
+                    IOUtils.copy(Channels.newInputStream(channel), os);
+                }
                 os.flush();
             } catch (FileStorageException e) {
                 log.error("Unable to download file", e);
@@ -99,7 +109,7 @@ public class FileDownloadController {
                 log.error("Unable to download file", ex);
                 response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
             } finally {
-                IOUtils.closeQuietly(is);
+                IOUtils.closeQuietly(channel);
                 IOUtils.closeQuietly(os);
             }
         } finally {
@@ -107,6 +117,43 @@ public class FileDownloadController {
         }
     }
 
+    /**
+     * Writes the whole file or the range requested by the {@code Range} header. The contents are transferred by the
+     * file channel directly to the response without copying to the Java heap.
+     *
+     * @return false if the requested range is not satisfiable and an error has been sent
+     */
+    protected boolean writeRange(HttpServletRequest request, HttpServletResponse response, FileChannel channel)
+            throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long length = size;
+
+        response.setHeader("Accept-Ranges", ByteRange.UNIT);
+        ByteRange range = ByteRange.parse(request.getHeader("Range"), size);
+        if (range != null) {
+            response.setHeader("Content-Range", range.getContentRange());
+            if (!range.isSatisfiable()) {
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return false;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            position = range.getStart();
+            length = range.getLength();
+        }
+        response.setContentLengthLong(length);
+
+        WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+        long end = position + length;
+        while (position < end) {
+            long count = channel.transferTo(position, end - position, target);
+            if (count <= 0)
+                break;
+            position += count;
+        }
+        return true;
+    }
+
     protected UserSession getSession(HttpServletRequest request, HttpServletResponse response) throws IOException {
         UUID sessionId;
         try {
@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesManagerAPI;
 import com.haulmont.cuba.core.global.Messages;
 import com.haulmont.cuba.core.global.Scripting;
 import com.haulmont.cuba.core.global.ViewRepository;
+import com.haulmont.cuba.core.sys.AbstractMessages;
 import com.haulmont.cuba.core.sys.AbstractViewRepository;
 import com.haulmont.cuba.security.app.EntityLogAPI;
 
@@ -53,6 +54,16 @@ public class CachingFacade implements CachingFacadeMBean {
         return messages.getCacheSize();
     }
 
+    @Override
+    public long getMessagesCacheHitCount() {
+        return messages instanceof AbstractMessages ? ((AbstractMessages) messages).getCacheHitCount() : 0;
+    }
+
+    @Override
+    public long getMessagesCacheMissCount() {
+        return messages instanceof AbstractMessages ? ((AbstractMessages) messages).getCacheMissCount() : 0;
+    }
+
     @Override
     public void clearGroovyCache() {
         scripting.clearCache();
@@ -30,6 +30,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.File;
 import java.util.Collection;
@@ -53,6 +54,63 @@ public class FileStorage implements FileStorageMBean {
         }
     }
 
+    @Override
+    public int getPendingReplicationCount() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getPendingReplicationCount() : 0;
+    }
+
+    @Override
+    public long getReplicationLag() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getReplicationLag() : 0;
+    }
+
+    @Override
+    public long getOldestPendingReplicationAge() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getOldestPendingReplicationAge() : 0;
+    }
+
+    @Override
+    public long getReplicatedBytes() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getReplicatedBytes() : 0;
+    }
+
+    @Override
+    public long getReplicationFailureCount() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getReplicationFailureCount() : 0;
+    }
+
+    @Override
+    public long getReplicationFallbackCount() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getReplicationFallbackCount() : 0;
+    }
+
+    @Override
+    public long getDeduplicatedFileCount() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getDeduplicatedFileCount() : 0;
+    }
+
+    @Override
+    public long getDeduplicatedBytes() {
+        com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage = getLocalFileStorage();
+        return fileStorage != null ? fileStorage.getDeduplicatedBytes() : 0;
+    }
+
+    @Nullable
+    protected com.haulmont.cuba.core.app.filestorage.FileStorage getLocalFileStorage() {
+        FileStorageAPI fileStorageAPI = AppBeans.get(FileStorageAPI.class);
+        if (fileStorageAPI instanceof com.haulmont.cuba.core.app.filestorage.FileStorage) {
+            return (com.haulmont.cuba.core.app.filestorage.FileStorage) fileStorageAPI;
+        }
+        return null;
+    }
+
     @Override
     public String findOrphanDescriptors() {
         com.haulmont.cuba.core.app.filestorage.FileStorage fileStorage;
@@ -118,6 +176,9 @@ public class FileStorage implements FileStorageMBean {
         Collection<File> filesInRootFolder = FileUtils.listFiles(storageFolder, null, false);
         //remove files of root storage folder (e.g. storage.log) from files collection
         systemFiles.removeAll(filesInRootFolder);
+        //remove shared contents of content-addressed storage
+        File blobsFolder = new File(storageFolder, com.haulmont.cuba.core.app.filestorage.FileStorage.BLOBS_DIR);
+        systemFiles.removeIf(file -> file.toPath().startsWith(blobsFolder.toPath()));
 
         List<FileDescriptor> fileDescriptors;
         Transaction tx = persistence.createTransaction();
@@ -38,4 +38,44 @@ public interface FileStorageMBean {
      * @return the list of files in the storage which have no corresponding descriptors in the database
      */
     String findOrphanFiles();
+
+    /**
+     * @return number of files being copied to secondary storages
+     */
+    int getPendingReplicationCount();
+
+    /**
+     * @return amount of data in bytes saved to the primary storage but not yet written to secondary storages
+     */
+    long getReplicationLag();
+
+    /**
+     * @return age in milliseconds of the oldest file being copied to secondary storages
+     */
+    long getOldestPendingReplicationAge();
+
+    /**
+     * @return total amount of data in bytes written to secondary storages
+     */
+    long getReplicatedBytes();
+
+    /**
+     * @return number of failed copies to secondary storages
+     */
+    long getReplicationFailureCount();
+
+    /**
+     * @return number of files copied to secondary storages after saving because the storages lagged behind
+     */
+    long getReplicationFallbackCount();
+
+    /**
+     * @return number of saved files whose contents already existed in a content-addressed storage
+     */
+    long getDeduplicatedFileCount();
+
+    /**
+     * @return amount of data in bytes not stored again thanks to deduplication
+     */
+    long getDeduplicatedBytes();
 }
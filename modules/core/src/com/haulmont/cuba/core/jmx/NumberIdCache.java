@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+@Component("cuba_NumberIdCacheMBean")
+public class NumberIdCache implements NumberIdCacheMBean {
+
+    @Inject
+    protected com.haulmont.cuba.core.sys.NumberIdCache numberIdCache;
+
+    @Override
+    public long getAllocationCount() {
+        return numberIdCache.getAllocationCount();
+    }
+
+    @Override
+    public long getRangeRequestCount() {
+        return numberIdCache.getRangeRequestCount();
+    }
+
+    @Override
+    public long getWaitCount() {
+        return numberIdCache.getWaitCount();
+    }
+
+    @Override
+    public long getWaitTimeMillis() {
+        return numberIdCache.getWaitTimeMillis();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Provides statistics of cached ids of entities with long/integer PK")
+public interface NumberIdCacheMBean {
+
+    @ManagedAttribute(description = "Total number of allocated ids")
+    long getAllocationCount();
+
+    @ManagedAttribute(description = "Total number of id ranges requested from sequences")
+    long getRangeRequestCount();
+
+    @ManagedAttribute(description = "Number of times threads waited for a new id range")
+    long getWaitCount();
+
+    @ManagedAttribute(description = "Total time in milliseconds spent waiting for new id ranges")
+    long getWaitTimeMillis();
+}
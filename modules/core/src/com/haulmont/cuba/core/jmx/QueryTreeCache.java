@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+
+@Component("cuba_QueryTreeCacheMBean")
+public class QueryTreeCache implements QueryTreeCacheMBean {
+
+    @Inject
+    protected com.haulmont.cuba.core.sys.jpql.QueryTreeCache queryTreeCache;
+
+    @Override
+    public int getMaxSize() {
+        return queryTreeCache.getMaxSize();
+    }
+
+    @Override
+    public long getSize() {
+        return queryTreeCache.getSize();
+    }
+
+    @Override
+    public long getHitCount() {
+        return queryTreeCache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return queryTreeCache.getMissCount();
+    }
+
+    @Override
+    public void clear() {
+        queryTreeCache.clear();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.jmx;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+@ManagedResource(description = "Provides statistics of the parsed JPQL query tree cache")
+public interface QueryTreeCacheMBean {
+
+    @ManagedAttribute(description = "Maximum number of cached query trees, 0 if caching is disabled")
+    int getMaxSize();
+
+    @ManagedAttribute(description = "Current number of cached query trees")
+    long getSize();
+
+    @ManagedAttribute(description = "Number of queries whose trees were found in the cache")
+    long getHitCount();
+
+    @ManagedAttribute(description = "Number of queries that had to be parsed")
+    long getMissCount();
+
+    @ManagedOperation(description = "Clears the cache")
+    void clear();
+}
@@ -24,7 +24,9 @@ import org.springframework.mail.javamail.JavaMailSenderImpl;
 
 import org.springframework.stereotype.Component;
 import javax.inject.Inject;
+import javax.mail.MessagingException;
 import javax.mail.Session;
+import javax.mail.Transport;
 import java.util.HashSet;
 import java.util.Properties;
 import java.util.Set;
@@ -95,6 +97,14 @@ public class CubaMailSender extends JavaMailSenderImpl {
         return super.getSession();
     }
 
+    /**
+     * Opens and authenticates a new SMTP connection that can be used to send several messages.
+     * The caller is responsible for closing the returned transport.
+     */
+    public Transport openTransport() throws MessagingException {
+        return connectTransport();
+    }
+
     protected Properties createJavaMailProperties() {
         long connectionTimeoutMillis = config.getSmtpConnectionTimeoutSec() * 1000;
         long timeoutMillis = config.getSmtpTimeoutSec() * 1000;
@@ -22,8 +22,11 @@ import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.TypedQuery;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.EmbeddableEntity;
 import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.IdProxy;
 import com.haulmont.cuba.core.global.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +37,7 @@ import javax.persistence.Basic;
 import javax.persistence.FetchType;
 import java.lang.reflect.AnnotatedElement;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Fetches entities by views by accessing reference attributes.
@@ -57,13 +61,19 @@ public class EntityFetcher {
     @Inject
     protected EntityStates entityStates;
 
+    @Inject
+    protected ServerConfig serverConfig;
+
+    protected LongAdder batchQueries = new LongAdder();
+    protected LongAdder batchLoadedReferences = new LongAdder();
+
     /**
      * Fetch instance by view object.
      */
     public void fetch(Entity instance, View view) {
         if (view == null)
             return;
-        fetch(instance, view, new HashMap<>(), false);
+        doFetch(instance, view, false);
     }
 
     /**
@@ -73,7 +83,7 @@ public class EntityFetcher {
         if (viewName == null)
             return;
         View view = viewRepository.getView(instance.getClass(), viewName);
-        fetch(instance, view, new HashMap<>(), false);
+        doFetch(instance, view, false);
     }
 
     /**
@@ -86,7 +96,7 @@ public class EntityFetcher {
     public void fetch(Entity instance, View view, boolean optimizeForDetached) {
         if (view == null)
             return;
-        fetch(instance, view, new HashMap<>(), optimizeForDetached);
+        doFetch(instance, view, optimizeForDetached);
     }
 
     /**
@@ -100,7 +110,189 @@ public class EntityFetcher {
         if (viewName == null)
             return;
         View view = viewRepository.getView(instance.getClass(), viewName);
-        fetch(instance, view, new HashMap<>(), optimizeForDetached);
+        doFetch(instance, view, optimizeForDetached);
+    }
+
+    /**
+     * Fetch a collection of instances by view object.
+     * <p>
+     * If batch loading is enabled by {@code cuba.entityFetcherBatchLoading}, detached references of the same entity
+     * class and view found on the same level of the graph are loaded together by {@code where e.id in (...)}
+     * queries, see {@link ServerConfig#getEntityFetcherBatchSize()}.
+     *
+     * @param optimizeForDetached if true, detached objects encountered in the graph will be first checked whether all
+     *                            required attributes are already loaded, and reloaded only when needed.
+     *                            If the argument is false, all detached objects are reloaded anyway.
+     */
+    public void fetch(Collection<? extends Entity> instances, View view, boolean optimizeForDetached) {
+        if (view == null || instances.isEmpty())
+            return;
+        if (serverConfig.getEntityFetcherBatchLoading()) {
+            fetchInBatches(instances, view, optimizeForDetached);
+        } else {
+            Map<Instance, Set<View>> visited = new HashMap<>();
+            for (Entity instance : instances) {
+                fetch(instance, view, visited, optimizeForDetached);
+            }
+        }
+    }
+
+    /**
+     * @return total number of database round trips avoided by loading detached references in batches
+     */
+    public long getSavedRoundTrips() {
+        return batchLoadedReferences.sum() - batchQueries.sum();
+    }
+
+    protected void doFetch(Entity instance, View view, boolean optimizeForDetached) {
+        if (serverConfig.getEntityFetcherBatchLoading()) {
+            fetchInBatches(Collections.singletonList(instance), view, optimizeForDetached);
+        } else {
+            fetch(instance, view, new HashMap<>(), optimizeForDetached);
+        }
+    }
+
+    protected void fetchInBatches(Collection<? extends Entity> instances, View view, boolean optimizeForDetached) {
+        BatchStatistics statistics = new BatchStatistics();
+        fetchBatch(instances, view, new HashMap<>(), optimizeForDetached, statistics);
+
+        batchQueries.add(statistics.queries);
+        batchLoadedReferences.add(statistics.references);
+        if (log.isDebugEnabled() && statistics.references > 0) {
+            log.debug(String.format("Loaded %d detached references by %d queries, %d round trips saved",
+                    statistics.references, statistics.queries, statistics.references - statistics.queries));
+        }
+    }
+
+    /**
+     * Walks one level of the graph for all given instances. Detached references are grouped by entity class and view
+     * and loaded together, then the next level is processed for each group.
+     */
+    protected void fetchBatch(Collection<? extends Entity> entities, View view, Map<Instance, Set<View>> visited,
+                              boolean optimizeForDetached, BatchStatistics statistics) {
+        Map<View, List<Entity>> nextLevel = new LinkedHashMap<>();
+        Map<DetachedGroupKey, List<DetachedReference>> detachedGroups = new LinkedHashMap<>();
+
+        for (Entity entity : entities) {
+            if (!markVisited(entity, view, visited))
+                continue;
+
+            if (log.isTraceEnabled()) log.trace("Fetching instance " + entity);
+
+            MetaClass metaClass = metadata.getClassNN(entity.getClass());
+            for (ViewProperty property : view.getProperties()) {
+                MetaProperty metaProperty = metaClass.getPropertyNN(property.getName());
+                if (!metaProperty.getRange().isClass() && !isLazyFetchedLocalAttribute(metaProperty))
+                    continue;
+
+                if (log.isTraceEnabled()) log.trace("Fetching property " + property.getName());
+
+                Object value = entity.getValue(property.getName());
+                View propertyView = property.getView();
+                if (value != null && propertyView != null) {
+                    if (value instanceof Collection) {
+                        for (Object item : ((Collection) value)) {
+                            if (item instanceof Entity)
+                                nextLevel.computeIfAbsent(propertyView, k -> new ArrayList<>()).add((Entity) item);
+                        }
+                    } else if (value instanceof Entity) {
+                        Entity e = (Entity) value;
+                        if (!metaProperty.isReadOnly() && PersistenceHelper.isDetached(value) && !(value instanceof EmbeddableEntity)) {
+                            if (!optimizeForDetached || needReloading(e, propertyView)) {
+                                if (log.isTraceEnabled()) {
+                                    log.trace("Object " + value + " is detached, loading it");
+                                }
+                                detachedGroups.computeIfAbsent(new DetachedGroupKey(e.getClass(), propertyView), k -> new ArrayList<>())
+                                        .add(new DetachedReference(entity, property.getName(), e));
+                            }
+                        } else {
+                            nextLevel.computeIfAbsent(propertyView, k -> new ArrayList<>()).add(e);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<View, List<Entity>> entry : nextLevel.entrySet()) {
+            fetchBatch(entry.getValue(), entry.getKey(), visited, optimizeForDetached, statistics);
+        }
+        for (Map.Entry<DetachedGroupKey, List<DetachedReference>> entry : detachedGroups.entrySet()) {
+            loadDetachedReferences(entry.getKey(), entry.getValue(), visited, optimizeForDetached, statistics);
+        }
+    }
+
+    protected void loadDetachedReferences(DetachedGroupKey key, List<DetachedReference> references,
+                                          Map<Instance, Set<View>> visited, boolean optimizeForDetached,
+                                          BatchStatistics statistics) {
+        MetaClass metaClass = metadata.getClassNN(key.entityClass);
+        String storeName = metadata.getTools().getStoreName(metaClass);
+        if (storeName == null)
+            return;
+
+        try (Transaction tx = persistence.getTransaction(storeName)) {
+            EntityManager em = persistence.getEntityManager(storeName);
+
+            List<Entity> managedList = new ArrayList<>(references.size());
+            String pkName = metadata.getTools().getPrimaryKeyName(metaClass);
+            if (pkName == null || metadata.getTools().hasCompositePrimaryKey(metaClass)) {
+                for (DetachedReference reference : references) {
+                    //noinspection unchecked
+                    Entity managed = em.find(key.entityClass, reference.value.getId());
+                    if (managed != null) { // the instance here can be null if it has been deleted
+                        reference.owner.setValue(reference.property, managed);
+                        managedList.add(managed);
+                    }
+                }
+            } else {
+                Map<Object, Entity> loaded = loadByIds(em, key.entityClass, metaClass, pkName, references, statistics);
+                for (DetachedReference reference : references) {
+                    Entity managed = loaded.get(getIdValue(reference.value, pkName));
+                    if (managed != null) { // the instance here can be null if it has been deleted
+                        reference.owner.setValue(reference.property, managed);
+                        managedList.add(managed);
+                    }
+                }
+                statistics.references += references.size();
+            }
+
+            fetchBatch(managedList, key.view, visited, optimizeForDetached, statistics);
+            tx.commit();
+        }
+    }
+
+    protected Map<Object, Entity> loadByIds(EntityManager em, Class<? extends Entity> entityClass, MetaClass metaClass,
+                                            String pkName, List<DetachedReference> references,
+                                            BatchStatistics statistics) {
+        Set<Object> ids = new LinkedHashSet<>();
+        for (DetachedReference reference : references) {
+            ids.add(getIdValue(reference.value, pkName));
+        }
+
+        int batchSize = Math.max(1, serverConfig.getEntityFetcherBatchSize());
+        String queryString = String.format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName);
+
+        Map<Object, Entity> result = new HashMap<>();
+        List<Object> idList = new ArrayList<>(ids);
+        for (int i = 0; i < idList.size(); i += batchSize) {
+            List<Object> chunk = idList.subList(i, Math.min(i + batchSize, idList.size()));
+            TypedQuery<? extends Entity> query = em.createQuery(queryString, entityClass);
+            query.setParameter("ids", new ArrayList<>(chunk));
+            for (Entity entity : query.getResultList()) {
+                result.put(getIdValue(entity, pkName), entity);
+            }
+            statistics.queries++;
+        }
+        return result;
+    }
+
+    protected Object getIdValue(Entity entity, String pkName) {
+        Object id = entity.getValue(pkName);
+        return id instanceof IdProxy ? ((IdProxy) id).get() : id;
+    }
+
+    protected boolean markVisited(Entity entity, View view, Map<Instance, Set<View>> visited) {
+        Set<View> views = visited.computeIfAbsent(entity, k -> new HashSet<>());
+        return views.add(view);
     }
 
     protected void fetch(Entity entity, View view, Map<Instance, Set<View>> visited, boolean optimizeForDetached) {
@@ -174,4 +366,44 @@ public class EntityFetcher {
         Basic annotation = annotatedElement.getAnnotation(Basic.class);
         return annotation != null && annotation.fetch() == FetchType.LAZY;
     }
+
+    protected static class DetachedGroupKey {
+        protected final Class<? extends Entity> entityClass;
+        protected final View view;
+
+        protected DetachedGroupKey(Class<? extends Entity> entityClass, View view) {
+            this.entityClass = entityClass;
+            this.view = view;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            DetachedGroupKey that = (DetachedGroupKey) o;
+            return entityClass.equals(that.entityClass) && view.equals(that.view);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * entityClass.hashCode() + view.hashCode();
+        }
+    }
+
+    protected static class DetachedReference {
+        protected final Entity owner;
+        protected final String property;
+        protected final Entity value;
+
+        protected DetachedReference(Entity owner, String property, Entity value) {
+            this.owner = owner;
+            this.property = property;
+            this.value = value;
+        }
+    }
+
+    protected static class BatchStatistics {
+        protected int references;
+        protected int queries;
+    }
 }
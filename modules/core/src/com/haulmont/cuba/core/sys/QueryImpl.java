@@ -350,11 +350,14 @@ public class QueryImpl<T> implements TypedQuery<T> {
         preExecute(query);
         @SuppressWarnings("unchecked")
         List<T> resultList = (List<T>) getResultFromCache(query, false, obj -> {
-            ((List) obj).stream().filter(item -> item instanceof Entity).forEach(item -> {
-                for (View view : views) {
-                    entityFetcher.fetch((Entity) item, view);
-                }
-            });
+            List<Entity> entities = new ArrayList<>();
+            for (Object item : (List) obj) {
+                if (item instanceof Entity)
+                    entities.add((Entity) item);
+            }
+            for (View view : views) {
+                entityFetcher.fetch(entities, view, false);
+            }
         });
         return resultList;
     }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel which keeps items until their deadlines.
+ * <p>
+ * The first level has {@code wheelSize} buckets of {@code tickMs} milliseconds each, every next level has buckets
+ * spanning the whole previous level. Items with deadlines beyond the last level are kept in an overflow list.
+ * Adding an item and expiring it are O(1) operations, and {@link #advance(long, Consumer)} touches only buckets
+ * which became due since the previous call. Deadlines are observed with the precision of one tick.
+ * <p>
+ * The class is not thread-safe.
+ *
+ * @param <T> type of items
+ */
+public class TimingWheel<T> {
+
+    protected static class Entry<T> {
+        protected final T item;
+        protected final long deadline;
+
+        protected Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+
+    protected final long[] ticks;
+    protected final int wheelSize;
+    protected final List<List<Entry<T>>[]> levels = new ArrayList<>();
+    protected List<Entry<T>> overflow = new ArrayList<>();
+
+    protected long currentTime;
+    protected int size;
+
+    /**
+     * @param tickMs      duration of a first level bucket in milliseconds
+     * @param wheelSize   number of buckets on each level
+     * @param levelCount  number of levels
+     * @param startTime   current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, int levelCount, long startTime) {
+        if (tickMs <= 0 || wheelSize <= 1 || levelCount <= 0)
+            throw new IllegalArgumentException("Invalid timing wheel parameters");
+
+        this.wheelSize = wheelSize;
+        this.ticks = new long[levelCount];
+        long tick = tickMs;
+        for (int i = 0; i < levelCount; i++) {
+            ticks[i] = tick;
+            List<Entry<T>>[] buckets = new List[wheelSize];
+            for (int j = 0; j < wheelSize; j++) {
+                buckets[j] = new ArrayList<>();
+            }
+            levels.add(buckets);
+            tick = Math.multiplyExact(tick, wheelSize);
+        }
+        this.currentTime = startTime - startTime % tickMs;
+    }
+
+    /**
+     * Adds an item. An item with a deadline in the past expires on the next {@link #advance(long, Consumer)}.
+     */
+    public void add(T item, long deadline) {
+        addEntry(new Entry<>(item, deadline));
+        size++;
+    }
+
+    protected void addEntry(Entry<T> entry) {
+        long deadline = Math.max(entry.deadline, currentTime);
+        for (int i = 0; i < ticks.length; i++) {
+            long tick = ticks[i];
+            long levelStart = currentTime - currentTime % tick;
+            if (deadline < levelStart + tick * wheelSize) {
+                // the current bucket of a higher level has already been cascaded, such deadlines fit a lower level
+                if (i == 0 || deadline >= levelStart + tick) {
+                    levels.get(i)[(int) ((deadline / tick) % wheelSize)].add(entry);
+                    return;
+                }
+            }
+        }
+        overflow.add(entry);
+    }
+
+    /**
+     * Moves the wheel to the specified time and passes all items whose deadlines have passed to the consumer.
+     */
+    public void advance(long now, Consumer<T> expired) {
+        long tick = ticks[0];
+        long totalSpan = ticks[ticks.length - 1] * wheelSize;
+        if (now - currentTime >= totalSpan) {
+            reset(now, expired);
+            return;
+        }
+        while (currentTime + tick <= now) {
+            List<Entry<T>> bucket = levels.get(0)[(int) ((currentTime / tick) % wheelSize)];
+            for (Entry<T> entry : bucket) {
+                size--;
+                expired.accept(entry.item);
+            }
+            bucket.clear();
+            currentTime += tick;
+            cascade();
+        }
+    }
+
+    protected void cascade() {
+        long lastSpan = ticks[ticks.length - 1] * wheelSize;
+        if (currentTime % lastSpan == 0 && !overflow.isEmpty()) {
+            List<Entry<T>> entries = overflow;
+            overflow = new ArrayList<>();
+            entries.forEach(this::addEntry);
+        }
+        for (int i = ticks.length - 1; i > 0; i--) {
+            long tick = ticks[i];
+            if (currentTime % tick == 0) {
+                List<Entry<T>> bucket = levels.get(i)[(int) ((currentTime / tick) % wheelSize)];
+                if (!bucket.isEmpty()) {
+                    List<Entry<T>> entries = new ArrayList<>(bucket);
+                    bucket.clear();
+                    entries.forEach(this::addEntry);
+                }
+            }
+        }
+    }
+
+    protected void reset(long now, Consumer<T> expired) {
+        List<Entry<T>> entries = new ArrayList<>(overflow);
+        overflow.clear();
+        for (List<Entry<T>>[] buckets : levels) {
+            for (List<Entry<T>> bucket : buckets) {
+                entries.addAll(bucket);
+                bucket.clear();
+            }
+        }
+        currentTime = now - now % ticks[0];
+        for (Entry<T> entry : entries) {
+            if (entry.deadline < currentTime) {
+                size--;
+                expired.accept(entry.item);
+            } else {
+                addEntry(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        overflow.clear();
+        for (List<Entry<T>>[] buckets : levels) {
+            for (List<Entry<T>> bucket : buckets) {
+                bucket.clear();
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * @return number of items in the wheel
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.PersistenceTools;
+import com.haulmont.cuba.core.app.ClusterListenerAdapter;
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.EntityStates;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.listener.BeforeCommitTransactionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps versions of cacheable entities used by client-side near caches to find out what has been changed.
+ * <p>A version is bumped after a transaction that creates, changes or removes instances of the entity is committed,
+ * and is propagated to other middleware nodes, so all nodes return the same versions. Each message carries all
+ * versions, so a node which has missed a message catches up with the next one, and a node joining the cluster
+ * receives the versions by state transfer.
+ */
+@Component(EntityCacheVersions.NAME)
+public class EntityCacheVersions implements BeforeCommitTransactionListener {
+
+    public static final String NAME = "cuba_EntityCacheVersions";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityCacheVersions.class);
+
+    @Inject
+    protected Metadata metadata;
+    @Inject
+    protected EntityStates entityStates;
+    @Inject
+    protected PersistenceTools persistenceTools;
+    @Inject
+    protected ClusterManagerAPI clusterManager;
+    @Inject
+    protected TimeSource timeSource;
+
+    protected Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        clusterManager.addListener(EntityCacheVersionsMsg.class, new ClusterListenerAdapter<EntityCacheVersionsMsg>() {
+            @Override
+            public void receive(EntityCacheVersionsMsg message) {
+                merge(message.versions);
+            }
+
+            @Override
+            public byte[] getState() {
+                return getClusterState();
+            }
+
+            @Override
+            public void setState(byte[] state) {
+                applyClusterState(state);
+            }
+        });
+    }
+
+    /**
+     * @return current versions of changed cacheable entities
+     */
+    public Map<String, Long> getVersions() {
+        return new HashMap<>(versions);
+    }
+
+    /**
+     * Bumps versions of the given entities and propagates them to the cluster.
+     *
+     * @param entityNames names of cacheable entities
+     */
+    public void bump(Collection<String> entityNames) {
+        if (entityNames.isEmpty()) {
+            return;
+        }
+        long now = timeSource.currentTimeMillis();
+        for (String entityName : entityNames) {
+            // versions of an entity must differ even if it is changed twice within a millisecond
+            versions.merge(entityName, now, (previous, current) -> Math.max(previous + 1, current));
+        }
+        clusterManager.send(new EntityCacheVersionsMsg(getVersions()));
+    }
+
+    /**
+     * @return versions serialized for the state transfer to a node joining the cluster
+     */
+    public byte[] getClusterState() {
+        Map<String, Long> currentVersions = getVersions();
+        if (currentVersions.isEmpty()) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(currentVersions.size());
+            for (Map.Entry<String, Long> entry : currentVersions.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to serialize entity cache versions", e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Merges versions received by the state transfer into the versions of this node.
+     */
+    public void applyClusterState(byte[] state) {
+        if (state == null || state.length == 0) {
+            return;
+        }
+        Map<String, Long> received = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                received.put(in.readUTF(), in.readLong());
+            }
+        } catch (IOException e) {
+            log.error("Unable to deserialize entity cache versions received from the cluster", e);
+            return;
+        }
+        merge(received);
+    }
+
+    protected void merge(Map<String, Long> received) {
+        for (Map.Entry<String, Long> entry : received.entrySet()) {
+            versions.merge(entry.getKey(), entry.getValue(), Math::max);
+        }
+    }
+
+    @Override
+    public void beforeCommit(EntityManager entityManager, Collection<Entity> managedEntities) {
+        Set<String> entityNames = new HashSet<>();
+        for (Entity entity : managedEntities) {
+            MetaClass metaClass = metadata.getClassNN(entity.getClass());
+            if (metadata.getTools().isCacheable(metaClass)
+                    && !entityNames.contains(metaClass.getName())
+                    && (persistenceTools.isDirty(entity) || entityStates.isDeleted(entity))) {
+                entityNames.add(metaClass.getName());
+                for (MetaClass ancestor : metaClass.getAncestors()) {
+                    entityNames.add(ancestor.getName());
+                }
+            }
+        }
+
+        if (!entityNames.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // bump after commit, otherwise a client could reload old state and keep it with the new version
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    bump(entityNames);
+                }
+            });
+        }
+    }
+
+    protected static class EntityCacheVersionsMsg implements Serializable {
+        private static final long serialVersionUID = 4281904419561352637L;
+
+        protected Map<String, Long> versions;
+
+        public EntityCacheVersionsMsg(Map<String, Long> versions) {
+            this.versions = versions;
+        }
+    }
+}
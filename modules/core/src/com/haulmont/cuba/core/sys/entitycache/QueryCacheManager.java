@@ -70,6 +70,17 @@ public class QueryCacheManager {
                     queryCache.invalidate(message.typeNames);
                 }
             }
+
+            @Override
+            public InvalidateQueryCacheMsg merge(InvalidateQueryCacheMsg previous, InvalidateQueryCacheMsg next) {
+                if (previous.invalidateAll || next.invalidateAll) {
+                    return new InvalidateQueryCacheMsg(true);
+                }
+                if (previous.typeNames != null && next.typeNames != null) {
+                    return new InvalidateQueryCacheMsg(Sets.union(previous.typeNames, next.typeNames).immutableCopy());
+                }
+                return null;
+            }
         });
     }
 
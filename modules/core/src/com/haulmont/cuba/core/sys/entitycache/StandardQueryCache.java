@@ -18,6 +18,8 @@ package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
@@ -29,17 +31,24 @@ import javax.inject.Inject;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Query cache based on Guava {@link Cache}.
+ * <p>
+ * Keys are indexed by the names of related entity types in concurrent sets, so puts and invalidations do not take
+ * any global lock. Each type has a generation counter which is incremented on invalidation: a {@link #put} that
+ * races with an invalidation of one of its types detects the changed generation and discards its own entry.
+ * Keys are removed from the type index when the entries are evicted or invalidated, unless the key has been put
+ * again concurrently.
+ */
 @Component(QueryCache.NAME)
 public class StandardQueryCache implements QueryCache {
 
     protected Cache<QueryKey, QueryResult> data;
-    protected ConcurrentMap<String, CopyOnWriteArrayList<QueryKey>> typeIndex = new ConcurrentHashMap<>();
-    protected ReadWriteLock lock = new ReentrantReadWriteLock();
+    protected ConcurrentMap<String, Set<QueryKey>> typeIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<String, AtomicLong> typeGenerations = new ConcurrentHashMap<>();
+    protected AtomicLong globalGeneration = new AtomicLong();
 
     @Inject
     protected QueryCacheConfig queryCacheConfig;
@@ -48,7 +57,10 @@ public class StandardQueryCache implements QueryCache {
 
     @PostConstruct
     protected void init() {
-        data = CacheBuilder.newBuilder().maximumSize(queryCacheConfig.getQueryCacheMaxSize()).build();
+        data = CacheBuilder.newBuilder()
+                .maximumSize(queryCacheConfig.getQueryCacheMaxSize())
+                .removalListener(this::onRemoval)
+                .build();
     }
 
     @Override
@@ -58,21 +70,30 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public void put(QueryKey queryKey, QueryResult queryResult) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            data.put(queryKey, queryResult);
-
-            for (String type : queryResult.getRelatedTypes()) {
-                CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(type);
-                if (keys == null) {
-                    typeIndex.putIfAbsent(type, new CopyOnWriteArrayList<>());
-                    keys = typeIndex.get(type);
-                }
-                keys.add(queryKey);
+        Set<String> relatedTypes = queryResult.getRelatedTypes();
+
+        long globalGenerationBefore = globalGeneration.get();
+        long[] generationsBefore = new long[relatedTypes.size()];
+        int i = 0;
+        for (String type : relatedTypes) {
+            generationsBefore[i++] = getGeneration(type).get();
+        }
+
+        // the entry is indexed after it is put, see onRemoval()
+        data.put(queryKey, queryResult);
+        addToTypeIndex(queryKey, queryResult);
+
+        boolean invalidated = globalGeneration.get() != globalGenerationBefore;
+        i = 0;
+        for (String type : relatedTypes) {
+            if (invalidated || getGeneration(type).get() != generationsBefore[i++]) {
+                invalidated = true;
+                break;
             }
-        } finally {
-            readLock.unlock();
+        }
+        if (invalidated) {
+            log.debug("Query {} was invalidated concurrently with putting to cache", queryKey.printDescription());
+            data.invalidate(queryKey);
         }
     }
 
@@ -89,77 +110,43 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public void invalidate(QueryKey queryKey) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            log.debug("Invalidate query by key {}", queryKey.printDescription());
-            data.invalidate(queryKey);
-        } finally {
-            readLock.unlock();
-        }
+        log.debug("Invalidate query by key {}", queryKey.printDescription());
+        data.invalidate(queryKey);
     }
 
     @Override
     public void invalidate(String typeName) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-            if (keys == null) return;
-            log.debug("Invalidate cache for type {}", typeName);
-            Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-        } finally {
-            readLock.unlock();
-        }
+        getGeneration(typeName).incrementAndGet();
+        Set<QueryKey> keys = typeIndex.remove(typeName);
+        if (keys == null) return;
+        log.debug("Invalidate cache for type {}", typeName);
+        data.invalidateAll(keys);
     }
 
     @Override
     public void invalidate(Set<String> typeNames) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            typeNames.forEach(typeName -> {
-                        CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-                        if (keys == null) return;
-                        log.debug("Invalidate cache for type {}", typeName);
-                        Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-                    }
-            );
-        } finally {
-            readLock.unlock();
-        }
+        typeNames.forEach(this::invalidate);
     }
 
     @Override
     public QueryKey invalidate(UUID queryId) {
-        Lock readLock = lock.readLock();
-        readLock.lock();
-        try {
-            Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-            for (QueryKey key : keys) {
-                if (Objects.equals(queryId, key.getId())) {
-                    log.debug("Invalidate query by identifier {}", queryId);
-                    data.invalidate(key);
-                    return key;
-                }
+        Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
+        for (QueryKey key : keys) {
+            if (Objects.equals(queryId, key.getId())) {
+                log.debug("Invalidate query by identifier {}", queryId);
+                data.invalidate(key);
+                return key;
             }
-        } finally {
-            readLock.unlock();
         }
         return null;
     }
 
     @Override
     public void invalidateAll() {
-        Lock writeLock = lock.writeLock();
-        writeLock.lock();
-        try {
-            log.debug("Invalidate all cache");
-            data.invalidateAll();
-            typeIndex.clear();
-        } finally {
-            writeLock.unlock();
-        }
+        log.debug("Invalidate all cache");
+        globalGeneration.incrementAndGet();
+        data.invalidateAll();
+        typeIndex.clear();
     }
 
     @Override
@@ -176,4 +163,38 @@ public class StandardQueryCache implements QueryCache {
     public Map<QueryKey, QueryResult> asMap() {
         return Maps.newHashMap(data.asMap());
     }
+
+    protected AtomicLong getGeneration(String typeName) {
+        return typeGenerations.computeIfAbsent(typeName, t -> new AtomicLong());
+    }
+
+    protected void onRemoval(RemovalNotification<QueryKey, QueryResult> notification) {
+        // a replaced entry is indexed by the same key, the index has already been updated by put()
+        if (notification.getCause() == RemovalCause.REPLACED) {
+            return;
+        }
+        QueryKey queryKey = notification.getKey();
+        QueryResult queryResult = notification.getValue();
+        if (queryKey == null || queryResult == null) {
+            return;
+        }
+        for (String type : queryResult.getRelatedTypes()) {
+            Set<QueryKey> keys = typeIndex.get(type);
+            if (keys != null) {
+                keys.remove(queryKey);
+            }
+        }
+        // the key could have been put again before its old value was removed from the index, restore the index
+        // of the current value. If the put happens after this check, it indexes the key itself.
+        QueryResult currentResult = data.getIfPresent(queryKey);
+        if (currentResult != null) {
+            addToTypeIndex(queryKey, currentResult);
+        }
+    }
+
+    protected void addToTypeIndex(QueryKey queryKey, QueryResult queryResult) {
+        for (String type : queryResult.getRelatedTypes()) {
+            typeIndex.computeIfAbsent(type, t -> ConcurrentHashMap.newKeySet()).add(queryKey);
+        }
+    }
 }
@@ -80,4 +80,13 @@ public interface DbmsFeatures {
      * @return true if the DBMS supports equals conditions in the filter and sort for LOB columns
      */
     boolean supportsLobSortingAndFiltering();
+
+    /**
+     * @return SQL type name of array elements which allows passing values of the given class as a single array
+     * parameter to the {@code unnest()} function, or null if the DBMS does not support it
+     */
+    @Nullable
+    default String getUnnestArrayElementType(Class<?> javaClass) {
+        return null;
+    }
 }
@@ -20,6 +20,7 @@ package com.haulmont.cuba.core.sys.persistence;
 import javax.annotation.Nullable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @SuppressWarnings("UnusedDeclaration")
 public class PostgresDbmsFeatures implements DbmsFeatures {
@@ -77,4 +78,18 @@ public class PostgresDbmsFeatures implements DbmsFeatures {
     public boolean supportsLobSortingAndFiltering() {
         return true;
     }
-}
\ No newline at end of file
+
+    @Nullable
+    @Override
+    public String getUnnestArrayElementType(Class<?> javaClass) {
+        if (UUID.class.equals(javaClass))
+            return "uuid";
+        if (Long.class.equals(javaClass))
+            return "int8";
+        if (Integer.class.equals(javaClass))
+            return "int4";
+        if (String.class.equals(javaClass))
+            return "varchar";
+        return null;
+    }
+}
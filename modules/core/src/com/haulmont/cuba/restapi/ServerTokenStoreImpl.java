@@ -48,11 +48,7 @@ import javax.inject.Inject;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.Delayed;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.stream.Collectors;
 
 @Component(ServerTokenStore.NAME)
@@ -84,22 +80,22 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
 
     private static final Logger log = LoggerFactory.getLogger(ServerTokenStoreImpl.class);
 
-    protected ReadWriteLock lock = new ReentrantReadWriteLock();
+    // token records by token values
+    protected Map<String, AccessTokenRecord> accessTokens = new ConcurrentHashMap<>();
+    protected Map<String, RefreshTokenRecord> refreshTokens = new ConcurrentHashMap<>();
 
-    private ConcurrentHashMap<String, byte[]> accessTokenValueToAccessTokenStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, byte[]> accessTokenValueToAuthenticationStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, byte[]> authenticationToAccessTokenStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, RestUserSessionInfo> accessTokenValueToSessionInfoStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> accessTokenValueToAuthenticationKeyStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> accessTokenValueToUserLoginStore = new ConcurrentHashMap<>();
+    // indexes of access token values
+    protected Map<String, String> accessTokenValueByAuthenticationKey = new ConcurrentHashMap<>();
+    protected Map<String, String> accessTokenValueByRefreshTokenValue = new ConcurrentHashMap<>();
 
-    private ConcurrentHashMap<String, byte[]> refreshTokenValueToRefreshTokenStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, byte[]> refreshTokenValueToAuthenticationStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> refreshTokenValueToAccessTokenValueStore = new ConcurrentHashMap<>();
-    private ConcurrentHashMap<String, String> refreshTokenValueToUserLoginStore = new ConcurrentHashMap<>();
+    // sessions of this node, may be created before the token is restored from the database
+    protected Map<String, RestUserSessionInfo> sessionInfos = new ConcurrentHashMap<>();
 
-    private final DelayQueue<TokenExpiry> accessTokensExpiryQueue = new DelayQueue<>();
-    private final DelayQueue<TokenExpiry> refreshTokensExpiryQueue = new DelayQueue<>();
+    // token values ordered by expiration time
+    protected NavigableSet<TokenExpiry> accessTokensExpiryIndex = new ConcurrentSkipListSet<>();
+    protected NavigableSet<TokenExpiry> refreshTokensExpiryIndex = new ConcurrentSkipListSet<>();
+
+    protected static final int STATE_VERSION = 1;
 
     @PostConstruct
     public void init() {
@@ -121,68 +117,18 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
 
             @Override
             public byte[] getState() {
-                if (accessTokenValueToAccessTokenStore.isEmpty() &&
-                        accessTokenValueToAuthenticationStore.isEmpty() &&
-                        authenticationToAccessTokenStore.isEmpty() &&
-                        accessTokenValueToSessionInfoStore.isEmpty() &&
-                        accessTokenValueToAuthenticationKeyStore.isEmpty() &&
-                        accessTokenValueToUserLoginStore.isEmpty() &&
-                        refreshTokenValueToRefreshTokenStore.isEmpty() &&
-                        refreshTokenValueToAuthenticationStore.isEmpty() &&
-                        refreshTokenValueToAccessTokenValueStore.isEmpty() &&
-                        refreshTokenValueToUserLoginStore.isEmpty()) {
-                    return new byte[0];
-                }
-
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-                lock.readLock().lock();
-                try {
-                    ObjectOutputStream oos = new ObjectOutputStream(bos);
-                    oos.writeObject(accessTokenValueToAccessTokenStore);
-                    oos.writeObject(accessTokenValueToAuthenticationStore);
-                    oos.writeObject(authenticationToAccessTokenStore);
-                    oos.writeObject(accessTokenValueToSessionInfoStore);
-                    oos.writeObject(accessTokenValueToAuthenticationKeyStore);
-                    oos.writeObject(accessTokenValueToUserLoginStore);
-                    oos.writeObject(refreshTokenValueToRefreshTokenStore);
-                    oos.writeObject(refreshTokenValueToAuthenticationStore);
-                    oos.writeObject(refreshTokenValueToAccessTokenValueStore);
-                    oos.writeObject(refreshTokenValueToUserLoginStore);
-                } catch (IOException e) {
-                    throw new RuntimeException("Unable to serialize ServerTokenStore fields for cluster state", e);
-                } finally {
-                    lock.readLock().unlock();
-                }
-
-                return bos.toByteArray();
+                return getClusterState();
             }
 
-            @SuppressWarnings("unchecked")
             @Override
             public void setState(byte[] state) {
                 if (state == null || state.length == 0) {
                     return;
                 }
-
-                ByteArrayInputStream bis = new ByteArrayInputStream(state);
-                lock.writeLock().lock();
                 try {
-                    ObjectInputStream ois = new ObjectInputStream(bis);
-                    accessTokenValueToAccessTokenStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    accessTokenValueToAuthenticationStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    authenticationToAccessTokenStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    accessTokenValueToSessionInfoStore = (ConcurrentHashMap<String, RestUserSessionInfo>) ois.readObject();
-                    accessTokenValueToAuthenticationKeyStore = (ConcurrentHashMap<String, String>) ois.readObject();
-                    accessTokenValueToUserLoginStore = (ConcurrentHashMap<String, String>) ois.readObject();
-                    refreshTokenValueToRefreshTokenStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    refreshTokenValueToAuthenticationStore = (ConcurrentHashMap<String, byte[]>) ois.readObject();
-                    refreshTokenValueToAccessTokenValueStore = (ConcurrentHashMap<String, String>) ois.readObject();
-                    refreshTokenValueToUserLoginStore = (ConcurrentHashMap<String, String>) ois.readObject();
-                } catch (IOException | ClassNotFoundException e) {
+                    applyClusterState(state);
+                } catch (IOException e) {
                     log.error("Error receiving state", e);
-                } finally {
-                    lock.writeLock().unlock();
                 }
             }
         });
@@ -215,11 +161,146 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
         clusterManagerAPI.addListener(TokenStoreRemoveRefreshTokenMsg.class, new ClusterListenerAdapter<TokenStoreRemoveRefreshTokenMsg>() {
             @Override
             public void receive(TokenStoreRemoveRefreshTokenMsg message) {
-                removeAccessTokenFromMemory(message.getTokenValue());
+                removeRefreshTokenFromMemory(message.getTokenValue());
             }
         });
     }
 
+    /**
+     * Returns the state for a joining node. If tokens are stored in the database, the joining node loads them on
+     * demand, so no state is transferred. Otherwise all tokens are written in a compact binary form; later changes
+     * are replicated by cluster messages.
+     */
+    protected byte[] getClusterState() {
+        if (serverConfig.getRestStoreTokensInDb()
+                || (accessTokens.isEmpty() && refreshTokens.isEmpty() && sessionInfos.isEmpty())) {
+            return new byte[0];
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(STATE_VERSION);
+
+            List<Map.Entry<String, AccessTokenRecord>> accessTokenEntries = new ArrayList<>(accessTokens.entrySet());
+            out.writeInt(accessTokenEntries.size());
+            for (Map.Entry<String, AccessTokenRecord> entry : accessTokenEntries) {
+                AccessTokenRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeNullableString(out, record.authenticationKey);
+                writeNullableString(out, record.userLogin);
+                writeNullableString(out, record.refreshTokenValue);
+                out.writeLong(record.expiry);
+                writeNullableBytes(out, record.data.getTokenBytes());
+                writeNullableBytes(out, record.data.getAuthenticationBytes());
+            }
+
+            List<Map.Entry<String, RefreshTokenRecord>> refreshTokenEntries = new ArrayList<>(refreshTokens.entrySet());
+            out.writeInt(refreshTokenEntries.size());
+            for (Map.Entry<String, RefreshTokenRecord> entry : refreshTokenEntries) {
+                RefreshTokenRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeNullableString(out, record.userLogin);
+                out.writeLong(record.expiry);
+                writeNullableBytes(out, record.data.getTokenBytes());
+                writeNullableBytes(out, record.data.getAuthenticationBytes());
+            }
+
+            List<Map.Entry<String, RestUserSessionInfo>> sessionInfoEntries = new ArrayList<>(sessionInfos.entrySet());
+            out.writeInt(sessionInfoEntries.size());
+            for (Map.Entry<String, RestUserSessionInfo> entry : sessionInfoEntries) {
+                RestUserSessionInfo sessionInfo = entry.getValue();
+                out.writeUTF(entry.getKey());
+                writeNullableString(out, sessionInfo.getId() != null ? sessionInfo.getId().toString() : null);
+                writeNullableString(out, sessionInfo.getLocale() != null ? sessionInfo.getLocale().toLanguageTag() : null);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to serialize ServerTokenStore fields for cluster state", e);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Adds tokens from the state of another node. Tokens already received by cluster messages are newer, so they
+     * are not replaced.
+     */
+    protected void applyClusterState(byte[] state) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(state))) {
+            int version = in.readInt();
+            if (version != STATE_VERSION) {
+                log.warn("Unsupported token store state version {}", version);
+                return;
+            }
+
+            int accessTokensCount = in.readInt();
+            for (int i = 0; i < accessTokensCount; i++) {
+                String tokenValue = in.readUTF();
+                String authenticationKey = readNullableString(in);
+                String userLogin = readNullableString(in);
+                String refreshTokenValue = readNullableString(in);
+                long expiry = in.readLong();
+                byte[] tokenBytes = readNullableBytes(in);
+                byte[] authenticationBytes = readNullableBytes(in);
+                if (!accessTokens.containsKey(tokenValue)) {
+                    storeAccessTokenToMemory(tokenValue, tokenBytes, authenticationKey, authenticationBytes,
+                            expiry != 0 ? new Date(expiry) : null, userLogin, refreshTokenValue);
+                }
+            }
+
+            int refreshTokensCount = in.readInt();
+            for (int i = 0; i < refreshTokensCount; i++) {
+                String tokenValue = in.readUTF();
+                String userLogin = readNullableString(in);
+                long expiry = in.readLong();
+                byte[] tokenBytes = readNullableBytes(in);
+                byte[] authenticationBytes = readNullableBytes(in);
+                if (!refreshTokens.containsKey(tokenValue)) {
+                    storeRefreshTokenToMemory(tokenValue, tokenBytes, authenticationBytes,
+                            expiry != 0 ? new Date(expiry) : null, userLogin);
+                }
+            }
+
+            int sessionInfosCount = in.readInt();
+            for (int i = 0; i < sessionInfosCount; i++) {
+                String tokenValue = in.readUTF();
+                String id = readNullableString(in);
+                String locale = readNullableString(in);
+                sessionInfos.putIfAbsent(tokenValue, new RestUserSessionInfo(
+                        id != null ? UUID.fromString(id) : null,
+                        locale != null ? Locale.forLanguageTag(locale) : null));
+            }
+        }
+    }
+
+    protected void writeNullableString(DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    protected String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    protected void writeNullableBytes(DataOutputStream out, @Nullable byte[] value) throws IOException {
+        out.writeInt(value != null ? value.length : -1);
+        if (value != null) {
+            out.write(value);
+        }
+    }
+
+    @Nullable
+    protected byte[] readNullableBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
     @Override
     public byte[] getAccessTokenByAuthentication(String authenticationKey) {
         byte[] accessTokenBytes;
@@ -235,7 +316,8 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected byte[] getAccessTokenByAuthenticationFromMemory(String authenticationKey) {
-        return authenticationToAccessTokenStore.get(authenticationKey);
+        String tokenValue = accessTokenValueByAuthenticationKey.get(authenticationKey);
+        return tokenValue != null ? getAccessTokenByTokenValueFromMemory(tokenValue) : null;
     }
 
     @Override
@@ -248,8 +330,8 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected Set<String> getAccessTokenValuesByUserLoginFromMemory(String userLogin) {
-        return accessTokenValueToUserLoginStore.entrySet().stream()
-                .filter(entry -> userLogin.equals(entry.getValue()))
+        return accessTokens.entrySet().stream()
+                .filter(entry -> userLogin.equals(entry.getValue().userLogin))
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toSet());
     }
@@ -275,8 +357,8 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected Set<String> getRefreshTokenValuesByUserLoginFromMemory(String userLogin) {
-        return refreshTokenValueToUserLoginStore.entrySet().stream()
-                .filter(entry -> userLogin.equals(entry.getValue()))
+        return refreshTokens.entrySet().stream()
+                .filter(entry -> userLogin.equals(entry.getValue().userLogin))
                 .map(Map.Entry::getKey)
                 .collect(Collectors.toSet());
     }
@@ -322,24 +404,41 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
                                             Date tokenExpiry,
                                             String userLogin,
                                             @Nullable String refreshTokenValue) {
-        lock.writeLock().lock();
-        try {
-            accessTokenValueToAccessTokenStore.put(accessTokenValue, accessTokenBytes);
-            authenticationToAccessTokenStore.put(authenticationKey, accessTokenBytes);
-            accessTokenValueToAuthenticationStore.put(accessTokenValue, authenticationBytes);
-            accessTokenValueToAuthenticationKeyStore.put(accessTokenValue, authenticationKey);
-            accessTokenValueToUserLoginStore.put(accessTokenValue, userLogin);
-            if (!Strings.isNullOrEmpty(refreshTokenValue)) {
-                refreshTokenValueToAccessTokenValueStore.put(refreshTokenValue, accessTokenValue);
-            }
-        } finally {
-            lock.writeLock().unlock();
+        AccessTokenRecord record = new AccessTokenRecord(createTokenData(accessTokenBytes, authenticationBytes),
+                authenticationKey, userLogin, Strings.emptyToNull(refreshTokenValue), tokenExpiry);
+        AccessTokenRecord previous = accessTokens.put(accessTokenValue, record);
+        if (previous != null) {
+            removeAccessTokenIndexes(accessTokenValue, previous);
         }
+        addAccessTokenIndexes(accessTokenValue, record);
+    }
+
+    protected void addAccessTokenIndexes(String tokenValue, AccessTokenRecord record) {
+        if (record.authenticationKey != null) {
+            accessTokenValueByAuthenticationKey.put(record.authenticationKey, tokenValue);
+        }
+        if (record.refreshTokenValue != null) {
+            accessTokenValueByRefreshTokenValue.put(record.refreshTokenValue, tokenValue);
+        }
+        if (record.expiry != 0) {
+            accessTokensExpiryIndex.add(new TokenExpiry(tokenValue, record.expiry));
+        }
+    }
 
-        if (tokenExpiry != null) {
-            TokenExpiry expiry = new TokenExpiry(accessTokenValue, tokenExpiry);
-            this.accessTokensExpiryQueue.put(expiry);
+    protected void removeAccessTokenIndexes(String tokenValue, AccessTokenRecord record) {
+        if (record.authenticationKey != null) {
+            accessTokenValueByAuthenticationKey.remove(record.authenticationKey, tokenValue);
         }
+        if (record.refreshTokenValue != null) {
+            accessTokenValueByRefreshTokenValue.remove(record.refreshTokenValue, tokenValue);
+        }
+        if (record.expiry != 0) {
+            accessTokensExpiryIndex.remove(new TokenExpiry(tokenValue, record.expiry));
+        }
+    }
+
+    protected TokenData createTokenData(@Nullable byte[] tokenBytes, @Nullable byte[] authenticationBytes) {
+        return new TokenData(tokenBytes, authenticationBytes);
     }
 
     protected void storeAccessTokenToDatabase(String tokenValue,
@@ -382,6 +481,8 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
                 tx.commit();
             }
         }
+        clusterManagerAPI.send(new TokenStoreAddRefreshTokenMsg(refreshTokenValue, refreshTokenBytes,
+                authenticationBytes, tokenExpiry, userLogin, null));
     }
 
     protected void storeRefreshTokenToMemory(String refreshTokenValue,
@@ -389,13 +490,14 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
                                              byte[] authenticationBytes,
                                              Date tokenExpiry,
                                              String userLogin) {
-        refreshTokenValueToRefreshTokenStore.put(refreshTokenValue, refreshTokenBytes);
-        refreshTokenValueToAuthenticationStore.put(refreshTokenValue, authenticationBytes);
-        refreshTokenValueToUserLoginStore.put(refreshTokenValue, userLogin);
-
-        if (tokenExpiry != null) {
-            TokenExpiry expiry = new TokenExpiry(refreshTokenValue, tokenExpiry);
-            this.refreshTokensExpiryQueue.put(expiry);
+        RefreshTokenRecord record = new RefreshTokenRecord(createTokenData(refreshTokenBytes, authenticationBytes),
+                userLogin, tokenExpiry);
+        RefreshTokenRecord previous = refreshTokens.put(refreshTokenValue, record);
+        if (previous != null && previous.expiry != 0) {
+            refreshTokensExpiryIndex.remove(new TokenExpiry(refreshTokenValue, previous.expiry));
+        }
+        if (record.expiry != 0) {
+            refreshTokensExpiryIndex.add(new TokenExpiry(refreshTokenValue, record.expiry));
         }
     }
 
@@ -433,7 +535,8 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected byte[] getAccessTokenByTokenValueFromMemory(String tokenValue) {
-        return accessTokenValueToAccessTokenStore.get(tokenValue);
+        AccessTokenRecord record = accessTokens.get(tokenValue);
+        return record != null ? record.data.getTokenBytes() : null;
     }
 
     @Override
@@ -451,7 +554,8 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected byte[] getAuthenticationByTokenValueFromMemory(String tokenValue) {
-        return accessTokenValueToAuthenticationStore.get(tokenValue);
+        AccessTokenRecord record = accessTokens.get(tokenValue);
+        return record != null ? record.data.getAuthenticationBytes() : null;
     }
 
     @Nullable
@@ -513,33 +617,29 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
      * Method fills in-memory maps from the {@link AccessToken} object got from the database
      */
     protected void restoreAccessTokenIntoMemory(AccessToken accessToken) {
-        lock.writeLock().lock();
-        try {
-            accessTokenValueToAccessTokenStore.put(accessToken.getTokenValue(), accessToken.getTokenBytes());
-            authenticationToAccessTokenStore.put(accessToken.getAuthenticationKey(), accessToken.getTokenBytes());
-            accessTokenValueToAuthenticationStore.put(accessToken.getTokenValue(), accessToken.getAuthenticationBytes());
-            accessTokenValueToAuthenticationKeyStore.put(accessToken.getTokenValue(), accessToken.getAuthenticationKey());
-        } finally {
-            lock.writeLock().unlock();
-        }
+        storeAccessTokenToMemory(accessToken.getTokenValue(),
+                accessToken.getTokenBytes(),
+                accessToken.getAuthenticationKey(),
+                accessToken.getAuthenticationBytes(),
+                accessToken.getExpiry(),
+                accessToken.getUserLogin(),
+                accessToken.getRefreshTokenValue());
     }
 
     /**
      * Method fills in-memory maps from the {@link RefreshToken} object got from the database
      */
     protected void restoreRefreshTokenIntoMemory(RefreshToken refreshToken) {
-        lock.writeLock().lock();
-        try {
-            refreshTokenValueToRefreshTokenStore.put(refreshToken.getTokenValue(), refreshToken.getTokenBytes());
-            refreshTokenValueToAuthenticationStore.put(refreshToken.getTokenValue(), refreshToken.getAuthenticationBytes());
-        } finally {
-            lock.writeLock().unlock();
-        }
+        storeRefreshTokenToMemory(refreshToken.getTokenValue(),
+                refreshToken.getTokenBytes(),
+                refreshToken.getAuthenticationBytes(),
+                refreshToken.getExpiry(),
+                refreshToken.getUserLogin());
     }
 
     @Override
     public RestUserSessionInfo getSessionInfoByTokenValue(String tokenValue) {
-        RestUserSessionInfo sessionInfo = accessTokenValueToSessionInfoStore.get(tokenValue);
+        RestUserSessionInfo sessionInfo = sessionInfos.get(tokenValue);
         if (sessionInfo == null && serverConfig.getRestStoreTokensInDb()) {
             AccessToken accessToken = getAccessTokenByTokenValueFromDatabase(tokenValue);
             if (accessToken != null) {
@@ -562,12 +662,7 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected RestUserSessionInfo _putSessionInfo(String tokenValue, RestUserSessionInfo sessionInfo) {
-        lock.writeLock().lock();
-        try {
-            return accessTokenValueToSessionInfoStore.put(tokenValue, sessionInfo);
-        } finally {
-            lock.writeLock().unlock();
-        }
+        return sessionInfos.put(tokenValue, sessionInfo);
     }
 
     @Override
@@ -580,20 +675,11 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected void removeAccessTokenFromMemory(String tokenValue) {
-        RestUserSessionInfo sessionInfo;
-        lock.writeLock().lock();
-        try {
-            accessTokenValueToAccessTokenStore.remove(tokenValue);
-            accessTokenValueToAuthenticationStore.remove(tokenValue);
-            accessTokenValueToUserLoginStore.remove(tokenValue);
-            String authenticationKey = accessTokenValueToAuthenticationKeyStore.remove(tokenValue);
-            if (authenticationKey != null) {
-                authenticationToAccessTokenStore.remove(authenticationKey);
-            }
-            sessionInfo = accessTokenValueToSessionInfoStore.remove(tokenValue);
-        } finally {
-            lock.writeLock().unlock();
+        AccessTokenRecord record = accessTokens.remove(tokenValue);
+        if (record != null) {
+            removeAccessTokenIndexes(tokenValue, record);
         }
+        RestUserSessionInfo sessionInfo = sessionInfos.remove(tokenValue);
         if (sessionInfo != null) {
             try {
                 UserSession session = userSessions.get(sessionInfo.getId());
@@ -629,17 +715,15 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
         if (serverConfig.getRestStoreTokensInDb()) {
             removeRefreshTokenFromDatabase(refreshTokenValue);
         }
+        clusterManagerAPI.send(new TokenStoreRemoveRefreshTokenMsg(refreshTokenValue));
     }
 
     protected void removeRefreshTokenFromMemory(String refreshTokenValue) {
-        lock.writeLock().lock();
-        try {
-            refreshTokenValueToRefreshTokenStore.remove(refreshTokenValue);
-            refreshTokenValueToAuthenticationStore.remove(refreshTokenValue);
-            refreshTokenValueToAccessTokenValueStore.remove(refreshTokenValue);
-        } finally {
-            lock.writeLock().unlock();
+        RefreshTokenRecord record = refreshTokens.remove(refreshTokenValue);
+        if (record != null && record.expiry != 0) {
+            refreshTokensExpiryIndex.remove(new TokenExpiry(refreshTokenValue, record.expiry));
         }
+        accessTokenValueByRefreshTokenValue.remove(refreshTokenValue);
     }
 
     protected void removeRefreshTokenFromDatabase(String refreshTokenValue) {
@@ -663,12 +747,14 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected byte[] getRefreshTokenByTokenValueFromMemory(String tokenValue) {
-        return refreshTokenValueToRefreshTokenStore.get(tokenValue);
+        RefreshTokenRecord record = refreshTokens.get(tokenValue);
+        return record != null ? record.data.getTokenBytes() : null;
     }
 
     @Override
     public byte[] getAuthenticationByRefreshTokenValue(String tokenValue) {
-        return refreshTokenValueToAuthenticationStore.get(tokenValue);
+        RefreshTokenRecord record = refreshTokens.get(tokenValue);
+        return record != null ? record.data.getAuthenticationBytes() : null;
     }
 
     @Override
@@ -679,7 +765,7 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected String getAccessTokenValueByRefreshTokenValue(String refreshTokenValue) {
-        String accessTokenValue = refreshTokenValueToAccessTokenValueStore.get(refreshTokenValue);
+        String accessTokenValue = accessTokenValueByRefreshTokenValue.get(refreshTokenValue);
         if (accessTokenValue == null && serverConfig.getRestStoreTokensInDb()) {
             accessTokenValue = getAccessTokenValueByRefreshTokenValueFromDatabase(refreshTokenValue);
         }
@@ -700,19 +786,32 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
     }
 
     protected void deleteExpiredAccessTokensInMemory() {
-        TokenExpiry expiry = accessTokensExpiryQueue.poll();
-        while (expiry != null) {
-            removeAccessToken(expiry.getValue());
-            expiry = accessTokensExpiryQueue.poll();
+        for (String tokenValue : pollExpired(accessTokensExpiryIndex)) {
+            removeAccessToken(tokenValue);
         }
     }
 
     protected void deleteExpiredRefreshTokensInMemory() {
-        TokenExpiry expiry = refreshTokensExpiryQueue.poll();
-        while (expiry != null) {
-            removeRefreshToken(expiry.getValue());
-            expiry = refreshTokensExpiryQueue.poll();
+        for (String tokenValue : pollExpired(refreshTokensExpiryIndex)) {
+            removeRefreshToken(tokenValue);
+        }
+    }
+
+    /**
+     * Removes expired entries from the head of the time-ordered index and returns their token values.
+     */
+    protected List<String> pollExpired(NavigableSet<TokenExpiry> expiryIndex) {
+        long now = timeSource.currentTimeMillis();
+        List<String> expired = new ArrayList<>();
+        for (Iterator<TokenExpiry> iterator = expiryIndex.iterator(); iterator.hasNext(); ) {
+            TokenExpiry expiry = iterator.next();
+            if (expiry.getExpiry() > now) {
+                break;
+            }
+            iterator.remove();
+            expired.add(expiry.getValue());
         }
+        return expired;
     }
 
     protected void deleteExpiredAccessTokensInDatabase() {
@@ -733,33 +832,116 @@ public class ServerTokenStoreImpl implements ServerTokenStore {
         }
     }
 
-    protected static class TokenExpiry implements Delayed {
+    protected static class TokenExpiry implements Comparable<TokenExpiry> {
 
         private final long expiry;
 
         private final String value;
 
-        public TokenExpiry(String value, Date date) {
+        public TokenExpiry(String value, long expiry) {
             this.value = value;
-            this.expiry = date.getTime();
+            this.expiry = expiry;
         }
 
         @Override
-        public int compareTo(Delayed other) {
-            if (this == other) {
-                return 0;
-            }
-            long diff = getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
-            return (diff == 0 ? 0 : ((diff < 0) ? -1 : 1));
+        public int compareTo(TokenExpiry other) {
+            int result = Long.compare(expiry, other.expiry);
+            return result != 0 ? result : value.compareTo(other.value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            TokenExpiry that = (TokenExpiry) o;
+            return expiry == that.expiry && value.equals(that.value);
         }
 
         @Override
-        public long getDelay(TimeUnit unit) {
-            return expiry - System.currentTimeMillis();
+        public int hashCode() {
+            return 31 * value.hashCode() + Long.hashCode(expiry);
+        }
+
+        public long getExpiry() {
+            return expiry;
         }
 
         public String getValue() {
             return value;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Serialized token and authentication kept in one array.
+     */
+    protected static class TokenData {
+
+        private final byte[] data;
+
+        private final int tokenLength;
+
+        private final int authenticationLength;
+
+        public TokenData(@Nullable byte[] tokenBytes, @Nullable byte[] authenticationBytes) {
+            this.tokenLength = tokenBytes != null ? tokenBytes.length : -1;
+            this.authenticationLength = authenticationBytes != null ? authenticationBytes.length : -1;
+
+            data = new byte[Math.max(tokenLength, 0) + Math.max(authenticationLength, 0)];
+            if (tokenBytes != null) {
+                System.arraycopy(tokenBytes, 0, data, 0, tokenLength);
+            }
+            if (authenticationBytes != null) {
+                System.arraycopy(authenticationBytes, 0, data, Math.max(tokenLength, 0), authenticationLength);
+            }
+        }
+
+        @Nullable
+        public byte[] getTokenBytes() {
+            return tokenLength >= 0 ? Arrays.copyOfRange(data, 0, tokenLength) : null;
+        }
+
+        @Nullable
+        public byte[] getAuthenticationBytes() {
+            int offset = Math.max(tokenLength, 0);
+            return authenticationLength >= 0 ? Arrays.copyOfRange(data, offset, offset + authenticationLength) : null;
+        }
+    }
+
+    protected static class AccessTokenRecord {
+
+        protected final TokenData data;
+
+        protected final String authenticationKey;
+
+        protected final String userLogin;
+
+        protected final String refreshTokenValue;
+
+        protected final long expiry;
+
+        public AccessTokenRecord(TokenData data, @Nullable String authenticationKey, @Nullable String userLogin,
+                                 @Nullable String refreshTokenValue, @Nullable Date expiry) {
+            this.data = data;
+            this.authenticationKey = authenticationKey;
+            this.userLogin = userLogin;
+            this.refreshTokenValue = refreshTokenValue;
+            this.expiry = expiry != null ? expiry.getTime() : 0;
+        }
+    }
+
+    protected static class RefreshTokenRecord {
+
+        protected final TokenData data;
+
+        protected final String userLogin;
+
+        protected final long expiry;
+
+        public RefreshTokenRecord(TokenData data, @Nullable String userLogin, @Nullable Date expiry) {
+            this.data = data;
+            this.userLogin = userLogin;
+            this.expiry = expiry != null ? expiry.getTime() : 0;
+        }
+    }
+}
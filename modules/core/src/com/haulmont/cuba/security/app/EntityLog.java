@@ -78,6 +78,8 @@ public class EntityLog implements EntityLogAPI {
     protected DataManager dataManager;
     @Inject
     protected ServerConfig serverConfig;
+    @Inject
+    protected EntityLogWriter entityLogWriter;
 
     protected volatile boolean loaded;
     protected EntityLogConfig config;
@@ -195,6 +197,20 @@ public class EntityLog implements EntityLogAPI {
     }
 
     protected void saveItem(EntityLogItem item) {
+        if (config.getAsyncWrite()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    if (item.getDbGeneratedIdEntity() != null) {
+                        Number id = item.getDbGeneratedIdEntity().getId().getNN();
+                        item.setObjectEntityId(id);
+                    }
+                    entityLogWriter.enqueue(item);
+                }
+            });
+            return;
+        }
+
         String storeName = metadataTools.getStoreName(metadata.getClassNN(item.getEntity()));
         if (item.getDbGeneratedIdEntity() == null) {
             if (Stores.isMain(storeName)) {
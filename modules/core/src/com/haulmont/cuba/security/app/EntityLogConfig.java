@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
 /**
  * {@link com.haulmont.cuba.security.app.EntityLog} configuration parameters
@@ -35,4 +36,59 @@ public interface EntityLogConfig extends Config {
     @DefaultBoolean(true)
     boolean getEnabled();
     void setEnabled(boolean value);
-}
\ No newline at end of file
+
+    /**
+     * @return Whether EntityLog items are written asynchronously by {@link EntityLogWriter} after the business
+     * transaction is committed
+     */
+    @Property("cuba.entityLog.asyncWrite")
+    @DefaultBoolean(false)
+    boolean getAsyncWrite();
+
+    /**
+     * @return Maximum number of items waiting to be written asynchronously
+     */
+    @Property("cuba.entityLog.asyncQueueCapacity")
+    @Source(type = SourceType.APP)
+    @DefaultInt(10000)
+    int getAsyncQueueCapacity();
+
+    /**
+     * @return Interval in milliseconds between asynchronous writes of queued items
+     */
+    @Property("cuba.entityLog.asyncFlushIntervalMs")
+    @Source(type = SourceType.APP)
+    @DefaultInt(1000)
+    int getAsyncFlushIntervalMs();
+
+    /**
+     * @return Maximum number of items inserted in one JDBC batch
+     */
+    @Property("cuba.entityLog.asyncBatchSize")
+    @DefaultInt(500)
+    int getAsyncBatchSize();
+
+    /**
+     * @return Time in milliseconds a committing thread waits for free space in the full queue. If the queue is still
+     * full after this time, the item is written synchronously.
+     */
+    @Property("cuba.entityLog.asyncEnqueueTimeoutMs")
+    @DefaultInt(1000)
+    int getAsyncEnqueueTimeoutMs();
+
+    /**
+     * @return Whether items that could not be written to the database are saved to a spill file in the temp
+     * directory and written later
+     */
+    @Property("cuba.entityLog.asyncSpillEnabled")
+    @DefaultBoolean(true)
+    boolean getAsyncSpillEnabled();
+
+    /**
+     * @return Number of flushes that try to write items of a spill file before the file is renamed to
+     * {@code *.failed} and not processed anymore
+     */
+    @Property("cuba.entityLog.asyncSpillMaxAttempts")
+    @DefaultInt(5)
+    int getAsyncSpillMaxAttempts();
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.entity.ReferenceToEntity;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.sys.AuditInfoProvider;
+import com.haulmont.cuba.core.sys.events.AppContextStoppedEvent;
+import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import com.haulmont.cuba.security.entity.EntityLogItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.io.*;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes {@link EntityLogItem}s to the database in background if {@code cuba.entityLog.asyncWrite} is enabled.
+ * <p>
+ * Items of committed transactions are put to a bounded queue which is drained by a single thread every
+ * {@code cuba.entityLog.asyncFlushIntervalMs} milliseconds, or earlier when a full batch is accumulated. The items
+ * are inserted with JDBC batches. If the queue is full, the committing thread waits for a while and then writes
+ * its item synchronously. Batches that cannot be inserted are saved to spill files in the temp directory and
+ * inserted again on subsequent flushes. If a spill file still cannot be written, its items are inserted one by one
+ * skipping the already existing ones, and after {@code cuba.entityLog.asyncSpillMaxAttempts} failed flushes the file
+ * is renamed to {@code *.failed} and left for manual processing.
+ */
+@Component(EntityLogWriter.NAME)
+public class EntityLogWriter {
+
+    public static final String NAME = "cuba_EntityLogWriter";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityLogWriter.class);
+
+    protected static final String INSERT_SQL = "insert into SEC_ENTITY_LOG (ID, CREATE_TS, CREATED_BY, EVENT_TS, " +
+            "USER_ID, CHANGE_TYPE, ENTITY, ENTITY_ID, STRING_ENTITY_ID, INT_ENTITY_ID, LONG_ENTITY_ID, CHANGES) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    protected static final String SPILL_DIR = "entitylog-spill";
+    protected static final String SPILL_FAILED_SUFFIX = ".failed";
+
+    @Inject
+    protected Persistence persistence;
+    @Inject
+    protected TimeSource timeSource;
+    @Inject
+    protected AuditInfoProvider auditInfoProvider;
+    @Inject
+    protected GlobalConfig globalConfig;
+
+    protected EntityLogConfig config;
+
+    protected final BlockingQueue<EntityLogRecord> queue;
+
+    protected volatile ScheduledExecutorService executor;
+
+    protected final Object flushLock = new Object();
+
+    protected final AtomicLong writtenCount = new AtomicLong();
+    protected final AtomicLong synchronousCount = new AtomicLong();
+    protected final AtomicLong spilledCount = new AtomicLong();
+    protected final AtomicLong spillSequence = new AtomicLong();
+
+    // failed attempts to write spill files by file name, guarded by flushLock
+    protected final Map<String, Integer> spillAttempts = new HashMap<>();
+
+    @Inject
+    public EntityLogWriter(Configuration configuration) {
+        config = configuration.getConfig(EntityLogConfig.class);
+        queue = new ArrayBlockingQueue<>(config.getAsyncQueueCapacity());
+    }
+
+    /**
+     * Puts the item to the queue. Must be invoked after the transaction that created the item is committed.
+     */
+    public void enqueue(EntityLogItem item) {
+        EntityLogRecord record = createRecord(item);
+        boolean offered;
+        try {
+            offered = queue.offer(record, config.getAsyncEnqueueTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (offered) {
+            ScheduledExecutorService executor = getExecutor();
+            if (queue.size() >= config.getAsyncBatchSize()) {
+                executor.execute(this::flush);
+            }
+        } else {
+            log.warn("EntityLog queue is full, writing item synchronously");
+            try {
+                insert(Collections.singletonList(record));
+                synchronousCount.incrementAndGet();
+            } catch (SQLException e) {
+                log.error("Unable to write EntityLog item", e);
+                spill(Collections.singletonList(record));
+            }
+        }
+    }
+
+    /**
+     * Writes all queued items and items saved in spill files to the database.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            // the queue is drained even if spill files cannot be written, otherwise it fills up and committing
+            // threads have to write their items synchronously
+            if (!replaySpillFiles()) {
+                log.warn("EntityLog spill files are not written, the database is unavailable");
+            }
+
+            int batchSize = config.getAsyncBatchSize();
+            List<EntityLogRecord> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                try {
+                    insert(batch);
+                } catch (Exception e) {
+                    log.error("Unable to write EntityLog items", e);
+                    spill(batch);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    protected EntityLogRecord createRecord(EntityLogItem item) {
+        EntityLogRecord record = new EntityLogRecord();
+        record.id = item.getId();
+        record.createTs = timeSource.currentTimestamp();
+        record.createdBy = auditInfoProvider.getCurrentUserLogin();
+        record.eventTs = item.getEventTs();
+        record.userId = item.getUser() != null ? item.getUser().getId() : null;
+        record.changeType = item.getType() != null ? item.getType().getId() : null;
+        record.entity = item.getEntity();
+        ReferenceToEntity entityRef = item.getEntityRef();
+        record.entityId = entityRef.getEntityId();
+        record.stringEntityId = entityRef.getStringEntityId();
+        record.intEntityId = entityRef.getIntEntityId();
+        record.longEntityId = entityRef.getLongEntityId();
+        record.changes = item.getChanges();
+        record.enqueuedAt = System.currentTimeMillis();
+        return record;
+    }
+
+    protected void insert(List<EntityLogRecord> records) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        int uuidType = converter.getSqlType(UUID.class);
+        int[] paramTypes = new int[]{uuidType, Types.TIMESTAMP, Types.VARCHAR, Types.TIMESTAMP, uuidType,
+                Types.CHAR, Types.VARCHAR, uuidType, Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.VARCHAR};
+        Object[][] params = new Object[records.size()][];
+        for (int i = 0; i < records.size(); i++) {
+            EntityLogRecord record = records.get(i);
+            params[i] = new Object[]{
+                    converter.getSqlObject(record.id),
+                    convert(converter, record.createTs),
+                    record.createdBy,
+                    convert(converter, record.eventTs),
+                    convert(converter, record.userId),
+                    record.changeType,
+                    record.entity,
+                    convert(converter, record.entityId),
+                    record.stringEntityId,
+                    record.intEntityId,
+                    record.longEntityId,
+                    record.changes
+            };
+        }
+        QueryRunner runner = new QueryRunner(persistence.getDataSource());
+        runner.batch(INSERT_SQL, params, paramTypes);
+        writtenCount.addAndGet(records.size());
+    }
+
+    @Nullable
+    protected Object convert(DbTypeConverter converter, @Nullable Object value) {
+        return value == null ? null : converter.getSqlObject(value);
+    }
+
+    protected File getSpillDir() {
+        return new File(globalConfig.getTempDir(), SPILL_DIR);
+    }
+
+    protected void spill(List<EntityLogRecord> records) {
+        if (!config.getAsyncSpillEnabled()) {
+            log.error("Spill files are disabled, {} EntityLog items are lost", records.size());
+            return;
+        }
+        File dir = getSpillDir();
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.error("Unable to create directory {}, {} EntityLog items are lost", dir, records.size());
+            return;
+        }
+        File file = new File(dir, String.format("entitylog-%d-%d.ser",
+                System.currentTimeMillis(), spillSequence.incrementAndGet()));
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(new ArrayList<>(records));
+            spilledCount.addAndGet(records.size());
+            log.info("{} EntityLog items are saved to {}", records.size(), file);
+        } catch (IOException e) {
+            log.error("Unable to save EntityLog items to " + file + ", " + records.size() + " items are lost", e);
+        }
+    }
+
+    /**
+     * @return false if the database is unavailable and writing of spill files has been interrupted
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean replaySpillFiles() {
+        File[] files = getSpillDir().listFiles((dir, name) -> name.endsWith(".ser"));
+        if (files == null || files.length == 0)
+            return true;
+
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        for (File file : files) {
+            List<EntityLogRecord> records;
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                records = (List<EntityLogRecord>) in.readObject();
+            } catch (IOException | ClassNotFoundException e) {
+                log.error("Unable to read EntityLog spill file " + file + ", skipping it", e);
+                quarantineSpillFile(file);
+                continue;
+            }
+
+            List<EntityLogRecord> failed;
+            try {
+                insert(records);
+                failed = Collections.emptyList();
+            } catch (SQLException e) {
+                log.warn("Unable to write EntityLog items from spill file {} in batch, writing them one by one: {}",
+                        file, e.toString());
+                try {
+                    failed = insertOneByOne(records);
+                } catch (SQLException dbException) {
+                    return false;
+                }
+            }
+
+            if (failed.isEmpty()) {
+                spillAttempts.remove(file.getName());
+                if (!file.delete()) {
+                    log.warn("Unable to delete EntityLog spill file {}", file);
+                }
+            } else {
+                int attempts = spillAttempts.merge(file.getName(), 1, Integer::sum);
+                if (attempts >= config.getAsyncSpillMaxAttempts()) {
+                    log.error("Unable to write {} EntityLog items from spill file {} after {} attempts",
+                            failed.size(), file, attempts);
+                    rewriteSpillFile(file, failed);
+                    quarantineSpillFile(file);
+                } else if (failed.size() < records.size()) {
+                    rewriteSpillFile(file, failed);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts records one by one skipping those already existing in the database, e.g. written by a batch that
+     * was partly committed.
+     *
+     * @return records that could not be inserted
+     * @throws SQLException if the database is unavailable
+     */
+    protected List<EntityLogRecord> insertOneByOne(List<EntityLogRecord> records) throws SQLException {
+        List<EntityLogRecord> failed = new ArrayList<>();
+        for (EntityLogRecord record : records) {
+            try {
+                insert(Collections.singletonList(record));
+            } catch (SQLException e) {
+                // throws if the database is unavailable
+                if (exists(record)) {
+                    log.debug("EntityLog item {} already exists, skipping it", record.id);
+                } else {
+                    log.warn("Unable to write EntityLog item {}: {}", record.id, e.toString());
+                    failed.add(record);
+                }
+            }
+        }
+        return failed;
+    }
+
+    protected boolean exists(EntityLogRecord record) throws SQLException {
+        QueryRunner runner = new QueryRunner(persistence.getDataSource());
+        Object id = persistence.getDbTypeConverter().getSqlObject(record.id);
+        Number count = runner.query("select count(*) from SEC_ENTITY_LOG where ID = ?", new Object[]{id},
+                rs -> rs.next() ? (Number) rs.getObject(1) : null);
+        return count != null && count.intValue() > 0;
+    }
+
+    protected void rewriteSpillFile(File file, List<EntityLogRecord> records) {
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeObject(new ArrayList<>(records));
+        } catch (IOException e) {
+            log.error("Unable to rewrite EntityLog spill file " + file, e);
+            return;
+        }
+        if (!file.delete() || !tmpFile.renameTo(file)) {
+            log.error("Unable to replace EntityLog spill file {} with {}", file, tmpFile);
+        }
+    }
+
+    protected void quarantineSpillFile(File file) {
+        spillAttempts.remove(file.getName());
+        File failedFile = new File(file.getParentFile(), file.getName() + SPILL_FAILED_SUFFIX);
+        if (file.renameTo(failedFile)) {
+            log.error("EntityLog spill file {} is renamed to {} and will not be processed anymore", file, failedFile);
+        } else {
+            log.error("Unable to rename EntityLog spill file {} to {}", file, failedFile);
+        }
+    }
+
+    protected ScheduledExecutorService getExecutor() {
+        ScheduledExecutorService result = executor;
+        if (result == null) {
+            synchronized (this) {
+                result = executor;
+                if (result == null) {
+                    result = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                            .setNameFormat("EntityLogWriter-%d")
+                            .setDaemon(true)
+                            .build());
+                    int interval = config.getAsyncFlushIntervalMs();
+                    result.scheduleWithFixedDelay(this::scheduledFlush, interval, interval, TimeUnit.MILLISECONDS);
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    protected void scheduledFlush() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            log.error("Error writing EntityLog items", e);
+        }
+    }
+
+    @EventListener(AppContextStoppedEvent.class)
+    protected void applicationStopped() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<EntityLogRecord> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            try {
+                insert(rest);
+            } catch (SQLException e) {
+                log.error("Unable to write EntityLog items on shutdown", e);
+                spill(rest);
+            }
+        }
+    }
+
+    /**
+     * @return number of items waiting in the queue
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * @return time in milliseconds the oldest queued item has been waiting for, 0 if the queue is empty
+     */
+    public long getLagMs() {
+        EntityLogRecord oldest = queue.peek();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.enqueuedAt;
+    }
+
+    /**
+     * @return total number of items written to the database
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return number of items written synchronously because the queue was full
+     */
+    public long getSynchronousCount() {
+        return synchronousCount.get();
+    }
+
+    /**
+     * @return number of items saved to spill files
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * @return number of spill files waiting to be written to the database
+     */
+    public int getSpillFileCount() {
+        File[] files = getSpillDir().listFiles((dir, name) -> name.endsWith(".ser"));
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * Column values of an EntityLog item captured when the item is queued.
+     */
+    protected static class EntityLogRecord implements Serializable {
+
+        private static final long serialVersionUID = -1766024384425734327L;
+
+        protected UUID id;
+        protected Date createTs;
+        protected String createdBy;
+        protected Date eventTs;
+        protected UUID userId;
+        protected String changeType;
+        protected String entity;
+        protected UUID entityId;
+        protected String stringEntityId;
+        protected Integer intEntityId;
+        protected Long longEntityId;
+        protected String changes;
+        protected long enqueuedAt;
+    }
+}
@@ -36,4 +36,39 @@ public interface EntityLogMBean {
      * The configuration will be recreated from the database on next lifecycle event.
      */
     void invalidateCache();
+
+    /**
+     * @return number of items waiting to be written asynchronously
+     */
+    int getAsyncQueueSize();
+
+    /**
+     * @return time in milliseconds the oldest queued item has been waiting for
+     */
+    long getAsyncLagMs();
+
+    /**
+     * @return number of items written asynchronously
+     */
+    long getAsyncWrittenCount();
+
+    /**
+     * @return number of items written synchronously because the queue was full
+     */
+    long getAsyncSynchronousCount();
+
+    /**
+     * @return number of items saved to spill files
+     */
+    long getAsyncSpilledCount();
+
+    /**
+     * @return number of spill files waiting to be written
+     */
+    int getAsyncSpillFileCount();
+
+    /**
+     * Writes all queued items to the database.
+     */
+    void flushAsyncQueue();
 }
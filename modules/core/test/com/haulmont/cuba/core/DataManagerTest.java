@@ -30,6 +30,8 @@ import org.junit.Test;
 
 import javax.persistence.TemporalType;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.*;
 
@@ -96,6 +98,79 @@ public class DataManagerTest {
         assertTrue(list.size() > 0);
     }
 
+    @Test
+    public void testLoadStream() {
+        for (int i = 0; i < 5; i++) {
+            Server server = new Server();
+            server.setName("server-" + i);
+            server.setRunning(true);
+            dataManager.commit(server);
+        }
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from " + PersistenceHelper.getEntityName(Server.class) + " s order by s.name")
+                .setFetchSize(2);
+
+        List<Server> list;
+        try (Stream<Server> stream = dataManager.loadStream(loadContext)) {
+            list = stream.collect(Collectors.toList());
+        }
+        assertEquals(5, list.size());
+        assertEquals("server-0", list.get(0).getName());
+        assertEquals("server-4", list.get(4).getName());
+        for (Server server : list) {
+            assertTrue(PersistenceHelper.isDetached(server));
+        }
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        for (int i = 0; i < 5; i++) {
+            Server server = new Server();
+            server.setName("server-" + i);
+            server.setRunning(true);
+            dataManager.commit(server);
+        }
+
+        Sort sort = Sort.by("name", "id");
+        List<Server> page = dataManager.load(Server.class)
+                .query("select s from sys$Server s")
+                .sort(sort)
+                .maxResults(2)
+                .list();
+        assertEquals(Arrays.asList("server-0", "server-1"), page.stream().map(Server::getName).collect(Collectors.toList()));
+
+        String token = KeysetToken.of(page.get(page.size() - 1), sort);
+        page = dataManager.load(Server.class)
+                .query("select s from sys$Server s")
+                .sort(sort)
+                .keysetToken(token)
+                .maxResults(2)
+                .list();
+        assertEquals(Arrays.asList("server-2", "server-3"), page.stream().map(Server::getName).collect(Collectors.toList()));
+
+        token = KeysetToken.of(page.get(page.size() - 1), sort);
+        page = dataManager.load(Server.class)
+                .query("select s from sys$Server s")
+                .sort(sort)
+                .keysetToken(token)
+                .maxResults(2)
+                .list();
+        assertEquals(Collections.singletonList("server-4"), page.stream().map(Server::getName).collect(Collectors.toList()));
+
+        try {
+            dataManager.load(Server.class)
+                    .query("select s from sys$Server s")
+                    .sort(sort)
+                    .keysetToken(token)
+                    .firstResult(1)
+                    .list();
+            fail("firstResult together with keyset token should be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
     @Test
     public void testLoadListById() {
         Server server = new Server();
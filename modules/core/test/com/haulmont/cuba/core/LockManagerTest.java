@@ -17,6 +17,7 @@
 
 package com.haulmont.cuba.core;
 
+import com.haulmont.cuba.core.app.ClusterListener;
 import com.haulmont.cuba.core.app.LockManagerAPI;
 import com.haulmont.cuba.core.entity.LockDescriptor;
 import com.haulmont.cuba.core.entity.Server;
@@ -73,5 +74,31 @@ public class LockManagerTest {
         lockInfo = lockManager.getLockInfo("sys$Server", entity.getId().toString());
         assertNull(lockInfo);
     }
-}
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testState() throws Exception {
+        Server entity1 = new Server();
+        Server entity2 = new Server();
+
+        assertNull(lockManager.lock(entity1));
+        assertNull(lockManager.lock(entity2));
+
+        ClusterListener<LockInfo> clusterListener = (ClusterListener<LockInfo>) lockManager;
+        byte[] state = clusterListener.getState();
+
+        lockManager.unlock(entity1);
+        lockManager.unlock(entity2);
+        assertNull(lockManager.getLockInfo("sys$Server", entity1.getId().toString()));
+
+        clusterListener.setState(state);
+
+        LockInfo lockInfo = lockManager.getLockInfo("sys$Server", entity1.getId().toString());
+        assertNotNull(lockInfo);
+        assertNotNull(lockInfo.getUser());
+        assertNotNull(lockManager.getLockInfo("sys$Server", entity2.getId().toString()));
+
+        lockManager.unlock(entity1);
+        lockManager.unlock(entity2);
+    }
+}
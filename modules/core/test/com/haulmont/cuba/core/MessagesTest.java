@@ -119,7 +119,7 @@ public class MessagesTest {
         String msg = messages.getMessage(MpTestNestedObj.class, "key0");
         assertEquals("Message0", msg);
 
-        assertEquals(4,
+        assertEquals(5,
                 Iterables.size(Iterables.filter(appender.getMessages(), new Predicate<String>() {
                     @Override
                     public boolean apply(@Nullable String input) {
@@ -127,7 +127,7 @@ public class MessagesTest {
                     }
                 }))
         );
-        assertEquals(4,
+        assertEquals(5,
                 Iterables.size(Iterables.filter(appender.getMessages(), new Predicate<String>() {
                     @Override
                     public boolean apply(@Nullable String input) {
@@ -154,7 +154,7 @@ public class MessagesTest {
 
         String msg = messages.getMessage(MpTestNestedObj.class, "key0", Locale.forLanguageTag("fr"));
         assertEquals("Message0 in French", msg);
-        assertEquals(6, getSearchMessagesCount());
+        assertEquals(14, getSearchMessagesCount());
 
         appender.getMessages().clear();
 
@@ -163,6 +163,20 @@ public class MessagesTest {
         assertEquals(0, getSearchMessagesCount());
     }
 
+    @Test
+    public void testLookupChainReused() {
+        Messages messages = prepareCachingTest();
+
+        String msg = messages.getMessage(MpTestNestedObj.class, "key0");
+        assertEquals("Message0", msg);
+
+        appender.getMessages().clear();
+
+        msg = messages.getMessage(MpTestNestedObj.class, "key1");
+        assertEquals("Message1", msg);
+        assertEquals(0, getSearchMessagesCount());
+    }
+
     private Messages prepareCachingTest() {
         Messages messages = AppBeans.get(Messages.class);
         messages.clearCache();
@@ -195,7 +209,7 @@ public class MessagesTest {
         String msg = messages.getMessage("com.haulmont.cuba.core.mp_test.nested com.haulmont.cuba.core.mp_test", "key0",
                 Locale.forLanguageTag("fr"));
         assertEquals("Message0 in French", msg);
-        assertEquals(16, getSearchMessagesCount());
+        assertEquals(18, getSearchMessagesCount());
 
         appender.getMessages().clear();
 
@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.entity.QueryResult;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.LoadContext;
 import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.entity.Group;
 import com.haulmont.cuba.security.entity.User;
 import com.haulmont.cuba.testsupport.TestContainer;
@@ -218,6 +219,29 @@ public class QueryResultTest {
         assertEquals(5, entities.size());
     }
 
+    @Test
+    public void testInlineQueryResults() throws SQLException {
+        AppContext.setProperty("cuba.queryResultsInlineMaxSize", "100");
+        try {
+            DataService dataService = AppBeans.get(DataService.class);
+            LoadContext context = new LoadContext(User.class).setView(View.LOCAL);
+            context.setQueryString("select u from sec$User u where u.email like :email").setParameter("email", "%aaa.com");
+
+            LoadContext.Query prevQuery = new LoadContext.Query("select u from sec$User u where u.name like :name")
+                    .setParameter("name", "A-%");
+            context.getPrevQueries().add(prevQuery);
+            context.setQueryKey(112);
+
+            List<Entity> entities = dataService.loadList(context);
+            assertEquals(10, entities.size());
+
+            List<Map<String, Object>> queryResults = getQueryResults();
+            assertEquals(0, queryResults.size());
+        } finally {
+            AppContext.setProperty("cuba.queryResultsInlineMaxSize", null);
+        }
+    }
+
     private List<Map<String, Object>> getQueryResults() throws SQLException {
         QueryRunner queryRunner = new QueryRunner(cont.persistence().getDataSource());
         return queryRunner.query("select * from SYS_QUERY_RESULT", new MapListHandler());
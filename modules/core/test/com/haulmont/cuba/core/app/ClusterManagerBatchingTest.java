@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.sys.serialization.StandardSerialization;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.jgroups.JChannel;
+import org.jgroups.Message;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClusterManagerBatchingTest {
+
+    @Mocked
+    protected ClusterConfig clusterConfig;
+
+    private ClusterManager clusterManager;
+
+    private List<Message> sentMessages = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        new Expectations() {
+            {
+                // batches are flushed by the test
+                clusterConfig.getMessageBatchingWindowMs(); result = 60_000; minTimes = 0;
+                clusterConfig.getMessageBatchingMaxSize(); result = 3; minTimes = 0;
+                clusterConfig.getClusterMessageSendingQueueCapacity(); result = 5; minTimes = 0;
+            }
+        };
+
+        clusterManager = new ClusterManager();
+        clusterManager.clusterConfig = clusterConfig;
+        clusterManager.serialization = new StandardSerialization();
+        clusterManager.batchScheduler = Executors.newSingleThreadScheduledExecutor();
+        clusterManager.channel = new JChannel(false) {
+            @Override
+            public void send(Message msg) {
+                sentMessages.add(msg);
+            }
+        };
+        clusterManager.addListener(TestMessage.class, new ClusterListenerAdapter<TestMessage>() {
+            @Override
+            public void receive(TestMessage message) {
+            }
+
+            @Override
+            public TestMessage merge(TestMessage previous, TestMessage next) {
+                return previous.key.equals(next.key) ? next : null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        clusterManager.batchScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testBatchContentsAndOrder() throws Exception {
+        clusterManager.send(new TestMessage("a", 1));
+        clusterManager.send(new TestMessage("b", 1));
+        // merged with the first message and takes its place
+        clusterManager.send(new TestMessage("a", 2));
+        // the batch reaches its maximum size and is sent
+        clusterManager.send(new TestMessage("c", 1));
+        clusterManager.send(new TestMessage("d", 1));
+        clusterManager.batchScheduler.submit(clusterManager::flushBatch).get();
+
+        List<List<String>> batches = getSentBatches();
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList("a2", "b1", "c1"), batches.get(0));
+        assertEquals(Collections.singletonList("d1"), batches.get(1));
+    }
+
+    @Test
+    public void testQueueCapacity() throws Exception {
+        // keep taken batches unsent
+        CountDownLatch latch = new CountDownLatch(1);
+        clusterManager.batchScheduler.execute(() -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        for (int i = 0; i < 6; i++) {
+            clusterManager.send(new TestMessage("m" + i, 1));
+        }
+        // the queue is full, but merged messages don't take more space
+        clusterManager.send(new TestMessage("m3", 2));
+
+        latch.countDown();
+        clusterManager.batchScheduler.submit(clusterManager::flushBatch).get();
+
+        List<List<String>> batches = getSentBatches();
+        assertEquals(2, batches.size());
+        assertEquals(Arrays.asList("m01", "m11", "m21"), batches.get(0));
+        assertEquals(Arrays.asList("m32", "m41"), batches.get(1));
+    }
+
+    private List<List<String>> getSentBatches() {
+        List<List<String>> batches = new ArrayList<>();
+        for (Message message : sentMessages) {
+            Object data = clusterManager.serialization.deserialize(message.getBuffer());
+            List<String> batch = new ArrayList<>();
+            if (data instanceof ClusterManager.MessageBatch) {
+                for (byte[] bytes : ((ClusterManager.MessageBatch) data).getMessages()) {
+                    batch.add(clusterManager.serialization.deserialize(bytes).toString());
+                }
+            } else {
+                batch.add(data.toString());
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    public static class TestMessage implements Serializable {
+        private static final long serialVersionUID = -2427813406718472127L;
+
+        private final String key;
+        private final int value;
+
+        public TestMessage(String key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return key + value;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.entity.SendingMessage;
+import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.testsupport.FakeSmtpServer;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EmailerBulkSendingTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private Emailer emailer;
+    private DataManager dataManager;
+    private EmailerConfig emailerConfig;
+    private FakeSmtpServer smtpServer;
+
+    @Before
+    public void setUp() throws Exception {
+        emailer = AppBeans.get(EmailerAPI.NAME);
+        dataManager = AppBeans.get(DataManager.class);
+
+        emailerConfig = AppBeans.get(Configuration.class).getConfig(EmailerConfig.class);
+        emailerConfig.setDelayCallCount(0);
+
+        // send pending emails which might be in the queue
+        emailer.processQueuedEmails();
+
+        smtpServer = new FakeSmtpServer();
+        emailerConfig.setSmtpHost(smtpServer.getHost());
+        emailerConfig.setSmtpPort(smtpServer.getPort());
+        emailerConfig.setBulkSendingEnabled(true);
+        emailerConfig.setBulkSendingBatchSize(3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        emailerConfig.setBulkSendingEnabled(false);
+        emailerConfig.setBulkSendingBatchSize(50);
+        emailerConfig.setSmtpHost("test.host");
+        emailerConfig.setSmtpPort(25);
+        smtpServer.close();
+    }
+
+    @Test
+    public void testMessagesShareConnection() throws Exception {
+        List<SendingMessage> messages = emailer.sendEmailAsync(new EmailInfo(
+                "a@example.com, b@example.com, c@example.com, d@example.com, e@example.com", "Bulk Test", "Test Body"));
+        assertEquals(5, messages.size());
+
+        emailer.processQueuedEmails();
+
+        assertEquals(5, smtpServer.getMessages().size());
+        assertTrue(smtpServer.getMessages().get(0).contains("Subject: Bulk Test"));
+        // two batches are sent one after another over the same pooled connection
+        assertEquals(1, smtpServer.getConnectionCount());
+
+        for (SendingMessage message : messages) {
+            SendingMessage reloaded = reload(message);
+            assertEquals(SendingStatus.SENT, reloaded.getStatus());
+            assertEquals(1, reloaded.getAttemptsMade().intValue());
+            assertNotNull(reloaded.getDateSent());
+        }
+
+        emailer.sendEmailAsync(new EmailInfo("f@example.com", "Bulk Test", "Test Body"));
+        emailer.processQueuedEmails();
+
+        assertEquals(6, smtpServer.getMessages().size());
+        assertEquals(1, smtpServer.getConnectionCount());
+    }
+
+    @Test
+    public void testRejectedRecipient() throws Exception {
+        List<SendingMessage> messages = emailer.sendEmailAsync(new EmailInfo(
+                "valid@example.com, " + FakeSmtpServer.REJECTED_RECIPIENT_PREFIX + "@example.com",
+                "Bulk Test", "Test Body"));
+
+        emailer.processQueuedEmails();
+
+        assertEquals(1, smtpServer.getMessages().size());
+        assertEquals(SendingStatus.SENT, reload(messages.get(0)).getStatus());
+        assertEquals(SendingStatus.NOTSENT, reload(messages.get(1)).getStatus());
+    }
+
+    @Test
+    public void testServerUnavailable() throws Exception {
+        smtpServer.close();
+
+        List<SendingMessage> messages = emailer.sendEmailAsync(new EmailInfo("retry@example.com", "Bulk Test", "Test Body"));
+        emailer.processQueuedEmails();
+
+        SendingMessage reloaded = reload(messages.get(0));
+        assertEquals(SendingStatus.QUEUE, reloaded.getStatus());
+        assertEquals(1, reloaded.getAttemptsMade().intValue());
+    }
+
+    @Test
+    public void testMessageClaimedOnce() throws Exception {
+        emailerConfig.setBulkSendingEnabled(false);
+        List<SendingMessage> messages = emailer.sendEmailAsync(new EmailInfo("claimed@example.com", "Bulk Test", "Test Body"));
+        SendingMessage loadedByThisNode = reload(messages.get(0));
+        SendingMessage loadedByOtherNode = reload(messages.get(0));
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            List<SendingMessage> claimed = emailer.claimMessages(cont.persistence().getEntityManager().getConnection(),
+                    Collections.singletonList(loadedByOtherNode), SendingStatus.SENDING);
+            assertEquals(1, claimed.size());
+
+            claimed = emailer.claimMessages(cont.persistence().getEntityManager().getConnection(),
+                    Collections.singletonList(loadedByThisNode), SendingStatus.SENDING);
+            assertTrue(claimed.isEmpty());
+            tx.commit();
+        }
+
+        SendingMessage reloaded = reload(messages.get(0));
+        assertEquals(SendingStatus.SENDING, reloaded.getStatus());
+        assertEquals(loadedByThisNode.getVersion() + 1, reloaded.getVersion().intValue());
+
+        reloaded.setStatus(SendingStatus.NOTSENT);
+        dataManager.commit(reloaded);
+    }
+
+    private SendingMessage reload(SendingMessage sendingMessage) {
+        return dataManager.load(LoadContext.create(SendingMessage.class).setId(sendingMessage.getId()));
+    }
+}
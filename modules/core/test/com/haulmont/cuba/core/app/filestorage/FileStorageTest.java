@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app.filestorage;
+
+import com.haulmont.cuba.core.app.FileStorageAPI;
+import com.haulmont.cuba.core.entity.FileDescriptor;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class FileStorageTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private FileStorageAPI fileStorage;
+    private FileDescriptor fd;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        fileStorage = AppBeans.get(FileStorageAPI.NAME);
+
+        fd = createDescriptor();
+
+        content = "0123456789abcdefghij".getBytes(StandardCharsets.UTF_8);
+        fileStorage.saveFile(fd, content);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fileStorage.removeFile(fd);
+    }
+
+    @Test
+    public void testLoadFile() throws Exception {
+        assertArrayEquals(content, fileStorage.loadFile(fd));
+    }
+
+    @Test
+    public void testOpenChannel() throws Exception {
+        try (ReadableByteChannel channel = fileStorage.openChannel(fd)) {
+            assertTrue(channel instanceof FileChannel);
+            assertEquals(content.length, ((FileChannel) channel).size());
+        }
+    }
+
+    @Test
+    public void testTransferRange() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = fileStorage.transferTo(fd, 5, 10, Channels.newChannel(out));
+        assertEquals(10, count);
+        assertArrayEquals(Arrays.copyOfRange(content, 5, 15), out.toByteArray());
+
+        out = new ByteArrayOutputStream();
+        count = fileStorage.transferTo(fd, 15, -1, Channels.newChannel(out));
+        assertEquals(5, count);
+        assertArrayEquals(Arrays.copyOfRange(content, 15, 20), out.toByteArray());
+    }
+
+    @Test
+    public void testContentAddressedStorage() throws Exception {
+        FileStorage localStorage = (FileStorage) fileStorage;
+        File[] roots = localStorage.getStorageRoots();
+        assumeTrue(localStorage.supportsLinkCount(roots[0]));
+
+        File secondaryRoot = Files.createTempDirectory("filestorage-secondary").toFile();
+        localStorage.storageRoots = new File[]{roots[0], secondaryRoot};
+        localStorage.contentAddressed = true;
+        try {
+            FileDescriptor fd1 = createDescriptor();
+            FileDescriptor fd2 = createDescriptor();
+            byte[] data = ("content-addressed " + fd1.getId()).getBytes(StandardCharsets.UTF_8);
+            String hash = DigestUtils.sha256Hex(data);
+
+            long deduplicated = localStorage.getDeduplicatedFileCount();
+            fileStorage.saveFile(fd1, data);
+            fileStorage.saveFile(fd2, data);
+            waitForReplication(localStorage);
+            assertTrue(localStorage.getDeduplicatedFileCount() >= deduplicated + 1);
+
+            assertArrayEquals(data, fileStorage.loadFile(fd1));
+            assertArrayEquals(data, fileStorage.loadFile(fd2));
+            for (File root : localStorage.storageRoots) {
+                assertTrue(localStorage.getBlobFile(root, hash).exists());
+                File copy = new File(localStorage.getStorageDir(root, fd2), FileStorage.getFileName(fd2));
+                assertArrayEquals(data, FileUtils.readFileToByteArray(copy));
+            }
+
+            fileStorage.removeFile(fd1);
+            assertFalse(fileStorage.fileExists(fd1));
+            assertArrayEquals(data, fileStorage.loadFile(fd2));
+            for (File root : localStorage.storageRoots) {
+                assertTrue(localStorage.getBlobFile(root, hash).exists());
+            }
+
+            fileStorage.removeFile(fd2);
+            assertFalse(fileStorage.fileExists(fd2));
+            for (File root : localStorage.storageRoots) {
+                assertFalse(localStorage.getBlobFile(root, hash).exists());
+            }
+        } finally {
+            localStorage.contentAddressed = false;
+            localStorage.storageRoots = roots;
+            FileUtils.deleteQuietly(secondaryRoot);
+        }
+    }
+
+    private void waitForReplication(FileStorage localStorage) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (localStorage.getPendingReplicationCount() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, localStorage.getPendingReplicationCount());
+    }
+
+    private FileDescriptor createDescriptor() {
+        FileDescriptor descriptor = AppBeans.get(Metadata.class).create(FileDescriptor.class);
+        descriptor.setName("test.bin");
+        descriptor.setExtension("bin");
+        descriptor.setCreateDate(AppBeans.get(TimeSource.class).currentTimestamp());
+        return descriptor;
+    }
+}
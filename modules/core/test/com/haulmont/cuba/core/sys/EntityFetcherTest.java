@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.Query;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.security.entity.Permission;
+import com.haulmont.cuba.security.entity.PermissionType;
+import com.haulmont.cuba.security.entity.Role;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class EntityFetcherTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private List<UUID> roleIds = new ArrayList<>();
+    private List<UUID> permissionIds = new ArrayList<>();
+
+    private EntityFetcher entityFetcher;
+    private View view;
+
+    @Before
+    public void setUp() throws Exception {
+        entityFetcher = AppBeans.get(EntityFetcher.class);
+
+        view = new View(Permission.class)
+                .addProperty("target")
+                .addProperty("role",
+                        new View(Role.class)
+                                .addProperty("name")
+                );
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+            for (int i = 0; i < 2; i++) {
+                Role role = new Role();
+                role.setName("testRole" + i);
+                em.persist(role);
+                roleIds.add(role.getId());
+
+                for (int j = 0; j < 2; j++) {
+                    Permission permission = new Permission();
+                    permission.setRole(role);
+                    permission.setType(PermissionType.SCREEN);
+                    permission.setTarget("testTarget" + i + j);
+                    em.persist(permission);
+                    permissionIds.add(permission.getId());
+                }
+            }
+            tx.commit();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        AppContext.setProperty("cuba.entityFetcherBatchLoading", null);
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+
+            for (UUID id : permissionIds) {
+                Query q = em.createNativeQuery("delete from SEC_PERMISSION where ID = ?");
+                q.setParameter(1, id.toString());
+                q.executeUpdate();
+            }
+            for (UUID id : roleIds) {
+                Query q = em.createNativeQuery("delete from SEC_ROLE where ID = ?");
+                q.setParameter(1, id.toString());
+                q.executeUpdate();
+            }
+
+            tx.commit();
+        }
+    }
+
+    @Test
+    public void testBatchLoadingOfDetachedReferences() throws Exception {
+        List<Permission> permissions = AppBeans.get(DataManager.class).loadList(
+                LoadContext.create(Permission.class)
+                        .setQuery(LoadContext.createQuery("select p from sec$Permission p where p.id in :ids")
+                                .setParameter("ids", permissionIds))
+                        .setView(view));
+        assertEquals(4, permissions.size());
+        for (Permission permission : permissions) {
+            assertTrue(PersistenceHelper.isDetached(permission.getRole()));
+        }
+
+        AppContext.setProperty("cuba.entityFetcherBatchLoading", "true");
+        long savedBefore = entityFetcher.getSavedRoundTrips();
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            entityFetcher.fetch(permissions, view, false);
+
+            for (Permission permission : permissions) {
+                assertTrue(PersistenceHelper.isManaged(permission.getRole()));
+                assertEquals("testRole" + permission.getTarget().charAt(10), permission.getRole().getName());
+            }
+            tx.commit();
+        }
+
+        // 4 references loaded by one query
+        assertEquals(3, entityFetcher.getSavedRoundTrips() - savedBefore);
+    }
+}
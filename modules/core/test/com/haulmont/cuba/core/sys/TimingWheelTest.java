@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testExpiration() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 4, 2, 0);
+        wheel.add("a", 1500);
+        wheel.add("b", 3000);
+        wheel.add("c", 10_500);
+        wheel.add("d", 100_000);
+        assertEquals(4, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1000, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(2000, expired::add);
+        assertEquals(Arrays.asList("a"), expired);
+
+        wheel.advance(10_000, expired::add);
+        assertEquals(Arrays.asList("a", "b"), expired);
+
+        wheel.advance(11_000, expired::add);
+        assertEquals(Arrays.asList("a", "b", "c"), expired);
+
+        wheel.advance(99_000, expired::add);
+        assertEquals(3, expired.size());
+
+        wheel.advance(101_000, expired::add);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testPastDeadline() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 4, 2, 5000);
+        wheel.add("a", 0);
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(6000, expired::add);
+        assertEquals(Arrays.asList("a"), expired);
+    }
+}
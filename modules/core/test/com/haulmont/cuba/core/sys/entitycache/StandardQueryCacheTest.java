@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.google.common.collect.Sets;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class StandardQueryCacheTest {
+
+    @Mocked
+    protected QueryCacheConfig queryCacheConfig;
+
+    private StandardQueryCache queryCache;
+
+    @Before
+    public void setUp() {
+        new Expectations() {
+            {
+                queryCacheConfig.getQueryCacheMaxSize(); result = 100; minTimes = 0;
+            }
+        };
+
+        queryCache = new StandardQueryCache();
+        queryCache.queryCacheConfig = queryCacheConfig;
+        queryCache.init();
+    }
+
+    @Test
+    public void testInvalidateByType() {
+        QueryKey queryKey = createKey("select u from sec$User u");
+        queryCache.put(queryKey, createResult("sec$User", "sec$Group"));
+        assertNotNull(queryCache.get(queryKey));
+
+        queryCache.invalidate("sec$Group");
+        assertNull(queryCache.get(queryKey));
+    }
+
+    @Test
+    public void testLateRemovalOfOldValueKeepsIndex() {
+        QueryKey queryKey = createKey("select u from sec$User u");
+        QueryResult oldResult = createResult("sec$User");
+        queryCache.put(queryKey, oldResult);
+        queryCache.invalidate(queryKey);
+
+        QueryResult newResult = createResult("sec$User");
+        queryCache.put(queryKey, newResult);
+        // removal notification of the old value is delivered after the key has been put again
+        queryCache.onRemoval(RemovalNotification.create(queryKey, oldResult, RemovalCause.EXPLICIT));
+        assertNotNull(queryCache.get(queryKey));
+
+        queryCache.invalidate("sec$User");
+        assertNull(queryCache.get(queryKey));
+    }
+
+    private QueryKey createKey(String queryString) {
+        return new QueryKey(queryString, 0, 0, true, false, Collections.emptyMap(), null);
+    }
+
+    private QueryResult createResult(String type, String... relatedTypes) {
+        return new QueryResult(Collections.singletonList(UUID.randomUUID()), type,
+                Sets.newHashSet(Sets.union(Collections.singleton(type), Sets.newHashSet(relatedTypes))));
+    }
+}
@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.QueryImpl;
+import com.haulmont.cuba.core.sys.entitycache.EntityCacheVersions;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testsupport.TestAppender;
 import com.haulmont.cuba.testsupport.TestContainer;
@@ -38,7 +39,10 @@ import org.junit.rules.TestRule;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityManagerFactory;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import static com.haulmont.cuba.testsupport.TestSupport.assertFail;
@@ -871,6 +875,71 @@ public class EntityCacheTestClass {
         assertTrue(appender.filterMessages(selectsOnly).noneMatch(s -> s.contains("JOIN SEC_USER"))); // User must not be joined because it is cached
     }
 
+    @Test
+    public void testVersionsBumpedOnCommit() throws Exception {
+        EntityCacheVersions entityCacheVersions = AppBeans.get(EntityCacheVersions.class);
+        Long userVersion = entityCacheVersions.getVersions().get("sec$User");
+        Long substitutionVersion = entityCacheVersions.getVersions().get("sec$UserSubstitution");
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            User user = cont.entityManager().find(User.class, this.user.getId());
+            assertNotNull(user);
+            user.setName("Changed name");
+            UserSubstitution substitution = cont.entityManager().find(UserSubstitution.class, this.userSubstitution.getId());
+            assertNotNull(substitution);
+            substitution.setEndDate(new Date());
+            tx.commit();
+        }
+
+        Long newUserVersion = entityCacheVersions.getVersions().get("sec$User");
+        assertNotNull(newUserVersion);
+        assertTrue(userVersion == null || newUserVersion > userVersion);
+        // not cacheable
+        assertEquals(substitutionVersion, entityCacheVersions.getVersions().get("sec$UserSubstitution"));
+
+        // rolled back changes do not change versions
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            User user = cont.entityManager().find(User.class, this.user.getId());
+            assertNotNull(user);
+            user.setName("Rolled back name");
+        }
+        assertEquals(newUserVersion, entityCacheVersions.getVersions().get("sec$User"));
+
+        // the version changes on each commit, even within the same millisecond
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            User user = cont.entityManager().find(User.class, this.user.getId());
+            assertNotNull(user);
+            user.setName("Changed name again");
+            tx.commit();
+        }
+        assertTrue(entityCacheVersions.getVersions().get("sec$User") > newUserVersion);
+    }
+
+    @Test
+    public void testVersionsStateTransfer() throws Exception {
+        EntityCacheVersions entityCacheVersions = AppBeans.get(EntityCacheVersions.class);
+        entityCacheVersions.bump(Collections.singletonList("sec$User"));
+        Map<String, Long> versions = entityCacheVersions.getVersions();
+
+        EntityCacheVersions joiningNode = new EntityCacheVersions();
+        joiningNode.applyClusterState(entityCacheVersions.getClusterState());
+        assertEquals(versions, joiningNode.getVersions());
+
+        // newer versions of the receiving node are kept
+        long newerVersion = versions.get("sec$User") + 1000;
+        EntityCacheVersions otherNode = new EntityCacheVersions() {
+            @Override
+            public Map<String, Long> getVersions() {
+                return Collections.singletonMap("sec$User", newerVersion);
+            }
+        };
+        joiningNode.applyClusterState(otherNode.getClusterState());
+        joiningNode.applyClusterState(entityCacheVersions.getClusterState());
+        assertEquals(Long.valueOf(newerVersion), joiningNode.getVersions().get("sec$User"));
+
+        assertEquals(0, new EntityCacheVersions().getClusterState().length);
+    }
+
     private void loadUserAlone() {
         try (Transaction tx = cont.persistence().createTransaction()) {
             User user = cont.entityManager().find(User.class, this.user.getId());
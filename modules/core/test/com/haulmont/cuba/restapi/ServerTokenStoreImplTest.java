@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.haulmont.cuba.restapi;
+
+import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.security.app.UserSessionsAPI;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.UUID;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+
+public class ServerTokenStoreImplTest {
+
+    @Mocked
+    protected ServerConfig serverConfig;
+
+    @Mocked
+    protected ClusterManagerAPI clusterManagerAPI;
+
+    @Mocked
+    protected TimeSource timeSource;
+
+    @Mocked
+    protected UserSessionsAPI userSessions;
+
+    private ServerTokenStoreImpl tokenStore;
+
+    private long now = 10_000;
+
+    private boolean storeTokensInDb;
+
+    @Before
+    public void setUp() {
+        new Expectations() {
+            {
+                serverConfig.getRestStoreTokensInDb();
+                result = new Delegate<Boolean>() {
+                    boolean getRestStoreTokensInDb() {
+                        return storeTokensInDb;
+                    }
+                };
+                minTimes = 0;
+
+                clusterManagerAPI.isMaster(); result = true; minTimes = 0;
+
+                timeSource.currentTimeMillis();
+                result = new Delegate<Long>() {
+                    long currentTimeMillis() {
+                        return now;
+                    }
+                };
+                minTimes = 0;
+
+                userSessions.get((UUID) any); result = null; minTimes = 0;
+            }
+        };
+
+        tokenStore = createTokenStore();
+    }
+
+    @Test
+    public void testClusterStateRoundTrip() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        tokenStore.storeAccessToken("access1", bytes(1), "auth1", bytes(2), new Date(20_000), "admin",
+                Locale.ENGLISH, "refresh1");
+        tokenStore.storeAccessToken("access2", bytes(3), null, null, null, "admin", null, null);
+        tokenStore.storeRefreshToken("refresh1", bytes(4), bytes(5), new Date(30_000), "admin");
+        tokenStore.putSessionInfo("access1", new RestUserSessionInfo(sessionId, Locale.forLanguageTag("de-CH")));
+        tokenStore.putSessionInfo("access2", new RestUserSessionInfo(null, null));
+
+        ServerTokenStoreImpl joiningNode = createTokenStore();
+        joiningNode.applyClusterState(tokenStore.getClusterState());
+
+        assertArrayEquals(bytes(1), joiningNode.getAccessTokenByTokenValue("access1"));
+        assertArrayEquals(bytes(2), joiningNode.getAuthenticationByTokenValue("access1"));
+        assertArrayEquals(bytes(1), joiningNode.getAccessTokenByAuthentication("auth1"));
+        assertArrayEquals(bytes(3), joiningNode.getAccessTokenByTokenValue("access2"));
+        assertNull(joiningNode.getAuthenticationByTokenValue("access2"));
+        assertEquals(new HashSet<>(asList("access1", "access2")), joiningNode.getAccessTokenValuesByUserLogin("admin"));
+
+        assertArrayEquals(bytes(4), joiningNode.getRefreshTokenByTokenValue("refresh1"));
+        assertArrayEquals(bytes(5), joiningNode.getAuthenticationByRefreshTokenValue("refresh1"));
+        assertEquals("access1", joiningNode.getAccessTokenValueByRefreshTokenValue("refresh1"));
+        assertEquals(Collections.singleton("refresh1"), joiningNode.getRefreshTokenValuesByUserLogin("admin"));
+
+        RestUserSessionInfo sessionInfo = joiningNode.getSessionInfoByTokenValue("access1");
+        assertEquals(sessionId, sessionInfo.getId());
+        assertEquals(Locale.forLanguageTag("de-CH"), sessionInfo.getLocale());
+        sessionInfo = joiningNode.getSessionInfoByTokenValue("access2");
+        assertNull(sessionInfo.getId());
+        assertNull(sessionInfo.getLocale());
+
+        assertEquals(tokenStore.accessTokensExpiryIndex, joiningNode.accessTokensExpiryIndex);
+        assertEquals(tokenStore.refreshTokensExpiryIndex, joiningNode.refreshTokensExpiryIndex);
+    }
+
+    @Test
+    public void testClusterStateDoesNotReplaceReceivedTokens() throws Exception {
+        tokenStore.storeAccessToken("access1", bytes(1), "auth1", bytes(2), new Date(20_000), "admin", null, null);
+
+        ServerTokenStoreImpl joiningNode = createTokenStore();
+        // received by a cluster message before the state
+        joiningNode.storeAccessTokenToMemory("access1", bytes(7), "auth1", bytes(8), new Date(40_000), "admin", null);
+        joiningNode.applyClusterState(tokenStore.getClusterState());
+
+        assertArrayEquals(bytes(7), joiningNode.getAccessTokenByTokenValue("access1"));
+        assertEquals(1, joiningNode.accessTokensExpiryIndex.size());
+        assertEquals(40_000, joiningNode.accessTokensExpiryIndex.first().getExpiry());
+    }
+
+    @Test
+    public void testEmptyClusterState() throws Exception {
+        assertEquals(0, tokenStore.getClusterState().length);
+
+        storeTokensInDb = true;
+        tokenStore.storeAccessTokenToMemory("access1", bytes(1), "auth1", bytes(2), null, "admin", null);
+        assertEquals(0, tokenStore.getClusterState().length);
+    }
+
+    @Test
+    public void testUnsupportedClusterStateVersion() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(ServerTokenStoreImpl.STATE_VERSION + 1);
+            out.writeInt(1);
+        }
+        tokenStore.applyClusterState(bos.toByteArray());
+
+        assertTrue(tokenStore.accessTokens.isEmpty());
+    }
+
+    @Test
+    public void testIndexes() throws Exception {
+        tokenStore.storeAccessToken("access1", bytes(1), "auth1", bytes(2), new Date(20_000), "admin", null, "refresh1");
+
+        // the same token stored again with another authentication
+        tokenStore.storeAccessToken("access1", bytes(1), "auth2", bytes(2), new Date(25_000), "admin", null, "refresh2");
+        assertNull(tokenStore.getAccessTokenByAuthentication("auth1"));
+        assertArrayEquals(bytes(1), tokenStore.getAccessTokenByAuthentication("auth2"));
+        assertNull(tokenStore.getAccessTokenValueByRefreshTokenValue("refresh1"));
+        assertEquals("access1", tokenStore.getAccessTokenValueByRefreshTokenValue("refresh2"));
+        assertEquals(1, tokenStore.accessTokensExpiryIndex.size());
+
+        tokenStore.removeAccessTokenUsingRefreshToken("refresh2");
+        assertNull(tokenStore.getAccessTokenByTokenValue("access1"));
+        assertTrue(tokenStore.accessTokenValueByAuthenticationKey.isEmpty());
+        assertTrue(tokenStore.accessTokenValueByRefreshTokenValue.isEmpty());
+        assertTrue(tokenStore.accessTokensExpiryIndex.isEmpty());
+
+        tokenStore.storeRefreshToken("refresh1", bytes(4), bytes(5), new Date(30_000), "admin");
+        tokenStore.storeRefreshToken("refresh1", bytes(4), bytes(5), new Date(35_000), "admin");
+        assertEquals(1, tokenStore.refreshTokensExpiryIndex.size());
+        tokenStore.removeRefreshToken("refresh1");
+        assertNull(tokenStore.getRefreshTokenByTokenValue("refresh1"));
+        assertTrue(tokenStore.refreshTokensExpiryIndex.isEmpty());
+    }
+
+    @Test
+    public void testDeleteExpiredTokens() throws Exception {
+        tokenStore.storeAccessToken("access1", bytes(1), "auth1", bytes(2), new Date(5_000), "admin", null, null);
+        tokenStore.storeAccessToken("access2", bytes(1), "auth2", bytes(2), new Date(15_000), "admin", null, null);
+        tokenStore.storeAccessToken("access3", bytes(1), "auth3", bytes(2), null, "admin", null, null);
+        tokenStore.storeRefreshToken("refresh1", bytes(4), bytes(5), new Date(10_000), "admin");
+        tokenStore.storeRefreshToken("refresh2", bytes(4), bytes(5), new Date(30_000), "admin");
+
+        tokenStore.deleteExpiredTokens();
+        assertEquals(new HashSet<>(asList("access2", "access3")), tokenStore.accessTokens.keySet());
+        assertNull(tokenStore.getAccessTokenByAuthentication("auth1"));
+        assertEquals(Collections.singleton("refresh2"), tokenStore.refreshTokens.keySet());
+
+        now = 20_000;
+        tokenStore.deleteExpiredTokens();
+        // tokens without expiry are never deleted
+        assertEquals(Collections.singleton("access3"), tokenStore.accessTokens.keySet());
+        assertEquals(Collections.singleton("refresh2"), tokenStore.refreshTokens.keySet());
+        assertEquals(0, tokenStore.accessTokensExpiryIndex.size());
+        assertEquals(1, tokenStore.refreshTokensExpiryIndex.size());
+    }
+
+    private ServerTokenStoreImpl createTokenStore() {
+        ServerTokenStoreImpl store = new ServerTokenStoreImpl();
+        store.serverConfig = serverConfig;
+        store.clusterManagerAPI = clusterManagerAPI;
+        store.timeSource = timeSource;
+        store.userSessions = userSessions;
+        return store;
+    }
+
+    private static byte[] bytes(int value) {
+        return new byte[]{(byte) value, (byte) (value + 1), (byte) (value + 2)};
+    }
+}
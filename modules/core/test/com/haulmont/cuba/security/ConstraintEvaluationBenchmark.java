@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security;
+
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Security;
+import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.cuba.security.entity.*;
+import com.haulmont.cuba.security.global.UserSession;
+import com.haulmont.cuba.testsupport.TestContainer;
+import com.haulmont.cuba.testsupport.TestUserSessionSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares in-memory constraint checks of {@link Security} over 100k entities: the script evaluated through
+ * {@link Security#evaluateConstraintScript(com.haulmont.cuba.core.entity.Entity, String)} for every entity, as
+ * in-memory checks did it before, {@link Security#isPermitted(com.haulmont.cuba.core.entity.Entity,
+ * ConstraintOperationType)} for every entity and {@link Security#filterPermitted(java.util.Collection,
+ * ConstraintOperationType)} for the whole collection.
+ * <p>
+ * Run with {@code main()} from the test classpath of the core module, the test database must be started by the
+ * {@code startDb} task.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ConstraintEvaluationBenchmark {
+
+    private static final int ENTITIES_COUNT = 100_000;
+    private static final String CONSTRAINT = "{E}.login.startsWith('user3')";
+
+    private Security security;
+    private TestUserSessionSource userSessionSource;
+    private UserSession savedUserSession;
+    private List<User> users;
+
+    @Setup
+    public void setup() throws Throwable {
+        TestContainer.Common.INSTANCE.before();
+
+        security = AppBeans.get(Security.class);
+        userSessionSource = (TestUserSessionSource) AppBeans.get(UserSessionSource.class);
+        savedUserSession = userSessionSource.getUserSession();
+
+        Constraint constraint = new Constraint();
+        constraint.setEntityName("sec$User");
+        constraint.setCheckType(ConstraintCheckType.MEMORY);
+        constraint.setOperationType(ConstraintOperationType.READ);
+        constraint.setGroovyScript(CONSTRAINT);
+
+        UserSession userSession = new UserSession(UUID.randomUUID(), savedUserSession.getUser(),
+                Collections.<Role>emptyList(), Locale.ENGLISH, false);
+        userSession.addConstraint(constraint);
+        userSessionSource.setUserSession(userSession);
+
+        users = new ArrayList<>(ENTITIES_COUNT);
+        for (int i = 0; i < ENTITIES_COUNT; i++) {
+            User user = new User();
+            user.setLogin("user" + i);
+            users.add(user);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        userSessionSource.setUserSession(savedUserSession);
+        TestContainer.Common.INSTANCE.after();
+    }
+
+    @Benchmark
+    public int evaluateConstraintScriptPerEntity() {
+        int permitted = 0;
+        for (User user : users) {
+            if (Boolean.TRUE.equals(security.evaluateConstraintScript(user, CONSTRAINT))) {
+                permitted++;
+            }
+        }
+        return permitted;
+    }
+
+    @Benchmark
+    public int isPermittedPerEntity() {
+        int permitted = 0;
+        for (User user : users) {
+            if (security.isPermitted(user, ConstraintOperationType.READ)) {
+                permitted++;
+            }
+        }
+        return permitted;
+    }
+
+    @Benchmark
+    public int filterPermitted() {
+        return security.filterPermitted(users, ConstraintOperationType.READ).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ConstraintEvaluationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -25,7 +25,9 @@ import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Messages;
+import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.security.app.EntityLogAPI;
+import com.haulmont.cuba.security.app.EntityLogWriter;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testsupport.TestContainer;
 import org.junit.After;
@@ -313,6 +315,45 @@ public class EntityLogTest {
         assertEquals("changed-name@test.com", attr.getOldValue());
     }
 
+    @Test
+    public void testAsyncWrite() throws Exception {
+        AppContext.setProperty("cuba.entityLog.asyncWrite", "true");
+        try {
+            Transaction tx = cont.persistence().createTransaction();
+            try {
+                EntityManager em = cont.persistence().getEntityManager();
+
+                Group group = em.find(Group.class, UUID.fromString("0fa2b1a5-1d68-4d69-9fbd-dff348347f93"));
+
+                User user = new User();
+                userId = user.getId();
+                user.setGroup(group);
+                user.setLogin("test");
+                user.setName("test-name");
+                user.setEmail("name@test.com");
+                em.persist(user);
+
+                tx.commit();
+            } finally {
+                tx.end();
+            }
+
+            AppBeans.get(EntityLogWriter.class).flush();
+
+            List<EntityLogItem> items = getEntityLogItems();
+            assertEquals(1, items.size());
+
+            EntityLogItem item = items.get(0);
+            assertEquals(EntityLogItem.Type.CREATE, item.getType());
+            assertNotNull(item.getCreatedBy());
+
+            EntityLogAttr attr = Iterables.find(item.getAttributes(), a -> "email".equals(a.getName()));
+            assertEquals("name@test.com", attr.getValue());
+        } finally {
+            AppContext.setProperty("cuba.entityLog.asyncWrite", null);
+        }
+    }
+
     private List<EntityLogItem> getEntityLogItems() {
         Transaction tx;
         List<EntityLogItem> items;
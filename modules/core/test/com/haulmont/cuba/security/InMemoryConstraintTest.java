@@ -176,6 +176,28 @@ public class InMemoryConstraintTest {
         }
     }
 
+    @Test
+    public void testFilterPermitted() throws LoginException {
+        LoginWorker lw = AppBeans.get(LoginWorker.NAME);
+
+        UserSession userSession = lw.login("constraintUser1", passwordEncryption.getPlainHash(PASSWORD), Locale.getDefault());
+        assertNotNull(userSession);
+
+        UserSessionSource uss = AppBeans.get(UserSessionSource.class);
+        UserSession savedUserSession = uss.getUserSession();
+        ((TestUserSessionSource) uss).setUserSession(userSession);
+        try {
+            Security security = AppBeans.get(Security.class);
+            List<User> permitted = security.filterPermitted(usersList, ConstraintOperationType.READ);
+            assertEquals(11, permitted.size());
+            for (User user : usersList) {
+                assertEquals(security.isPermitted(user, ConstraintOperationType.READ), permitted.contains(user));
+            }
+        } finally {
+            ((TestUserSessionSource) uss).setUserSession(savedUserSession);
+        }
+    }
+
     @Test
     public void testConstraintsOnFirst() throws LoginException {
         LoginWorker lw = AppBeans.get(LoginWorker.NAME);
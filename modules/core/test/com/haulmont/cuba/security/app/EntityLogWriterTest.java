@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class EntityLogWriterTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private EntityLogWriter writer;
+    private List<UUID> ids = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        writer = AppBeans.get(EntityLogWriter.class);
+        deleteSpillFiles();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        deleteSpillFiles();
+        QueryRunner runner = new QueryRunner(cont.persistence().getDataSource());
+        for (UUID id : ids) {
+            runner.update("delete from SEC_ENTITY_LOG where ID = ?", id.toString());
+        }
+    }
+
+    @Test
+    public void testSpillFileWithExistingItems() throws Exception {
+        EntityLogWriter.EntityLogRecord written = createRecord();
+        EntityLogWriter.EntityLogRecord notWritten = createRecord();
+        writer.insert(Collections.singletonList(written));
+
+        // the batch fails on the duplicate key, the items are written one by one
+        writer.spill(Arrays.asList(written, notWritten));
+        assertEquals(1, writer.getSpillFileCount());
+
+        writer.flush();
+
+        assertEquals(0, writer.getSpillFileCount());
+        assertTrue(writer.exists(notWritten));
+    }
+
+    @Test
+    public void testFailingSpillFileIsQuarantined() throws Exception {
+        EntityLogWriter.EntityLogRecord invalid = createRecord();
+        invalid.changeType = "invalid change type";
+        writer.spill(Collections.singletonList(invalid));
+
+        int maxAttempts = writer.config.getAsyncSpillMaxAttempts();
+        for (int i = 0; i < maxAttempts - 1; i++) {
+            writer.flush();
+            assertEquals(1, writer.getSpillFileCount());
+        }
+        writer.flush();
+
+        assertEquals(0, writer.getSpillFileCount());
+        File[] failedFiles = writer.getSpillDir().listFiles((dir, name) -> name.endsWith(EntityLogWriter.SPILL_FAILED_SUFFIX));
+        assertNotNull(failedFiles);
+        assertEquals(1, failedFiles.length);
+    }
+
+    private EntityLogWriter.EntityLogRecord createRecord() {
+        EntityLogWriter.EntityLogRecord record = new EntityLogWriter.EntityLogRecord();
+        record.id = UUID.randomUUID();
+        record.createTs = new Date();
+        record.createdBy = "test";
+        record.eventTs = new Date();
+        record.changeType = "C";
+        record.entity = "sec$User";
+        record.entityId = UUID.randomUUID();
+        ids.add(record.id);
+        return record;
+    }
+
+    private void deleteSpillFiles() {
+        File[] files = writer.getSpillDir().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@
 package spec.cuba.core.entity_serialization
 
 import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI
+import com.haulmont.cuba.core.app.serialization.EntitySerializationOption
 import com.haulmont.cuba.core.global.AppBeans
 import com.haulmont.cuba.testmodel.entity_serialization.Serialization_Order
 import com.haulmont.cuba.testmodel.entity_serialization.Serialization_OrderItem
@@ -59,4 +60,26 @@ class EntityJsonSerializationTest extends Specification {
         item2.relatedItem.order.id == parsedObject.id
         item2.relatedItem.order.name == null //order name should NOT exist, it is a cyclic reference
     }
+
+    def "entities written to a writer produce the same JSON as the string serialization"() {
+        def order1 = cont.metadata().create(Serialization_Order.class)
+        order1.setNumber('order-1')
+
+        def order2 = cont.metadata().create(Serialization_Order.class)
+        order2.setNumber('order-2')
+
+        def orderItem = cont.metadata().create(Serialization_OrderItem.class)
+        orderItem.name = 'item-1'
+        orderItem.order = order2
+        order2.items = [orderItem]
+
+        when:
+
+        def writer = new StringWriter()
+        entitySerializationAPI.writeJson([order1, order2], null, writer, EntitySerializationOption.SERIALIZE_NULLS)
+
+        then:
+
+        writer.toString() == entitySerializationAPI.toJson([order1, order2], null, EntitySerializationOption.SERIALIZE_NULLS)
+    }
 }
@@ -24,6 +24,7 @@ import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.Metadata
 import com.haulmont.cuba.core.sys.AppContext
 import com.haulmont.cuba.core.sys.NumberIdCache
+import com.haulmont.cuba.core.sys.NumberIdSequence
 import com.haulmont.cuba.core.sys.SecurityContextAwareRunnable
 import com.haulmont.cuba.core.sys.persistence.DbmsSpecificFactory
 import com.haulmont.cuba.core.sys.persistence.SequenceSupport
@@ -35,9 +36,11 @@ import org.slf4j.LoggerFactory
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 class NumberIdConcurrencyTest extends Specification {
 
@@ -134,6 +137,51 @@ class NumberIdConcurrencyTest extends Specification {
         AppContext.setProperty('cuba.numberIdCacheSize', null)
     }
 
+    def "cached ids are unique and the next range is prefetched"() {
+
+        AppContext.setProperty('cuba.numberIdCacheSize', '10')
+        def numberIdCache = AppBeans.get(NumberIdCache)
+        def sequenceValue = new AtomicLong()
+        def sequence = new NumberIdSequence() {
+            @Override
+            Long createLongId(String entityName, String sequenceName) {
+                return sequenceValue.incrementAndGet()
+            }
+
+            @Override
+            Long createCachedLongId(String entityName, String sequenceName) {
+                return sequenceValue.getAndAdd(10)
+            }
+
+            @Override
+            Long createCachedLongId(String entityName, String sequenceName, int cacheSize) {
+                return sequenceValue.getAndAdd(cacheSize)
+            }
+        }
+        def ids = ConcurrentHashMap.newKeySet()
+        long rangeRequests = numberIdCache.getRangeRequestCount()
+
+        when:
+
+        ExecutorService executorService = Executors.newFixedThreadPool(10)
+        for (i in 1..1000) {
+            executorService.submit({
+                ids.add(numberIdCache.createLongId('test$PrefetchedIdEntity', sequence))
+            })
+        }
+        executorService.shutdown()
+        executorService.awaitTermination(10, TimeUnit.SECONDS)
+
+        then:
+
+        ids.size() == 1000
+        numberIdCache.getRangeRequestCount() - rangeRequests >= 100
+
+        cleanup:
+
+        AppContext.setProperty('cuba.numberIdCacheSize', null)
+    }
+
     private void generateSomeEntities(int count) {
         long start = System.currentTimeMillis()
         ExecutorService executorService = Executors.newFixedThreadPool(10)
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.bali.util;
+
+import javax.annotation.Nullable;
+
+/**
+ * Single byte range requested by the HTTP {@code Range} header, e.g. {@code bytes=0-499}, {@code bytes=500-}
+ * or {@code bytes=-500}.
+ */
+public final class ByteRange {
+
+    public static final String UNIT = "bytes";
+
+    private final long start;
+    private final long end;
+    private final long totalLength;
+
+    private ByteRange(long start, long end, long totalLength) {
+        this.start = start;
+        this.end = end;
+        this.totalLength = totalLength;
+    }
+
+    /**
+     * Parses the value of the {@code Range} header.
+     *
+     * @param header      header value
+     * @param totalLength length of the whole content
+     * @return requested range or null if the header is absent, malformed or requests several ranges. In this case
+     * the whole content should be sent.
+     */
+    @Nullable
+    public static ByteRange parse(@Nullable String header, long totalLength) {
+        if (header == null || !header.startsWith(UNIT + "=")) {
+            return null;
+        }
+        String spec = header.substring(UNIT.length() + 1).trim();
+        int dashIndex = spec.indexOf('-');
+        if (dashIndex < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+
+        try {
+            String startStr = spec.substring(0, dashIndex).trim();
+            String endStr = spec.substring(dashIndex + 1).trim();
+            if (startStr.isEmpty()) {
+                if (endStr.isEmpty()) {
+                    return null;
+                }
+                long suffixLength = Long.parseLong(endStr);
+                if (suffixLength <= 0) {
+                    return new ByteRange(totalLength, totalLength - 1, totalLength);
+                }
+                return new ByteRange(Math.max(0, totalLength - suffixLength), totalLength - 1, totalLength);
+            }
+
+            long start = Long.parseLong(startStr);
+            long end = endStr.isEmpty() ? totalLength - 1 : Math.min(Long.parseLong(endStr), totalLength - 1);
+            if (start < 0 || !endStr.isEmpty() && Long.parseLong(endStr) < start) {
+                return null;
+            }
+            return new ByteRange(start, end, totalLength);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return false if the range is outside of the content, a response with status 416 should be sent in this case
+     */
+    public boolean isSatisfiable() {
+        return start < totalLength && start <= end;
+    }
+
+    /**
+     * @return first byte position
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return last byte position, inclusive
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    /**
+     * @return value of the {@code Content-Range} response header
+     */
+    public String getContentRange() {
+        return isSatisfiable()
+                ? UNIT + " " + start + "-" + end + "/" + totalLength
+                : UNIT + " */" + totalLength;
+    }
+}
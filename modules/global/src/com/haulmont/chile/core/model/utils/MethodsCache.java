@@ -16,61 +16,193 @@
  */
 package com.haulmont.chile.core.model.utils;
 
+import org.apache.commons.lang3.ClassUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
-import java.util.Map;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
+/**
+ * Getters and setters of a class by property name.
+ * <p>
+ * By default, the methods are invoked through accessor classes generated by {@link LambdaMetafactory}, which are
+ * inlined by JIT like direct calls. Reflection is used for methods that cannot be linked this way, e.g. static
+ * methods or methods of classes not visible from the class loader of this class.
+ */
 public class MethodsCache {
 
-    private final transient Map<String, Method> getters = new HashMap<>();
-    private final transient Map<String, Method> setters = new HashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(MethodsCache.class);
+
+    private final transient Map<String, Function<Object, Object>> getters = new HashMap<>();
+    private final transient Map<String, Setter> setters = new HashMap<>();
 
     public MethodsCache(Class clazz) {
+        this(clazz, true);
+    }
+
+    /**
+     * @param clazz             class to collect getters and setters from
+     * @param generateAccessors whether to generate accessor classes, if false all methods are invoked by reflection
+     */
+    public MethodsCache(Class clazz, boolean generateAccessors) {
+        MethodHandles.Lookup lookup = generateAccessors ? MethodHandles.lookup() : null;
         final Method[] methods = clazz.getMethods();
         for (Method method : methods) {
             String name = method.getName();
             if (name.startsWith("get") && method.getParameterTypes().length == 0) {
                 name = StringUtils.uncapitalize(name.substring(3));
                 method.setAccessible(true);
-                getters.put(name, method);
+                getters.put(name, createGetter(lookup, method));
             } else if (name.startsWith("is") && method.getParameterTypes().length == 0) {
                 name = StringUtils.uncapitalize(name.substring(2));
                 method.setAccessible(true);
-                getters.put(name, method);
+                getters.put(name, createGetter(lookup, method));
             } else if (name.startsWith("set") && method.getParameterTypes().length == 1) {
                 name = StringUtils.uncapitalize(name.substring(3));
                 method.setAccessible(true);
-                setters.put(name, method);
+                setters.put(name, createSetter(lookup, method));
             }
         }
     }
 
     public void invokeSetter(Object object, String property, Object value) {
-        final Method method = setters.get(property);
-        if (method == null) {
+        final Setter setter = setters.get(property);
+        if (setter == null) {
             throw new IllegalArgumentException(
                     String.format("Can't find setter for property '%s' at %s", property, object.getClass()));
         }
-        try {
-            method.invoke(object, value);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
+        setter.invoke(object, value);
     }
 
     public Object invokeGetter(Object object, String property) {
-        final Method method = getters.get(property);
-        if (method == null) {
+        final Function<Object, Object> getter = getters.get(property);
+        if (getter == null) {
             throw new IllegalArgumentException(
                     String.format("Can't find getter for property '%s' at %s", property, object.getClass()));
         }
+        return getter.apply(object);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Function<Object, Object> createGetter(MethodHandles.Lookup lookup, Method method) {
+        if (lookup != null && canGenerateAccessor(method)) {
+            try {
+                MethodHandle handle = lookup.unreflect(method);
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(ClassUtils.primitiveToWrapper(method.getReturnType()), method.getDeclaringClass()));
+                return (Function<Object, Object>) callSite.getTarget().invoke();
+            } catch (Throwable e) {
+                log.debug("Unable to generate getter accessor for {}, reflection will be used", method, e);
+            }
+        }
+        return object -> {
+            try {
+                return method.invoke(object);
+            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    protected static Setter createSetter(MethodHandles.Lookup lookup, Method method) {
+        Class<?> parameterType = method.getParameterTypes()[0];
+        if (lookup != null && canGenerateAccessor(method)) {
+            try {
+                MethodHandle handle = lookup.unreflect(method);
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        handle,
+                        MethodType.methodType(void.class, method.getDeclaringClass(), ClassUtils.primitiveToWrapper(parameterType)));
+                return new Setter((BiConsumer<Object, Object>) callSite.getTarget().invoke(), parameterType);
+            } catch (Throwable e) {
+                log.debug("Unable to generate setter accessor for {}, reflection will be used", method, e);
+            }
+        }
+        return new Setter((object, value) -> {
+            try {
+                method.invoke(object, value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new RuntimeException(e);
+            }
+        }, parameterType);
+    }
+
+    protected static boolean canGenerateAccessor(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class && method.getParameterCount() == 0) {
+            return false;
+        }
+        // generated classes are linked as if they were declared in this class
+        if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) {
+            return false;
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isVisible(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static boolean isVisible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        ClassLoader classLoader = MethodsCache.class.getClassLoader();
+        if (type.getClassLoader() == classLoader) {
+            return true;
+        }
         try {
-            return method.invoke(object);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            throw new RuntimeException(e);
+            return Class.forName(type.getName(), false, classLoader) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    protected static class Setter {
+
+        protected final BiConsumer<Object, Object> consumer;
+        protected final Class<?> parameterType;
+
+        protected Setter(BiConsumer<Object, Object> consumer, Class<?> parameterType) {
+            this.consumer = consumer;
+            this.parameterType = parameterType;
+        }
+
+        protected void invoke(Object object, Object value) {
+            try {
+                consumer.accept(object, value);
+            } catch (ClassCastException | NullPointerException e) {
+                // keep the contract of reflective invocation for arguments of wrong type
+                if (value == null ? parameterType.isPrimitive()
+                        : !ClassUtils.primitiveToWrapper(parameterType).isInstance(value)) {
+                    throw new IllegalArgumentException(String.format("Argument type mismatch for setter of %s: %s",
+                            object.getClass(), value == null ? null : value.getClass()), e);
+                }
+                throw e;
+            }
         }
     }
-}
\ No newline at end of file
+}
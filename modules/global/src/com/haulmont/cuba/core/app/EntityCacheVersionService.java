@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import java.util.Map;
+
+/**
+ * Provides versions of cacheable entities to client-side caches. The version of an entity changes each time
+ * an instance of this entity or of its descendant is created, changed or removed on the middleware.
+ */
+public interface EntityCacheVersionService {
+
+    String NAME = "cuba_EntityCacheVersionService";
+
+    /**
+     * @return map of cacheable entity names to their current versions. Entities that have not been changed since
+     * the middleware start are absent.
+     */
+    Map<String, Long> getVersions();
+}
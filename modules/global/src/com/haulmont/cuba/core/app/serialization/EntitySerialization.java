@@ -18,10 +18,13 @@
 package com.haulmont.cuba.core.app.serialization;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
 import com.google.gson.*;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.datatypes.Datatypes;
 import com.haulmont.chile.core.model.MetaClass;
@@ -42,6 +45,8 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
@@ -82,6 +87,40 @@ public class EntitySerialization implements EntitySerializationAPI {
         }
     }
 
+    /**
+     * Key of a cached serializer. Views are compared by identity as views with the same name may contain different
+     * properties.
+     */
+    protected static final class SerializerKey {
+        private final View view;
+        private final Set<EntitySerializationOption> options;
+
+        public SerializerKey(@Nullable View view, @Nullable EntitySerializationOption[] options) {
+            this.view = view;
+            this.options = options == null || options.length == 0 ?
+                    EnumSet.noneOf(EntitySerializationOption.class) :
+                    EnumSet.copyOf(Arrays.asList(options));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            SerializerKey that = (SerializerKey) o;
+            return view == that.view && options.equals(that.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(view) + options.hashCode();
+        }
+    }
+
+    protected Cache<SerializerKey, Gson> serializationGsonCache = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
+
     @Override
     public String toJson(Entity entity) {
         return toJson(entity, null);
@@ -92,7 +131,20 @@ public class EntitySerialization implements EntitySerializationAPI {
                          @Nullable View view,
                          EntitySerializationOption... options) {
         context.remove();
-        return createGsonForSerialization(view, options).toJson(entity);
+        return getGsonForSerialization(view, options).toJson(entity);
+    }
+
+    @Override
+    public void writeJson(Entity entity,
+                          @Nullable View view,
+                          Writer writer,
+                          EntitySerializationOption... options) {
+        context.remove();
+        try {
+            getGsonForSerialization(view, options).toJson(entity, Entity.class, writer);
+        } catch (JsonIOException e) {
+            throw new EntitySerializationException("Unable to write entity JSON", e);
+        }
     }
 
     @Override
@@ -105,13 +157,33 @@ public class EntitySerialization implements EntitySerializationAPI {
                          @Nullable View view,
                          EntitySerializationOption... options) {
         context.remove();
-        return createGsonForSerialization(view, options).toJson(entities);
+        return getGsonForSerialization(view, options).toJson(entities);
+    }
+
+    @Override
+    public void writeJson(Collection<? extends Entity> entities,
+                          @Nullable View view,
+                          Writer writer,
+                          EntitySerializationOption... options) {
+        context.remove();
+        Gson gson = getGsonForSerialization(view, options);
+        try {
+            JsonWriter jsonWriter = gson.newJsonWriter(writer);
+            jsonWriter.beginArray();
+            for (Entity entity : entities) {
+                gson.toJson(entity, Entity.class, jsonWriter);
+            }
+            jsonWriter.endArray();
+            jsonWriter.flush();
+        } catch (IOException | JsonIOException e) {
+            throw new EntitySerializationException("Unable to write entities JSON", e);
+        }
     }
 
     @Override
     public String objectToJson(Object object, EntitySerializationOption... options) {
         context.remove();
-        return createGsonForSerialization(null, options).toJson(object);
+        return getGsonForSerialization(null, options).toJson(object);
     }
 
     @SuppressWarnings("unchecked")
@@ -139,6 +211,20 @@ public class EntitySerialization implements EntitySerializationAPI {
         return createGsonForDeserialization(null, options).fromJson(json, clazz);
     }
 
+    /**
+     * Returns a cached {@link Gson} instance for the given view and options. Serializers don't hold any state except
+     * the view, so they are shared between calls and threads.
+     */
+    protected Gson getGsonForSerialization(@Nullable View view, EntitySerializationOption... options) {
+        SerializerKey key = new SerializerKey(view, options);
+        Gson gson = serializationGsonCache.getIfPresent(key);
+        if (gson == null) {
+            gson = createGsonForSerialization(view, options);
+            serializationGsonCache.put(key, gson);
+        }
+        return gson;
+    }
+
     protected Gson createGsonForSerialization(@Nullable View view, EntitySerializationOption... options) {
         GsonBuilder gsonBuilder = new GsonBuilder();
         if (ArrayUtils.contains(options, EntitySerializationOption.PRETTY_PRINT)) {
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.View;
 
 import javax.annotation.Nullable;
+import java.io.Writer;
 import java.util.Collection;
 
 /**
@@ -68,6 +69,34 @@ public interface EntitySerializationAPI {
                   @Nullable View view,
                   EntitySerializationOption... options);
 
+    /**
+     * Serializes a single entity to JSON and writes it to the given writer. Method works like the {@link
+     * #toJson(Entity, View, EntitySerializationOption...)}, but doesn't build the result string.
+     *
+     * @param entity  an entity to be serialized
+     * @param view    a view that defines which entity properties should be added to the result JSON object
+     * @param writer  a writer the JSON object is written to
+     * @param options options specifying how an entity should be serialized
+     */
+    void writeJson(Entity entity,
+                   @Nullable View view,
+                   Writer writer,
+                   EntitySerializationOption... options);
+
+    /**
+     * Serializes a collection of entities to the JSON array and writes it to the given writer. Entities are written
+     * one by one as they are serialized, so the whole JSON array is never held in memory.
+     *
+     * @param entities a collection of entities to be serialized
+     * @param view     a view that defines which entity properties should be added to the result JSON objects
+     * @param writer   a writer the JSON array is written to
+     * @param options  options specifying how entities should be serialized
+     */
+    void writeJson(Collection<? extends Entity> entities,
+                   @Nullable View view,
+                   Writer writer,
+                   EntitySerializationOption... options);
+
     /**
      * An overloaded version of the {@link #toJson(Entity, View, EntitySerializationOption...)} method with a null
      * {@code view} parameter and with no serialization options.
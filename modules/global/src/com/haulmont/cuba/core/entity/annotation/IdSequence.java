@@ -35,4 +35,10 @@ public @interface IdSequence {
      * If true, the sequence will be incremented by cuba.numberIdCacheSize to cache intermediate values in memory.
      */
     boolean cached() default false;
+
+    /**
+     * Number of ids cached in memory if {@link #cached()} is true. If not specified, cuba.numberIdCacheSize is used.
+     * <p>The sequence is created with this increment, so the value must not be changed for existing sequences.
+     */
+    int cacheSize() default 0;
 }
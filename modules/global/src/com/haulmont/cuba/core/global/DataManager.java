@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.entity.contracts.Id;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Central interface to provide CRUD functionality. Can be used on both middle and client tiers.
@@ -60,6 +61,25 @@ public interface DataManager {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads entity instances one by one as the caller consumes the returned stream.
+     * <p>On the middleware, {@code RdbmsStore} reads the results through a forward-only database cursor and detaches
+     * each instance when it is passed to the caller, so the memory consumption does not depend on the number of
+     * loaded rows. The database transaction stays open until the stream is closed, so the stream must be consumed
+     * in the same thread and closed after use:
+     * <pre>
+     * try (Stream&lt;Customer&gt; stream = dataManager.loadStream(context)) {
+     *     stream.forEach(customer -&gt; export(customer));
+     * }
+     * </pre>
+     * <p>On the client tier, and for data stores not supporting cursors, the whole list is loaded at once.
+     * @param context   {@link LoadContext} object, defining what and how to load
+     * @return          a stream of detached instances
+     */
+    default <E extends Entity> Stream<E> loadStream(LoadContext<E> context) {
+        return loadList(context).stream();
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @param context   defines the query
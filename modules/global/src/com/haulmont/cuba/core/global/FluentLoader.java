@@ -23,6 +23,7 @@ import com.haulmont.cuba.core.global.queryconditions.Condition;
 
 import javax.persistence.TemporalType;
 import java.util.*;
+import java.util.stream.Stream;
 
 public class FluentLoader<E extends Entity<K>, K> {
 
@@ -78,6 +79,16 @@ public class FluentLoader<E extends Entity<K>, K> {
         return dataManager.loadList(loadContext);
     }
 
+    /**
+     * Loads entities lazily as the returned stream is consumed. The stream must be closed after use.
+     *
+     * @see DataManager#loadStream(LoadContext)
+     */
+    public Stream<E> stream() {
+        LoadContext<E> loadContext = createLoadContext();
+        return dataManager.loadStream(loadContext);
+    }
+
     /**
      * Loads a single instance and wraps it in Optional.
      */
@@ -229,7 +240,10 @@ public class FluentLoader<E extends Entity<K>, K> {
         private int firstResult;
         private int maxResults;
         private boolean cacheable;
+        private int fetchSize;
+        private String keysetToken;
         private Condition condition;
+        private Sort sort;
 
         ByQuery(FluentLoader<E, K> loader, String queryString) {
             Preconditions.checkNotEmptyString(queryString, "queryString is empty");
@@ -251,9 +265,12 @@ public class FluentLoader<E extends Entity<K>, K> {
             loadContext.setQuery(query);
 
             loadContext.getQuery().setCondition(condition);
+            loadContext.getQuery().setSort(sort);
+            loadContext.getQuery().setKeysetToken(keysetToken);
             loadContext.getQuery().setFirstResult(firstResult);
             loadContext.getQuery().setMaxResults(maxResults);
             loadContext.getQuery().setCacheable(cacheable);
+            loadContext.getQuery().setFetchSize(fetchSize);
 
             return loadContext;
         }
@@ -266,6 +283,16 @@ public class FluentLoader<E extends Entity<K>, K> {
             return loader.dataManager.loadList(loadContext);
         }
 
+        /**
+         * Loads entities lazily as the returned stream is consumed. The stream must be closed after use.
+         *
+         * @see DataManager#loadStream(LoadContext)
+         */
+        public Stream<E> stream() {
+            LoadContext<E> loadContext = createLoadContext();
+            return loader.dataManager.loadStream(loadContext);
+        }
+
         /**
          * Loads a single instance and wraps it in Optional.
          */
@@ -328,6 +355,24 @@ public class FluentLoader<E extends Entity<K>, K> {
             return this;
         }
 
+        /**
+         * Sets sorting, e.g. {@code Sort.by(Sort.Direction.DESC, "name", "id")}.
+         */
+        public ByQuery<E, K> sort(Sort sort) {
+            this.sort = sort;
+            return this;
+        }
+
+        /**
+         * Loads the page following the position encoded in the token instead of using {@link #firstResult(int)}.
+         *
+         * @see KeysetToken
+         */
+        public ByQuery<E, K> keysetToken(String keysetToken) {
+            this.keysetToken = keysetToken;
+            return this;
+        }
+
         /**
          * Sets value for a query parameter.
 
@@ -392,6 +437,14 @@ public class FluentLoader<E extends Entity<K>, K> {
             return this;
         }
 
+        /**
+         * Sets the number of rows fetched from the database in one round trip by {@link #stream()}.
+         */
+        public ByQuery<E, K> fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
         /**
          * Indicates that the query results should be cached.
          * By default, queries are not cached.
@@ -156,6 +156,36 @@ public interface GlobalConfig extends Config {
     @DefaultBoolean(true)
     boolean getUseAstBasedJpqlTransformer();
 
+    /**
+     * @return maximum number of parsed JPQL query trees kept in {@link com.haulmont.cuba.core.sys.jpql.QueryTreeCache}.
+     * 0 disables caching.
+     */
+    @Property("cuba.jpqlQueryTreeCacheSize")
+    @DefaultInt(1000)
+    int getJpqlQueryTreeCacheSize();
+
+    /**
+     * @return maximum number of resolved messages kept in the {@link Messages} cache.
+     */
+    @Property("cuba.messagesCacheSize")
+    @DefaultInt(100000)
+    int getMessagesCacheSize();
+
+    /**
+     * @return time in seconds after the last access when a resolved message is evicted from the {@link Messages} cache.
+     * 0 means messages are not expired.
+     */
+    @Property("cuba.messagesCacheExpirationSec")
+    @DefaultInt(0)
+    int getMessagesCacheExpirationSec();
+
+    /**
+     * @return whether to load all message packs of the application on startup instead of on first use
+     */
+    @Property("cuba.preloadMessagePacks")
+    @DefaultBoolean(false)
+    boolean getPreloadMessagePacks();
+
     /**
      * @return Overridden AppFolderEditWindow class name
      */
@@ -194,6 +224,14 @@ public interface GlobalConfig extends Config {
     @DefaultInt(100)
     int getNumberIdCacheSize();
 
+    /**
+     * @return percentage of the cached id range after consumption of which the next range is requested in background.
+     * 0 disables prefetching.
+     */
+    @Property("cuba.numberIdCachePrefetchThreshold")
+    @DefaultInt(75)
+    int getNumberIdCachePrefetchThreshold();
+
     @Property("cuba.anonymousSessionId")
     @Factory(factory = UuidTypeFactory.class)
     UUID getAnonymousSessionId();
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.google.gson.*;
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.IdProxy;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Opaque continuation token for keyset (seek) pagination.
+ * <p>
+ * The token contains values of the sort properties and the identifier of the last loaded instance. When it is passed
+ * to {@link LoadContext.Query#setKeysetToken(String)}, the next page is selected by a predicate on these values
+ * instead of skipping rows by offset, so loading a deep page costs the same as loading the first one.
+ * <p>
+ * Usage example:
+ * <pre>
+ * Sort sort = Sort.by("name", "id");
+ * List&lt;Customer&gt; page = dataManager.load(Customer.class)
+ *      .query("select c from sample$Customer c")
+ *      .sort(sort)
+ *      .maxResults(50)
+ *      .list();
+ * String token = KeysetToken.of(page.get(page.size() - 1), sort);
+ * List&lt;Customer&gt; nextPage = dataManager.load(Customer.class)
+ *      .query("select c from sample$Customer c")
+ *      .sort(sort)
+ *      .keysetToken(token)
+ *      .maxResults(50)
+ *      .list();
+ * </pre>
+ * Sort properties must be non-null scalar persistent attributes sorted in the same direction. The primary key is
+ * implicitly added to the end of the sort when the next pages are loaded, so include it in the sort of the first page
+ * as well to get a stable order of instances with equal sort values.
+ * <p>
+ * The token is a JSON array of typed values, so only strings, numbers, booleans, identifiers and temporal values
+ * can be sort properties. Nothing but these types is ever instantiated when a token received from a client is decoded.
+ */
+public final class KeysetToken {
+
+    private KeysetToken() {
+    }
+
+    /**
+     * Creates a token pointing to the position right after the given instance.
+     *
+     * @param lastEntity    last instance of the current page
+     * @param sort          sort used to load the page, null if the page is sorted by identifier only
+     * @return              token to be passed to {@link LoadContext.Query#setKeysetToken(String)}
+     */
+    public static String of(Entity lastEntity, @Nullable Sort sort) {
+        Preconditions.checkNotNullArgument(lastEntity, "lastEntity is null");
+
+        String pkName = AppBeans.get(MetadataTools.class).getPrimaryKeyName(lastEntity.getMetaClass());
+
+        ArrayList<Object> values = new ArrayList<>();
+        boolean sortedByPk = false;
+        if (sort != null) {
+            for (Sort.Order order : sort.getOrders()) {
+                Object value = lastEntity.getValueEx(order.getProperty());
+                if (value instanceof Entity) {
+                    throw new IllegalArgumentException("Keyset pagination does not support sorting by reference attribute "
+                            + order.getProperty());
+                }
+                values.add(value instanceof IdProxy ? ((IdProxy) value).get() : value);
+                sortedByPk = sortedByPk || order.getProperty().equals(pkName);
+            }
+        }
+        if (!sortedByPk) {
+            Object id = lastEntity.getId();
+            values.add(id instanceof IdProxy ? ((IdProxy) id).get() : id);
+        }
+
+        return encode(values);
+    }
+
+    static String encode(List<Object> values) {
+        JsonArray array = new JsonArray();
+        for (Object value : values) {
+            array.add(encodeValue(value));
+        }
+        byte[] bytes = array.toString().getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Decodes values of the sort properties and the identifier from the token.
+     *
+     * @param token token created by {@link #of(Entity, Sort)}
+     * @return values in the order of sort properties followed by the identifier, unless the sort already contains it
+     * @throws IllegalArgumentException if the token is malformed or contains values of unsupported types
+     */
+    public static List<Object> decode(String token) {
+        Preconditions.checkNotEmptyString(token, "token is empty");
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            JsonArray array = new JsonParser().parse(json).getAsJsonArray();
+            List<Object> values = new ArrayList<>(array.size());
+            for (JsonElement element : array) {
+                values.add(decodeValue(element));
+            }
+            return values;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid keyset token", e);
+        }
+    }
+
+    private static JsonElement encodeValue(@Nullable Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Keyset pagination does not support null values of sort properties");
+        }
+        String type;
+        String text;
+        if (value instanceof String) {
+            type = "string";
+            text = (String) value;
+        } else if (value instanceof Integer) {
+            type = "int";
+            text = value.toString();
+        } else if (value instanceof Long) {
+            type = "long";
+            text = value.toString();
+        } else if (value instanceof Short) {
+            type = "short";
+            text = value.toString();
+        } else if (value instanceof Double) {
+            type = "double";
+            text = value.toString();
+        } else if (value instanceof Float) {
+            type = "float";
+            text = value.toString();
+        } else if (value instanceof BigDecimal) {
+            type = "decimal";
+            text = ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Boolean) {
+            type = "boolean";
+            text = value.toString();
+        } else if (value instanceof Character) {
+            type = "char";
+            text = value.toString();
+        } else if (value instanceof UUID) {
+            type = "uuid";
+            text = value.toString();
+        } else if (value instanceof Timestamp) {
+            // keep nanoseconds, otherwise the last row of a page is loaded again
+            type = "timestamp";
+            text = ((Timestamp) value).toInstant().toString();
+        } else if (value instanceof Date) {
+            type = "date";
+            text = String.valueOf(((Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            type = "localDate";
+            text = value.toString();
+        } else if (value instanceof LocalDateTime) {
+            type = "localDateTime";
+            text = value.toString();
+        } else if (value instanceof LocalTime) {
+            type = "localTime";
+            text = value.toString();
+        } else if (value instanceof OffsetDateTime) {
+            type = "offsetDateTime";
+            text = value.toString();
+        } else if (value instanceof OffsetTime) {
+            type = "offsetTime";
+            text = value.toString();
+        } else {
+            throw new IllegalArgumentException("Keyset pagination does not support sort values of type "
+                    + value.getClass().getName());
+        }
+        JsonObject object = new JsonObject();
+        object.addProperty("t", type);
+        object.addProperty("v", text);
+        return object;
+    }
+
+    private static Object decodeValue(JsonElement element) {
+        JsonObject object = element.getAsJsonObject();
+        String type = object.get("t").getAsString();
+        String text = object.get("v").getAsString();
+        switch (type) {
+            case "string":
+                return text;
+            case "int":
+                return Integer.valueOf(text);
+            case "long":
+                return Long.valueOf(text);
+            case "short":
+                return Short.valueOf(text);
+            case "double":
+                return Double.valueOf(text);
+            case "float":
+                return Float.valueOf(text);
+            case "decimal":
+                return new BigDecimal(text);
+            case "boolean":
+                return Boolean.valueOf(text);
+            case "char":
+                if (text.length() != 1) {
+                    throw new IllegalArgumentException("Invalid char value " + text);
+                }
+                return text.charAt(0);
+            case "uuid":
+                return UUID.fromString(text);
+            case "timestamp":
+                return Timestamp.from(Instant.parse(text));
+            case "date":
+                return new Date(Long.parseLong(text));
+            case "localDate":
+                return LocalDate.parse(text);
+            case "localDateTime":
+                return LocalDateTime.parse(text);
+            case "localTime":
+                return LocalTime.parse(text);
+            case "offsetDateTime":
+                return OffsetDateTime.parse(text);
+            case "offsetTime":
+                return OffsetTime.parse(text);
+            default:
+                throw new IllegalArgumentException("Unsupported value type " + type);
+        }
+    }
+}
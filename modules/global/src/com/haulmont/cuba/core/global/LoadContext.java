@@ -318,6 +318,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         private int firstResult;
         private int maxResults;
         private boolean cacheable;
+        private int fetchSize;
+        private String keysetToken;
         private Condition condition;
         private Sort sort;
 
@@ -420,6 +422,25 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return this;
         }
 
+        /**
+         * Sets the number of rows fetched from the database in one round trip when the results are loaded through
+         * {@link DataManager#loadStream(LoadContext)}. If 0 (default), the {@code cuba.dataManagerStreamFetchSize}
+         * application property is used.
+         * @param fetchSize JDBC fetch size
+         * @return this query instance for chaining
+         */
+        public Query setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        /**
+         * @return JDBC fetch size used by {@link DataManager#loadStream(LoadContext)}, 0 means default
+         */
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
         /**
          * @return root query condition
          */
@@ -452,6 +473,27 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return this;
         }
 
+        /**
+         * Switches the query to keyset (seek) pagination: only the rows following the position encoded in the token
+         * are loaded, and the results are additionally ordered by the identifier. Use {@link #setMaxResults(int)} to
+         * limit the page size, {@link #setFirstResult(int)} must be 0.
+         * @param keysetToken token created by {@link KeysetToken#of(Entity, Sort)} for the last instance of the
+         *                    previous page, or null to load the first page
+         * @return this query instance for chaining
+         */
+        public Query setKeysetToken(@Nullable String keysetToken) {
+            this.keysetToken = keysetToken;
+            return this;
+        }
+
+        /**
+         * @return keyset pagination token, or null if offset pagination is used
+         */
+        @Nullable
+        public String getKeysetToken() {
+            return keysetToken;
+        }
+
         /**
          * Indicates that the query results should be cached.
          * @return the same query instance
@@ -494,6 +536,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             query.firstResult = firstResult;
             query.maxResults = maxResults;
             query.cacheable = cacheable;
+            query.fetchSize = fetchSize;
+            query.keysetToken = keysetToken;
             return query;
         }
 
@@ -46,6 +46,13 @@ public class LockInfo extends BaseUuidEntity {
         this.user = user;
     }
 
+    public LockInfo(User user, String entityName, String entityId, Date since) {
+        this.entityName = entityName;
+        this.entityId = entityId;
+        this.since = since;
+        this.user = user;
+    }
+
     /**
      * @return locked object id
      */
@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.global;
 
 import groovy.lang.Binding;
+import groovy.lang.Script;
 
 import javax.annotation.Nullable;
 import java.util.Map;
@@ -52,6 +53,14 @@ public interface Scripting {
      */
     <T> T evaluateGroovy(String text, Binding binding);
 
+    /**
+     * Compiles Groovy expression to a script class. Instances of the class can be created with different bindings
+     * and run any number of times without compilation or taking them from the pool used by {@code evaluateGroovy}.
+     * @param text      expression text
+     * @return          compiled script class
+     */
+    Class<? extends Script> compileGroovy(String text);
+
     /**
      * Evaluates Groovy expression.
      * @param text      expression text
@@ -23,6 +23,9 @@ import com.haulmont.cuba.security.entity.ConstraintOperationType;
 import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Infrastructure interface providing methods to check permissions of the current user.
  */
@@ -127,6 +130,13 @@ public interface Security {
      */
     boolean isPermitted(Entity entity, ConstraintOperationType operationType);
 
+    /**
+     * Returns entities of the collection for which the operation type is permitted. Works like
+     * {@link #isPermitted(Entity, ConstraintOperationType)} called for each entity, but evaluates every constraint
+     * for the whole collection at once.
+     */
+    <T extends Entity> List<T> filterPermitted(Collection<T> entities, ConstraintOperationType operationType);
+
     /**
      * Check the special constraint permission for the entity
      */
@@ -142,5 +152,15 @@ public interface Security {
      */
     boolean hasInMemoryConstraints(MetaClass metaClass, ConstraintOperationType... operationTypes);
 
+    /**
+     * Evaluates the Groovy script of a constraint for the entity, e.g. to check a script entered in the constraint
+     * editor.
+     * <p>
+     * In-memory constraint checks made by {@link #isPermitted(Entity, ConstraintOperationType)},
+     * {@link #isPermitted(Entity, String)} and {@link #filterPermitted(Collection, ConstraintOperationType)} don't call
+     * this method: they run constraint scripts compiled once per constraint. To customize them, override
+     * {@code SecurityImpl.evaluateConstraintScript(Entity, ConstraintData, Script)} or
+     * {@code SecurityImpl.fillGroovyConstraintsContext(Map)}.
+     */
     Object evaluateConstraintScript(Entity entity, String groovyScript);
 }
\ No newline at end of file
@@ -26,23 +26,27 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringTokenizer;
-import org.apache.commons.text.TextStringBuilder;
 import org.perf4j.StopWatch;
 import org.perf4j.slf4j.Slf4JStopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -72,10 +76,10 @@ public abstract class AbstractMessages implements Messages {
 
     protected String mainMessagePack;
 
-    protected Map<String, String> strCache = new ConcurrentHashMap<>();
+    // found and not found messages by packs, key and locale
+    protected Cache<MessageKey, Optional<String>> messagesCache = CacheBuilder.newBuilder().recordStats().build();
 
-    // Using ConcurrentHashMap instead of synchronized Set for better parallelism
-    protected Map<String, String> notFoundCache = new ConcurrentHashMap<>();
+    protected Map<MessageKey, List<LookupStep>> lookupChains = new ConcurrentHashMap<>();
 
     protected Cache<String, Properties> filePropertiesCache = CacheBuilder.newBuilder().build();
     protected Cache<String, Properties> resourcePropertiesCache = CacheBuilder.newBuilder().build();
@@ -90,6 +94,15 @@ public abstract class AbstractMessages implements Messages {
     public void setConfiguration(Configuration configuration) {
         globalConfig = configuration.getConfig(GlobalConfig.class);
         confDir = globalConfig.getConfDir().replaceAll("\\\\", "/");
+
+        CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder()
+                .maximumSize(globalConfig.getMessagesCacheSize())
+                .recordStats();
+        int expirationSec = globalConfig.getMessagesCacheExpirationSec();
+        if (expirationSec > 0) {
+            cacheBuilder.expireAfterAccess(expirationSec, TimeUnit.SECONDS);
+        }
+        messagesCache = cacheBuilder.build();
     }
 
     @PostConstruct
@@ -139,6 +152,10 @@ public abstract class AbstractMessages implements Messages {
                     )
             );
         }
+
+        if (globalConfig.getPreloadMessagePacks()) {
+            preloadMessagePacks();
+        }
     }
 
     @Override
@@ -287,52 +304,90 @@ public abstract class AbstractMessages implements Messages {
 
     @Override
     public int getCacheSize() {
-        return strCache.size();
+        return (int) messagesCache.size();
+    }
+
+    /**
+     * @return number of message lookups served from the cache since it was created
+     */
+    public long getCacheHitCount() {
+        return messagesCache.stats().hitCount();
+    }
+
+    /**
+     * @return number of message lookups which required a search through the pack hierarchy
+     */
+    public long getCacheMissCount() {
+        return messagesCache.stats().missCount();
     }
 
     @Override
     public void clearCache() {
         filePropertiesCache.invalidateAll();
         resourcePropertiesCache.invalidateAll();
-        strCache.clear();
-        notFoundCache.clear();
+        lookupChains.clear();
+        messagesCache.invalidateAll();
     }
 
     protected String internalGetMessage(String packs, String key, Locale locale, String defaultValue,
                                         boolean searchMainIfNotFound) {
         locale = messageTools.trimLocale(locale);
 
-        String cacheKey = makeCacheKey(packs, key, locale, locale);
+        MessageKey cacheKey = new MessageKey(packs, key, locale);
 
-        String msg = strCache.get(cacheKey);
-        if (msg != null)
-            return msg;
+        Optional<String> cached = messagesCache.getIfPresent(cacheKey);
+        if (cached != null)
+            return cached.orElse(defaultValue);
 
-        String notFound = notFoundCache.get(cacheKey);
-        if (notFound != null)
-            return defaultValue;
+        String msg = searchMessage(getLookupChain(packs, locale), key, locale);
+        if (msg == null && searchMainIfNotFound) {
+            msg = searchMessage(getLookupChain(mainMessagePack, locale), key, locale);
+        }
 
-        msg = searchMessage(packs, key, locale, locale, new HashSet<>());
-        if (msg != null) {
-            cache(cacheKey, msg);
-            return msg;
+        if (msg == null) {
+            log.trace("Resource '{}' not found", cacheKey);
         }
+        messagesCache.put(cacheKey, Optional.ofNullable(msg));
 
-        if (searchMainIfNotFound) {
-            String tmpCacheKey = makeCacheKey(mainMessagePack, key, locale, locale);
-            msg = searchMessage(tmpCacheKey, key, locale, locale, new HashSet<>());
-            if (msg != null) {
-                cache(cacheKey, msg);
+        return msg != null ? msg : defaultValue;
+    }
+
+    @Nullable
+    protected String searchMessage(List<LookupStep> chain, String key, Locale locale) {
+        for (LookupStep step : chain) {
+            String msg = step.properties != null ?
+                    step.properties.getProperty(key) :
+                    searchRemotely(step.pack, key, locale);
+            if (msg != null)
                 return msg;
-            }
         }
+        return null;
+    }
+
+    /**
+     * Returns the ordered list of properties to search messages of the given packs in. The list is built once for
+     * every combination of packs and locale, so a lookup of any key is a plain scan of already loaded properties.
+     */
+    protected List<LookupStep> getLookupChain(String packs, Locale locale) {
+        MessageKey chainKey = new MessageKey(packs, null, locale);
+        List<LookupStep> chain = lookupChains.get(chainKey);
+        if (chain == null) {
+            chain = buildLookupChain(packs, locale);
+            List<LookupStep> existing = lookupChains.putIfAbsent(chainKey, chain);
+            if (existing != null)
+                chain = existing;
+        }
+        return chain;
+    }
 
-        notFoundCache.put(cacheKey, key);
-        return defaultValue;
+    protected List<LookupStep> buildLookupChain(String packs, Locale locale) {
+        List<LookupStep> chain = new ArrayList<>();
+        collectPacks(packs, locale, locale, new HashSet<>(), chain);
+        return Collections.unmodifiableList(chain);
     }
 
-    @Nullable
-    protected String searchMessage(String packs, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
+    protected void collectPacks(String packs, Locale locale, @Nullable Locale truncatedLocale, Set<String> passedPacks,
+                                List<LookupStep> chain) {
         StringTokenizer tokenizer = new StringTokenizer(packs);
         //noinspection unchecked
         List<String> list = tokenizer.getTokenList();
@@ -341,23 +396,14 @@ public abstract class AbstractMessages implements Messages {
             if (!enterPack(pack, locale, truncatedLocale, passedPacks))
                 continue;
 
-            String msg = searchOnePack(pack, key, locale, truncatedLocale, passedPacks);
-            if (msg != null)
-                return msg;
+            collectOnePack(pack, locale, truncatedLocale, passedPacks, chain);
 
             Locale tmpLocale = truncatedLocale;
             while (tmpLocale != null) {
                 tmpLocale = truncateLocale(tmpLocale);
-                msg = searchOnePack(pack, key, locale, tmpLocale, passedPacks);
-                if (msg != null)
-                    return msg;
+                collectOnePack(pack, locale, tmpLocale, passedPacks, chain);
             }
         }
-        if (log.isTraceEnabled()) {
-            String packName = new TextStringBuilder().appendWithSeparators(list, ",").toString();
-            log.trace("Resource '{}' not found", makeCacheKey(packName, key, locale, locale));
-        }
-        return null;
     }
 
     private Locale truncateLocale(Locale locale) {
@@ -373,116 +419,67 @@ public abstract class AbstractMessages implements Messages {
         return passedPacks.add(k);
     }
 
-    protected String searchOnePack(String pack, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
-        String cacheKey = makeCacheKey(pack, key, locale, truncatedLocale);
+    protected void collectOnePack(String pack, Locale locale, @Nullable Locale truncatedLocale, Set<String> passedPacks,
+                                  List<LookupStep> chain) {
+        collectFiles(pack, locale, truncatedLocale, passedPacks, chain);
+        collectClasspath(pack, locale, truncatedLocale, passedPacks, chain);
 
-        String msg = strCache.get(cacheKey);
-        if (msg != null)
-            return msg;
-
-        msg = searchFiles(pack, key, locale, truncatedLocale, passedPacks);
-        if (msg == null) {
-            msg = searchClasspath(pack, key, locale, truncatedLocale, passedPacks);
+        if (Objects.equals(locale, truncatedLocale)) {
+            chain.add(new LookupStep(null, pack));
         }
-        if (msg == null && locale.equals(truncatedLocale)) {
-            msg = searchRemotely(pack, key, locale);
-            if (msg != null) {
-                cache(cacheKey, msg);
-            }
-        }
-        return msg;
     }
 
-    protected void cache(String key, String msg) {
-        if (!strCache.containsKey(key))
-            strCache.put(key, msg);
-    }
-
-    protected String searchFiles(String pack, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
+    protected void collectFiles(String pack, Locale locale, @Nullable Locale truncatedLocale, Set<String> passedPacks,
+                                List<LookupStep> chain) {
         StopWatch stopWatch = new Slf4JStopWatch("Messages.searchFiles");
         try {
-            String cacheKey = makeCacheKey(pack, key, locale, truncatedLocale);
-
-            String msg = strCache.get(cacheKey);
-            if (msg != null)
-                return msg;
-
-            log.trace("searchFiles: {}", cacheKey);
+            log.trace("searchFiles: {}", makePackLocaleKey(pack, locale, truncatedLocale));
 
             String packPath = confDir + "/" + pack.replaceAll("\\.", "/");
             while (packPath != null && !packPath.equals(confDir)) {
                 Properties properties = loadPropertiesFromFile(packPath, locale, truncatedLocale);
                 if (properties != PROPERTIES_NOT_FOUND) {
-                    msg = getMessageFromProperties(pack, key, locale, truncatedLocale, properties, passedPacks);
-                    if (msg != null)
-                        return msg;
+                    collectProperties(properties, locale, truncatedLocale, passedPacks, chain);
                 }
-                // not found, keep searching
                 int pos = packPath.lastIndexOf("/");
                 if (pos < 0)
                     packPath = null;
                 else
                     packPath = packPath.substring(0, pos);
             }
-            return null;
         } finally {
             stopWatch.stop();
         }
     }
 
-    protected String searchClasspath(String pack, String key, Locale locale, Locale truncatedLocale, Set<String> passedPacks) {
+    protected void collectClasspath(String pack, Locale locale, @Nullable Locale truncatedLocale, Set<String> passedPacks,
+                                    List<LookupStep> chain) {
         StopWatch stopWatch = new Slf4JStopWatch("Messages.searchClasspath");
         try {
-            String cacheKey = makeCacheKey(pack, key, locale, truncatedLocale);
-
-            String msg = strCache.get(cacheKey);
-            if (msg != null)
-                return msg;
-
-            log.trace("searchClasspath: {}", cacheKey);
+            log.trace("searchClasspath: {}", makePackLocaleKey(pack, locale, truncatedLocale));
 
             String packPath = "/" + pack.replaceAll("\\.", "/");
             while (packPath != null) {
                 Properties properties = loadPropertiesFromResource(packPath, locale, truncatedLocale);
                 if (properties != PROPERTIES_NOT_FOUND) {
-                    msg = getMessageFromProperties(pack, key, locale, truncatedLocale, properties, passedPacks);
-                    if (msg != null)
-                        return msg;
+                    collectProperties(properties, locale, truncatedLocale, passedPacks, chain);
                 }
-                // not found, keep searching
                 int pos = packPath.lastIndexOf("/");
                 if (pos < 0)
                     packPath = null;
                 else
                     packPath = packPath.substring(0, pos);
             }
-            return null;
         } finally {
             stopWatch.stop();
         }
     }
 
-    @Nullable
-    protected String getMessageFromProperties(String pack, String key, Locale locale, Locale truncatedLocale,
-                                              Properties properties, Set<String> passedPacks) {
-        String message;
-        message = properties.getProperty(key);
-        if (message != null) {
-            cache(makeCacheKey(pack, key, locale, truncatedLocale), message);
-            if (truncatedLocale == null)
-                cache(makeCacheKey(pack, key, locale, null), message);
-        }
+    protected void collectProperties(Properties properties, Locale locale, @Nullable Locale truncatedLocale,
+                                     Set<String> passedPacks, List<LookupStep> chain) {
+        chain.add(new LookupStep(properties, null));
 
-        if (message == null) {
-            // process includes after to support overriding
-            message = searchIncludes(properties, key, locale, truncatedLocale, passedPacks);
-        }
-        return message;
-    }
-
-    @Nullable
-    protected String searchIncludes(Properties properties, String key, Locale locale, Locale truncatedLocale,
-                                    Set<String> passedPacks) {
+        // included packs follow the including file to support overriding
         String includesProperty = properties.getProperty("@include");
         if (includesProperty != null) {
             // multiple includes separated by comma
@@ -492,15 +489,61 @@ public abstract class AbstractMessages implements Messages {
                 for (String includePath : includes) {
                     includePath = StringUtils.trimToNull(includePath);
                     if (includePath != null) {
-                        String message = searchMessage(includePath, key, locale, truncatedLocale, passedPacks);
-                        if (message != null) {
-                            return message;
-                        }
+                        collectPacks(includePath, locale, truncatedLocale, passedPacks, chain);
                     }
                 }
             }
         }
-        return null;
+    }
+
+    /**
+     * Builds lookup chains of all message packs found in the classpath for all available locales, so that properties
+     * files are loaded at startup instead of on the first screen. Packs are searched under the parent packages of
+     * the main message packs, e.g. {@code com.company.app} for {@code com.company.app.web}.
+     */
+    protected void preloadMessagePacks() {
+        StopWatch stopWatch = new Slf4JStopWatch("Messages.preloadMessagePacks");
+        try {
+            Set<String> packs = findMessagePacks();
+            for (Locale locale : globalConfig.getAvailableLocales().values()) {
+                Locale trimmedLocale = messageTools.trimLocale(locale);
+                for (String pack : packs) {
+                    getLookupChain(pack, trimmedLocale);
+                }
+            }
+            log.info("Preloaded {} message packs", packs.size());
+        } finally {
+            stopWatch.stop();
+        }
+    }
+
+    protected Set<String> findMessagePacks() {
+        Set<String> packs = new TreeSet<>();
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+        Set<String> rootPaths = new LinkedHashSet<>();
+        for (String mainPack : StringUtils.split(mainMessagePack, " ")) {
+            int pos = mainPack.lastIndexOf('.');
+            rootPaths.add((pos > 0 ? mainPack.substring(0, pos) : mainPack).replace('.', '/'));
+        }
+
+        for (String rootPath : rootPaths) {
+            try {
+                Resource[] resources = resolver.getResources(
+                        ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + rootPath + "/**/" + BUNDLE_NAME + "*" + EXT);
+                for (Resource resource : resources) {
+                    String url = resource.getURL().toString();
+                    int start = url.lastIndexOf("/" + rootPath + "/");
+                    int end = url.lastIndexOf('/');
+                    if (start >= 0 && end > start) {
+                        packs.add(url.substring(start + 1, end).replace('/', '.'));
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Unable to find message packs in " + rootPath, e);
+            }
+        }
+        return packs;
     }
 
     protected Properties loadPropertiesFromFile(String packPath, Locale locale, Locale truncatedLocale) {
@@ -548,11 +591,11 @@ public abstract class AbstractMessages implements Messages {
         return (locale != null ? "_" + locale : "");
     }
 
-    protected String makeCacheKey(String pack, String key, @Nullable Locale locale, @Nullable Locale truncatedLocale) {
+    protected String makePackLocaleKey(String pack, @Nullable Locale locale, @Nullable Locale truncatedLocale) {
         if (truncatedLocale == null)
-            return pack + "/default/" + key;
+            return pack + "/default";
 
-        return pack + "/" + (locale == null ? "default" : locale) + "/" + key;
+        return pack + "/" + (locale == null ? "default" : locale);
     }
 
     protected String getPackName(Class c) {
@@ -563,4 +606,56 @@ public abstract class AbstractMessages implements Messages {
         else
             return "";
     }
-}
\ No newline at end of file
+
+    /**
+     * Element of a lookup chain: either loaded properties or a pack to search remotely.
+     */
+    protected static class LookupStep {
+        protected final Properties properties;
+        protected final String pack;
+
+        protected LookupStep(@Nullable Properties properties, @Nullable String pack) {
+            this.properties = properties;
+            this.pack = pack;
+        }
+    }
+
+    /**
+     * Cache key of a message or, with null key, of a lookup chain.
+     */
+    protected static final class MessageKey {
+        private final String packs;
+        private final String key;
+        private final Locale locale;
+        private final int hash;
+
+        public MessageKey(String packs, @Nullable String key, @Nullable Locale locale) {
+            this.packs = packs;
+            this.key = key;
+            this.locale = locale;
+            this.hash = Objects.hash(packs, key, locale);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            MessageKey that = (MessageKey) o;
+            return hash == that.hash
+                    && packs.equals(that.packs)
+                    && Objects.equals(key, that.key)
+                    && Objects.equals(locale, that.locale);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return packs + "/" + (locale == null ? "default" : locale) + (key != null ? "/" + key : "");
+        }
+    }
+}
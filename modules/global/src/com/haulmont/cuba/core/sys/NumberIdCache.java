@@ -17,75 +17,187 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.annotation.IdSequence;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Intermediate cache for generated ids of entities with long/integer PK.
- * The cache size is determined by the {@code cuba.numberIdCacheSize} app property.
+ * <p>
+ * The cache size is determined by the {@code cuba.numberIdCacheSize} app property, or by the
+ * {@link IdSequence#cacheSize()} attribute of the entity. Ids are allocated from the current range without locking.
+ * When the part of the range defined by the {@code cuba.numberIdCachePrefetchThreshold} app property is consumed,
+ * the next range is requested from the sequence in background, so that threads normally do not wait for the database
+ * when the current range is exhausted.
  */
 @Component(NumberIdCache.NAME)
 public class NumberIdCache {
 
     public static final String NAME = "cuba_NumberIdCache";
 
+    private static final Logger log = LoggerFactory.getLogger(NumberIdCache.class);
+
     @Inject
     protected Metadata metadata;
 
+    /**
+     * Range of ids obtained by one call to the sequence.
+     */
+    protected static class Range {
+        protected final long end;
+        protected final long prefetchAt;
+        protected final AtomicLong counter;
+
+        public Range(long sequenceValue, int size, int prefetchThreshold) {
+            this.counter = new AtomicLong(sequenceValue);
+            this.end = sequenceValue + size;
+            // a single-value range is consumed by the same call that would trigger prefetching
+            this.prefetchAt = prefetchThreshold > 0 && size > 1
+                    ? sequenceValue + Math.max(1, (long) size * prefetchThreshold / 100)
+                    : Long.MAX_VALUE;
+        }
+    }
+
     protected class Generator {
-        protected long counter;
-        protected long sequenceValue;
         protected String entityName;
         protected String sequenceName;
         protected boolean cached;
+        protected int cacheSize;
         protected NumberIdSequence numberIdSequence;
 
+        protected final AtomicReference<Range> current = new AtomicReference<>();
+        protected volatile Future<Range> prefetched;
+
         public Generator(String entityName,
                          String sequenceName,
                          boolean cached,
+                         int cacheSize,
                          NumberIdSequence sequence) {
             this.entityName = entityName;
             this.sequenceName = sequenceName;
             this.cached = cached;
+            this.cacheSize = cacheSize;
             this.numberIdSequence = sequence;
             if (useIdCache()) {
-                createCachedCounter();
+                current.set(createRange());
             }
         }
 
         protected boolean useIdCache() {
-            return config.getNumberIdCacheSize() != 0 && cached;
+            return getCacheSize() != 0 && cached;
+        }
+
+        protected int getCacheSize() {
+            return cacheSize > 0 ? cacheSize : config.getNumberIdCacheSize();
         }
 
-        protected void createCachedCounter() {
-            sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
-            counter = sequenceValue;
+        protected Range createRange() {
+            int size = getCacheSize();
+            long sequenceValue = cacheSize > 0
+                    ? numberIdSequence.createCachedLongId(entityName, sequenceName, size)
+                    : numberIdSequence.createCachedLongId(entityName, sequenceName);
+            rangeRequests.increment();
+            return new Range(sequenceValue, size, config.getNumberIdCachePrefetchThreshold());
         }
 
-        public synchronized long getNext() {
+        public long getNext() {
             if (!useIdCache()) {
+                allocations.increment();
                 return numberIdSequence.createLongId(entityName, sequenceName);
-            } else {
-                long next = ++counter;
-                if (next > sequenceValue + config.getNumberIdCacheSize()) {
-                    createCachedCounter();
-                    next = ++counter;
+            }
+            while (true) {
+                Range range = current.get();
+                if (range == null) {
+                    switchRange(null);
+                    continue;
+                }
+                long next = range.counter.incrementAndGet();
+                if (next <= range.end) {
+                    if (next == range.prefetchAt) {
+                        prefetch();
+                    }
+                    allocations.increment();
+                    return next;
+                }
+                switchRange(range);
+            }
+        }
+
+        protected void prefetch() {
+            prefetched = getPrefetchExecutor().submit(new SecurityContextAwareCallable<>(this::createRange));
+        }
+
+        /**
+         * Replaces the exhausted range by the prefetched one, or by a range requested synchronously if prefetching
+         * has not been started or has failed. Only one thread switches the range, others wait for it.
+         */
+        protected synchronized void switchRange(@Nullable Range exhausted) {
+            if (current.get() != exhausted)
+                return;
+
+            long start = System.nanoTime();
+            Range next = null;
+            Future<Range> future = prefetched;
+            prefetched = null;
+            boolean waiting = future == null || !future.isDone();
+            if (future != null) {
+                try {
+                    next = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for id range of " + entityName, e);
+                } catch (ExecutionException e) {
+                    log.warn("Unable to prefetch id range for {}, requesting it again", entityName, e.getCause());
+                }
+            }
+            if (next == null) {
+                next = createRange();
+            }
+            current.set(next);
+
+            if (waiting) {
+                waits.increment();
+                waitTimeNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        protected void awaitPrefetch() {
+            Future<Range> future = prefetched;
+            if (future != null) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    // ignore, the range is discarded anyway
                 }
-                return next;
             }
         }
     }
 
     protected ConcurrentMap<String, Generator> cache = new ConcurrentHashMap<>();
 
+    protected volatile ExecutorService prefetchExecutor;
+
+    protected final LongAdder allocations = new LongAdder();
+    protected final LongAdder rangeRequests = new LongAdder();
+    protected final LongAdder waits = new LongAdder();
+    protected final LongAdder waitTimeNanos = new LongAdder();
+
     @Inject
     protected GlobalConfig config;
 
@@ -100,32 +212,93 @@ public class NumberIdCache {
         MetaClass metaClass = metadata.getClass(entityName);
         final boolean cached;
         final String sequenceName;
+        final int cacheSize;
         if (metaClass != null) {
             Map attributes = (Map) metaClass.getAnnotations().get(IdSequence.class.getName());
             if (attributes != null) {
                 sequenceName = (String) attributes.get("name");
                 cached = Boolean.TRUE.equals(attributes.get("cached"));
+                Integer size = (Integer) attributes.get("cacheSize");
+                cacheSize = size != null ? size : 0;
             } else {
                 cached = true;
                 sequenceName = null;
+                cacheSize = 0;
             }
         } else {
             cached = true;
             sequenceName = null;
+            cacheSize = 0;
         }
 
-        Generator gen = cache.computeIfAbsent(getCacheKey(entityName, sequenceName), s -> new Generator(entityName, sequenceName, cached, sequence));
+        Generator gen = cache.computeIfAbsent(getCacheKey(entityName, sequenceName),
+                s -> new Generator(entityName, sequenceName, cached, cacheSize, sequence));
         return gen.getNext();
     }
 
+    /**
+     * @return total number of ids allocated since start
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * @return total number of id ranges requested from sequences
+     */
+    public long getRangeRequestCount() {
+        return rangeRequests.sum();
+    }
+
+    /**
+     * @return number of times when threads had to wait for a new id range
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    /**
+     * @return total time in milliseconds spent by threads waiting for new id ranges
+     */
+    public long getWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitTimeNanos.sum());
+    }
+
     /**
      * INTERNAL. Used by tests.
      */
     public void reset() {
+        for (Generator generator : cache.values()) {
+            generator.awaitPrefetch();
+        }
         cache.clear();
     }
 
+    protected ExecutorService getPrefetchExecutor() {
+        ExecutorService executor = prefetchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = prefetchExecutor;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                            .setNameFormat("NumberIdCachePrefetch-%d")
+                            .setDaemon(true)
+                            .build());
+                    prefetchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    protected void shutdown() {
+        if (prefetchExecutor != null) {
+            prefetchExecutor.shutdownNow();
+        }
+    }
+
     protected String getCacheKey(String entityName, String sequenceName) {
         return sequenceName == null ? entityName : sequenceName;
     }
-}
\ No newline at end of file
+}
@@ -22,4 +22,6 @@ public interface NumberIdSequence {
     Long createLongId(String entityName, String sequenceName);
 
     Long createCachedLongId(String entityName, String sequenceName);
+
+    Long createCachedLongId(String entityName, String sequenceName, int cacheSize);
 }
\ No newline at end of file
@@ -30,7 +30,10 @@ import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import com.haulmont.cuba.security.global.ConstraintData;
 import com.haulmont.cuba.security.global.UserSession;
+import groovy.lang.Binding;
+import groovy.lang.Script;
 import org.apache.commons.lang3.StringUtils;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.codehaus.groovy.runtime.MethodClosure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +42,7 @@ import org.springframework.stereotype.Component;
 import javax.inject.Inject;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -66,6 +70,19 @@ public class SecurityImpl implements Security {
     @Inject
     protected Scripting scripting;
 
+    // compiled constraint scripts by constraint id
+    protected Map<Object, CompiledConstraint> compiledConstraints = new ConcurrentHashMap<>();
+
+    protected static class CompiledConstraint {
+        protected final String groovyScript;
+        protected final Class<? extends Script> scriptClass;
+
+        public CompiledConstraint(String groovyScript, Class<? extends Script> scriptClass) {
+            this.groovyScript = groovyScript;
+            this.scriptClass = scriptClass;
+        }
+    }
+
     @Override
     public boolean isScreenPermitted(String windowAlias) {
         return userSessionSource.getUserSession().isScreenPermitted(windowAlias);
@@ -204,36 +221,140 @@ public class SecurityImpl implements Security {
         return constraints;
     }
 
+    @Override
+    public <T extends Entity> List<T> filterPermitted(Collection<T> entities, ConstraintOperationType targetOperationType) {
+        Set<Entity> notPermitted = getNotPermitted(entities, constraint -> {
+            ConstraintOperationType operationType = constraint.getOperationType();
+            return constraint.getCheckType().memory()
+                    && (
+                    (targetOperationType == ALL && operationType != CUSTOM)
+                            || operationType == targetOperationType
+                            || operationType == ALL
+            );
+        });
+        return entities.stream()
+                .filter(entity -> !notPermitted.contains(entity))
+                .collect(Collectors.toList());
+    }
+
     protected boolean isPermitted(Entity entity, Predicate<ConstraintData> predicate) {
         List<ConstraintData> constraints = getConstraints(entity.getMetaClass(), predicate);
+        if (constraints.isEmpty()) {
+            return true;
+        }
+        Binding binding = createConstraintBinding();
         for (ConstraintData constraint : constraints) {
-            if (!isPermitted(entity, constraint)) {
+            if (!isPermitted(entity, constraint, binding)) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Evaluates constraints matching the predicate for the whole collection. Each constraint script is instantiated
+     * once per metaClass and run for all entities not rejected by previous constraints.
+     *
+     * @return identity set of entities which don't satisfy the constraints
+     */
+    protected Set<Entity> getNotPermitted(Collection<? extends Entity> entities, Predicate<ConstraintData> predicate) {
+        Set<Entity> notPermitted = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (entities.isEmpty()) {
+            return notPermitted;
+        }
+
+        Map<MetaClass, List<Entity>> entitiesByMetaClass = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            entitiesByMetaClass.computeIfAbsent(entity.getMetaClass(), metaClass -> new ArrayList<>()).add(entity);
+        }
+
+        Binding binding = null;
+        for (Map.Entry<MetaClass, List<Entity>> entry : entitiesByMetaClass.entrySet()) {
+            List<ConstraintData> constraints = getConstraints(entry.getKey(), predicate);
+            for (ConstraintData constraint : constraints) {
+                if (!constraint.getCheckType().memory() || StringUtils.isBlank(constraint.getGroovyScript())) {
+                    continue;
+                }
+                if (binding == null) {
+                    binding = createConstraintBinding();
+                }
+                Script script = createConstraintScript(constraint, binding);
+                for (Entity entity : entry.getValue()) {
+                    if (!notPermitted.contains(entity) && !isPermitted(entity, constraint, script)) {
+                        notPermitted.add(entity);
+                    }
+                }
+            }
+        }
+        return notPermitted;
+    }
+
     protected boolean isPermitted(Entity entity, ConstraintData constraint) {
+        return isPermitted(entity, constraint, createConstraintBinding());
+    }
+
+    protected boolean isPermitted(Entity entity, ConstraintData constraint, Binding binding) {
+        if (constraint.getCheckType().memory() && StringUtils.isNotBlank(constraint.getGroovyScript())) {
+            return isPermitted(entity, constraint, createConstraintScript(constraint, binding));
+        }
+        return true;
+    }
+
+    protected boolean isPermitted(Entity entity, ConstraintData constraint, Script script) {
         String metaClassName = entity.getMetaClass().getName();
-        String groovyScript = constraint.getGroovyScript();
-        if (constraint.getCheckType().memory() && StringUtils.isNotBlank(groovyScript)) {
-            try {
-                Object o = evaluateConstraintScript(entity, groovyScript);
-                if (Boolean.FALSE.equals(o)) {
-                    log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
-                            metaClassName, entity.getId(), constraint.getCheckType());
-                    return false;
-                }
-            } catch (Exception e) {
-                log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
-                        "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+        try {
+            Object o = evaluateConstraintScript(entity, constraint, script);
+            if (Boolean.FALSE.equals(o)) {
+                log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
+                        metaClassName, entity.getId(), constraint.getCheckType());
                 return false;
             }
+        } catch (Exception e) {
+            log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
+                    "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+            return false;
         }
         return true;
     }
 
+    /**
+     * Runs the compiled script of an in-memory constraint for the entity. Override to customize evaluation of
+     * in-memory constraints, {@link #evaluateConstraintScript(Entity, String)} is not called for them.
+     *
+     * @param entity     entity to check
+     * @param constraint constraint the script is compiled for
+     * @param script     script instance created by {@link #createConstraintScript(ConstraintData, Binding)}
+     * @return script result, the entity is rejected if it is {@code false}
+     */
+    protected Object evaluateConstraintScript(Entity entity, ConstraintData constraint, Script script) {
+        script.getBinding().setVariable("__entity__", entity);
+        return script.run();
+    }
+
+    /**
+     * Creates an instance of the constraint script compiled once per constraint. The instance isn't thread-safe, so
+     * it must be used in the current thread only.
+     */
+    protected Script createConstraintScript(ConstraintData constraint, Binding binding) {
+        String groovyScript = constraint.getGroovyScript();
+        Object key = constraint.getId() != null ? constraint.getId() : groovyScript;
+        CompiledConstraint compiled = compiledConstraints.get(key);
+        if (compiled == null || !compiled.groovyScript.equals(groovyScript)) {
+            compiled = new CompiledConstraint(groovyScript,
+                    scripting.compileGroovy(groovyScript.replace("{E}", "__entity__")));
+            compiledConstraints.put(key, compiled);
+        }
+        return InvokerHelper.createScript(compiled.scriptClass, binding);
+    }
+
+    protected Binding createConstraintBinding() {
+        Map<String, Object> context = new HashMap<>();
+        context.put("parse", new MethodClosure(this, "parseValue"));
+        context.put("userSession", userSessionSource.getUserSession());
+        fillGroovyConstraintsContext(context);
+        return new Binding(context);
+    }
+
     @Override
     public Object evaluateConstraintScript(Entity entity, String groovyScript) {
         Map<String, Object> context = new HashMap<>();
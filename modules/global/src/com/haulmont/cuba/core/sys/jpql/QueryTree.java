@@ -43,17 +43,40 @@ public class QueryTree {
 
     public QueryTree(DomainModel model, String query, boolean failOnErrors) {
         Preconditions.checkNotNull(query, "query is null");
-        String modifiedQuery = StringUtils.replaceChars(query, "\n\r\t", "   ");
 
         this.model = model;
+        this.tree = parse(normalizeQuery(query), failOnErrors);
+
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
+    /**
+     * Creates a query tree on top of an already parsed AST. The tree becomes owned by this instance and is modified
+     * by transformations, so it must not be shared.
+     *
+     * @see QueryTreeCache
+     */
+    public QueryTree(DomainModel model, CommonTree tree) {
+        Preconditions.checkNotNull(tree, "tree is null");
+
+        this.model = model;
+        this.tree = tree;
+
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
+    public static String normalizeQuery(String query) {
+        return StringUtils.replaceChars(query, "\n\r\t", "   ");
+    }
+
+    public static CommonTree parse(String query, boolean failOnErrors) {
         try {
-            this.tree = Parser.parse(modifiedQuery, failOnErrors);
+            return Parser.parse(query, failOnErrors);
         } catch (RecognitionException e) {
             throw new JPA2RecognitionException("JPA grammar recognition error", e);
         }
-
-        this.idVarSelector = new IdVarSelector(model);
-        new TreeVisitor().visit(tree, idVarSelector);
     }
 
     public DomainModel getModel() {
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.jpql;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import org.antlr.runtime.tree.CommonTree;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * Bounded cache of parsed JPQL syntax trees keyed by query text.
+ * <p>
+ * Cached trees are never exposed: each {@link QueryTree} returned by {@link #getTree(DomainModel, String)} is built on
+ * a deep copy, so transformations applied to it do not affect other users of the same query.
+ */
+@Component(QueryTreeCache.NAME)
+public class QueryTreeCache {
+
+    public static final String NAME = "cuba_QueryTreeCache";
+
+    protected Cache<String, CommonTree> cache;
+
+    protected int maxSize;
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        maxSize = configuration.getConfig(GlobalConfig.class).getJpqlQueryTreeCacheSize();
+        if (maxSize > 0) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumSize(maxSize)
+                    .recordStats()
+                    .build();
+        }
+    }
+
+    /**
+     * Returns a new query tree for the given query. The query is parsed only if its syntax tree is not cached yet.
+     *
+     * @throws JpqlSyntaxException if the query contains syntax errors
+     */
+    public QueryTree getTree(DomainModel model, String query) {
+        Preconditions.checkNotNull(query, "query is null");
+        String normalizedQuery = QueryTree.normalizeQuery(query);
+
+        if (cache == null) {
+            return new QueryTree(model, QueryTree.parse(normalizedQuery, true));
+        }
+
+        CommonTree parsedTree = cache.getIfPresent(normalizedQuery);
+        if (parsedTree == null) {
+            parsedTree = QueryTree.parse(normalizedQuery, true);
+            cache.put(normalizedQuery, parsedTree);
+        }
+        return new QueryTree(model, copyTree(parsedTree));
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getSize() {
+        return cache != null ? cache.size() : 0;
+    }
+
+    public long getHitCount() {
+        return cache != null ? cache.stats().hitCount() : 0;
+    }
+
+    public long getMissCount() {
+        return cache != null ? cache.stats().missCount() : 0;
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Creates a deep copy of the tree. Nodes are duplicated by {@code dupNode()} which keeps custom node state,
+     * children are then replaced with their own deep copies.
+     */
+    protected CommonTree copyTree(@Nullable CommonTree node) {
+        if (node == null) {
+            return null;
+        }
+        CommonTree copy = (CommonTree) node.dupNode();
+        // custom nodes duplicate their children too, but plain nodes don't, so rebuild children uniformly
+        while (copy.getChildCount() > 0) {
+            copy.deleteChild(copy.getChildCount() - 1);
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            copy.addChild(copyTree((CommonTree) node.getChild(i)));
+        }
+        return copy;
+    }
+}
@@ -34,6 +34,7 @@ import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import javax.inject.Inject;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -50,6 +51,9 @@ public class QueryTransformerAstBased implements QueryTransformer {
     protected QueryTreeAnalyzer queryAnalyzer;
     protected Set<String> addedParams = new HashSet<>();
 
+    @Inject
+    protected QueryTreeCache queryTreeCache;
+
     public QueryTransformerAstBased(DomainModel model, String query) {
         this.model = model;
         this.query = query;
@@ -72,7 +76,7 @@ public class QueryTransformerAstBased implements QueryTransformer {
     protected QueryTree getTree() {
         if (queryTree == null) {
             try {
-                queryTree = new QueryTree(model, query);
+                queryTree = queryTreeCache != null ? queryTreeCache.getTree(model, query) : new QueryTree(model, query);
             } catch (JPA2RecognitionException e) {
                 throw new JpqlSyntaxException(format("Errors found for input JPQL:[%s]\n%s", StringUtils.strip(query), e.getMessage()));
             }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.google.common.io.CountingInputStream;
+import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration;
+import org.springframework.remoting.httpinvoker.HttpInvokerRequestExecutor;
+import org.springframework.remoting.rmi.CodebaseAwareObjectInputStream;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.util.StopWatch;
+
+import javax.annotation.Nullable;
+import java.io.*;
+
+/**
+ * HttpInvokerRequestExecutor that uses the pooled HTTP client provided by {@link RemotingHttpClient}.
+ * <p>
+ * Unlike {@link ClusteredHttpInvokerRequestExecutor}, connections to middleware nodes are kept alive and reused
+ * between invocations, and the invocation is serialized directly into the connection output stream instead of
+ * an intermediate byte array. The server is selected and failed over by {@link ServerSelector} in the same way.
+ */
+public class ClusteredHttpComponentsRequestExecutor implements HttpInvokerRequestExecutor, BeanClassLoaderAware {
+
+    public static final String CONTENT_TYPE_SERIALIZED_OBJECT = "application/x-java-serialized-object";
+
+    private static final Logger log = LoggerFactory.getLogger(ClusteredHttpComponentsRequestExecutor.class);
+
+    protected ServerSelector serverSelector;
+
+    protected RemotingHttpClient remotingHttpClient;
+
+    protected ClassLoader beanClassLoader;
+
+    public ClusteredHttpComponentsRequestExecutor(ServerSelector serverSelector, RemotingHttpClient remotingHttpClient) {
+        this.serverSelector = serverSelector;
+        this.remotingHttpClient = remotingHttpClient;
+    }
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.beanClassLoader = classLoader;
+    }
+
+    @Override
+    public RemoteInvocationResult executeRequest(HttpInvokerClientConfiguration config, RemoteInvocation invocation)
+            throws Exception {
+
+        RemoteInvocationResult result;
+
+        Object context = serverSelector.initContext();
+        String url = currentServiceUrl(serverSelector.getUrl(context), config);
+        if (url == null)
+            throw new IllegalStateException("Server URL list is empty");
+
+        while (true) {
+            HttpPost httpPost = createHttpPost(url, invocation);
+            try {
+                StopWatch sw = new StopWatch();
+                sw.start("waiting time");
+                try (CloseableHttpResponse response = remotingHttpClient.getHttpClient().execute(httpPost)) {
+                    validateResponse(url, response);
+                    CountingInputStream responseInputStream = new CountingInputStream(response.getEntity().getContent());
+                    sw.stop();
+
+                    serverSelector.success(context);
+
+                    sw.start("reading time");
+                    try (ObjectInputStream ois = new CodebaseAwareObjectInputStream(
+                            responseInputStream, beanClassLoader, config.getCodebaseUrl())) {
+                        result = (RemoteInvocationResult) SerializationSupport.deserialize(ois);
+                    }
+                    // consume the rest of the entity so that the connection can be returned to the pool
+                    EntityUtils.consume(response.getEntity());
+                    sw.stop();
+                    if (log.isDebugEnabled()) {
+                        log.debug(String.format("Receiving HTTP invoker response for service at [%s], with size %s, %s",
+                                config.getServiceUrl(), responseInputStream.getCount(), printStopWatch(sw)));
+                    }
+                }
+                break;
+            } catch (IOException e) {
+                httpPost.abort();
+                log.info(String.format("Invocation of %s failed: %s", url, e));
+
+                serverSelector.fail(context);
+                url = currentServiceUrl(serverSelector.getUrl(context), config);
+                if (url != null) {
+                    log.info("Trying to invoke the next available URL: " + url);
+                    continue;
+                }
+                log.info("No more URL available");
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    protected String currentServiceUrl(String url, HttpInvokerClientConfiguration config) {
+        return url == null ? null : url + "/" + config.getServiceUrl();
+    }
+
+    protected HttpPost createHttpPost(String serviceUrl, RemoteInvocation invocation) {
+        HttpPost httpPost = new HttpPost(serviceUrl);
+        httpPost.setEntity(new InvocationEntity(invocation));
+        return httpPost;
+    }
+
+    protected void validateResponse(String serviceUrl, HttpResponse response) throws IOException {
+        StatusLine status = response.getStatusLine();
+        if (status.getStatusCode() >= 300) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            throw new NoHttpResponseException(String.format(
+                    "Did not receive successful HTTP response from [%s]: status code = %s, status message = [%s]",
+                    serviceUrl, status.getStatusCode(), status.getReasonPhrase()));
+        }
+        if (response.getEntity() == null) {
+            throw new NoHttpResponseException(String.format("Empty HTTP response from [%s]", serviceUrl));
+        }
+    }
+
+    protected String printStopWatch(StopWatch sw) {
+        StringBuilder sb = new StringBuilder();
+        StopWatch.TaskInfo[] tasks = sw.getTaskInfo();
+        for (int i = 0; i < tasks.length; i++) {
+            StopWatch.TaskInfo task = tasks[i];
+            sb.append(task.getTaskName()).append(" ").append(task.getTimeMillis());
+            if (i < tasks.length - 1) {
+                sb.append(", ");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Request entity that serializes the invocation straight into the connection stream using chunked encoding.
+     * The entity is repeatable, so the invocation is serialized again when it is sent to another server on failover.
+     */
+    protected static class InvocationEntity extends AbstractHttpEntity {
+
+        protected final RemoteInvocation invocation;
+
+        public InvocationEntity(RemoteInvocation invocation) {
+            this.invocation = invocation;
+            setContentType(CONTENT_TYPE_SERIALIZED_OBJECT);
+            setChunked(true);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(1024);
+            writeTo(baos);
+            return new ByteArrayInputStream(baos.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            ObjectOutputStream oos = new ObjectOutputStream(new NonClosingOutputStream(outputStream));
+            try {
+                SerializationSupport.serialize(invocation, oos);
+            } finally {
+                oos.close();
+            }
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    /**
+     * Prevents the serializer from closing the connection stream, which is managed by the HTTP client.
+     */
+    protected static class NonClosingOutputStream extends FilterOutputStream {
+
+        public NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
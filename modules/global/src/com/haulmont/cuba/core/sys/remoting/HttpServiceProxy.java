@@ -35,6 +35,15 @@ public class HttpServiceProxy extends HttpInvokerProxyFactoryBean {
         setHttpInvokerRequestExecutor(executor);
     }
 
+    public HttpServiceProxy(ServerSelector selector, RemotingHttpClient remotingHttpClient) {
+        setRemoteInvocationFactory(new CubaRemoteInvocationFactory());
+
+        ClusteredHttpComponentsRequestExecutor executor =
+                new ClusteredHttpComponentsRequestExecutor(selector, remotingHttpClient);
+        executor.setBeanClassLoader(getBeanClassLoader());
+        setHttpInvokerRequestExecutor(executor);
+    }
+
     @Override
     protected Object recreateRemoteInvocationResult(RemoteInvocationResult result) throws Throwable {
         Throwable throwable = result.getException();
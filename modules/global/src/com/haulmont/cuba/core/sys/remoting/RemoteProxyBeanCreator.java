@@ -25,6 +25,7 @@ import org.springframework.beans.MutablePropertyValues;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
@@ -64,6 +65,16 @@ public class RemoteProxyBeanCreator implements BeanFactoryPostProcessor, Applica
 
         BeanDefinitionRegistry registry = (BeanDefinitionRegistry) beanFactory;
 
+        boolean pooledHttpClient = RemotingHttpClient.isPoolingEnabled();
+        if (pooledHttpClient) {
+            log.info("Using pooled HTTP client for remote service invocations");
+            if (!beanFactory.containsBean(RemotingHttpClient.NAME)) {
+                RootBeanDefinition clientDefinition = new RootBeanDefinition(RemotingHttpClient.class);
+                clientDefinition.setDestroyMethodName("close");
+                registry.registerBeanDefinition(RemotingHttpClient.NAME, clientDefinition);
+            }
+        }
+
         for (Map.Entry<String, String> entry : services.entrySet()) {
             String name = entry.getKey();
 
@@ -71,6 +82,10 @@ public class RemoteProxyBeanCreator implements BeanFactoryPostProcessor, Applica
             String serviceInterface = entry.getValue();
             BeanDefinition definition = new RootBeanDefinition(HttpServiceProxy.class);
             definition.getConstructorArgumentValues().addIndexedArgumentValue(0, serverSelector);
+            if (pooledHttpClient) {
+                definition.getConstructorArgumentValues().addIndexedArgumentValue(1,
+                        new RuntimeBeanReference(RemotingHttpClient.NAME));
+            }
             MutablePropertyValues propertyValues = definition.getPropertyValues();
             propertyValues.add("serviceUrl", serviceUrl);
             propertyValues.add("serviceInterface", serviceInterface);
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.haulmont.cuba.core.sys.AppContext;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the pooled HTTP client shared by all remote service proxies of the client block.
+ * <p>
+ * Persistent connections to each middleware node are kept in a {@link PoolingHttpClientConnectionManager} and
+ * reused by {@link ClusteredHttpComponentsRequestExecutor}. The pool is used only if the
+ * {@code cuba.remoting.pooledHttpClient} application property is set to true.
+ * <p>
+ * Pool settings are taken from the following application properties:
+ * <ul>
+ *     <li>{@code cuba.remoting.httpClient.maxTotal} - maximum number of connections, 100 by default</li>
+ *     <li>{@code cuba.remoting.httpClient.maxPerRoute} - maximum number of connections to one node, 20 by default</li>
+ *     <li>{@code cuba.remoting.httpClient.idleTimeoutSec} - idle connections are closed after this time, 30 by default</li>
+ * </ul>
+ */
+public class RemotingHttpClient implements RemotingHttpClientMBean {
+
+    public static final String NAME = "cuba_RemotingHttpClient";
+
+    private static final Logger log = LoggerFactory.getLogger(RemotingHttpClient.class);
+
+    protected volatile PoolingHttpClientConnectionManager connectionManager;
+    protected volatile CloseableHttpClient httpClient;
+
+    public static boolean isPoolingEnabled() {
+        return Boolean.valueOf(AppContext.getProperty("cuba.remoting.pooledHttpClient"));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isPoolingEnabled();
+    }
+
+    /**
+     * @return the shared HTTP client, created on first access
+     */
+    public CloseableHttpClient getHttpClient() {
+        CloseableHttpClient client = httpClient;
+        if (client == null) {
+            synchronized (this) {
+                client = httpClient;
+                if (client == null) {
+                    client = createHttpClient();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    protected CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(getIntProperty("cuba.remoting.httpClient.maxTotal", 100));
+        manager.setDefaultMaxPerRoute(getIntProperty("cuba.remoting.httpClient.maxPerRoute", 20));
+        manager.setValidateAfterInactivity(2000);
+        connectionManager = manager;
+
+        int connectTimeout = getIntProperty("cuba.connectionTimeout", -1);
+        int readTimeout = getIntProperty("cuba.connectionReadTimeout", -1);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+
+        log.info("Creating pooled HTTP client for remote service invocations: maxTotal={}, maxPerRoute={}",
+                manager.getMaxTotal(), manager.getDefaultMaxPerRoute());
+
+        return HttpClients.custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(getIntProperty("cuba.remoting.httpClient.idleTimeoutSec", 30), TimeUnit.SECONDS)
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    protected int getIntProperty(String name, int defaultValue) {
+        String value = AppContext.getProperty(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Closes all pooled connections. Invoked on application context shutdown.
+     */
+    public synchronized void close() {
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                log.warn("Error closing remoting HTTP client", e);
+            }
+            httpClient = null;
+            connectionManager = null;
+        }
+    }
+
+    @Nullable
+    protected PoolStats getTotalStats() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        return manager == null ? null : manager.getTotalStats();
+    }
+
+    @Override
+    public int getMaxTotal() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        return manager == null ? getIntProperty("cuba.remoting.httpClient.maxTotal", 100) : manager.getMaxTotal();
+    }
+
+    @Override
+    public int getMaxPerRoute() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        return manager == null ? getIntProperty("cuba.remoting.httpClient.maxPerRoute", 20) : manager.getDefaultMaxPerRoute();
+    }
+
+    @Override
+    public int getLeased() {
+        PoolStats stats = getTotalStats();
+        return stats == null ? 0 : stats.getLeased();
+    }
+
+    @Override
+    public int getAvailable() {
+        PoolStats stats = getTotalStats();
+        return stats == null ? 0 : stats.getAvailable();
+    }
+
+    @Override
+    public int getPending() {
+        PoolStats stats = getTotalStats();
+        return stats == null ? 0 : stats.getPending();
+    }
+
+    @Override
+    public String printRouteStats() {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager == null)
+            return "Pool is not initialized";
+
+        StringBuilder sb = new StringBuilder();
+        for (HttpRoute route : manager.getRoutes()) {
+            PoolStats stats = manager.getStats(route);
+            sb.append(route.getTargetHost().toURI())
+                    .append(": leased=").append(stats.getLeased())
+                    .append(", available=").append(stats.getAvailable())
+                    .append(", pending=").append(stats.getPending())
+                    .append(", max=").append(stats.getMax())
+                    .append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String closeIdleConnections(int idleSeconds) {
+        PoolingHttpClientConnectionManager manager = connectionManager;
+        if (manager == null)
+            return "Pool is not initialized";
+
+        manager.closeExpiredConnections();
+        manager.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+        return "Done";
+    }
+}
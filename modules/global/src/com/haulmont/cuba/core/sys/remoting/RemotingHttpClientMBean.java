@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+/**
+ * JMX interface for {@link RemotingHttpClient}.
+ */
+public interface RemotingHttpClientMBean {
+
+    /**
+     * @return true if the pooled HTTP client is used for remote service invocations
+     */
+    boolean isEnabled();
+
+    /**
+     * @return maximum number of connections in the pool
+     */
+    int getMaxTotal();
+
+    /**
+     * @return maximum number of connections per middleware node
+     */
+    int getMaxPerRoute();
+
+    /**
+     * @return number of connections currently used to execute requests
+     */
+    int getLeased();
+
+    /**
+     * @return number of idle persistent connections
+     */
+    int getAvailable();
+
+    /**
+     * @return number of requests waiting for a connection
+     */
+    int getPending();
+
+    /**
+     * @return pool statistics for each middleware node
+     */
+    String printRouteStats();
+
+    /**
+     * Closes connections that have been idle longer than the specified time.
+     *
+     * @param idleSeconds idle time in seconds
+     * @return operation result
+     */
+    String closeIdleConnections(int idleSeconds);
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.serialization;
+
+import com.haulmont.bali.util.Preconditions;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Serialization decorator compressing serialized objects with Deflate when their size exceeds the given threshold.
+ * <p>
+ * Each serialized object is prefixed with one byte telling whether the rest of the data is compressed, so small
+ * objects are passed as is. Both sides must use the same decorator: the data is not readable by the decorated
+ * serialization alone, and data of the decorated serialization is not readable by this one.
+ */
+public class CompressingSerialization implements Serialization {
+
+    protected static final int RAW = 0;
+    protected static final int DEFLATED = 1;
+
+    protected final Serialization delegate;
+    protected final int threshold;
+
+    /**
+     * @param delegate  serialization producing uncompressed data
+     * @param threshold minimum size of serialized object in bytes to be compressed
+     */
+    public CompressingSerialization(Serialization delegate, int threshold) {
+        Preconditions.checkNotNullArgument(delegate, "delegate is null");
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    public Serialization getDelegate() {
+        return delegate;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public void serialize(Object object, OutputStream os) {
+        try {
+            os.write(serialize(object));
+            os.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to serialize object", ex);
+        }
+    }
+
+    @Override
+    public Object deserialize(InputStream is) {
+        int marker;
+        try {
+            marker = is.read();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Failed to deserialize object", ex);
+        }
+        switch (marker) {
+            case RAW:
+                return delegate.deserialize(is);
+            case DEFLATED:
+                return delegate.deserialize(new InflaterInputStream(is));
+            default:
+                throw new IllegalArgumentException("Failed to deserialize object: unknown compression marker " + marker);
+        }
+    }
+
+    @Override
+    public byte[] serialize(Object object) {
+        byte[] bytes = delegate.serialize(object);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(bytes.length < threshold ? bytes.length + 1 : bytes.length / 2);
+        if (bytes.length < threshold) {
+            bos.write(RAW);
+            bos.write(bytes, 0, bytes.length);
+        } else {
+            bos.write(DEFLATED);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(bos, deflater)) {
+                out.write(bytes);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Failed to serialize object", ex);
+            } finally {
+                deflater.end();
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+
+        return deserialize(new ByteArrayInputStream(bytes));
+    }
+}
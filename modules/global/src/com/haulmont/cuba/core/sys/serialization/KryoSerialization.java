@@ -21,6 +21,7 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
 import com.esotericsoftware.kryo.serializers.CollectionSerializer;
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.esotericsoftware.kryo.serializers.JavaSerializer;
@@ -72,12 +73,11 @@ public class KryoSerialization implements Serialization {
 
 
     protected boolean onlySerializable = true;
-    protected final ThreadLocal<Kryo> kryos = new ThreadLocal<Kryo>() {
-        @Override
-        protected Kryo initialValue() {
-            return newKryoInstance();
-        }
-    };
+
+    // Kryo instances are expensive to create and are not thread-safe. They are borrowed from the pool for each
+    // operation instead of being bound to threads, so the number of instances does not grow with the number of
+    // threads, and instances are released under memory pressure.
+    protected final KryoPool kryoPool = new KryoPool.Builder(this::newKryoInstance).softReferences().build();
 
     public KryoSerialization() {
     }
@@ -143,14 +143,19 @@ public class KryoSerialization implements Serialization {
                     && BaseEntityInternalAccess.isManaged((BaseGenericIdEntity) object)) {
                 BaseEntityInternalAccess.setDetached((BaseGenericIdEntity) object, true);
             }
-            kryos.get().writeClassAndObject(output, object);
+            Kryo kryo = kryoPool.borrow();
+            try {
+                kryo.writeClassAndObject(output, object);
+            } finally {
+                kryoPool.release(kryo);
+            }
         }
     }
 
     @Override
     public Object deserialize(InputStream is) {
         try (Input input = new Input(is)) {
-            return kryos.get().readClassAndObject(input);
+            return kryoPool.run(kryo -> kryo.readClassAndObject(input));
         }
     }
 
@@ -174,7 +179,7 @@ public class KryoSerialization implements Serialization {
         if (object == null) {
             return null;
         }
-        return kryos.get().copy(object);
+        return kryoPool.run(kryo -> kryo.copy(object));
     }
 
     protected void registerEntitySerializer(Kryo kryo) {
@@ -20,7 +20,10 @@ package com.haulmont.cuba.core.sys.serialization;
 import com.haulmont.bali.util.ReflectionHelper;
 import com.haulmont.cuba.core.sys.AppContext;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -29,24 +32,56 @@ import static java.lang.String.format;
 /**
  *
  * Static holder for serialization object
+ * <p>
+ * If {@code cuba.serialization.compressionThreshold} is greater than 0, the serialized data is prefixed with the
+ * compression marker of {@link CompressingSerialization}, so the property must have a positive value either on all
+ * blocks of the application (middleware, clients and cluster nodes) or on none of them.
  */
 public class SerializationSupport {
+    private static final Logger log = LoggerFactory.getLogger(SerializationSupport.class);
+
     private final static Serialization serialization;
     private final static KryoSerialization kryoSerialization = new KryoSerialization();
 
     static {
-        String serializationClassStr = AppContext.getProperty("cuba.serialization.impl");
+        String compressionThresholdStr = AppContext.getProperty("cuba.serialization.compressionThreshold");
+        int compressionThreshold = 0;
+        if (StringUtils.isNotBlank(compressionThresholdStr)) {
+            try {
+                compressionThreshold = Integer.parseInt(compressionThresholdStr.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value of cuba.serialization.compressionThreshold: '{}', compression is disabled",
+                        compressionThresholdStr);
+            }
+        }
+        serialization = createSerialization(AppContext.getProperty("cuba.serialization.impl"), compressionThreshold);
+    }
+
+    /**
+     * Creates a new serialization instance.
+     *
+     * @param serializationClassStr  class name of {@link Serialization} implementation,
+     *                               {@link StandardSerialization} is used if null
+     * @param compressionThreshold   if greater than 0, serialized objects of this size in bytes and larger are
+     *                               compressed by {@link CompressingSerialization}
+     */
+    public static Serialization createSerialization(@Nullable String serializationClassStr, int compressionThreshold) {
+        Serialization result;
         if (StringUtils.isNotBlank(serializationClassStr)) {
             try {
                 Class<Serialization> aClass = ReflectionHelper.getClass(serializationClassStr);
-                serialization = ReflectionHelper.newInstance(aClass);
+                result = ReflectionHelper.newInstance(aClass);
             } catch (NoSuchMethodException e) {
                 throw new RuntimeException(
                         format("Could not create an instance of serialization class [%s]", serializationClassStr));
             }
         } else {
-            serialization = new StandardSerialization();
+            result = new StandardSerialization();
+        }
+        if (compressionThreshold > 0) {
+            result = new CompressingSerialization(result, compressionThreshold);
         }
+        return result;
     }
 
     public static void serialize(Object object, OutputStream os) {
@@ -65,6 +100,14 @@ public class SerializationSupport {
         return serialization.deserialize(bytes);
     }
 
+    /**
+     * @return serialization instance selected by {@code cuba.serialization.impl} and
+     * {@code cuba.serialization.compressionThreshold} application properties
+     */
+    public static Serialization getSerialization() {
+        return serialization;
+    }
+
     public static KryoSerialization getKryoSerialization() {
         return kryoSerialization;
     }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.bali.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ByteRangeTest {
+
+    @Test
+    public void testParse() {
+        ByteRange range = ByteRange.parse("bytes=0-499", 1000);
+        assertNotNull(range);
+        assertTrue(range.isSatisfiable());
+        assertEquals(0, range.getStart());
+        assertEquals(499, range.getEnd());
+        assertEquals(500, range.getLength());
+        assertEquals("bytes 0-499/1000", range.getContentRange());
+
+        range = ByteRange.parse("bytes=500-", 1000);
+        assertNotNull(range);
+        assertEquals(500, range.getStart());
+        assertEquals(999, range.getEnd());
+
+        range = ByteRange.parse("bytes=-300", 1000);
+        assertNotNull(range);
+        assertEquals(700, range.getStart());
+        assertEquals(999, range.getEnd());
+
+        range = ByteRange.parse("bytes=900-2000", 1000);
+        assertNotNull(range);
+        assertEquals(999, range.getEnd());
+        assertEquals(100, range.getLength());
+    }
+
+    @Test
+    public void testUnsatisfiable() {
+        ByteRange range = ByteRange.parse("bytes=1000-", 1000);
+        assertNotNull(range);
+        assertFalse(range.isSatisfiable());
+        assertEquals("bytes */1000", range.getContentRange());
+
+        range = ByteRange.parse("bytes=0-10", 0);
+        assertNotNull(range);
+        assertFalse(range.isSatisfiable());
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=0-10,20-30", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.chile.core.model.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares generated accessors of {@link MethodsCache} with reflective invocation.
+ * <p>
+ * Run with {@code main()} from the test classpath of the global module.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MethodsCacheBenchmark {
+
+    private MethodsCache generated;
+    private MethodsCache reflective;
+    private TestBean bean;
+    private int counter;
+
+    @Setup
+    public void setup() {
+        generated = new MethodsCache(TestBean.class, true);
+        reflective = new MethodsCache(TestBean.class, false);
+        bean = new TestBean();
+        bean.setName("name");
+        bean.setAmount(10);
+    }
+
+    @Benchmark
+    public Object getterGenerated() {
+        return generated.invokeGetter(bean, "name");
+    }
+
+    @Benchmark
+    public Object getterReflection() {
+        return reflective.invokeGetter(bean, "name");
+    }
+
+    @Benchmark
+    public Object primitiveGetterGenerated() {
+        return generated.invokeGetter(bean, "amount");
+    }
+
+    @Benchmark
+    public Object primitiveGetterReflection() {
+        return reflective.invokeGetter(bean, "amount");
+    }
+
+    @Benchmark
+    public void setterGenerated() {
+        generated.invokeSetter(bean, "amount", counter++);
+    }
+
+    @Benchmark
+    public void setterReflection() {
+        reflective.invokeSetter(bean, "amount", counter++);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MethodsCacheBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+    public static class TestBean {
+        private String name;
+        private int amount;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public void setAmount(int amount) {
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.chile.core.model.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MethodsCacheTest {
+
+    @Test
+    public void testGeneratedAccessors() {
+        checkAccessors(new MethodsCache(TestBean.class, true));
+    }
+
+    @Test
+    public void testReflectiveAccessors() {
+        checkAccessors(new MethodsCache(TestBean.class, false));
+    }
+
+    private void checkAccessors(MethodsCache methodsCache) {
+        TestBean bean = new TestBean();
+
+        methodsCache.invokeSetter(bean, "name", "test");
+        methodsCache.invokeSetter(bean, "amount", 10);
+        methodsCache.invokeSetter(bean, "active", true);
+
+        assertEquals("test", methodsCache.invokeGetter(bean, "name"));
+        assertEquals(10, methodsCache.invokeGetter(bean, "amount"));
+        assertEquals(true, methodsCache.invokeGetter(bean, "active"));
+        assertEquals("static", methodsCache.invokeGetter(bean, "staticValue"));
+
+        try {
+            methodsCache.invokeSetter(bean, "amount", "10");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            methodsCache.invokeSetter(bean, "amount", null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            methodsCache.invokeGetter(bean, "unknown");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public static class TestBean {
+        private String name;
+        private int amount;
+        private boolean active;
+
+        public static String getStaticValue() {
+            return "static";
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public TestBean setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        public void setAmount(int amount) {
+            this.amount = amount;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
+}
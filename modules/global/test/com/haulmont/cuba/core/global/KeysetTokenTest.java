@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class KeysetTokenTest {
+
+    @Test
+    public void testRoundTrip() {
+        Timestamp timestamp = new Timestamp(1546300800123L);
+        timestamp.setNanos(123456789);
+        List<Object> values = Arrays.asList("name", 10, 20L, new BigDecimal("1.50"), true, new Date(1546300800000L),
+                timestamp, LocalDate.of(2019, 1, 1), LocalDateTime.of(2019, 1, 1, 10, 30), UUID.randomUUID());
+
+        List<Object> decoded = KeysetToken.decode(KeysetToken.encode(values));
+
+        assertEquals(values, decoded);
+        assertEquals(123456789, ((Timestamp) decoded.get(6)).getNanos());
+    }
+
+    @Test
+    public void testUnsupportedType() {
+        try {
+            KeysetToken.encode(Collections.singletonList(new StringBuilder("value")));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSerializedObjectIsRejected() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(new ArrayList<>(Collections.singletonList("value")));
+        }
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bos.toByteArray());
+        try {
+            KeysetToken.decode(token);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testUnknownValueType() {
+        String json = "[{\"t\":\"java.io.File\",\"v\":\"/tmp\"}]";
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes());
+        try {
+            KeysetToken.decode(token);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.jpql;
+
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.EntityBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.JpqlEntityModel;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTreeTransformer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class QueryTreeCacheTest {
+
+    private DomainModel model;
+    private QueryTreeCache queryTreeCache;
+
+    @Before
+    public void setUp() throws Exception {
+        EntityBuilder builder = new EntityBuilder();
+        builder.startNewEntity("Player");
+        builder.addStringAttribute("name");
+        builder.addStringAttribute("nickname");
+        JpqlEntityModel playerEntity = builder.produce();
+        model = new DomainModel(playerEntity);
+
+        queryTreeCache = new QueryTreeCache();
+        queryTreeCache.maxSize = 10;
+        queryTreeCache.cache = CacheBuilder.newBuilder().maximumSize(10).recordStats().build();
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        String query = "select p from Player p where p.name = :name";
+
+        queryTreeCache.getTree(model, query);
+        assertEquals(1, queryTreeCache.getMissCount());
+        assertEquals(0, queryTreeCache.getHitCount());
+
+        queryTreeCache.getTree(model, query);
+        queryTreeCache.getTree(model, "select p from Player p\nwhere p.name = :name");
+        assertEquals(1, queryTreeCache.getMissCount());
+        assertEquals(2, queryTreeCache.getHitCount());
+        assertEquals(1, queryTreeCache.getSize());
+
+        queryTreeCache.clear();
+        assertEquals(0, queryTreeCache.getSize());
+    }
+
+    @Test
+    public void testTransformationDoesNotAffectCachedTree() throws Exception {
+        String query = "select p from Player p where p.name = :name";
+
+        QueryTree tree1 = queryTreeCache.getTree(model, query);
+        new QueryTreeTransformer(tree1).mixinWhereConditionsIntoTree(
+                Parser.parseWhereClause("where p.nickname = :nickname"));
+        assertTrue(tree1.visit(new TreeToQuery()).getQueryString().contains("p.nickname = :nickname"));
+
+        QueryTree tree2 = queryTreeCache.getTree(model, query);
+        assertNotSame(tree1.getAstTree(), tree2.getAstTree());
+        assertEquals(query, tree2.visit(new TreeToQuery()).getQueryString().trim());
+        assertEquals("Player", tree2.getQueryVariableContext().getEntityByVariableName("p").getName());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.serialization;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CompressingSerializationTest {
+
+    @Test
+    public void testSmallObjectIsNotCompressed() {
+        CompressingSerialization serialization = new CompressingSerialization(new StandardSerialization(), 1024);
+
+        byte[] raw = new StandardSerialization().serialize("abc");
+        byte[] bytes = serialization.serialize("abc");
+
+        assertEquals(raw.length + 1, bytes.length);
+        assertEquals(CompressingSerialization.RAW, bytes[0]);
+        assertEquals("abc", serialization.deserialize(bytes));
+    }
+
+    @Test
+    public void testLargeObjectIsCompressed() {
+        CompressingSerialization serialization = new CompressingSerialization(new StandardSerialization(), 1024);
+
+        ArrayList<String> list = new ArrayList<>(Collections.nCopies(1000, "some repeating value"));
+        byte[] raw = new StandardSerialization().serialize(list);
+        byte[] bytes = serialization.serialize(list);
+
+        assertEquals(CompressingSerialization.DEFLATED, bytes[0]);
+        assertTrue(bytes.length < raw.length);
+        assertEquals(list, serialization.deserialize(bytes));
+    }
+
+    @Test
+    public void testStreams() {
+        CompressingSerialization serialization = new CompressingSerialization(new StandardSerialization(), 16);
+
+        ArrayList<String> list = new ArrayList<>(Collections.nCopies(100, "value"));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        serialization.serialize(list, bos);
+
+        assertEquals(list, serialization.deserialize(new ByteArrayInputStream(bos.toByteArray())));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.haulmont.cuba.core.sys.serialization;
+
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.Role;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.entity.UserRole;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Java and Kryo serialization, with and without {@link CompressingSerialization}, on a graph of users
+ * sharing a group and roles, as it is loaded by a typical browse screen.
+ * <p>
+ * Payload sizes are printed before the run. Run with {@code main()} from the test classpath of the global module.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private static final int USERS_COUNT = 100;
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Param({"java", "kryo", "java-deflate", "kryo-deflate"})
+    private String serializationName;
+
+    private Serialization serialization;
+    private List<User> users;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() {
+        serialization = createSerialization(serializationName);
+        users = createUsers();
+        serialized = serialization.serialize(users);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serialization.serialize(users);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serialization.deserialize(serialized);
+    }
+
+    private static Serialization createSerialization(String name) {
+        switch (name) {
+            case "java":
+                return new StandardSerialization();
+            case "kryo":
+                return new KryoSerialization();
+            case "java-deflate":
+                return new CompressingSerialization(new StandardSerialization(), COMPRESSION_THRESHOLD);
+            case "kryo-deflate":
+                return new CompressingSerialization(new KryoSerialization(), COMPRESSION_THRESHOLD);
+            default:
+                throw new IllegalArgumentException("Unknown serialization " + name);
+        }
+    }
+
+    private static List<User> createUsers() {
+        Group group = new Group();
+        group.setName("Company");
+
+        List<Role> roles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Role role = new Role();
+            role.setName("role" + i);
+            role.setDescription("Role number " + i);
+            roles.add(role);
+        }
+
+        List<User> users = new ArrayList<>(USERS_COUNT);
+        for (int i = 0; i < USERS_COUNT; i++) {
+            User user = new User();
+            user.setLogin("user" + i);
+            user.setName("User Number " + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setPosition(i % 2 == 0 ? "Manager" : "Developer");
+            user.setActive(true);
+            user.setGroup(group);
+
+            UserRole userRole = new UserRole();
+            userRole.setUser(user);
+            userRole.setRole(roles.get(i % roles.size()));
+            user.setUserRoles(new ArrayList<>(Collections.singletonList(userRole)));
+            users.add(user);
+        }
+        return users;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        List<User> users = createUsers();
+        for (String name : new String[]{"java", "kryo", "java-deflate", "kryo-deflate"}) {
+            System.out.printf("%s: %d bytes%n", name, createSerialization(name).serialize(users).length);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(SerializationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -24,6 +24,7 @@ import com.haulmont.cuba.gui.components.DialogAction.Type;
 import com.haulmont.cuba.gui.components.Frame.MessageType;
 import com.haulmont.cuba.gui.export.ExcelExporter;
 import com.haulmont.cuba.gui.export.ExportDisplay;
+import com.haulmont.cuba.gui.export.ExportFormat;
 import com.haulmont.cuba.gui.icons.CubaIcon;
 import com.haulmont.cuba.gui.icons.Icons;
 import org.springframework.context.annotation.Scope;
@@ -62,6 +63,12 @@ public class ExcelAction extends BaseAction implements Action.HasBeforeActionPer
      */
     protected boolean exportAggregation = true;
 
+    /**
+     * {@link ExportFormat#XLS} or {@link ExportFormat#XLSX}. XLSX documents are streamed to a temporary file
+     * and are not limited to 65536 rows.
+     */
+    protected ExportFormat exportFormat = ExportFormat.XLS;
+
     /**
      * Creates an action with default id.
      * @param target    component containing this action
@@ -216,7 +223,7 @@ public class ExcelAction extends BaseAction implements Action.HasBeforeActionPer
      * Export via {@link ExcelExporter}.
      */
     protected void export(ExportMode exportMode) {
-        ExcelExporter exporter = new ExcelExporter();
+        ExcelExporter exporter = new ExcelExporter(exportFormat);
         exporter.setExportAggregation(exportAggregation);
 
         if (listComponent instanceof Table) {
@@ -235,11 +242,19 @@ public class ExcelAction extends BaseAction implements Action.HasBeforeActionPer
         if (exporter.isXlsMaxRowNumberExceeded()) {
             listComponent.getFrame().showNotification(
                     messages.getMainMessage("actions.warningExport.title"),
-                    messages.getMainMessage("actions.warningExport.message"),
+                    messages.formatMainMessage("actions.warningExport.message",
+                            getMaxRowCount(), exportFormat.getFileExt().toUpperCase(), getMaxRowCount()),
                     Frame.NotificationType.WARNING);
         }
     }
 
+    /**
+     * @return maximum number of rows in a sheet of the export format, including the header row
+     */
+    protected int getMaxRowCount() {
+        return (exportFormat == ExportFormat.XLSX ? ExcelExporter.MAX_XLSX_ROW_COUNT : ExcelExporter.MAX_ROW_COUNT) + 1;
+    }
+
     @Override
     public BeforeActionPerformedHandler getBeforeActionPerformedHandler() {
         return beforeActionPerformedHandler;
@@ -257,4 +272,12 @@ public class ExcelAction extends BaseAction implements Action.HasBeforeActionPer
     public void setExportAggregation(boolean exportAggregation) {
         this.exportAggregation = exportAggregation;
     }
+
+    public ExportFormat getExportFormat() {
+        return exportFormat;
+    }
+
+    public void setExportFormat(ExportFormat exportFormat) {
+        this.exportFormat = exportFormat;
+    }
 }
\ No newline at end of file
@@ -19,9 +19,11 @@ package com.haulmont.cuba.gui.data.impl;
 import com.haulmont.chile.core.datatypes.Datatypes;
 import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.chile.core.model.Range;
+import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.UserSessionSource;
 import com.haulmont.cuba.gui.components.AggregationInfo;
+import com.haulmont.cuba.gui.data.CollectionDatasource;
 import com.haulmont.cuba.gui.data.aggregation.Aggregation;
 import com.haulmont.cuba.gui.data.aggregation.AggregationStrategy;
 import com.haulmont.cuba.gui.data.aggregation.Aggregations;
@@ -30,6 +32,10 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public abstract class AggregatableDelegate<K> {
+
+    // values of single-level properties read for aggregation, evicted by the datasource when an item is changed
+    protected Map<K, Map<MetaPropertyPath, Object>> itemValues = new HashMap<>();
+
     public Map<AggregationInfo, String> aggregate(AggregationInfo[] aggregationInfos, Collection<K> itemIds) {
         if (aggregationInfos == null || aggregationInfos.length == 0) {
             throw new NullPointerException("Aggregation must be executed at least by one field");
@@ -129,7 +135,7 @@ public abstract class AggregatableDelegate<K> {
     protected List valuesByProperty(MetaPropertyPath propertyPath, Collection<K> itemIds) {
         final List<Object> values = new ArrayList<>(itemIds.size());
         for (final K itemId : itemIds) {
-            final Object value = getItemValue(propertyPath, itemId);
+            final Object value = getCachedItemValue(propertyPath, itemId);
             if (value != null) {
                 values.add(value);
             }
@@ -137,6 +143,62 @@ public abstract class AggregatableDelegate<K> {
         return values;
     }
 
+    protected Object getCachedItemValue(MetaPropertyPath propertyPath, K itemId) {
+        if (propertyPath.getMetaProperties().length > 1) {
+            // nested entities can be changed without notifying the datasource
+            return getItemValue(propertyPath, itemId);
+        }
+
+        Map<MetaPropertyPath, Object> values = itemValues.computeIfAbsent(itemId, k -> new HashMap<>());
+        if (values.containsKey(propertyPath)) {
+            return values.get(propertyPath);
+        }
+
+        Object value = getItemValue(propertyPath, itemId);
+        values.put(propertyPath, value);
+        return value;
+    }
+
+    /**
+     * Evicts cached values affected by the change of the datasource collection.
+     *
+     * @param operation collection change operation
+     * @param items     changed items
+     */
+    public void collectionChanged(CollectionDatasource.Operation operation, Collection<? extends Entity<K>> items) {
+        switch (operation) {
+            case ADD:
+            case REMOVE:
+            case UPDATE:
+                for (Entity<K> item : items) {
+                    itemValues.remove(item.getId());
+                }
+                break;
+
+            default:
+                clearCache();
+        }
+    }
+
+    /**
+     * Evicts cached values of the changed items, so that the next aggregation reads them again while values of
+     * the other items are taken from the cache.
+     *
+     * @param itemIds ids of added, removed or modified items
+     */
+    public void itemsChanged(Collection<K> itemIds) {
+        for (K itemId : itemIds) {
+            itemValues.remove(itemId);
+        }
+    }
+
+    /**
+     * Evicts all cached values, e.g. after the datasource has been refreshed.
+     */
+    public void clearCache() {
+        itemValues.clear();
+    }
+
     public abstract Object getItem(K itemId);
 
     public abstract Object getItemValue(MetaPropertyPath property, K itemId);
@@ -693,6 +693,20 @@ public class CollectionDatasourceImpl<T extends Entity<K>, K>
         }
     }
 
+    @Override
+    protected void fireCollectionChanged(Operation operation, List<T> items) {
+        aggregatableDelegate.collectionChanged(operation, items);
+
+        super.fireCollectionChanged(operation, items);
+    }
+
+    @Override
+    public void modified(T item) {
+        aggregatableDelegate.itemsChanged(Collections.singletonList(item.getId()));
+
+        super.modified(item);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public Map<AggregationInfo, String> aggregate(AggregationInfo[] aggregationInfos, Collection itemIds) {
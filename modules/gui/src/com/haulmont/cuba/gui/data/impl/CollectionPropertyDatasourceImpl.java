@@ -607,6 +607,7 @@ public class CollectionPropertyDatasourceImpl<T extends Entity<K>, K>
     @Override
     public void modified(T item) {
         checkNotNullArgument(item, "item is null");
+        aggregatableDelegate.itemsChanged(Collections.singletonList(item.getId()));
         if (doNotModify)
             return;
         super.modified(item);
@@ -783,6 +784,8 @@ public class CollectionPropertyDatasourceImpl<T extends Entity<K>, K>
     }
 
     protected void fireCollectionChanged(Operation operation, List<T> items) {
+        aggregatableDelegate.collectionChanged(operation, items);
+
         if (listenersSuspended) {
             if (!suspendedEvents.isEmpty() && suspendedEvents.getFirst().getOperation().equals(operation)) {
                 suspendedEvents.getFirst().getItems().addAll(items);
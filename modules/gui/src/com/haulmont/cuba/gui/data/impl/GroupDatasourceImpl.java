@@ -22,8 +22,8 @@ import com.haulmont.cuba.gui.data.GroupDatasource;
 import com.haulmont.cuba.gui.data.GroupInfo;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class GroupDatasourceImpl<T extends Entity<K>, K>
         extends CollectionDatasourceImpl<T, K>
@@ -36,11 +36,43 @@ public class GroupDatasourceImpl<T extends Entity<K>, K>
         }
     };
 
+    // sorting fires REFRESH without changing the items, groups are already sorted by doSort()
+    protected boolean inSort;
+
     @Override
     public void groupBy(Object[] properties) {
         groupDelegate.groupBy(properties, sortInfos);
     }
 
+    @Override
+    public void sort(SortInfo[] sortInfos) {
+        inSort = true;
+        try {
+            super.sort(sortInfos);
+        } finally {
+            inSort = false;
+        }
+    }
+
+    @Override
+    public void refresh(Map<String, Object> parameters) {
+        boolean prevInSort = inSort;
+        inSort = false;
+        try {
+            super.refresh(parameters);
+        } finally {
+            inSort = prevInSort;
+        }
+    }
+
+    @Override
+    protected void fireCollectionChanged(Operation operation, List<T> items) {
+        if (!listenersSuspended && !(inSort && operation == Operation.REFRESH)) {
+            groupDelegate.collectionChanged(operation, items, sortInfos);
+        }
+        super.fireCollectionChanged(operation, items);
+    }
+
     @Override
     protected void doSort() {
         if (hasGroups()) {
@@ -189,12 +221,6 @@ public class GroupDatasourceImpl<T extends Entity<K>, K>
 
         if (wasSuspended && !suspended && refreshOnResumeRequired) {
             refresh();
-
-            if (!getGroupProperties().isEmpty()) {
-                groupBy(getGroupProperties().toArray());
-
-                fireCollectionChanged(Operation.REFRESH, Collections.emptyList());
-            }
         }
     }
 }
\ No newline at end of file
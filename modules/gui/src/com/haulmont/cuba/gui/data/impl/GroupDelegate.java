@@ -147,6 +147,161 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
         return groupInfo;
     }
 
+    /**
+     * Updates groups after the datasource collection has been changed. Added, removed and updated items are moved
+     * between existing groups, so only the changed items are evaluated instead of regrouping the whole collection.
+     *
+     * @param operation collection change operation
+     * @param items     changed items
+     * @param sortInfos current sort infos of the datasource, applied to the group lists affected by the change
+     */
+    public void collectionChanged(CollectionDatasource.Operation operation, List<T> items,
+                                  CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfos) {
+        if (isGrouping || !hasGroups()) {
+            return;
+        }
+
+        switch (operation) {
+            case ADD:
+            case UPDATE:
+            case REMOVE:
+                Set<List<GroupInfo>> changedGroupLists = Collections.newSetFromMap(new IdentityHashMap<>());
+                Set<GroupInfo> changedItemGroups = new HashSet<>();
+
+                for (T item : items) {
+                    K id = item.getId();
+                    if (operation == CollectionDatasource.Operation.REMOVE || !datasource.containsItem(id)) {
+                        removeItem(id);
+                    } else {
+                        moveItem(datasource.getItem(id), changedGroupLists, changedItemGroups);
+                    }
+                }
+
+                if (!ArrayUtils.isEmpty(sortInfos)) {
+                    sortChangedGroups(sortInfos, changedGroupLists, changedItemGroups);
+                }
+                break;
+
+            case REFRESH:
+            case CLEAR:
+                if (datasource.getState() == Datasource.State.VALID) {
+                    isGrouping = true;
+                    try {
+                        doGroup();
+                    } finally {
+                        isGrouping = false;
+                    }
+
+                    if (!ArrayUtils.isEmpty(sortInfos)) {
+                        doGroupSort(sortInfos);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Puts the item into the leaf group matching its current property values, creating missing groups. Does nothing
+     * if the item already belongs to that group.
+     */
+    protected void moveItem(T item, Set<List<GroupInfo>> changedGroupLists, Set<GroupInfo> changedItemGroups) {
+        K id = item.getId();
+
+        LinkedMap<MetaPropertyPath, Object> groupValues = new LinkedMap<>();
+        for (Object groupProperty : groupProperties) {
+            MetaPropertyPath property = (MetaPropertyPath) groupProperty;
+            groupValues.put(property, getValueByProperty(item, property));
+        }
+        GroupInfo<MetaPropertyPath> itemGroup = new GroupInfo<>(groupValues);
+
+        GroupInfo currentGroup = itemGroups.get(id);
+        if (itemGroup.equals(currentGroup)) {
+            changedItemGroups.add(currentGroup);
+            return;
+        }
+        if (currentGroup != null) {
+            removeItem(id);
+        }
+
+        GroupInfo parent = null;
+        List<GroupInfo> siblings = roots;
+        GroupInfo groupInfo = null;
+
+        LinkedMap<MetaPropertyPath, Object> pathValues = new LinkedMap<>();
+        for (Object groupProperty : groupProperties) {
+            MetaPropertyPath property = (MetaPropertyPath) groupProperty;
+            pathValues.put(property, groupValues.get(property));
+
+            groupInfo = new GroupInfo<>(pathValues);
+            if (!parents.containsKey(groupInfo)) {
+                parents.put(groupInfo, parent);
+                children.put(groupInfo, new ArrayList<>());
+                siblings.add(groupInfo);
+                changedGroupLists.add(siblings);
+            }
+
+            parent = groupInfo;
+            siblings = children.get(groupInfo);
+        }
+
+        groupItems.computeIfAbsent(groupInfo, k -> new ArrayList<>()).add(id);
+        itemGroups.put(id, groupInfo);
+        changedItemGroups.add(groupInfo);
+    }
+
+    /**
+     * Removes the item from its group and drops the groups which become empty.
+     */
+    protected void removeItem(K id) {
+        GroupInfo groupInfo = itemGroups.remove(id);
+        if (groupInfo == null) {
+            return;
+        }
+
+        List<K> ids = groupItems.get(groupInfo);
+        if (ids == null) {
+            return;
+        }
+        ids.remove(id);
+
+        if (ids.isEmpty()) {
+            groupItems.remove(groupInfo);
+
+            GroupInfo group = groupInfo;
+            while (group != null) {
+                GroupInfo parent = parents.remove(group);
+                children.remove(group);
+
+                List<GroupInfo> siblings = parent == null ? roots : children.get(parent);
+                siblings.remove(group);
+
+                group = parent != null && siblings.isEmpty() ? parent : null;
+            }
+        }
+    }
+
+    protected void sortChangedGroups(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo,
+                                     Set<List<GroupInfo>> changedGroupLists, Set<GroupInfo> changedItemGroups) {
+        MetaPropertyPath propertyPath = sortInfo[0].getPropertyPath();
+        boolean asc = CollectionDatasource.Sortable.Order.ASC.equals(sortInfo[0].getOrder());
+
+        int index = ArrayUtils.indexOf(groupProperties, propertyPath);
+        if (index > -1) {
+            for (List<GroupInfo> groups : changedGroupLists) {
+                if (!groups.isEmpty() && propertyPath.equals(groups.get(0).getProperty())) {
+                    groups.sort(new GroupInfoComparator(asc));
+                }
+            }
+        } else {
+            for (GroupInfo groupInfo : changedItemGroups) {
+                List<K> items = groupItems.get(groupInfo);
+                if (items != null) {
+                    items.sort(new EntityByIdComparator<>(propertyPath, datasource, asc));
+                }
+            }
+        }
+    }
+
     protected abstract void doSort(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo);
 
     protected void doGroupSort(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo) {
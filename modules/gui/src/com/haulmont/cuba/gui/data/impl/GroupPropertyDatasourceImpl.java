@@ -35,11 +35,32 @@ public class GroupPropertyDatasourceImpl<T extends Entity<K>, K>
         }
     };
 
+    // sorting fires REFRESH without changing the items, groups are already sorted by doSort()
+    protected boolean inSort;
+
     @Override
     public void groupBy(Object[] properties) {
         groupDelegate.groupBy(properties, sortInfos);
     }
 
+    @Override
+    public void sort(SortInfo[] sortInfos) {
+        inSort = true;
+        try {
+            super.sort(sortInfos);
+        } finally {
+            inSort = false;
+        }
+    }
+
+    @Override
+    protected void fireCollectionChanged(Operation operation, List<T> items) {
+        if (!listenersSuspended && !(inSort && operation == Operation.REFRESH)) {
+            groupDelegate.collectionChanged(operation, items, sortInfos);
+        }
+        super.fireCollectionChanged(operation, items);
+    }
+
     @Override
     protected void doSort() {
         if (hasGroups()) {
@@ -27,6 +27,8 @@ import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.entity.IdProxy;
 import com.haulmont.cuba.core.entity.annotation.IgnoreUserTimeZone;
 import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.Messages;
 import com.haulmont.cuba.core.global.MetadataTools;
 import com.haulmont.cuba.core.global.UserSessionSource;
@@ -35,18 +37,31 @@ import com.haulmont.cuba.gui.data.CollectionDatasource;
 import com.haulmont.cuba.gui.data.GroupDatasource;
 import com.haulmont.cuba.gui.data.GroupInfo;
 import com.haulmont.cuba.gui.data.HierarchicalDatasource;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hssf.usermodel.*;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.dom4j.Element;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.ParseException;
 import java.util.*;
 import java.util.function.Function;
@@ -56,6 +71,11 @@ import java.util.stream.Collectors;
  * Use this class to export {@link com.haulmont.cuba.gui.components.Table} into Excel format
  * and show using {@link ExportDisplay}.
  * <br>Just create an instance of this class and invoke one of <code>exportTable</code> methods.
+ * <br>By default, the document is built in memory in {@link ExportFormat#XLS} format, which is limited to
+ * {@link #MAX_ROW_COUNT} rows. Pass {@link ExportFormat#XLSX} to the constructor to stream rows to
+ * a temporary file keeping only a sliding window of them in memory.
+ * <br>The resulting document is written to a file in the temporary directory, stale files are removed by
+ * the periodic temporary directory cleanup.
  */
 public class ExcelExporter {
     protected static final int COL_WIDTH_MAGIC = 48;
@@ -64,23 +84,29 @@ public class ExcelExporter {
 
     public static final int MAX_ROW_COUNT = 65535;
 
-    protected HSSFWorkbook wb;
+    public static final int MAX_XLSX_ROW_COUNT = 1048575;
 
-    protected HSSFFont boldFont;
+    public static final int DEFAULT_ROW_ACCESS_WINDOW_SIZE = 100;
 
-    protected HSSFFont stdFont;
+    protected Workbook wb;
 
-    protected HSSFSheet sheet;
+    protected Font boldFont;
 
-    protected HSSFCellStyle timeFormatCellStyle;
+    protected Font stdFont;
 
-    protected HSSFCellStyle dateFormatCellStyle;
+    protected Sheet sheet;
 
-    protected HSSFCellStyle dateTimeFormatCellStyle;
+    protected CellStyle boldCellStyle;
 
-    protected HSSFCellStyle integerFormatCellStyle;
+    protected CellStyle timeFormatCellStyle;
 
-    protected HSSFCellStyle doubleFormatCellStyle;
+    protected CellStyle dateFormatCellStyle;
+
+    protected CellStyle dateTimeFormatCellStyle;
+
+    protected CellStyle integerFormatCellStyle;
+
+    protected CellStyle doubleFormatCellStyle;
 
     protected ExcelAutoColumnSizer[] sizers;
 
@@ -96,17 +122,42 @@ public class ExcelExporter {
 
     protected final MetadataTools metadataTools;
 
+    protected final Configuration configuration;
+
     protected boolean isRowNumberExceeded = false;
 
+    protected final ExportFormat exportFormat;
+
+    protected int rowAccessWindowSize = DEFAULT_ROW_ACCESS_WINDOW_SIZE;
+
+    /**
+     * Outline level of the rows being created, used instead of {@link Sheet#groupRow(int, int)} when streaming
+     * because rows are flushed to disk before their group is complete.
+     */
+    protected int rowOutlineLevel = 0;
+
     public enum ExportMode {
         SELECTED_ROWS,
         ALL_ROWS
     }
 
     public ExcelExporter() {
+        this(ExportFormat.XLS);
+    }
+
+    /**
+     * @param exportFormat {@link ExportFormat#XLS} or {@link ExportFormat#XLSX}
+     */
+    public ExcelExporter(ExportFormat exportFormat) {
+        if (exportFormat != ExportFormat.XLS && exportFormat != ExportFormat.XLSX) {
+            throw new IllegalArgumentException("Unsupported export format: " + exportFormat.getFileExt());
+        }
+        this.exportFormat = exportFormat;
+
         messages = AppBeans.get(Messages.NAME);
         userSessionSource = AppBeans.get(UserSessionSource.NAME);
         metadataTools = AppBeans.get(MetadataTools.NAME);
+        configuration = AppBeans.get(Configuration.NAME);
 
         trueStr = messages.getMessage(ExcelExporter.class, "excelExporter.true");
         falseStr = messages.getMessage(ExcelExporter.class, "excelExporter.false");
@@ -121,14 +172,69 @@ public class ExcelExporter {
     }
 
     protected void createWorkbookWithSheet() {
-        wb = new HSSFWorkbook();
+        if (isStreaming()) {
+            SXSSFWorkbook streamingWorkbook = new SXSSFWorkbook(rowAccessWindowSize);
+            streamingWorkbook.setCompressTempFiles(true);
+            wb = streamingWorkbook;
+        } else {
+            wb = new HSSFWorkbook();
+        }
         sheet = wb.createSheet("Export");
+        rowOutlineLevel = 0;
     }
 
     protected void createFonts() {
         stdFont = wb.createFont();
         boldFont = wb.createFont();
         boldFont.setBold(true);
+
+        boldCellStyle = wb.createCellStyle();
+        boldCellStyle.setFont(boldFont);
+    }
+
+    /**
+     * @return true if rows are flushed to a temporary file as the document is being built
+     */
+    protected boolean isStreaming() {
+        return exportFormat == ExportFormat.XLSX;
+    }
+
+    protected int getMaxRowCount() {
+        return isStreaming() ? MAX_XLSX_ROW_COUNT : MAX_ROW_COUNT;
+    }
+
+    protected Row createSheetRow(int rowNumber) {
+        Row row = sheet.createRow(rowNumber);
+        if (rowOutlineLevel > 0 && sheet instanceof SXSSFSheet) {
+            ((SXSSFSheet) sheet).setRowOutlineLevel(rowNumber, rowOutlineLevel);
+        }
+        return row;
+    }
+
+    protected RichTextString createRichTextString(String text) {
+        return wb.getCreationHelper().createRichTextString(text);
+    }
+
+    /**
+     * Writes the document to a temporary file, so it is not kept in memory until it is downloaded.
+     */
+    protected ExportDataProvider writeWorkbook() {
+        File file = null;
+        try {
+            File tempDir = new File(configuration.getConfig(GlobalConfig.class).getTempDir());
+            file = File.createTempFile("export", "." + exportFormat.getFileExt(), tempDir);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                wb.write(out);
+            }
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(file);
+            throw new RuntimeException("Unable to write document", e);
+        } finally {
+            if (wb instanceof SXSSFWorkbook) {
+                ((SXSSFWorkbook) wb).dispose();
+            }
+        }
+        return new TempFileDataProvider(file);
     }
 
     protected void createAutoColumnSizers(int count) {
@@ -163,24 +269,25 @@ public class ExcelExporter {
         if (filterDescription != null) {
             for (r = 0; r < filterDescription.size(); r++) {
                 String line = filterDescription.get(r);
-                HSSFRow row = sheet.createRow(r);
+                Row row = sheet.createRow(r);
                 if (r == 0) {
-                    HSSFRichTextString richTextFilterName = new HSSFRichTextString(line);
-                    richTextFilterName.applyFont(boldFont);
-                    row.createCell(0).setCellValue(richTextFilterName);
+                    Cell cell = row.createCell(0);
+                    cell.setCellValue(createRichTextString(line));
+                    cell.setCellStyle(boldCellStyle);
                 } else {
                     row.createCell(0).setCellValue(line);
                 }
             }
             r++;
         }
-        HSSFRow row = sheet.createRow(r);
+        Row row = sheet.createRow(r);
         createAutoColumnSizers(columns.size());
 
         float maxHeight = sheet.getDefaultRowHeightInPoints();
 
         CellStyle headerCellStyle = wb.createCellStyle();
         headerCellStyle.setVerticalAlignment(VerticalAlignment.CENTER);
+        headerCellStyle.setFont(boldFont);
         for (Table.Column column : columns) {
             String caption = column.getCaption();
 
@@ -196,10 +303,8 @@ public class ExcelExporter {
             Table.Column column = columns.get(c);
             String caption = column.getCaption();
 
-            HSSFCell cell = row.createCell(c);
-            HSSFRichTextString richTextString = new HSSFRichTextString(caption);
-            richTextString.applyFont(boldFont);
-            cell.setCellValue(richTextString);
+            Cell cell = row.createCell(c);
+            cell.setCellValue(createRichTextString(caption));
 
             ExcelAutoColumnSizer sizer = new ExcelAutoColumnSizer();
             sizer.notifyCellValue(caption, boldFont);
@@ -268,17 +373,12 @@ public class ExcelExporter {
             sheet.setColumnWidth(c, sizers[c].getWidth() * COL_WIDTH_MAGIC);
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            wb.write(out);
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to write document", e);
-        }
+        ExportDataProvider content = writeWorkbook();
         if (fileName == null) {
             fileName = messages.getTools().getEntityCaption(datasource.getMetaClass());
         }
 
-        display.show(new ByteArrayDataProvider(out.toByteArray()), fileName + ".xls", ExportFormat.XLS);
+        display.show(content, fileName + "." + exportFormat.getFileExt(), exportFormat);
     }
 
     public void exportDataGrid(DataGrid dataGrid, ExportDisplay display) {
@@ -314,24 +414,25 @@ public class ExcelExporter {
         if (filterDescription != null) {
             for (r = 0; r < filterDescription.size(); r++) {
                 String line = filterDescription.get(r);
-                HSSFRow row = sheet.createRow(r);
+                Row row = sheet.createRow(r);
                 if (r == 0) {
-                    HSSFRichTextString richTextFilterName = new HSSFRichTextString(line);
-                    richTextFilterName.applyFont(boldFont);
-                    row.createCell(0).setCellValue(richTextFilterName);
+                    Cell cell = row.createCell(0);
+                    cell.setCellValue(createRichTextString(line));
+                    cell.setCellStyle(boldCellStyle);
                 } else {
                     row.createCell(0).setCellValue(line);
                 }
             }
             r++;
         }
-        HSSFRow row = sheet.createRow(r);
+        Row row = sheet.createRow(r);
         createAutoColumnSizers(columns.size());
 
         float maxHeight = sheet.getDefaultRowHeightInPoints();
 
         CellStyle headerCellStyle = wb.createCellStyle();
         headerCellStyle.setVerticalAlignment(VerticalAlignment.CENTER);
+        headerCellStyle.setFont(boldFont);
         for (DataGrid.Column column : columns) {
             String caption = column.getCaption();
 
@@ -347,10 +448,8 @@ public class ExcelExporter {
             DataGrid.Column column = columns.get(c);
             String caption = column.getCaption();
 
-            HSSFCell cell = row.createCell(c);
-            HSSFRichTextString richTextString = new HSSFRichTextString(caption);
-            richTextString.applyFont(boldFont);
-            cell.setCellValue(richTextString);
+            Cell cell = row.createCell(c);
+            cell.setCellValue(createRichTextString(caption));
 
             ExcelAutoColumnSizer sizer = new ExcelAutoColumnSizer();
             sizer.notifyCellValue(caption, boldFont);
@@ -386,34 +485,29 @@ public class ExcelExporter {
             sheet.setColumnWidth(c, sizers[c].getWidth() * COL_WIDTH_MAGIC);
         }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        try {
-            wb.write(out);
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to write document", e);
-        }
+        ExportDataProvider content = writeWorkbook();
         if (fileName == null) {
             fileName = messages.getTools().getEntityCaption(datasource.getMetaClass());
         }
 
-        display.show(new ByteArrayDataProvider(out.toByteArray()), fileName + ".xls", ExportFormat.XLS);
+        display.show(content, fileName + "." + exportFormat.getFileExt(), exportFormat);
     }
 
     protected void createFormats() {
         timeFormatCellStyle = wb.createCellStyle();
-        timeFormatCellStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("h:mm"));
+        timeFormatCellStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("h:mm"));
 
         dateFormatCellStyle = wb.createCellStyle();
-        dateFormatCellStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("m/d/yy"));
+        dateFormatCellStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy"));
 
         dateTimeFormatCellStyle = wb.createCellStyle();
-        dateTimeFormatCellStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("m/d/yy h:mm"));
+        dateTimeFormatCellStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("m/d/yy h:mm"));
 
         integerFormatCellStyle = wb.createCellStyle();
-        integerFormatCellStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("#,##0"));
+        integerFormatCellStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("#,##0"));
 
         doubleFormatCellStyle = wb.createCellStyle();
-        doubleFormatCellStyle.setDataFormat(HSSFDataFormat.getBuiltinFormat("#,##0.00"));
+        doubleFormatCellStyle.setDataFormat((short) BuiltinFormats.getBuiltinFormat("#,##0.00"));
     }
 
     @SuppressWarnings("unchecked")
@@ -441,7 +535,7 @@ public class ExcelExporter {
     @SuppressWarnings("unchecked")
     protected int createAggregatableRow(Table table, List<Table.Column> columns, int rowNumber,
                                         int aggregatableRow, CollectionDatasource datasource) {
-        HSSFRow row = sheet.createRow(rowNumber);
+        Row row = createSheetRow(rowNumber);
         Map<Object, Object> results = table.getAggregationResults();
 
         int i = 0;
@@ -451,7 +545,7 @@ public class ExcelExporter {
                 Object key = agr.getPropertyPath() != null ? agr.getPropertyPath() : column.getId();
                 Object aggregationResult = results.get(key);
                 if (aggregationResult != null) {
-                    HSSFCell cell = row.createCell(i);
+                    Cell cell = row.createCell(i);
                     formatValueCell(cell, aggregationResult, null, i, rowNumber, 0, null);
                 }
             }
@@ -465,7 +559,7 @@ public class ExcelExporter {
                                  GroupInfo groupInfo, int groupNumber) {
         GroupDatasource ds = table.getDatasource();
 
-        HSSFRow row = sheet.createRow(rowNumber);
+        Row row = createSheetRow(rowNumber);
         Map<Object, Object> aggregations = table.isAggregatable()
                 ? table.getAggregationResults(groupInfo)
                 : Collections.emptyMap();
@@ -474,7 +568,7 @@ public class ExcelExporter {
         int initialGroupNumber = groupNumber;
         for (Table.Column column : columns) {
             if (i == initialGroupNumber) {
-                HSSFCell cell = row.createCell(i);
+                Cell cell = row.createCell(i);
                 Object val = groupInfo.getValue();
 
                 if (val == null) {
@@ -529,7 +623,7 @@ public class ExcelExporter {
                     Object key = agr.getPropertyPath() != null ? agr.getPropertyPath() : column.getId();
                     Object aggregationResult = aggregations.get(key);
                     if (aggregationResult != null) {
-                        HSSFCell cell = row.createCell(i);
+                        Cell cell = row.createCell(i);
                         formatValueCell(cell, aggregationResult, null, i, rowNumber, 0, null);
                     }
                 }
@@ -539,22 +633,31 @@ public class ExcelExporter {
         }
 
         int oldRowNumber = rowNumber;
-        List<GroupInfo> children = ds.getChildren(groupInfo);
-        if (children.size() > 0) {
-            for (GroupInfo child : children) {
-                rowNumber = createGroupRow(table, columns, ++rowNumber, child, groupNumber);
-            }
-        } else {
-            Collection<Object> itemIds = ds.getGroupItemIds(groupInfo);
-            for (Object itemId : itemIds) {
-                createRow(table, columns, groupNumber, ++rowNumber, itemId);
+        rowOutlineLevel++;
+        try {
+            List<GroupInfo> children = ds.getChildren(groupInfo);
+            if (children.size() > 0) {
+                for (GroupInfo child : children) {
+                    rowNumber = createGroupRow(table, columns, ++rowNumber, child, groupNumber);
+                }
+            } else {
+                Collection<Object> itemIds = ds.getGroupItemIds(groupInfo);
+                for (Object itemId : itemIds) {
+                    createRow(table, columns, groupNumber, ++rowNumber, itemId);
+                }
             }
+        } finally {
+            rowOutlineLevel--;
         }
 
-        if (checkIsRowNumberExceed(rowNumber)) {
-            sheet.groupRow(oldRowNumber + 1, MAX_ROW_COUNT);
+        if (!isStreaming()) {
+            if (checkIsRowNumberExceed(rowNumber)) {
+                sheet.groupRow(oldRowNumber + 1, getMaxRowCount());
+            } else {
+                sheet.groupRow(oldRowNumber + 1, rowNumber);
+            }
         } else {
-            sheet.groupRow(oldRowNumber + 1, rowNumber);
+            checkIsRowNumberExceed(rowNumber);
         }
 
         return rowNumber;
@@ -566,11 +669,11 @@ public class ExcelExporter {
             return;
         }
 
-        if (rowNumber > MAX_ROW_COUNT) {
+        if (rowNumber > getMaxRowCount()) {
             return;
         }
 
-        HSSFRow row = sheet.createRow(rowNumber);
+        Row row = createSheetRow(rowNumber);
         Instance instance = table.getDatasource().getItem(itemId);
 
         int level = 0;
@@ -578,7 +681,7 @@ public class ExcelExporter {
             level = ((TreeTable) table).getLevel(itemId);
         }
         for (int c = startColumn; c < columns.size(); c++) {
-            HSSFCell cell = row.createCell(c);
+            Cell cell = row.createCell(c);
 
             Table.Column column = columns.get(c);
             Object cellValue = null;
@@ -617,12 +720,12 @@ public class ExcelExporter {
         if (startColumn >= columns.size()) {
             return;
         }
-        HSSFRow row = sheet.createRow(rowNumber);
+        Row row = createSheetRow(rowNumber);
         Instance instance = dataGrid.getDatasource().getItem(itemId);
 
         int level = 0;
         for (int c = startColumn; c < columns.size(); c++) {
-            HSSFCell cell = row.createCell(c);
+            Cell cell = row.createCell(c);
 
             DataGrid.Column column = columns.get(c);
             Object cellValue;
@@ -663,7 +766,7 @@ public class ExcelExporter {
         return sb.toString();
     }
 
-    protected void formatValueCell(HSSFCell cell, @Nullable Object cellValue, @Nullable MetaPropertyPath metaPropertyPath,
+    protected void formatValueCell(Cell cell, @Nullable Object cellValue, @Nullable MetaPropertyPath metaPropertyPath,
                                    int sizersIndex, int notificationRequired, int level, @Nullable Integer groupChildCount) {
 
         if (cellValue == null) {
@@ -763,7 +866,7 @@ public class ExcelExporter {
                 str += createSpaceString(level);
             }
             str += ((Boolean) cellValue) ? trueStr : falseStr;
-            cell.setCellValue(new HSSFRichTextString(str));
+            cell.setCellValue(createRichTextString(str));
             if (sizers[sizersIndex].isNotificationRequired(notificationRequired)) {
                 sizers[sizersIndex].notifyCellValue(str, stdFont);
             }
@@ -781,13 +884,13 @@ public class ExcelExporter {
             String instanceName = entityVal.getInstanceName();
             String str = sizersIndex == 0 ? createSpaceString(level) + instanceName : instanceName;
             str = str + childCountValue;
-            cell.setCellValue(new HSSFRichTextString(str));
+            cell.setCellValue(createRichTextString(str));
             if (sizers[sizersIndex].isNotificationRequired(notificationRequired)) {
                 sizers[sizersIndex].notifyCellValue(str, stdFont);
             }
         } else if (cellValue instanceof Collection) {
             String str = "";
-            cell.setCellValue(new HSSFRichTextString(str));
+            cell.setCellValue(createRichTextString(str));
             if (sizers[sizersIndex].isNotificationRequired(notificationRequired)) {
                 sizers[sizersIndex].notifyCellValue(str, stdFont);
             }
@@ -795,7 +898,7 @@ public class ExcelExporter {
             String strValue = cellValue == null ? "" : cellValue.toString();
             String str = sizersIndex == 0 ? createSpaceString(level) + strValue : strValue;
             str = str + childCountValue;
-            cell.setCellValue(new HSSFRichTextString(str));
+            cell.setCellValue(createRichTextString(str));
             if (sizers[sizersIndex].isNotificationRequired(notificationRequired)) {
                 sizers[sizersIndex].notifyCellValue(str, stdFont);
             }
@@ -803,11 +906,12 @@ public class ExcelExporter {
     }
 
     protected boolean checkIsRowNumberExceed(int r) {
-        return isRowNumberExceeded = r >= MAX_ROW_COUNT;
+        return isRowNumberExceeded = r >= getMaxRowCount();
     }
 
     /**
-     * @return true if exported table contains more than 65536 records
+     * @return true if exported table contains more rows than the export format allows:
+     * 65536 for XLS and 1048576 for XLSX
      */
     public boolean isXlsMaxRowNumberExceeded() {
         return isRowNumberExceeded;
@@ -820,4 +924,19 @@ public class ExcelExporter {
     public boolean getExportAggregation() {
         return exportAggregation;
     }
+
+    public ExportFormat getExportFormat() {
+        return exportFormat;
+    }
+
+    /**
+     * @return number of rows kept in memory when exporting to XLSX, older rows are flushed to a temporary file
+     */
+    public int getRowAccessWindowSize() {
+        return rowAccessWindowSize;
+    }
+
+    public void setRowAccessWindowSize(int rowAccessWindowSize) {
+        this.rowAccessWindowSize = rowAccessWindowSize;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.gui.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+
+import static com.haulmont.bali.util.Preconditions.checkNotNullArgument;
+
+/**
+ * Data provider for a temporary file created by the export. The data can be provided any number of times, e.g. when
+ * the browser repeats a download request. The file is not deleted by the provider: it is located in the temporary
+ * directory and is removed by {@link com.haulmont.cuba.gui.upload.FileUploadingMBean#clearTempDirectory()} when it
+ * becomes stale.
+ */
+public class TempFileDataProvider implements ExportDataProvider {
+
+    protected File file;
+
+    public TempFileDataProvider(File file) {
+        checkNotNullArgument(file, "Null file");
+
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public InputStream provide() {
+        try {
+            return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Exported file not found: " + file, e);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.haulmont.bali.events.EventRouter;
 import com.haulmont.bali.util.Numbers;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.Instance;
+import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.impl.AbstractInstance;
 import com.haulmont.cuba.core.entity.*;
@@ -31,6 +32,7 @@ import javax.annotation.Nullable;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -45,6 +47,9 @@ public class StandardDataContext implements DataContext {
 
     protected Set<Entity> modifiedInstances = new HashSet<>();
 
+    // names of changed attributes of modified instances; an instance without an entry is considered changed entirely
+    protected Map<Entity, Set<String>> modifiedAttributes = new HashMap<>();
+
     protected Set<Entity> removedInstances = new HashSet<>();
 
     protected ChangeListener changeListener = new ChangeListener();
@@ -53,6 +58,8 @@ public class StandardDataContext implements DataContext {
 
     protected StandardDataContext parentContext;
 
+    protected static final Map<MetaClass, List<AttributeCopier>> attributeCopiers = new ConcurrentHashMap<>();
+
     public StandardDataContext(ApplicationContext applicationContext) {
         this.applicationContext = applicationContext;
     }
@@ -147,7 +154,7 @@ public class StandardDataContext implements DataContext {
         entity.addPropertyChangeListener(changeListener);
 
         if (getEntityStates().isNew(entity)) {
-            modifiedInstances.add(entity);
+            setModified(entity, null);
         }
         return entity;
     }
@@ -176,26 +183,19 @@ public class StandardDataContext implements DataContext {
                 }
             }
         }
-        for (MetaProperty property : getMetadata().getClassNN(srcEntity.getClass()).getProperties()) {
-            String name = property.getName();
-            if ((!property.getRange().isClass() || property.getRange().getCardinality().isMany()) // local and collections
-                    && !property.isReadOnly()                                                     // read-write
-                    && (srcNew || entityStates.isLoaded(srcEntity, name))) {                      // loaded
-                AnnotatedElement annotatedElement = property.getAnnotatedElement();
-                if (annotatedElement instanceof Field) {
-                    Field field = (Field) annotatedElement;
-                    field.setAccessible(true);
-                    try {
-                        Object value = field.get(srcEntity);
-                        if (srcNew || property.getRange().getCardinality().isMany()) {
-                            if (value != null)
-                                copyValue(dstEntity, field, value);
-                        } else {
-                            copyValue(dstEntity, field, value);
-                        }
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException("Error copying state of attribute " + name, e);
+        for (AttributeCopier copier : getAttributeCopiers(srcEntity)) {
+            if ((copier.local || copier.many)                                       // local and collections
+                    && (srcNew || entityStates.isLoaded(srcEntity, copier.name))) { // loaded
+                try {
+                    Object value = copier.field.get(srcEntity);
+                    if (srcNew || copier.many) {
+                        if (value != null)
+                            copyValue(dstEntity, copier.field, value);
+                    } else {
+                        copyValue(dstEntity, copier.field, value);
                     }
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException("Error copying state of attribute " + copier.name, e);
                 }
             }
         }
@@ -230,36 +230,29 @@ public class StandardDataContext implements DataContext {
 
         copied.put(srcEntity, dstEntity);
 
-        for (MetaProperty property : getMetadata().getClassNN(srcEntity.getClass()).getProperties()) {
-            String name = property.getName();
-            if (!property.isReadOnly()
-                    && (srcNew || entityStates.isLoaded(srcEntity, name))) {
-                AnnotatedElement annotatedElement = property.getAnnotatedElement();
-                if (annotatedElement instanceof Field) {
-                    Field field = (Field) annotatedElement;
-                    field.setAccessible(true);
-                    try {
-                        Object value = field.get(srcEntity);
-                        Object newValue;
-                        if (value != null) {
-                            if (!property.getRange().isClass()) {
-                                newValue = value;
-                            } else if (!property.getRange().getCardinality().isMany()) {
-                                newValue = copyGraph((Entity) value, copied);
-                            } else {
-                                Collection dstCollection = value instanceof List ? new ArrayList() : new LinkedHashSet();
-                                for (Object item : (Collection) value) {
-                                    dstCollection.add(copyGraph((Entity) item, copied));
-                                }
-                                newValue = dstCollection;
-                            }
-                            if (newValue != null) {
-                                field.set(dstEntity, newValue);
+        for (AttributeCopier copier : getAttributeCopiers(srcEntity)) {
+            if (srcNew || entityStates.isLoaded(srcEntity, copier.name)) {
+                try {
+                    Object value = copier.field.get(srcEntity);
+                    Object newValue;
+                    if (value != null) {
+                        if (copier.local) {
+                            newValue = value;
+                        } else if (!copier.many) {
+                            newValue = copyGraph((Entity) value, copied);
+                        } else {
+                            Collection dstCollection = value instanceof List ? new ArrayList() : new LinkedHashSet();
+                            for (Object item : (Collection) value) {
+                                dstCollection.add(copyGraph((Entity) item, copied));
                             }
+                            newValue = dstCollection;
+                        }
+                        if (newValue != null) {
+                            copier.field.set(dstEntity, newValue);
                         }
-                    } catch (IllegalAccessException e) {
-                        throw new RuntimeException("Error copying state of attribute " + name, e);
                     }
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException("Error copying state of attribute " + copier.name, e);
                 }
             }
         }
@@ -288,27 +281,61 @@ public class StandardDataContext implements DataContext {
         }
     }
 
+    /**
+     * Copies the value to the field of the destination object. Values equal to the current ones are not written,
+     * so merging an unchanged instance leaves the managed instance and its collections intact.
+     */
     @SuppressWarnings("unchecked")
     protected void copyValue(Object dstObject, Field field, Object srcValue) throws IllegalAccessException {
+        Object dstValue = field.get(dstObject);
         if (srcValue instanceof Collection) {
             Collection srcCollection = (Collection) srcValue;
-            Collection dstCollection = (Collection) field.get(dstObject);
+            Collection dstCollection = (Collection) dstValue;
+            if (dstCollection == srcCollection) {
+                return;
+            }
             Collection newDstCollection = srcValue instanceof List ? new ArrayList() : new LinkedHashSet();
             if (dstCollection == null) {
                 newDstCollection.addAll(srcCollection);
             } else {
+                Set<Object> dstElements = new HashSet<>(dstCollection);
+                if (dstElements.containsAll(srcCollection)) {
+                    return;
+                }
                 newDstCollection.addAll(dstCollection);
                 for (Object o : srcCollection) {
-                    if (!newDstCollection.contains(o))
+                    if (dstElements.add(o))
                         newDstCollection.add(o);
                 }
             }
             field.set(dstObject, newDstCollection);
-        } else {
+        } else if (!Objects.equals(dstValue, srcValue)) {
             field.set(dstObject, srcValue);
         }
     }
 
+    /**
+     * Returns copiers of the read-write attributes of the entity class. Copiers are built once per class, so merging
+     * large collections does not resolve and open the fields of every instance.
+     */
+    protected List<AttributeCopier> getAttributeCopiers(Entity entity) {
+        MetaClass metaClass = getMetadata().getClassNN(entity.getClass());
+        return attributeCopiers.computeIfAbsent(metaClass, this::createAttributeCopiers);
+    }
+
+    protected List<AttributeCopier> createAttributeCopiers(MetaClass metaClass) {
+        List<AttributeCopier> copiers = new ArrayList<>();
+        for (MetaProperty property : metaClass.getProperties()) {
+            AnnotatedElement annotatedElement = property.getAnnotatedElement();
+            if (!property.isReadOnly() && annotatedElement instanceof Field) {
+                Field field = (Field) annotatedElement;
+                field.setAccessible(true);
+                copiers.add(new AttributeCopier(property, field));
+            }
+        }
+        return Collections.unmodifiableList(copiers);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void remove(Entity entity) {
@@ -318,6 +345,7 @@ public class StandardDataContext implements DataContext {
             Entity mergedEntity = entityMap.get(entity.getId());
             if (mergedEntity != null) {
                 modifiedInstances.remove(entity);
+                modifiedAttributes.remove(entity);
                 removedInstances.add(entity);
                 entityMap.remove(entity.getId());
                 entity.removePropertyChangeListener(changeListener);
@@ -358,6 +386,7 @@ public class StandardDataContext implements DataContext {
         mergeCommitted(committed);
 
         modifiedInstances.clear();
+        modifiedAttributes.clear();
         removedInstances.clear();
     }
 
@@ -393,15 +422,77 @@ public class StandardDataContext implements DataContext {
     }
 
     protected Set<Entity> commitToDataManager() {
-        CommitContext commitContext = new CommitContext(modifiedInstances, removedInstances);
+        List<Entity> commitInstances = new ArrayList<>(modifiedInstances.size());
+        for (Entity entity : modifiedInstances) {
+            commitInstances.add(createCommitInstance(entity));
+        }
+        CommitContext commitContext = new CommitContext(commitInstances, removedInstances);
         return getDataManager().commit(commitContext);
     }
 
+    /**
+     * Returns an instance to be sent to {@code DataManager} for the given modified instance. If only local attributes
+     * of a detached non-versioned instance were changed to non-null values, returns a patch object containing just
+     * these attributes, otherwise returns the instance itself. Versioned instances are always sent entirely to keep
+     * the optimistic locking check.
+     *
+     * @see EntityStates#makePatch(BaseGenericIdEntity)
+     */
+    protected Entity createCommitInstance(Entity entity) {
+        Set<String> attributes = modifiedAttributes.get(entity);
+        if (attributes == null
+                || !(entity instanceof BaseGenericIdEntity)
+                || entity instanceof Versioned
+                || !getEntityStates().isDetached(entity)
+                || BaseEntityInternalAccess.getSecurityToken(entity) != null) {
+            return entity;
+        }
+
+        List<AttributeCopier> changed = new ArrayList<>(attributes.size());
+        for (AttributeCopier copier : getAttributeCopiers(entity)) {
+            if (attributes.contains(copier.name)) {
+                if (!copier.local) {
+                    return entity;
+                }
+                changed.add(copier);
+            }
+        }
+        if (changed.size() != attributes.size()) {
+            // dynamic or non-persistent attributes
+            return entity;
+        }
+
+        Entity patch;
+        try {
+            patch = entity.getClass().newInstance();
+            copyIdAndVersion(entity, patch);
+            for (AttributeCopier copier : changed) {
+                Object value = copier.field.get(entity);
+                if (value == null) {
+                    // a patch cannot reset attributes to null
+                    return entity;
+                }
+                copier.field.set(patch, value);
+            }
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException("Cannot create a patch of " + entity, e);
+        }
+        getEntityStates().makePatch((BaseGenericIdEntity) patch);
+        return patch;
+    }
+
     protected Set<Entity> commitToParentContext() {
         HashSet<Entity> committedEntities = new HashSet<>();
         for (Entity entity : modifiedInstances) {
             Entity merged = parentContext.merge(entity, false);
-            parentContext.modifiedInstances.add(merged);
+            Set<String> attributes = modifiedAttributes.get(entity);
+            if (attributes == null) {
+                parentContext.setModified(merged, null);
+            } else {
+                for (String attribute : attributes) {
+                    parentContext.setModified(merged, attribute);
+                }
+            }
             committedEntities.add(merged);
         }
         for (Entity entity : removedInstances) {
@@ -418,6 +509,26 @@ public class StandardDataContext implements DataContext {
         }
     }
 
+    /**
+     * Registers a modification of the instance.
+     *
+     * @param entity    modified instance
+     * @param attribute name of the changed attribute or null if the instance should be committed entirely
+     */
+    protected void setModified(Entity entity, @Nullable String attribute) {
+        boolean firstModification = modifiedInstances.add(entity);
+        if (attribute == null) {
+            modifiedAttributes.remove(entity);
+        } else if (firstModification) {
+            modifiedAttributes.computeIfAbsent(entity, e -> new HashSet<>()).add(attribute);
+        } else {
+            Set<String> attributes = modifiedAttributes.get(entity);
+            if (attributes != null) {
+                attributes.add(attribute);
+            }
+        }
+    }
+
     protected Collection<Entity> getAll() {
         List<Entity> resultList = new ArrayList<>();
         for (Map<Object, Entity> entityMap : content.values()) {
@@ -430,7 +541,7 @@ public class StandardDataContext implements DataContext {
         @Override
         public void propertyChanged(Instance.PropertyChangeEvent e) {
             if (!disableListeners) {
-                modifiedInstances.add((Entity) e.getItem());
+                setModified((Entity) e.getItem(), e.getProperty());
             }
         }
     }
@@ -472,7 +583,7 @@ public class StandardDataContext implements DataContext {
                 }
             }
             if (!(list instanceof ObservableList)) {
-                ObservableList observableList = new ObservableList<>(list, () -> modified(owningEntity));
+                ObservableList observableList = new ObservableList<>(list, () -> modified(owningEntity, propertyName));
                 ((AbstractInstance) owningEntity).setValue(propertyName, observableList, false);
             }
         }
@@ -487,7 +598,7 @@ public class StandardDataContext implements DataContext {
                 }
             }
             if (!(set instanceof ObservableList)) {
-                ObservableSet observableSet = new ObservableSet<>(set, () -> modified(owningEntity));
+                ObservableSet observableSet = new ObservableSet<>(set, () -> modified(owningEntity, propertyName));
                 ((AbstractInstance) owningEntity).setValue(propertyName, observableSet, false);
             }
         }
@@ -499,10 +610,27 @@ public class StandardDataContext implements DataContext {
             }
         }
 
-        protected void modified(Entity entity) {
+        protected void modified(Entity entity, String propertyName) {
             if (!disableListeners) {
-                modifiedInstances.add(entity);
+                setModified(entity, propertyName);
             }
         }
     }
+
+    /**
+     * Precomputed accessor of an entity attribute used to copy its value between instances.
+     */
+    protected static class AttributeCopier {
+        protected final String name;
+        protected final Field field;
+        protected final boolean local;
+        protected final boolean many;
+
+        protected AttributeCopier(MetaProperty property, Field field) {
+            this.name = property.getName();
+            this.field = field;
+            this.local = !property.getRange().isClass();
+            this.many = property.getRange().getCardinality().isMany();
+        }
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.data.impl;
+
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.cuba.client.testsupport.CubaClientTestCase;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.gui.data.CollectionDatasource;
+import com.haulmont.cuba.gui.data.GroupInfo;
+import com.haulmont.cuba.gui.data.impl.testmodel1.TestMasterEntity;
+import com.haulmont.cuba.gui.executors.BackgroundWorker;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class GroupDatasourceTest extends CubaClientTestCase {
+
+    @Mocked
+    protected BackgroundWorker backgroundWorker;
+
+    protected GroupDatasourceImpl<TestMasterEntity, UUID> ds;
+
+    @Before
+    public void setUp() throws Exception {
+        addEntityPackage("com.haulmont.cuba");
+        setupInfrastructure();
+
+        new Expectations() {
+            {
+                backgroundWorker.checkUIAccess(); result = null; minTimes = 0;
+                AppBeans.get(BackgroundWorker.NAME); result = backgroundWorker; minTimes = 0;
+                AppBeans.get(BackgroundWorker.class); result = backgroundWorker; minTimes = 0;
+                AppBeans.get(BackgroundWorker.NAME, BackgroundWorker.class); result = backgroundWorker; minTimes = 0;
+            }
+        };
+
+        ds = new GroupDatasourceImpl<>();
+        ds.setMetaClass(metadata.getClassNN(TestMasterEntity.class));
+        ds.setRefreshMode(CollectionDatasource.RefreshMode.NEVER);
+        ds.valid();
+
+        for (String name : new String[]{"a", "b", "a"}) {
+            TestMasterEntity entity = createEntity(name);
+            ds.data.put(entity.getId(), entity);
+        }
+
+        MetaPropertyPath namePath = ds.getMetaClass().getPropertyPath("masterName");
+        ds.groupBy(new Object[]{namePath});
+    }
+
+    @Test
+    public void testAddItemToExistingAndNewGroup() {
+        TestMasterEntity entityA = createEntity("a");
+        ds.addItem(entityA);
+
+        assertEquals(2, ds.rootGroups().size());
+        assertEquals(3, ds.getGroupItemsCount(ds.getParentGroup(entityA)));
+
+        TestMasterEntity entityC = createEntity("c");
+        ds.addItem(entityC);
+
+        List<GroupInfo> roots = ds.rootGroups();
+        assertEquals(3, roots.size());
+        assertEquals("c", roots.get(2).getValue());
+        assertEquals(1, ds.getGroupItemsCount(ds.getParentGroup(entityC)));
+    }
+
+    @Test
+    public void testRemoveLastItemOfGroup() {
+        TestMasterEntity entityB = findByName("b");
+        GroupInfo groupB = ds.getParentGroup(entityB);
+
+        ds.removeItem(entityB);
+
+        assertEquals(1, ds.rootGroups().size());
+        assertFalse(ds.containsGroup(groupB));
+        assertEquals("a", ds.rootGroups().get(0).getValue());
+    }
+
+    @Test
+    public void testUpdateMovesItemToAnotherGroup() {
+        TestMasterEntity entity = findByName("b");
+        entity.setMasterName("a");
+        ds.updateItem(entity);
+
+        assertEquals(1, ds.rootGroups().size());
+        assertEquals(3, ds.getGroupItemsCount(ds.rootGroups().get(0)));
+        assertEquals(ds.rootGroups().get(0), ds.getParentGroup(entity));
+    }
+
+    @Test
+    public void testRefreshRegroups() {
+        for (TestMasterEntity entity : ds.getItems()) {
+            entity.setMasterName("z");
+        }
+        ds.refresh();
+
+        assertEquals(1, ds.rootGroups().size());
+        assertEquals("z", ds.rootGroups().get(0).getValue());
+        assertEquals(3, ds.getGroupItemsCount(ds.rootGroups().get(0)));
+    }
+
+    @SuppressWarnings("IncorrectCreateEntity")
+    protected TestMasterEntity createEntity(String name) {
+        TestMasterEntity entity = new TestMasterEntity();
+        entity.setMasterName(name);
+        return entity;
+    }
+
+    protected TestMasterEntity findByName(String name) {
+        return ds.getItems().stream()
+                .filter(entity -> name.equals(entity.getMasterName()))
+                .findFirst()
+                .orElseThrow(IllegalStateException::new);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.haulmont.cuba.gui.export;
+
+import com.haulmont.cuba.client.testsupport.CubaClientTestCase;
+import mockit.Expectations;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class ExcelExporterTest extends CubaClientTestCase {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        addEntityPackage("com.haulmont.cuba");
+        setupInfrastructure();
+        messages.init();
+
+        String tempDir = tempFolder.getRoot().getAbsolutePath();
+        new Expectations() {
+            {
+                globalConfig.getTempDir(); result = tempDir; minTimes = 0;
+            }
+        };
+    }
+
+    @Test
+    public void testXlsxWrittenToTempFile() throws Exception {
+        ExcelExporter exporter = createExporterWithRows(ExportFormat.XLSX, 1000);
+
+        ExportDataProvider dataProvider = exporter.writeWorkbook();
+        File file = ((TempFileDataProvider) dataProvider).getFile();
+        assertEquals(tempFolder.getRoot(), file.getParentFile());
+        assertTrue(file.getName().endsWith(".xlsx"));
+
+        try (InputStream in = dataProvider.provide(); Workbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals(999, sheet.getLastRowNum());
+            assertEquals("row999", sheet.getRow(999).getCell(0).getStringCellValue());
+        }
+        // can be downloaded again, e.g. when the browser repeats the request
+        try (InputStream in = dataProvider.provide(); Workbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(999, workbook.getSheetAt(0).getLastRowNum());
+        }
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void testXlsWrittenToTempFile() throws Exception {
+        ExcelExporter exporter = createExporterWithRows(ExportFormat.XLS, 10);
+
+        ExportDataProvider dataProvider = exporter.writeWorkbook();
+        File file = ((TempFileDataProvider) dataProvider).getFile();
+        assertTrue(file.getName().endsWith(".xls"));
+
+        try (InputStream in = dataProvider.provide(); Workbook workbook = new HSSFWorkbook(in)) {
+            assertEquals("row9", workbook.getSheetAt(0).getRow(9).getCell(0).getStringCellValue());
+        }
+        assertTrue(file.exists());
+    }
+
+    private ExcelExporter createExporterWithRows(ExportFormat exportFormat, int rowCount) {
+        ExcelExporter exporter = new ExcelExporter(exportFormat);
+        exporter.createWorkbookWithSheet();
+        for (int i = 0; i < rowCount; i++) {
+            exporter.createSheetRow(i).createCell(0).setCellValue("row" + i);
+        }
+        return exporter;
+    }
+}
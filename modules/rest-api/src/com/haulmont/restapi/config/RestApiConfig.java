@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 import com.haulmont.cuba.core.config.type.CommaSeparatedStringListTypeFactory;
 import com.haulmont.cuba.core.config.type.Factory;
 
@@ -66,4 +67,24 @@ public interface RestApiConfig extends Config {
     @DefaultBoolean(true)
     boolean getTokenMaskingEnabled();
 
-}
\ No newline at end of file
+    /**
+     * @return number of entities loaded from the database at once by the bulk export endpoint
+     */
+    @Property("cuba.rest.bulkExportBatchSize")
+    @DefaultInt(1000)
+    int getBulkExportBatchSize();
+
+    /**
+     * @return number of entities imported in one transaction by the bulk import endpoint
+     */
+    @Property("cuba.rest.bulkImportBatchSize")
+    @DefaultInt(100)
+    int getBulkImportBatchSize();
+
+    /**
+     * @return maximum number of line errors returned by the bulk import endpoint
+     */
+    @Property("cuba.rest.bulkImportMaxReportedErrors")
+    @DefaultInt(1000)
+    int getBulkImportMaxReportedErrors();
+}
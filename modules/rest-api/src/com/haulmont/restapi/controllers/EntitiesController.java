@@ -20,6 +20,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.haulmont.restapi.data.CreatedEntityInfo;
+import com.haulmont.restapi.data.EntitiesImportResult;
 import com.haulmont.restapi.data.EntitiesSearchResult;
 import com.haulmont.restapi.service.EntitiesControllerManager;
 import org.apache.commons.lang3.BooleanUtils;
@@ -34,6 +35,13 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Controller that performs CRUD entity operations
@@ -42,6 +50,8 @@ import javax.servlet.http.HttpServletRequest;
 @RequestMapping(value = "/v2/entities", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
 public class EntitiesController {
 
+    protected static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
     @Inject
     protected EntitiesControllerManager entitiesControllerManager;
 
@@ -56,55 +66,77 @@ public class EntitiesController {
     }
 
     @GetMapping("/{entityName}")
-    public ResponseEntity<String> loadEntitiesList(@PathVariable String entityName,
-                                                   @RequestParam(required = false) String view,
-                                                   @RequestParam(required = false) Integer limit,
-                                                   @RequestParam(required = false) Integer offset,
-                                                   @RequestParam(required = false) String sort,
-                                                   @RequestParam(required = false) Boolean returnNulls,
-                                                   @RequestParam(required = false) Boolean returnCount,
-                                                   @RequestParam(required = false) Boolean dynamicAttributes,
-                                                   @RequestParam(required = false) String modelVersion) {
+    public void loadEntitiesList(@PathVariable String entityName,
+                                 @RequestParam(required = false) String view,
+                                 @RequestParam(required = false) Integer limit,
+                                 @RequestParam(required = false) Integer offset,
+                                 @RequestParam(required = false) String sort,
+                                 @RequestParam(required = false) Boolean returnNulls,
+                                 @RequestParam(required = false) Boolean returnCount,
+                                 @RequestParam(required = false) Boolean dynamicAttributes,
+                                 @RequestParam(required = false) String modelVersion,
+                                 HttpServletResponse response) throws IOException {
         EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.loadEntitiesList(entityName, view, limit,
                 offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
-        if (BooleanUtils.isTrue(returnCount)) {
-            responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
-        }
-        return responseBuilder.body(entitiesSearchResult.getJson());
+        writeSearchResult(entitiesSearchResult, BooleanUtils.isTrue(returnCount), response);
     }
 
     @GetMapping("/{entityName}/search")
-    public ResponseEntity<String> searchEntitiesListGet(@PathVariable String entityName,
-                                                        @RequestParam String filter,
-                                                        @RequestParam(required = false) String view,
-                                                        @RequestParam(required = false) Integer limit,
-                                                        @RequestParam(required = false) Integer offset,
-                                                        @RequestParam(required = false) String sort,
-                                                        @RequestParam(required = false) Boolean returnNulls,
-                                                        @RequestParam(required = false) Boolean returnCount,
-                                                        @RequestParam(required = false) Boolean dynamicAttributes,
-                                                        @RequestParam(required = false) String modelVersion) {
+    public void searchEntitiesListGet(@PathVariable String entityName,
+                                      @RequestParam String filter,
+                                      @RequestParam(required = false) String view,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(required = false) Integer offset,
+                                      @RequestParam(required = false) String sort,
+                                      @RequestParam(required = false) Boolean returnNulls,
+                                      @RequestParam(required = false) Boolean returnCount,
+                                      @RequestParam(required = false) Boolean dynamicAttributes,
+                                      @RequestParam(required = false) String modelVersion,
+                                      HttpServletResponse response) throws IOException {
         EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, filter,
                 view, limit, offset, sort, returnNulls, returnCount, dynamicAttributes, modelVersion);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
-        if (BooleanUtils.isTrue(returnCount)) {
-            responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
-        }
-        return responseBuilder.body(entitiesSearchResult.getJson());
+        writeSearchResult(entitiesSearchResult, BooleanUtils.isTrue(returnCount), response);
     }
 
     @PostMapping("/{entityName}/search")
-    public ResponseEntity<String> searchEntitiesListPost(@PathVariable String entityName,
-                                                         @RequestBody String requestBodyJson) {
+    public void searchEntitiesListPost(@PathVariable String entityName,
+                                       @RequestBody String requestBodyJson,
+                                       HttpServletResponse response) throws IOException {
         EntitiesSearchResult entitiesSearchResult = entitiesControllerManager.searchEntities(entityName, requestBodyJson);
-        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.status(HttpStatus.OK);
         JsonObject requestJsonObject = new JsonParser().parse(requestBodyJson).getAsJsonObject();
         JsonPrimitive returnCount = requestJsonObject.getAsJsonPrimitive("returnCount");
-        if (returnCount != null && returnCount.getAsBoolean()) {
-            responseBuilder.header("X-Total-Count", entitiesSearchResult.getCount().toString());
-        }
-        return responseBuilder.body(entitiesSearchResult.getJson());
+        writeSearchResult(entitiesSearchResult, returnCount != null && returnCount.getAsBoolean(), response);
+    }
+
+    /**
+     * Streams all entities of the given type as newline-delimited JSON, one entity per line.
+     */
+    @GetMapping(path = "/{entityName}/export", produces = {NDJSON_MEDIA_TYPE, MediaType.APPLICATION_JSON_UTF8_VALUE})
+    public void exportEntities(@PathVariable String entityName,
+                               @RequestParam(required = false) String view,
+                               @RequestParam(required = false) Boolean returnNulls,
+                               @RequestParam(required = false) Boolean dynamicAttributes,
+                               @RequestParam(required = false) String modelVersion,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_MEDIA_TYPE + ";charset=UTF-8");
+        entitiesControllerManager.exportEntities(entityName, view, returnNulls, dynamicAttributes, modelVersion,
+                response.getWriter());
+    }
+
+    /**
+     * Imports entities from a newline-delimited JSON request body, one entity per line. The body is read as a
+     * stream, so it may be uploaded with chunked transfer encoding.
+     */
+    @PostMapping("/{entityName}/import")
+    public EntitiesImportResult importEntities(@PathVariable String entityName,
+                                               @RequestParam(required = false) Integer batchSize,
+                                               @RequestParam(required = false) String modelVersion,
+                                               HttpServletRequest request) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null ?
+                Charset.forName(request.getCharacterEncoding()) :
+                StandardCharsets.UTF_8;
+        Reader reader = new InputStreamReader(request.getInputStream(), charset);
+        return entitiesControllerManager.importEntities(entityName, batchSize, modelVersion, reader);
     }
 
     @PostMapping("/{entityName}")
@@ -138,4 +170,19 @@ public class EntitiesController {
                              @RequestParam(required = false) String modelVersion) {
         entitiesControllerManager.deleteEntity(entityName, entityId, modelVersion);
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the JSON of found entities directly to the response, so the whole response body is never held in memory.
+     */
+    protected void writeSearchResult(EntitiesSearchResult entitiesSearchResult, boolean returnCount,
+                                     HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        if (returnCount) {
+            response.setHeader("X-Total-Count", entitiesSearchResult.getCount().toString());
+        }
+        Writer writer = response.getWriter();
+        entitiesSearchResult.writeJson(writer);
+        writer.flush();
+    }
+}
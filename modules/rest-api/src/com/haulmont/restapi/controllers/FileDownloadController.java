@@ -16,6 +16,7 @@
 
 package com.haulmont.restapi.controllers;
 
+import com.haulmont.bali.util.ByteRange;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.*;
@@ -26,6 +27,7 @@ import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
@@ -63,6 +65,7 @@ public class FileDownloadController {
     @GetMapping("/{fileDescriptorId}")
     public void downloadFile(@PathVariable String fileDescriptorId,
                              @RequestParam(required = false) Boolean attachment,
+                             @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
                              HttpServletResponse response) {
         UUID uuid;
         try {
@@ -86,7 +89,19 @@ public class FileDownloadController {
             response.setHeader("Content-Disposition", (BooleanUtils.isTrue(attachment) ? "attachment" : "inline")
                     + "; filename=\"" + fd.getName() + "\"");
 
-            downloadFromMiddlewareAndWriteResponse(fd, response);
+            ByteRange range = null;
+            if (fd.getSize() != null) {
+                response.setHeader(HttpHeaders.ACCEPT_RANGES, ByteRange.UNIT);
+                range = ByteRange.parse(rangeHeader, fd.getSize());
+            }
+
+            if (range != null) {
+                downloadRangeFromMiddlewareAndWriteResponse(fd, range, response);
+            } else {
+                downloadFromMiddlewareAndWriteResponse(fd, response);
+            }
+        } catch (RestAPIException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error on downloading the file {}", fileDescriptorId, e);
             throw new RestAPIException("Error on downloading the file", "", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -105,6 +120,28 @@ public class FileDownloadController {
         }
     }
 
+    protected void downloadRangeFromMiddlewareAndWriteResponse(FileDescriptor fd, ByteRange range,
+                                                              HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, range.getContentRange());
+        if (!range.isSatisfiable()) {
+            throw new RestAPIException("Range not satisfiable",
+                    "Requested range is outside of the file: " + fd.getId(),
+                    HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentLengthLong(range.getLength());
+
+        ServletOutputStream os = response.getOutputStream();
+        try (InputStream is = fileLoader.openStream(fd)) {
+            IOUtils.copyLarge(is, os, range.getStart(), range.getLength());
+            os.flush();
+        } catch (FileStorageException e) {
+            throw new RestAPIException("Unable to download file from FileStorage",
+                    "Unable to download file from FileStorage: " + fd.getId(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     protected String getContentType(FileDescriptor fd) {
         if (StringUtils.isEmpty(fd.getExtension())) {
             return FileTypesHelper.DEFAULT_MIME_TYPE;
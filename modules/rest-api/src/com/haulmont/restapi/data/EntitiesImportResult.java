@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.restapi.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a bulk entities import: numbers of imported and failed lines and errors of failed lines.
+ */
+public class EntitiesImportResult {
+    protected int importedCount;
+    protected int failedCount;
+    protected List<LineError> errors = new ArrayList<>();
+
+    protected transient int maxReportedErrors;
+
+    public EntitiesImportResult(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void addImported(int count) {
+        importedCount += count;
+    }
+
+    /**
+     * Registers a failed line. Only the first errors are kept, so the result size is limited for any input.
+     */
+    public void addError(int line, String message) {
+        failedCount++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new LineError(line, message));
+        }
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public List<LineError> getErrors() {
+        return errors;
+    }
+
+    public static class LineError {
+        protected int line;
+        protected String message;
+
+        public LineError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
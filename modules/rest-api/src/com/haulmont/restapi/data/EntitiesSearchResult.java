@@ -16,8 +16,14 @@
 
 package com.haulmont.restapi.data;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
 public class EntitiesSearchResult {
     protected String json;
+    protected JsonContent jsonContent;
     protected Long count;
 
     public EntitiesSearchResult(String json, Long count) {
@@ -25,11 +31,48 @@ public class EntitiesSearchResult {
         this.count = count;
     }
 
+    public EntitiesSearchResult(JsonContent jsonContent, Long count) {
+        this.jsonContent = jsonContent;
+        this.count = count;
+    }
+
+    /**
+     * @return the result JSON. If the result is streamed, the whole JSON is built in memory, so prefer
+     * {@link #writeJson(Writer)} for large results.
+     */
     public String getJson() {
+        if (json == null && jsonContent != null) {
+            StringWriter writer = new StringWriter();
+            try {
+                jsonContent.writeTo(writer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return writer.toString();
+        }
         return json;
     }
 
+    /**
+     * Writes the result JSON to the given writer.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        if (jsonContent != null) {
+            jsonContent.writeTo(writer);
+        } else if (json != null) {
+            writer.write(json);
+        }
+    }
+
     public Long getCount() {
         return count;
     }
+
+    /**
+     * JSON which is written directly to the response instead of being built as a string.
+     */
+    @FunctionalInterface
+    public interface JsonContent {
+        void writeTo(Writer writer) throws IOException;
+    }
 }
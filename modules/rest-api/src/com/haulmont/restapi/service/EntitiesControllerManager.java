@@ -20,10 +20,12 @@ import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.cuba.client.sys.PersistenceManagerClient;
 import com.haulmont.cuba.core.app.importexport.EntityImportException;
 import com.haulmont.cuba.core.app.importexport.EntityImportExportService;
 import com.haulmont.cuba.core.app.importexport.EntityImportView;
+import com.haulmont.cuba.core.app.importexport.EntityImportViewProperty;
 import com.haulmont.cuba.core.app.importexport.EntityImportViewBuilderAPI;
 import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
 import com.haulmont.cuba.core.app.serialization.EntitySerializationOption;
@@ -31,7 +33,9 @@ import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.restapi.common.RestControllerUtils;
+import com.haulmont.restapi.config.RestApiConfig;
 import com.haulmont.restapi.data.CreatedEntityInfo;
+import com.haulmont.restapi.data.EntitiesImportResult;
 import com.haulmont.restapi.data.EntitiesSearchResult;
 import com.haulmont.restapi.exception.RestAPIException;
 import com.haulmont.restapi.service.filter.RestFilterParseException;
@@ -39,11 +43,17 @@ import com.haulmont.restapi.service.filter.RestFilterParseResult;
 import com.haulmont.restapi.service.filter.RestFilterParser;
 import com.haulmont.restapi.transform.JsonTransformationDirection;
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.util.*;
 
@@ -84,6 +94,12 @@ public class EntitiesControllerManager {
     @Inject
     protected RestFilterParser restFilterParser;
 
+    @Inject
+    protected MetadataTools metadataTools;
+
+    @Inject
+    protected RestApiConfig restApiConfig;
+
     public String loadEntity(String entityName,
                              String entityId,
                              @Nullable String viewName,
@@ -134,10 +150,8 @@ public class EntitiesControllerManager {
         checkCanReadEntity(metaClass);
 
         String queryString = "select e from " + entityName + " e";
-        String json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls, dynamicAttributes, modelVersion,
-                metaClass, new HashMap<>());
-
-        json = restControllerUtils.transformJsonIfRequired(entityName, modelVersion, JsonTransformationDirection.TO_VERSION, json);
+        EntitiesSearchResult.JsonContent json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
+                dynamicAttributes, modelVersion, metaClass, new HashMap<>());
 
         Long count = null;
         if (BooleanUtils.isTrue(returnCount)) {
@@ -178,7 +192,7 @@ public class EntitiesControllerManager {
         Map<String, Object> queryParameters = filterParseResult.getQueryParameters();
 
         String queryString = "select e from " + entityName + " e where " + jpqlWhere;
-        String json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
+        EntitiesSearchResult.JsonContent json = _loadEntitiesList(queryString, viewName, limit, offset, sort, returnNulls,
                 dynamicAttributes, modelVersion, metaClass, queryParameters);
         Long count = null;
         if (BooleanUtils.isTrue(returnCount)) {
@@ -217,16 +231,19 @@ public class EntitiesControllerManager {
         );
     }
 
-    protected String _loadEntitiesList(String queryString,
-                                       @Nullable String viewName,
-                                       @Nullable Integer limit,
-                                       @Nullable Integer offset,
-                                       @Nullable String sort,
-                                       @Nullable Boolean returnNulls,
-                                       @Nullable Boolean dynamicAttributes,
-                                       @Nullable String modelVersion,
-                                       MetaClass metaClass,
-                                       Map<String, Object> queryParameters) {
+    /**
+     * Loads entities and returns their JSON, which is serialized only when written to the response.
+     */
+    protected EntitiesSearchResult.JsonContent _loadEntitiesList(String queryString,
+                                                                 @Nullable String viewName,
+                                                                 @Nullable Integer limit,
+                                                                 @Nullable Integer offset,
+                                                                 @Nullable String sort,
+                                                                 @Nullable Boolean returnNulls,
+                                                                 @Nullable Boolean dynamicAttributes,
+                                                                 @Nullable String modelVersion,
+                                                                 MetaClass metaClass,
+                                                                 Map<String, Object> queryParameters) {
         LoadContext<Entity> ctx = new LoadContext<>(metaClass);
         if (!Strings.isNullOrEmpty(sort)) {
             boolean descSortOrder = false;
@@ -267,9 +284,244 @@ public class EntitiesControllerManager {
         serializationOptions.add(EntitySerializationOption.SERIALIZE_INSTANCE_NAME);
         if (BooleanUtils.isTrue(returnNulls)) serializationOptions.add(EntitySerializationOption.SERIALIZE_NULLS);
 
-        String json = entitySerializationAPI.toJson(entities, view, serializationOptions.toArray(new EntitySerializationOption[0]));
-        json = restControllerUtils.transformJsonIfRequired(metaClass.getName(), modelVersion, JsonTransformationDirection.TO_VERSION, json);
-        return json;
+        View serializationView = view;
+        EntitySerializationOption[] options = serializationOptions.toArray(new EntitySerializationOption[0]);
+        return writer -> writeEntitiesJson(writer, entities, serializationView, metaClass.getName(), modelVersion, options);
+    }
+
+    /**
+     * Writes the JSON array of entities. If the JSON must be transformed to the requested model version, entities are
+     * serialized and transformed one by one, so the whole array is never held in memory.
+     */
+    protected void writeEntitiesJson(Writer writer,
+                                     List<Entity> entities,
+                                     @Nullable View view,
+                                     String entityName,
+                                     @Nullable String modelVersion,
+                                     EntitySerializationOption... options) throws IOException {
+        if (Strings.isNullOrEmpty(modelVersion)) {
+            entitySerializationAPI.writeJson(entities, view, writer, options);
+        } else {
+            writer.write('[');
+            boolean first = true;
+            for (Entity entity : entities) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                String json = entitySerializationAPI.toJson(entity, view, options);
+                writer.write(restControllerUtils.transformJsonIfRequired(entityName, modelVersion,
+                        JsonTransformationDirection.TO_VERSION, json));
+            }
+            writer.write(']');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes all entities of the given type as newline-delimited JSON. Entities are loaded in batches ordered by the
+     * primary key, and each batch starts after the last key of the previous one, so memory use doesn't depend on the
+     * number of exported entities. Entities with a composite or database-generated key are paged by offset, still
+     * ordered by the primary key columns to keep the pages stable.
+     */
+    public void exportEntities(String entityName,
+                               @Nullable String viewName,
+                               @Nullable Boolean returnNulls,
+                               @Nullable Boolean dynamicAttributes,
+                               @Nullable String modelVersion,
+                               Writer writer) throws IOException {
+        entityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
+        MetaClass metaClass = restControllerUtils.getMetaClass(entityName);
+        checkCanReadEntity(metaClass);
+
+        View view = null;
+        if (!Strings.isNullOrEmpty(viewName)) {
+            view = restControllerUtils.getView(metaClass, viewName);
+        }
+
+        List<EntitySerializationOption> serializationOptions = new ArrayList<>();
+        serializationOptions.add(EntitySerializationOption.SERIALIZE_INSTANCE_NAME);
+        if (BooleanUtils.isTrue(returnNulls)) serializationOptions.add(EntitySerializationOption.SERIALIZE_NULLS);
+        EntitySerializationOption[] options = serializationOptions.toArray(new EntitySerializationOption[0]);
+
+        MetaProperty primaryKeyProperty = metadataTools.getPrimaryKeyProperty(metaClass);
+        boolean pageByKey = primaryKeyProperty != null
+                && !metadataTools.hasCompositePrimaryKey(metaClass)
+                && !BaseDbGeneratedIdEntity.class.isAssignableFrom(metaClass.getJavaClass());
+
+        String orderBy = getPrimaryKeyOrder(metaClass, primaryKeyProperty);
+
+        int batchSize = restApiConfig.getBulkExportBatchSize();
+        Object lastId = null;
+        int offset = 0;
+        List<Entity> entities;
+        do {
+            String queryString = "select e from " + entityName + " e";
+            if (pageByKey && lastId != null) {
+                queryString += " where e." + primaryKeyProperty.getName() + " > :lastId";
+            }
+            if (orderBy != null) {
+                queryString += " order by " + orderBy;
+            }
+            LoadContext.Query query = LoadContext.createQuery(queryString);
+            query.setMaxResults(batchSize);
+            if (pageByKey) {
+                if (lastId != null) {
+                    query.setParameter("lastId", lastId);
+                }
+            } else {
+                query.setFirstResult(offset);
+            }
+
+            LoadContext<Entity> ctx = new LoadContext<>(metaClass);
+            ctx.setQuery(query);
+            if (view != null) {
+                ctx.setView(view);
+            }
+            ctx.setLoadDynamicAttributes(BooleanUtils.isTrue(dynamicAttributes));
+
+            entities = dataManager.loadList(ctx);
+            for (Entity entity : entities) {
+                restControllerUtils.applyAttributesSecurity(entity);
+                String json = entitySerializationAPI.toJson(entity, view, options);
+                writer.write(restControllerUtils.transformJsonIfRequired(entityName, modelVersion,
+                        JsonTransformationDirection.TO_VERSION, json));
+                writer.write('\n');
+            }
+            writer.flush();
+
+            if (!entities.isEmpty()) {
+                lastId = entities.get(entities.size() - 1).getId();
+            }
+            offset += entities.size();
+        } while (entities.size() == batchSize);
+    }
+
+    /**
+     * Returns the JPQL order by clause listing the primary key attributes of the entity, or null if the entity has
+     * no primary key. A composite key is ordered by the attributes of its embeddable.
+     */
+    @Nullable
+    protected String getPrimaryKeyOrder(MetaClass metaClass, @Nullable MetaProperty primaryKeyProperty) {
+        if (primaryKeyProperty == null) {
+            return null;
+        }
+        if (!metadataTools.hasCompositePrimaryKey(metaClass)) {
+            return "e." + primaryKeyProperty.getName();
+        }
+        List<String> keyAttributes = new ArrayList<>();
+        for (MetaProperty property : primaryKeyProperty.getRange().asClass().getProperties()) {
+            if (property.getRange().isDatatype() || property.getRange().isEnum()) {
+                keyAttributes.add("e." + primaryKeyProperty.getName() + "." + property.getName());
+            }
+        }
+        return keyAttributes.isEmpty() ? null : String.join(", ", keyAttributes);
+    }
+
+    /**
+     * Imports entities from newline-delimited JSON, one entity per line. Lines are read one by one and imported in
+     * transactions of {@code batchSize} entities. If a batch fails, its entities are imported one by one to find the
+     * failed lines, which are reported in the result.
+     */
+    public EntitiesImportResult importEntities(String entityName,
+                                               @Nullable Integer batchSize,
+                                               @Nullable String modelVersion,
+                                               Reader reader) throws IOException {
+        String transformedEntityName = restControllerUtils.transformEntityNameIfRequired(entityName, modelVersion, JsonTransformationDirection.FROM_VERSION);
+        MetaClass metaClass = restControllerUtils.getMetaClass(transformedEntityName);
+        checkCanCreateEntity(metaClass);
+        checkCanUpdateEntity(metaClass);
+
+        int maxBatchSize = batchSize != null && batchSize > 0 ? batchSize : restApiConfig.getBulkImportBatchSize();
+        EntitiesImportResult result = new EntitiesImportResult(restApiConfig.getBulkImportMaxReportedErrors());
+
+        List<Entity> batch = new ArrayList<>(maxBatchSize);
+        List<Integer> batchLines = new ArrayList<>(maxBatchSize);
+        EntityImportView batchImportView = null;
+        String batchImportViewSignature = null;
+
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+
+            Entity entity;
+            EntityImportView entityImportView;
+            try {
+                String entityJson = restControllerUtils.transformJsonIfRequired(entityName, modelVersion,
+                        JsonTransformationDirection.FROM_VERSION, line);
+                entity = entitySerializationAPI.entityFromJson(entityJson, metaClass);
+                entityImportView = entityImportViewBuilderAPI.buildFromJson(entityJson, metaClass);
+            } catch (Exception e) {
+                result.addError(lineNumber, "Cannot deserialize an entity from JSON: " + ExceptionUtils.getMessage(e));
+                continue;
+            }
+
+            // entities of a batch are imported with one view, so lines with different attributes start a new batch
+            String importViewSignature = getImportViewSignature(entityImportView);
+            if (!batch.isEmpty()
+                    && (batch.size() >= maxBatchSize || !importViewSignature.equals(batchImportViewSignature))) {
+                importBatch(batch, batchLines, batchImportView, result);
+                batch.clear();
+                batchLines.clear();
+            }
+            batch.add(entity);
+            batchLines.add(lineNumber);
+            batchImportView = entityImportView;
+            batchImportViewSignature = importViewSignature;
+        }
+        if (!batch.isEmpty()) {
+            importBatch(batch, batchLines, batchImportView, result);
+        }
+        return result;
+    }
+
+    protected void importBatch(List<Entity> batch, List<Integer> batchLines, EntityImportView importView,
+                               EntitiesImportResult result) {
+        try {
+            entityImportExportService.importEntities(batch, importView, true);
+            result.addImported(batch.size());
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                result.addError(batchLines.get(0), ExceptionUtils.getMessage(e));
+                return;
+            }
+            // the batch transaction is rolled back, import its entities separately to find the failed ones
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    entityImportExportService.importEntities(Collections.singletonList(batch.get(i)), importView, true);
+                    result.addImported(1);
+                } catch (Exception ex) {
+                    result.addError(batchLines.get(i), ExceptionUtils.getMessage(ex));
+                }
+            }
+        }
+    }
+
+    protected String getImportViewSignature(EntityImportView importView) {
+        StringBuilder sb = new StringBuilder();
+        appendImportViewSignature(importView, sb);
+        return sb.toString();
+    }
+
+    protected void appendImportViewSignature(EntityImportView importView, StringBuilder sb) {
+        sb.append('{');
+        importView.getProperties().stream()
+                .sorted(Comparator.comparing(EntityImportViewProperty::getName))
+                .forEach(property -> {
+                    sb.append(property.getName())
+                            .append(':').append(property.getReferenceImportBehaviour())
+                            .append(':').append(property.getCollectionImportPolicy());
+                    if (property.getView() != null) {
+                        appendImportViewSignature(property.getView(), sb);
+                    }
+                    sb.append(',');
+                });
+        sb.append('}');
     }
 
     public CreatedEntityInfo createEntity(String entityJson, String entityName, String modelVersion) {
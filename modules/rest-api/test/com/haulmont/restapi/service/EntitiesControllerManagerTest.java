@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2008-2016 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.haulmont.restapi.service;
+
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.app.importexport.EntityImportExportService;
+import com.haulmont.cuba.core.app.importexport.EntityImportView;
+import com.haulmont.cuba.core.app.importexport.EntityImportViewBuilderAPI;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationAPI;
+import com.haulmont.cuba.core.app.serialization.EntitySerializationOption;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.global.Security;
+import com.haulmont.cuba.security.entity.EntityOp;
+import com.haulmont.restapi.common.RestControllerUtils;
+import com.haulmont.restapi.config.RestApiConfig;
+import com.haulmont.restapi.data.EntitiesImportResult;
+import com.haulmont.restapi.service.filter.testmodel.TestEntity;
+import com.haulmont.restapi.transform.JsonTransformationDirection;
+import mockit.Delegate;
+import mockit.Expectations;
+import mockit.Mocked;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+
+public class EntitiesControllerManagerTest {
+
+    @Mocked
+    protected RestControllerUtils restControllerUtils;
+    @Mocked
+    protected MetaClass metaClass;
+    @Mocked
+    protected Security security;
+    @Mocked
+    protected RestApiConfig restApiConfig;
+    @Mocked
+    protected EntitySerializationAPI entitySerializationAPI;
+    @Mocked
+    protected EntityImportViewBuilderAPI entityImportViewBuilderAPI;
+    @Mocked
+    protected EntityImportExportService entityImportExportService;
+
+    private EntitiesControllerManager manager;
+
+    private List<List<String>> importedBatches = new ArrayList<>();
+
+    private Set<String> failingLines = new HashSet<>();
+
+    @Before
+    public void setUp() {
+        new Expectations() {
+            {
+                restControllerUtils.transformEntityNameIfRequired(anyString, anyString, JsonTransformationDirection.FROM_VERSION);
+                result = "test$TestEntity"; minTimes = 0;
+                restControllerUtils.getMetaClass(anyString); result = metaClass; minTimes = 0;
+                restControllerUtils.transformJsonIfRequired(anyString, anyString, JsonTransformationDirection.FROM_VERSION, anyString);
+                result = new Delegate<String>() {
+                    @SuppressWarnings("unused")
+                    String transformJsonIfRequired(String entityName, String modelVersion,
+                                                   JsonTransformationDirection direction, String json) {
+                        return json;
+                    }
+                };
+                minTimes = 0;
+
+                security.isEntityOpPermitted(metaClass, (EntityOp) any); result = true; minTimes = 0;
+
+                restApiConfig.getBulkImportBatchSize(); result = 2; minTimes = 0;
+                restApiConfig.getBulkImportMaxReportedErrors(); result = 10; minTimes = 0;
+
+                entitySerializationAPI.entityFromJson(anyString, metaClass);
+                result = new Delegate<Entity>() {
+                    @SuppressWarnings("unused")
+                    Entity entityFromJson(String json, MetaClass metaClass, EntitySerializationOption... options) {
+                        if (json.startsWith("{")) {
+                            throw new IllegalArgumentException("Malformed JSON");
+                        }
+                        TestEntity entity = new TestEntity();
+                        entity.setStringField(json);
+                        return entity;
+                    }
+                };
+                minTimes = 0;
+
+                // lines containing ':' have one more attribute and therefore another import view
+                entityImportViewBuilderAPI.buildFromJson(anyString, metaClass);
+                result = new Delegate<EntityImportView>() {
+                    @SuppressWarnings("unused")
+                    EntityImportView buildFromJson(String json, MetaClass metaClass) {
+                        EntityImportView view = new EntityImportView(TestEntity.class).addLocalProperty("stringField");
+                        return json.contains(":") ? view.addLocalProperty("intField") : view;
+                    }
+                };
+                minTimes = 0;
+
+                entityImportExportService.importEntities((Collection<? extends Entity>) any, (EntityImportView) any, true);
+                result = new Delegate<Collection<Entity>>() {
+                    @SuppressWarnings("unused")
+                    Collection<Entity> importEntities(Collection<? extends Entity> entities, EntityImportView importView,
+                                                      boolean validate) {
+                        List<String> lines = entities.stream()
+                                .map(entity -> ((TestEntity) entity).getStringField())
+                                .collect(Collectors.toList());
+                        importedBatches.add(lines);
+                        if (lines.stream().anyMatch(failingLines::contains)) {
+                            throw new IllegalStateException("Cannot import " + lines);
+                        }
+                        return Collections.emptyList();
+                    }
+                };
+                minTimes = 0;
+            }
+        };
+
+        manager = new EntitiesControllerManager();
+        manager.restControllerUtils = restControllerUtils;
+        manager.security = security;
+        manager.restApiConfig = restApiConfig;
+        manager.entitySerializationAPI = entitySerializationAPI;
+        manager.entityImportViewBuilderAPI = entityImportViewBuilderAPI;
+        manager.entityImportExportService = entityImportExportService;
+    }
+
+    @Test
+    public void testImportInBatches() throws Exception {
+        EntitiesImportResult result = importLines("a\nb\n\nc\nd\ne", null);
+
+        assertEquals(asList(asList("a", "b"), asList("c", "d"), asList("e")), importedBatches);
+        assertEquals(5, result.getImportedCount());
+        assertEquals(0, result.getFailedCount());
+    }
+
+    @Test
+    public void testRequestedBatchSize() throws Exception {
+        EntitiesImportResult result = importLines("a\nb\nc\nd\ne", 3);
+
+        assertEquals(asList(asList("a", "b", "c"), asList("d", "e")), importedBatches);
+        assertEquals(5, result.getImportedCount());
+    }
+
+    @Test
+    public void testDifferentAttributesStartNewBatch() throws Exception {
+        EntitiesImportResult result = importLines("a\nb:1\nc:2\nd", 5);
+
+        assertEquals(asList(asList("a"), asList("b:1", "c:2"), asList("d")), importedBatches);
+        assertEquals(4, result.getImportedCount());
+    }
+
+    @Test
+    public void testFailedBatchImportedOneByOne() throws Exception {
+        failingLines.add("b");
+
+        EntitiesImportResult result = importLines("a\nb\nc", null);
+
+        assertEquals(asList(asList("a", "b"), asList("a"), asList("b"), asList("c")), importedBatches);
+        assertEquals(2, result.getImportedCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals(2, result.getErrors().get(0).getLine());
+    }
+
+    @Test
+    public void testMalformedLineReported() throws Exception {
+        EntitiesImportResult result = importLines("a\n{\nb", null);
+
+        assertEquals(asList(asList("a", "b")), importedBatches);
+        assertEquals(2, result.getImportedCount());
+        assertEquals(1, result.getFailedCount());
+        assertEquals(2, result.getErrors().get(0).getLine());
+    }
+
+    private EntitiesImportResult importLines(String lines, Integer batchSize) throws Exception {
+        return manager.importEntities("test$TestEntity", batchSize, null, new StringReader(lines));
+    }
+}
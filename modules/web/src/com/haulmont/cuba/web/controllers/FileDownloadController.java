@@ -16,6 +16,7 @@
  */
 package com.haulmont.cuba.web.controllers;
 
+import com.haulmont.bali.util.ByteRange;
 import com.haulmont.bali.util.URLEncodeUtils;
 import com.haulmont.cuba.core.app.DataService;
 import com.haulmont.cuba.core.entity.FileDescriptor;
@@ -102,7 +103,17 @@ public class FileDownloadController {
             response.setHeader("Content-Disposition", (attach ? "attachment" : "inline")
                     + "; filename=" + fileName);
 
-            downloadFromMiddlewareAndWriteResponse(fd, response);
+            ByteRange range = null;
+            if (fd.getSize() != null) {
+                response.setHeader(HttpHeaders.ACCEPT_RANGES, ByteRange.UNIT);
+                range = ByteRange.parse(request.getHeader(HttpHeaders.RANGE), fd.getSize());
+            }
+
+            if (range != null) {
+                downloadRangeFromMiddlewareAndWriteResponse(fd, range, response);
+            } else {
+                downloadFromMiddlewareAndWriteResponse(fd, response);
+            }
         } finally {
             AppContext.setSecurityContext(null);
         }
@@ -120,6 +131,26 @@ public class FileDownloadController {
         }
     }
 
+    protected void downloadRangeFromMiddlewareAndWriteResponse(FileDescriptor fd, ByteRange range,
+                                                              HttpServletResponse response) throws IOException {
+        response.setHeader(HttpHeaders.CONTENT_RANGE, range.getContentRange());
+        if (!range.isSatisfiable()) {
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentLengthLong(range.getLength());
+
+        ServletOutputStream os = response.getOutputStream();
+        try (InputStream is = fileLoader.openStream(fd)) {
+            IOUtils.copyLarge(is, os, range.getStart(), range.getLength());
+            os.flush();
+        } catch (FileStorageException e) {
+            log.error("Unable to load file from middleware", e);
+            error(response);
+        }
+    }
+
     protected UserSession getSession(HttpServletRequest request, HttpServletResponse response) throws IOException {
         UUID sessionId;
         try {
@@ -22,6 +22,7 @@ import com.haulmont.cuba.client.sys.cache.DynamicAttributesCacheStrategy;
 import com.haulmont.cuba.core.global.Messages;
 import com.haulmont.cuba.core.global.Scripting;
 import com.haulmont.cuba.core.global.ViewRepository;
+import com.haulmont.cuba.core.sys.AbstractMessages;
 import com.haulmont.cuba.core.sys.AbstractViewRepository;
 import com.haulmont.cuba.core.sys.AppContext;
 import com.haulmont.cuba.core.sys.SecurityContext;
@@ -74,6 +75,16 @@ public class CachingFacade implements CachingFacadeMBean {
         return messages.getCacheSize();
     }
 
+    @Override
+    public long getMessagesCacheHitCount() {
+        return messages instanceof AbstractMessages ? ((AbstractMessages) messages).getCacheHitCount() : 0;
+    }
+
+    @Override
+    public long getMessagesCacheMissCount() {
+        return messages instanceof AbstractMessages ? ((AbstractMessages) messages).getCacheMissCount() : 0;
+    }
+
     @Override
     public void clearGroovyCache() {
         scripting.clearCache();
@@ -21,6 +21,10 @@ public interface CachingFacadeMBean {
 
     int getMessagesCacheSize();
 
+    long getMessagesCacheHitCount();
+
+    long getMessagesCacheMissCount();
+
     void clearGroovyCache();
 
     void clearMessagesCache();
@@ -26,6 +26,7 @@ import com.haulmont.cuba.gui.model.impl.DataContextAccessor
 import com.haulmont.cuba.security.entity.Role
 import com.haulmont.cuba.security.entity.User
 import com.haulmont.cuba.security.entity.UserRole
+import com.haulmont.cuba.web.testmodel.datacontext.Foo
 import com.haulmont.cuba.web.testmodel.sales.Product
 import com.haulmont.cuba.web.testmodel.sales.ProductTag
 import com.haulmont.cuba.web.testsupport.TestContainer
@@ -603,6 +604,87 @@ class DataContextTest extends Specification {
         removed.isEmpty()
     }
 
+    def "commit changed attributes of non-versioned instance as patch"() {
+        DataContext context = factory.createDataContext()
+
+        CommitContext commitContext = null
+        TestServiceProxy.mock(DataService, Mock(DataService) {
+            commit(_) >> { CommitContext cc -> commitContext = cc; Collections.emptySet() }
+        })
+
+        Foo foo = new Foo(name: 'foo1')
+        makeDetached(foo)
+        context.merge(foo)
+
+        when:
+
+        foo.name = 'foo2'
+        context.commit()
+
+        then: "only the changed attribute is sent"
+
+        commitContext.commitInstances.size() == 1
+        Foo patch = commitContext.commitInstances[0] as Foo
+        !patch.is(foo)
+        patch.id == foo.id
+        patch.name == 'foo2'
+        !entityStates.isNew(patch)
+        !entityStates.isDetached(patch)
+    }
+
+    def "commit versioned or reset instance entirely"() {
+        DataContext context = factory.createDataContext()
+
+        CommitContext commitContext = null
+        TestServiceProxy.mock(DataService, Mock(DataService) {
+            commit(_) >> { CommitContext cc -> commitContext = cc; Collections.emptySet() }
+        })
+
+        User user = new User(login: 'u1', name: 'User 1')
+        makeDetached(user)
+        context.merge(user)
+
+        Foo foo = new Foo(name: 'foo1')
+        makeDetached(foo)
+        context.merge(foo)
+
+        when:
+
+        user.name = 'User 2'
+        foo.name = null
+        context.commit()
+
+        then:
+
+        commitContext.commitInstances.size() == 2
+        commitContext.commitInstances.any { it.is(user) }
+        commitContext.commitInstances.any { it.is(foo) }
+    }
+
+    def "merge unchanged instance keeps collections"() {
+        DataContext context = factory.createDataContext()
+
+        User user1 = new User(login: 'u1', name: 'User 1', userRoles: [])
+        makeDetached(user1)
+        UserRole userRole = new UserRole(user: user1)
+        makeDetached(userRole)
+        user1.userRoles.add(userRole)
+
+        User mergedUser = context.merge(user1)
+        def userRoles = mergedUser.userRoles
+
+        when: "merging a copy with the same state"
+
+        User user11 = new User(id: user1.id, login: 'u1', name: 'User 1', userRoles: [userRole])
+        makeDetached(user11)
+        context.merge(user11)
+
+        then: "the managed collection is not replaced and nothing is modified"
+
+        mergedUser.userRoles.is(userRoles)
+        !context.hasChanges()
+    }
+
     def "track many-to-many"() {
         DataContext context = factory.createDataContext()
 
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.web.datacontext
+
+import com.haulmont.cuba.core.global.EntityStates
+import com.haulmont.cuba.gui.model.CollectionContainer
+import com.haulmont.cuba.gui.model.DataContext
+import com.haulmont.cuba.gui.model.DataContextFactory
+import com.haulmont.cuba.web.testmodel.datacontext.Foo
+import com.haulmont.cuba.web.testsupport.TestContainer
+import org.junit.ClassRule
+import org.slf4j.Logger
+import org.slf4j.LoggerFactory
+import spock.lang.Shared
+import spock.lang.Specification
+
+/**
+ * Merges collections of 10k+ instances into a data context, as a collection loader does on every reload,
+ * and reports the time spent.
+ */
+class LargeCollectionMergeTest extends Specification {
+
+    private static final Logger log = LoggerFactory.getLogger(LargeCollectionMergeTest)
+
+    private static final int COUNT = 20_000
+
+    @Shared @ClassRule
+    public TestContainer cont = TestContainer.Common.INSTANCE
+
+    private DataContextFactory factory
+    private EntityStates entityStates
+
+    void setup() {
+        factory = cont.getBean(DataContextFactory)
+        entityStates = cont.getBean(EntityStates)
+    }
+
+    def "merge reloaded collection"() {
+        DataContext context = factory.createDataContext()
+        CollectionContainer<Foo> container = factory.createCollectionContainer(Foo)
+
+        List<Foo> loaded = createDetached(COUNT)
+        container.items = mergeAll(context, loaded, 'initial merge')
+
+        when: "merging reloaded copies, every 10th of them changed"
+
+        List<Foo> reloaded = loaded.withIndex().collect { Foo foo, int i ->
+            Foo copy = new Foo(id: foo.id, name: i % 10 == 0 ? foo.name + ' changed' : foo.name)
+            entityStates.makeDetached(copy)
+            copy
+        }
+        container.items = mergeAll(context, reloaded, 'merge of reloaded copies')
+
+        then: "container keeps the managed instances with the changed state"
+
+        container.items.size() == COUNT
+        (0..<COUNT).every { container.items[it].is(loaded[it]) }
+        container.items[0].name == 'foo0 changed'
+        container.items[1].name == 'foo1'
+
+        and: "merging does not register modifications"
+
+        !context.hasChanges()
+    }
+
+    def "modify few instances of merged collection"() {
+        DataContext context = factory.createDataContext()
+        CollectionContainer<Foo> container = factory.createCollectionContainer(Foo)
+
+        container.items = mergeAll(context, createDetached(COUNT), 'initial merge')
+
+        def modified = []
+        context.addPreCommitListener { e -> modified.addAll(e.modifiedInstances) }
+        context.addPreCommitListener { e -> e.preventCommit() }
+
+        when:
+
+        container.items[1].name = 'changed'
+        container.items[2].name = 'changed'
+        context.commit()
+
+        then:
+
+        modified.size() == 2
+    }
+
+    private List<Foo> createDetached(int count) {
+        (0..<count).collect { int i ->
+            Foo foo = new Foo(name: "foo$i")
+            entityStates.makeDetached(foo)
+            foo
+        }
+    }
+
+    private static List<Foo> mergeAll(DataContext context, List<Foo> entities, String description) {
+        long start = System.nanoTime()
+        List<Foo> merged = entities.collect { context.merge(it) }
+        log.info("{} of {} instances: {} ms", description, entities.size(), (System.nanoTime() - start).intdiv(1_000_000))
+        merged
+    }
+}